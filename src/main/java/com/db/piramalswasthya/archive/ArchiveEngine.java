@@ -0,0 +1,496 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.archive;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.db.piramalswasthya.migration.CheckpointStore;
+import com.db.piramalswasthya.migration.CheckpointStore.Checkpoint;
+import com.db.piramalswasthya.migration.CheckpointStore.Status;
+
+/**
+ * Moves rows older than a policy's retention from an operational table into
+ * a table of the same name in the archive database, in small transactions
+ * walking the primary key from its lowest value. Rows of other tables
+ * referencing an archived row through a foreign key (recursively) move in the
+ * same transaction, children first, so no constraint is violated and nothing
+ * is left orphaned. Each table's copy is verified against its delete, and the
+ * archived rows against the archive, before the chunk commits together with
+ * its {@link CheckpointStore} checkpoint.
+ * <p>
+ * A run stops at the first row still inside the retention: with increasing
+ * keys, everything after it is newer too. Rows with a NULL age are skipped
+ * without stopping the run. Rows skipped for the policy's condition are
+ * looked at again on the next run, which starts from the lowest
+ * key; an interrupted run resumes after its last committed chunk.
+ *
+ * @author Piramal Swasthya
+ */
+public class ArchiveEngine {
+
+	private static final Logger logger = LoggerFactory.getLogger(ArchiveEngine.class);
+
+	static final String JOB_PREFIX = "archive:";
+	private static final int MAX_TABLES = 500;
+	private static final Set<String> INTEGER_TYPES = Set.of("tinyint", "smallint", "mediumint", "int", "bigint");
+	private static final Set<String> DATE_TYPES = Set.of("date", "datetime", "timestamp");
+
+	/** Consulted before every chunk. */
+	@FunctionalInterface
+	public interface Throttle {
+
+		/**
+		 * Blocks while the database is too busy for another chunk.
+		 *
+		 * @return false when the run should stop instead
+		 */
+		boolean awaitCapacity();
+	}
+
+	/** Rows of {@code table} matching {@code predicate} move to the archive. */
+	record Step(String table, List<String> columns, String predicate) {
+	}
+
+	/**
+	 * Tables moved for one policy: dependents first, the archived table last.
+	 *
+	 * @param ineligibleReason why the table cannot be archived, or null
+	 */
+	public record Plan(String table, String keyColumn, List<Step> steps, String ineligibleReason) {
+
+		public List<String> dependents() {
+			return steps.stream().map(Step::table).filter(t -> !t.equals(table)).distinct().toList();
+		}
+	}
+
+	/**
+	 * @param rows          rows of the archived table moved by this run
+	 * @param dependentRows rows of referencing tables moved along with them
+	 * @param caughtUp      every row past the retention (and meeting the condition) is archived
+	 * @param stoppedBy     why the run ended before catching up, or null
+	 */
+	public record RunResult(String table, long rows, long dependentRows, int chunks, long lastKey, boolean caughtUp,
+			String stoppedBy) {
+	}
+
+	private record Chunk(List<Long> keys, Long lastKey) {
+	}
+
+	private record ForeignKey(String table, String name, List<String> columns, List<String> referencedColumns) {
+	}
+
+	private final int chunkSize;
+	private final Duration pauseBetweenChunks;
+	private final int queryTimeoutSeconds;
+
+	public ArchiveEngine(int chunkSize, Duration pauseBetweenChunks, int queryTimeoutSeconds) {
+		this.chunkSize = Math.max(1, chunkSize);
+		this.pauseBetweenChunks = pauseBetweenChunks;
+		this.queryTimeoutSeconds = queryTimeoutSeconds;
+	}
+
+	/**
+	 * Works out which tables an archived row of {@code table} takes along by
+	 * following the foreign keys that reference it.
+	 */
+	public Plan plan(Connection conn, String table, ArchiveProperties.Policy policy) throws SQLException {
+		List<String> primaryKey = primaryKey(conn, table);
+		if (primaryKey.isEmpty()) {
+			return new Plan(table, null, List.of(), "no primary key or table not found");
+		}
+		if (primaryKey.size() > 1) {
+			return new Plan(table, null, List.of(), "composite primary key " + primaryKey);
+		}
+		String keyColumn = primaryKey.get(0);
+		String keyType = dataType(conn, table, keyColumn);
+		if (!INTEGER_TYPES.contains(keyType)) {
+			return new Plan(table, keyColumn, List.of(), "primary key " + keyColumn + " is " + keyType + ", not an integer");
+		}
+		String ageType = dataType(conn, table, policy.getAgeColumn());
+		if (ageType == null) {
+			return new Plan(table, keyColumn, List.of(), "column " + policy.getAgeColumn() + " not found");
+		}
+		if (!DATE_TYPES.contains(ageType)) {
+			return new Plan(table, keyColumn, List.of(), "column " + policy.getAgeColumn() + " is " + ageType);
+		}
+
+		List<Step> steps = new ArrayList<>();
+		Deque<String> path = new ArrayDeque<>();
+		path.push(table);
+		String reason = addDependents(conn, table, rootPredicate(table, keyColumn, policy), path, steps);
+		if (reason != null) {
+			return new Plan(table, keyColumn, List.of(), reason);
+		}
+		steps.add(new Step(table, columns(conn, table), rootPredicate(table, keyColumn, policy)));
+		return new Plan(table, keyColumn, List.copyOf(steps), null);
+	}
+
+	/** Appends the steps of every table referencing {@code table}, deepest first. */
+	private String addDependents(Connection conn, String table, String predicate, Deque<String> path, List<Step> steps)
+			throws SQLException {
+		for (ForeignKey foreignKey : referencingKeys(conn, table)) {
+			if (path.contains(foreignKey.table())) {
+				return "foreign key cycle " + foreignKey.name() + " (" + foreignKey.table() + " -> " + table + ")";
+			}
+			String childPredicate = tuple(foreignKey.columns()) + " IN (SELECT "
+				+ foreignKey.referencedColumns().stream().map(c -> quote(table) + "." + quote(c)).collect(Collectors.joining(", "))
+				+ " FROM " + quote(table) + " WHERE " + predicate + ")";
+			path.push(foreignKey.table());
+			String reason = addDependents(conn, foreignKey.table(), childPredicate, path, steps);
+			path.pop();
+			if (reason != null) {
+				return reason;
+			}
+			steps.add(new Step(foreignKey.table(), columns(conn, foreignKey.table()), childPredicate));
+			if (steps.size() > MAX_TABLES) {
+				return "more than " + MAX_TABLES + " dependent tables";
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Archives (or continues archiving) {@code table} until it is caught up,
+	 * {@code deadline} passes or {@code throttle} gives up. Leaves the
+	 * connection's auto-commit setting as it was.
+	 *
+	 * @throws IllegalStateException when the table cannot be archived or a chunk fails verification
+	 */
+	public RunResult run(Connection conn, String table, ArchiveProperties.Policy policy, Throttle throttle,
+			Instant deadline) throws SQLException {
+		Plan plan = plan(conn, table, policy);
+		if (plan.ineligibleReason() != null) {
+			throw new IllegalStateException(table + " cannot be archived: " + plan.ineligibleReason());
+		}
+		String archive = policy.getArchiveSchema();
+		prepareArchive(conn, plan, archive);
+
+		CheckpointStore checkpoints = new CheckpointStore(conn);
+		String job = JOB_PREFIX + table;
+		Optional<Checkpoint> previous = checkpoints.load(job).filter(cp -> cp.status() == Status.RUNNING);
+		long lastKey = previous.map(Checkpoint::lastKey).orElse(Long.MIN_VALUE);
+		long passRows = previous.map(Checkpoint::rowsProcessed).orElse(0L);
+		previous.ifPresent(cp -> logger.info("[ARCHIVE_RESUMED] table={} | lastKey={} | rows={}", table, cp.lastKey(),
+			cp.rowsProcessed()));
+		LocalDateTime cutoff = databaseNow(conn).minus(policy.getRetention());
+
+		Step root = plan.steps().get(plan.steps().size() - 1);
+		long rows = 0;
+		long dependentRows = 0;
+		int chunks = 0;
+		boolean caughtUp = false;
+		String stoppedBy = null;
+		long start = System.nanoTime();
+		boolean autoCommit = conn.getAutoCommit();
+		conn.setAutoCommit(false);
+		try {
+			while (true) {
+				if (Instant.now().isAfter(deadline)) {
+					stoppedBy = "max run time";
+					break;
+				}
+				if (!throttle.awaitCapacity()) {
+					stoppedBy = "throttled";
+					break;
+				}
+				Chunk chunk = selectChunk(conn, plan, policy, lastKey, cutoff);
+				if (chunk.lastKey() == null) {
+					caughtUp = true;
+					break;
+				}
+				if (!chunk.keys().isEmpty()) {
+					for (Step step : plan.steps()) {
+						int moved = move(conn, step, archive, lastKey, chunk.lastKey(), cutoff);
+						if (step == root) {
+							if (moved != chunk.keys().size()) {
+								throw new IllegalStateException(String.format("%s: moved %d rows, expected %d (keys %d..%d)",
+									table, moved, chunk.keys().size(), lastKey, chunk.lastKey()));
+							}
+							rows += moved;
+						} else {
+							dependentRows += moved;
+						}
+					}
+					verifyLanded(conn, plan, archive, chunk.keys());
+				}
+				lastKey = chunk.lastKey();
+				passRows += chunk.keys().size();
+				checkpoints.save(new Checkpoint(job, lastKey, passRows, chunkSize, Status.RUNNING));
+				conn.commit();
+				chunks++;
+				logger.debug("[ARCHIVE_CHUNK] table={} | upToKey={} | rows={}", table, lastKey, chunk.keys().size());
+				pause(pauseBetweenChunks);
+			}
+			if (caughtUp) {
+				checkpoints.save(new Checkpoint(job, lastKey, passRows, chunkSize, Status.DONE));
+			}
+			conn.commit();
+		} catch (SQLException | RuntimeException e) {
+			conn.rollback();
+			logger.error("[ARCHIVE_FAILED] table={} | lastCommittedKey={} | error=\"{}\"", table, lastKey,
+				e.getMessage());
+			throw e;
+		} finally {
+			conn.setAutoCommit(autoCommit);
+		}
+
+		logger.info("[ARCHIVE_DONE] table={} | archive={} | rows={} | dependentRows={} | chunks={} | caughtUp={} | stoppedBy={} | durationMs={}",
+			table, archive, rows, dependentRows, chunks, caughtUp, stoppedBy, (System.nanoTime() - start) / 1_000_000);
+		return new RunResult(table, rows, dependentRows, chunks, lastKey, caughtUp, stoppedBy);
+	}
+
+	/**
+	 * Locks the next {@code chunkSize} rows after {@code lastKey} and returns
+	 * the ones to archive, up to the first row still inside the retention.
+	 * Rows with a NULL age are passed over and never archived.
+	 * {@code lastKey} of the result is null when that row is the first one.
+	 */
+	private Chunk selectChunk(Connection conn, Plan plan, ArchiveProperties.Policy policy, long lastKey,
+			LocalDateTime cutoff) throws SQLException {
+		String key = quote(plan.keyColumn());
+		String sql = "SELECT " + key + ", " + quote(policy.getAgeColumn()) + " < ?, (" + condition(policy) + ") FROM "
+			+ quote(plan.table()) + " WHERE " + key + " > ? ORDER BY " + key + " LIMIT " + chunkSize + " FOR UPDATE";
+		List<Long> keys = new ArrayList<>();
+		Long chunkEnd = null;
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			ps.setQueryTimeout(queryTimeoutSeconds);
+			ps.setTimestamp(1, Timestamp.valueOf(cutoff));
+			ps.setLong(2, lastKey);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					boolean expired = rs.getInt(2) == 1;
+					// a NULL age says nothing about the rows after it: skip it like a false condition
+					boolean undated = rs.wasNull();
+					if (!expired && !undated) {
+						break;
+					}
+					chunkEnd = rs.getLong(1);
+					if (expired && rs.getInt(3) == 1) {
+						keys.add(chunkEnd);
+					}
+				}
+			}
+		}
+		return new Chunk(keys, chunkEnd);
+	}
+
+	/** Copies one table's rows of the chunk to the archive and deletes them, checking both counts agree. */
+	private int move(Connection conn, Step step, String archive, long fromKey, long toKey, LocalDateTime cutoff)
+			throws SQLException {
+		String columns = step.columns().stream().map(ArchiveEngine::quote).collect(Collectors.joining(", "));
+		int copied = execute(conn, "INSERT INTO " + quote(archive) + "." + quote(step.table()) + " (" + columns + ") SELECT "
+			+ columns + " FROM " + quote(step.table()) + " WHERE " + step.predicate(), fromKey, toKey, cutoff);
+		int deleted = execute(conn, "DELETE FROM " + quote(step.table()) + " WHERE " + step.predicate(), fromKey, toKey,
+			cutoff);
+		if (copied != deleted) {
+			throw new IllegalStateException(String.format("%s: copied %d rows but deleted %d", step.table(), copied,
+				deleted));
+		}
+		return deleted;
+	}
+
+	private int execute(Connection conn, String sql, long fromKey, long toKey, LocalDateTime cutoff)
+			throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			ps.setQueryTimeout(queryTimeoutSeconds);
+			// every predicate nests the archived table's range exactly once
+			ps.setLong(1, fromKey);
+			ps.setLong(2, toKey);
+			ps.setTimestamp(3, Timestamp.valueOf(cutoff));
+			return ps.executeUpdate();
+		}
+	}
+
+	/** Reads the archived keys back from the archive table inside the chunk's transaction. */
+	private void verifyLanded(Connection conn, Plan plan, String archive, List<Long> keys) throws SQLException {
+		String placeholders = String.join(", ", Collections.nCopies(keys.size(), "?"));
+		try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM " + quote(archive) + "."
+			+ quote(plan.table()) + " WHERE " + quote(plan.keyColumn()) + " IN (" + placeholders + ")")) {
+			ps.setQueryTimeout(queryTimeoutSeconds);
+			for (int i = 0; i < keys.size(); i++) {
+				ps.setLong(i + 1, keys.get(i));
+			}
+			try (ResultSet rs = ps.executeQuery()) {
+				rs.next();
+				if (rs.getLong(1) != keys.size()) {
+					throw new IllegalStateException(String.format("%s: %d of %d archived rows found in %s",
+						plan.table(), rs.getLong(1), keys.size(), archive));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates missing archive tables LIKE their source (without foreign keys)
+	 * and checks existing ones still have every source column.
+	 */
+	private void prepareArchive(Connection conn, Plan plan, String archive) throws SQLException {
+		Map<String, List<String>> tables = new LinkedHashMap<>();
+		plan.steps().forEach(step -> tables.putIfAbsent(step.table(), step.columns()));
+		try (Statement stmt = conn.createStatement()) {
+			for (Map.Entry<String, List<String>> table : tables.entrySet()) {
+				stmt.execute("CREATE TABLE IF NOT EXISTS " + quote(archive) + "." + quote(table.getKey()) + " LIKE "
+					+ quote(table.getKey()));
+				Set<String> archived = new HashSet<>();
+				try (PreparedStatement ps = conn.prepareStatement("SELECT LOWER(COLUMN_NAME) FROM information_schema.COLUMNS "
+					+ "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ?")) {
+					ps.setString(1, archive);
+					ps.setString(2, table.getKey());
+					try (ResultSet rs = ps.executeQuery()) {
+						while (rs.next()) {
+							archived.add(rs.getString(1));
+						}
+					}
+				}
+				List<String> missing = table.getValue().stream()
+					.filter(c -> !archived.contains(c.toLowerCase(Locale.ROOT))).toList();
+				if (!missing.isEmpty()) {
+					throw new IllegalStateException(archive + "." + table.getKey() + " lacks columns " + missing
+						+ "; add them to the archive table before archiving");
+				}
+			}
+		}
+	}
+
+	private static String rootPredicate(String table, String keyColumn, ArchiveProperties.Policy policy) {
+		String key = quote(table) + "." + quote(keyColumn);
+		return key + " > ? AND " + key + " <= ? AND " + quote(table) + "." + quote(policy.getAgeColumn()) + " < ? AND ("
+			+ condition(policy) + ")";
+	}
+
+	private static String condition(ArchiveProperties.Policy policy) {
+		return policy.getCondition() == null || policy.getCondition().isBlank() ? "1 = 1" : policy.getCondition();
+	}
+
+	private static List<ForeignKey> referencingKeys(Connection conn, String table) throws SQLException {
+		Map<String, ForeignKey> keys = new LinkedHashMap<>();
+		try (PreparedStatement ps = conn.prepareStatement("SELECT TABLE_NAME, CONSTRAINT_NAME, COLUMN_NAME, "
+			+ "REFERENCED_COLUMN_NAME FROM information_schema.KEY_COLUMN_USAGE WHERE TABLE_SCHEMA = DATABASE() "
+			+ "AND REFERENCED_TABLE_SCHEMA = DATABASE() AND REFERENCED_TABLE_NAME = ? "
+			+ "ORDER BY TABLE_NAME, CONSTRAINT_NAME, ORDINAL_POSITION")) {
+			ps.setString(1, table);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					String child = rs.getString(1);
+					String name = rs.getString(2);
+					ForeignKey key = keys.computeIfAbsent(child + "." + name,
+						k -> new ForeignKey(child, name, new ArrayList<>(), new ArrayList<>()));
+					key.columns().add(rs.getString(3));
+					key.referencedColumns().add(rs.getString(4));
+				}
+			}
+		}
+		return new ArrayList<>(keys.values());
+	}
+
+	/** Insertable columns: generated columns are left for the archive table to compute. */
+	private static List<String> columns(Connection conn, String table) throws SQLException {
+		List<String> columns = new ArrayList<>();
+		try (PreparedStatement ps = conn.prepareStatement("SELECT COLUMN_NAME FROM information_schema.COLUMNS "
+			+ "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND EXTRA NOT LIKE '%GENERATED%' "
+			+ "ORDER BY ORDINAL_POSITION")) {
+			ps.setString(1, table);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					columns.add(rs.getString(1));
+				}
+			}
+		}
+		return columns;
+	}
+
+	private static List<String> primaryKey(Connection conn, String table) throws SQLException {
+		List<String> columns = new ArrayList<>();
+		try (PreparedStatement ps = conn.prepareStatement("SELECT COLUMN_NAME FROM information_schema.STATISTICS "
+			+ "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = 'PRIMARY' ORDER BY SEQ_IN_INDEX")) {
+			ps.setString(1, table);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					columns.add(rs.getString(1));
+				}
+			}
+		}
+		return columns;
+	}
+
+	private static String dataType(Connection conn, String table, String column) throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement("SELECT LOWER(DATA_TYPE) FROM information_schema.COLUMNS "
+			+ "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?")) {
+			ps.setString(1, table);
+			ps.setString(2, column);
+			try (ResultSet rs = ps.executeQuery()) {
+				return rs.next() ? rs.getString(1) : null;
+			}
+		}
+	}
+
+	private static LocalDateTime databaseNow(Connection conn) throws SQLException {
+		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT NOW()")) {
+			rs.next();
+			return rs.getTimestamp(1).toLocalDateTime();
+		}
+	}
+
+	private static String tuple(List<String> columns) {
+		String joined = columns.stream().map(ArchiveEngine::quote).collect(Collectors.joining(", "));
+		return columns.size() == 1 ? joined : "(" + joined + ")";
+	}
+
+	private static String quote(String identifier) {
+		return "`" + identifier.replace("`", "``") + "`";
+	}
+
+	private static void pause(Duration pause) {
+		if (pause.isZero() || pause.isNegative()) {
+			return;
+		}
+		try {
+			Thread.sleep(pause.toMillis());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted during archival", e);
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.archive;
+
+import java.time.Duration;
+import java.time.Period;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Settings for moving cold rows out of operational tables, bound from
+ * {@code amrit.archive.*}. Policies are registered per schema, e.g.
+ * {@code amrit.archive.policies.dbiemr.t_benvisitdetail.retention=3y}.
+ *
+ * @author Piramal Swasthya
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "amrit.archive")
+public class ArchiveProperties {
+
+	/** Runs the archival job on the interval below. */
+	private boolean enabled = false;
+
+	/** Pause between archival runs. */
+	private Duration interval = Duration.ofHours(24);
+
+	/** Rows of the archived table examined per chunk; dependent rows move along with them. */
+	private int chunkSize = 500;
+
+	private Duration pauseBetweenChunks = Duration.ofMillis(200);
+
+	/** A run stops after this long and continues from its checkpoint next time. */
+	private Duration maxRunTime = Duration.ofHours(2);
+
+	private Throttle throttle = new Throttle();
+
+	/** Archived tables: schema, then table name. */
+	private Map<String, Map<String, Policy>> policies = defaultPolicies();
+
+	/** Health signals (from the diagnostic snapshots) that pause archival. */
+	@Data
+	public static class Throttle {
+
+		/** Pause while connections in use exceed this share of {@code max_connections}. */
+		private int maxConnectionUsagePercent = 70;
+
+		/** Pause while more transactions than this run past the long-transaction threshold. */
+		private long maxLongTransactions = 0;
+
+		/** Wait before re-reading the signals once paused. */
+		private Duration backoff = Duration.ofSeconds(30);
+
+		/** End the run after pausing this long in one go. */
+		private Duration maxWait = Duration.ofMinutes(15);
+	}
+
+	@Data
+	public static class Policy {
+
+		/** DATE or DATETIME column compared with the retention. */
+		private String ageColumn = "CreatedDate";
+
+		/** Rows older than this are archived. */
+		private Period retention = Period.ofYears(3);
+
+		/** Database receiving the rows; its tables are created LIKE the source tables. */
+		private String archiveSchema = "db_iemr_archive";
+
+		/** Extra SQL predicate a row must also meet, e.g. {@code QuantityInHand = 0}; null for none. */
+		private String condition;
+	}
+
+	private static Map<String, Map<String, Policy>> defaultPolicies() {
+		Map<String, Policy> iemr = new LinkedHashMap<>();
+		iemr.put("t_benvisitdetail", new Policy());
+		iemr.put("t_bencall", new Policy());
+		iemr.put("t_itemstockexit", new Policy());
+		Policy stockEntry = new Policy();
+		// Entries with stock left are still issued from
+		stockEntry.setCondition("QuantityInHand = 0");
+		iemr.put("t_itemstockentry", stockEntry);
+		Map<String, Map<String, Policy>> policies = new LinkedHashMap<>();
+		policies.put("dbiemr", iemr);
+		return policies;
+	}
+}
@@ -2,36 +2,77 @@ package com.db.piramalswasthya.config;
 
 import javax.sql.DataSource;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Configuration
 public class DatasourceConfig {
+
+	static final String POOL_SATURATION = "amrit.db.pool.saturation";
 	
 	@Bean
     @Primary
     @ConfigurationProperties(prefix = "spring.datasource.dbiemr")
-    public DataSource dbiemrDataSource() {
-        return DataSourceBuilder.create().build();
+    public DataSource dbiemrDataSource(PoolProperties pools, ObjectProvider<MeterRegistry> meterRegistry) {
+        return schemaPool("dbiemr", pools, meterRegistry);
     }
 
     @Bean
     @ConfigurationProperties(prefix = "spring.datasource.dbidentity")
-    public DataSource dbidentityDataSource() {
-        return DataSourceBuilder.create().build();
+    public DataSource dbidentityDataSource(PoolProperties pools, ObjectProvider<MeterRegistry> meterRegistry) {
+        return schemaPool("dbidentity", pools, meterRegistry);
     }
 
     @Bean
     @ConfigurationProperties(prefix = "spring.datasource.dbreporting")
-    public DataSource dbreportingDataSource() {
-        return DataSourceBuilder.create().build();
+    public DataSource dbreportingDataSource(PoolProperties pools, ObjectProvider<MeterRegistry> meterRegistry) {
+        return schemaPool("dbreporting", pools, meterRegistry);
     }
 
     @Bean
     @ConfigurationProperties(prefix = "spring.datasource.db1097identity")
-    public DataSource db1097identityDataSource() {
-        return DataSourceBuilder.create().build();
+    public DataSource db1097identityDataSource(PoolProperties pools, ObjectProvider<MeterRegistry> meterRegistry) {
+        return schemaPool("db1097identity", pools, meterRegistry);
+    }
+
+    /**
+     * Pool named after its schema, sized and tuned from {@link PoolProperties},
+     * with Hikari's Micrometer tracker attached up front: the pools start during
+     * the startup migration, before actuator's deferred metric binding runs, and
+     * Hikari refuses a tracker once started. {@code @ConfigurationProperties}
+     * binds {@code spring.datasource.<schema>.*} onto the returned pool afterwards.
+     */
+    private static DataSource schemaPool(String schema, PoolProperties pools, ObjectProvider<MeterRegistry> meterRegistry) {
+        HikariDataSource dataSource = DataSourceBuilder.create().type(HikariDataSource.class).build();
+        dataSource.setPoolName(schema);
+        pools.apply(schema, dataSource);
+        meterRegistry.ifAvailable(registry -> {
+            dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+            Gauge.builder(POOL_SATURATION, dataSource, DatasourceConfig::saturation)
+                    .description("Share of the pool's connections in use")
+                    .tag("schema", schema)
+                    .register(registry);
+        });
+        return dataSource;
+    }
+
+    /** Active connections over maximum pool size; NaN until the pool has started. */
+    private static double saturation(HikariDataSource dataSource) {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        if (pool == null || dataSource.getMaximumPoolSize() <= 0) {
+            return Double.NaN;
+        }
+        return (double) pool.getActiveConnections() / dataSource.getMaximumPoolSize();
     }
 }
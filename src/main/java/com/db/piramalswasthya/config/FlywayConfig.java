@@ -1,47 +1,77 @@
 package com.db.piramalswasthya.config;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.sql.DataSource;
 
 import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.callback.Callback;
+import org.flywaydb.core.api.migration.JavaMigration;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import com.db.piramalswasthya.migration.MigrationProgressCallback;
+import com.db.piramalswasthya.migration.MigrationProperties;
+import com.db.piramalswasthya.migration.MigrationStatementProfiler;
+import com.db.piramalswasthya.migration.MigrationStatusRegistry;
+import com.db.piramalswasthya.migration.SchemaJavaMigration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Configuration
 public class FlywayConfig {
 	 @Bean
-	    public Flyway flywayDbiemr(@Qualifier("dbiemrDataSource") DataSource dataSource) {
-	        return Flyway.configure()
-	                .dataSource(dataSource)
-	                .locations("classpath:db/migration/dbiemr")
-	                .baselineOnMigrate(true)
-	                .load();
+	    public Flyway flywayDbiemr(@Qualifier("dbiemrDataSource") DataSource dataSource,
+	    		MigrationStatusRegistry registry, MigrationProperties properties,
+	    		ObjectProvider<SchemaJavaMigration> javaMigrations, ObjectProvider<MeterRegistry> meterRegistry) {
+	        return schemaFlyway("dbiemr", dataSource, registry, properties, javaMigrations, meterRegistry);
 	    }
 
 	    @Bean
-	    public Flyway flywayDbidentity(@Qualifier("dbidentityDataSource") DataSource dataSource) {
-	        return Flyway.configure()
-	                .dataSource(dataSource)
-	                .locations("classpath:db/migration/dbidentity")
-	                .baselineOnMigrate(true)
-	                .load();
+	    public Flyway flywayDbidentity(@Qualifier("dbidentityDataSource") DataSource dataSource,
+	    		MigrationStatusRegistry registry, MigrationProperties properties,
+	    		ObjectProvider<SchemaJavaMigration> javaMigrations, ObjectProvider<MeterRegistry> meterRegistry) {
+	        return schemaFlyway("dbidentity", dataSource, registry, properties, javaMigrations, meterRegistry);
 	    }
 
 	    @Bean
-	    public Flyway flywayDbreporting(@Qualifier("dbreportingDataSource") DataSource dataSource) {
-	        return Flyway.configure()
-	                .dataSource(dataSource)
-	                .locations("classpath:db/migration/dbreporting")
-	                .baselineOnMigrate(true)
-	                .load();
+	    public Flyway flywayDbreporting(@Qualifier("dbreportingDataSource") DataSource dataSource,
+	    		MigrationStatusRegistry registry, MigrationProperties properties,
+	    		ObjectProvider<SchemaJavaMigration> javaMigrations, ObjectProvider<MeterRegistry> meterRegistry) {
+	        return schemaFlyway("dbreporting", dataSource, registry, properties, javaMigrations, meterRegistry);
 	    }
 
 	    @Bean
-	    public Flyway flywayDb1097identity(@Qualifier("db1097identityDataSource") DataSource dataSource) {
+	    public Flyway flywayDb1097identity(@Qualifier("db1097identityDataSource") DataSource dataSource,
+	    		MigrationStatusRegistry registry, MigrationProperties properties,
+	    		ObjectProvider<SchemaJavaMigration> javaMigrations, ObjectProvider<MeterRegistry> meterRegistry) {
+	        return schemaFlyway("db1097identity", dataSource, registry, properties, javaMigrations, meterRegistry);
+	    }
+
+	    private Flyway schemaFlyway(String schema, DataSource dataSource, MigrationStatusRegistry registry,
+	    		MigrationProperties properties, ObjectProvider<SchemaJavaMigration> javaMigrations,
+	    		ObjectProvider<MeterRegistry> meterRegistry) {
+	        List<Callback> callbacks = new ArrayList<>();
+	        callbacks.add(new MigrationProgressCallback(schema, registry, meterRegistry.getIfAvailable()));
+
+	        DataSource migrationDataSource = dataSource;
+	        if (properties.isStatementProfiling()) {
+	            MigrationStatementProfiler profiler = new MigrationStatementProfiler(schema, dataSource);
+	            migrationDataSource = profiler.profilingDataSource();
+	            callbacks.add(profiler);
+	        }
+
 	        return Flyway.configure()
-	                .dataSource(dataSource)
-	                .locations("classpath:db/migration/db1097identity")
+	                .dataSource(migrationDataSource)
+	                .locations("classpath:db/migration/" + schema)
 	                .baselineOnMigrate(true)
+	                .callbacks(callbacks.toArray(new Callback[0]))
+	                .javaMigrations(javaMigrations.orderedStream()
+	                        .filter(migration -> schema.equals(migration.getSchema()))
+	                        .toArray(JavaMigration[]::new))
 	                .load();
 	    }
 
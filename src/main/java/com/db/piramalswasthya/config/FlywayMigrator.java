@@ -1,47 +1,199 @@
 package com.db.piramalswasthya.config;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.migration.JavaMigration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Component;
 
-import com.db.piramalswasthya.controller.VersionController;
+import com.db.piramalswasthya.migration.BaselineSnapshot;
+import com.db.piramalswasthya.migration.ConditionalRepair;
+import com.db.piramalswasthya.migration.ManifestFastPath;
+import com.db.piramalswasthya.migration.MigrationCoordinator;
+import com.db.piramalswasthya.migration.MigrationFailedException;
+import com.db.piramalswasthya.migration.MigrationProperties;
+import com.db.piramalswasthya.migration.MigrationStatusRegistry;
+import com.db.piramalswasthya.migration.SchemaMigrationExecutor;
+import com.db.piramalswasthya.migration.SchemaMigrationResult;
+import com.db.piramalswasthya.migration.SchemaMigrationStatus;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 @Component
 public class FlywayMigrator {
 	private Logger logger = LoggerFactory.getLogger(FlywayMigrator.class);
-	private final Flyway flywayDbiemr;
-    private final Flyway flywayDbidentity;
-    private final Flyway flywayDbreporting;
-    private final Flyway flywayDb1097identity;
+	private final Map<String, Flyway> schemas = new LinkedHashMap<>();
+	private final Map<String, ManifestFastPath> fastPaths = new LinkedHashMap<>();
+	private final Map<String, List<MigrationVersion>> javaVersions = new LinkedHashMap<>();
+	private final MigrationProperties properties;
+	private final MigrationStatusRegistry statusRegistry;
+	private final MigrationCoordinator coordinator;
+	private final MeterRegistry meterRegistry;
+	private final ExecutorService migrationThread = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "flyway-migration-thread");
+		t.setDaemon(true);
+		return t;
+	});
 
     public FlywayMigrator(Flyway flywayDbiemr,
                           Flyway flywayDbidentity,
                           Flyway flywayDbreporting,
-                          Flyway flywayDb1097identity) {
-        this.flywayDbiemr = flywayDbiemr;
-        this.flywayDbidentity = flywayDbidentity;
-        this.flywayDbreporting = flywayDbreporting;
-        this.flywayDb1097identity = flywayDb1097identity;
+                          Flyway flywayDb1097identity,
+                          MigrationProperties properties,
+                          MigrationStatusRegistry statusRegistry,
+                          ObjectProvider<MeterRegistry> meterRegistry) {
+        schemas.put("dbiemr", flywayDbiemr);
+        schemas.put("dbidentity", flywayDbidentity);
+        schemas.put("dbreporting", flywayDbreporting);
+        schemas.put("db1097identity", flywayDb1097identity);
+        this.properties = properties;
+        this.statusRegistry = statusRegistry;
+        this.meterRegistry = meterRegistry.getIfAvailable();
+        this.coordinator = new MigrationCoordinator(properties.getCoordination(), statusRegistry);
+        schemas.keySet().forEach(schema -> {
+            javaVersions.put(schema, Arrays.stream(schemas.get(schema).getConfiguration().getJavaMigrations())
+                    .map(JavaMigration::getVersion).filter(Objects::nonNull).toList());
+            fastPaths.put(schema, new ManifestFastPath(schema, javaVersions.get(schema)));
+            statusRegistry.forSchema(schema);
+        });
     }
 
     @PostConstruct
     public void migrate() {
-        flywayDbiemr.repair();
-        flywayDbidentity.repair();
-        flywayDbreporting.repair();
-        flywayDb1097identity.repair();
-
-        flywayDbiemr.migrate();
-        flywayDbidentity.migrate();
-        flywayDbreporting.migrate();
-        flywayDb1097identity.migrate();
+        if (!properties.isAsync()) {
+            runMigrations();
+            return;
+        }
+        // Let the web layer come up; /health reports MIGRATING until all schemas finish
+        logger.info("Flyway migration scheduled in background | schemas={}", schemas.keySet());
+        migrationThread.execute(() -> {
+            try {
+                runMigrations();
+            } catch (MigrationFailedException e) {
+                logger.error("Background Flyway migration failed | error=\"{}\"", e.getMessage(), e);
+            } catch (RuntimeException e) {
+                logger.error("Background Flyway migration aborted | error=\"{}\"", e.getMessage(), e);
+                statusRegistry.all().stream()
+                        .filter(status -> status.getState().isInProgress())
+                        .forEach(status -> status.transition(SchemaMigrationStatus.State.FAILED, e.getMessage()));
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        migrationThread.shutdownNow();
+    }
+
+    private void runMigrations() {
+        int parallelism = properties.getMode() == MigrationProperties.Mode.PARALLEL
+                ? properties.getParallelism()
+                : 1;
+        logger.info("Starting Flyway migration | mode={} | parallelism={} | dependencies={} | repairMode={} | coordination={}",
+                properties.getMode(), parallelism, properties.getDependencies(), properties.getRepairMode(),
+                properties.getCoordination().getMode());
+
+        List<SchemaMigrationResult> results = new SchemaMigrationExecutor(parallelism, properties.getDependencies())
+                .execute(schemas.keySet(), this::migrateSchema);
+
+        boolean allSucceeded = true;
+        for (SchemaMigrationResult result : results) {
+            recordOutcome(result);
+            if (result.isCompleted()) {
+                logger.info("Flyway schema migrated | schema={} | migrationsExecuted={} | targetVersion={} | durationMs={} | note={}",
+                        result.getSchema(), result.getMigrationsExecuted(), result.getTargetVersion(),
+                        result.getDurationMs(), result.getMessage());
+            } else {
+                allSucceeded = false;
+                logger.error("Flyway schema migration did not complete | schema={} | status={} | durationMs={} | error=\"{}\"",
+                        result.getSchema(), result.getStatus(), result.getDurationMs(), result.getMessage());
+            }
+        }
+
+        if (!allSucceeded) {
+            throw new MigrationFailedException(results);
+        }
         System.out.println("SUCCESS");
         logger.info("Flyway migration completed successfully");
-        
     }
-}
 
+    private SchemaMigrationResult migrateSchema(String schema) {
+        Flyway flyway = schemas.get(schema);
+        ManifestFastPath fastPath = fastPaths.get(schema);
+        statusRegistry.forSchema(schema).setTargetVersion(fastPath.targetVersion().orElse(null));
+        long start = System.nanoTime();
+        try {
+            if (properties.isManifestFastPath()) {
+                Optional<String> currentVersion = fastPath.currentVersion(flyway);
+                if (currentVersion.isPresent()) {
+                    return SchemaMigrationResult.upToDate(schema, currentVersion.get(), elapsedMs(start));
+                }
+            }
+            return coordinator.run(schema, flyway, fastPath, () -> runFlyway(schema, flyway));
+        } catch (Exception e) {
+            return SchemaMigrationResult.failed(schema, elapsedMs(start), e);
+        }
+    }
+
+    private SchemaMigrationResult runFlyway(String schema, Flyway flyway) {
+        SchemaMigrationStatus status = statusRegistry.forSchema(schema);
+        status.transition(SchemaMigrationStatus.State.MIGRATING, null);
+        long start = System.nanoTime();
+        try {
+            if (properties.isBaselineSnapshot()) {
+                Optional<BaselineSnapshot> snapshot = BaselineSnapshot.load(schema);
+                if (snapshot.isPresent() && snapshot.get().provision(flyway, javaVersions.get(schema), status)) {
+                    status.setCurrentVersion(snapshot.get().getVersion());
+                }
+            }
+            status.startScripts(fastPaths.get(schema).pendingCount(flyway));
+            ConditionalRepair.Outcome outcome = new ConditionalRepair(properties.getRepairMode()).migrate(schema, flyway);
+            SchemaMigrationResult result = SchemaMigrationResult.success(schema,
+                    outcome.migrateResult().migrationsExecuted, outcome.migrateResult().targetSchemaVersion,
+                    elapsedMs(start));
+            return outcome.repairs().isEmpty() ? result : result.withMessage("repaired: " + outcome.repairs());
+        } catch (Exception e) {
+            return SchemaMigrationResult.failed(schema, elapsedMs(start), e);
+        }
+    }
+
+    private void recordOutcome(SchemaMigrationResult result) {
+        SchemaMigrationStatus status = statusRegistry.forSchema(result.getSchema());
+        if (result.getTargetVersion() != null) {
+            status.setCurrentVersion(result.getTargetVersion());
+        }
+        status.transition(switch (result.getStatus()) {
+            case SUCCESS -> SchemaMigrationStatus.State.COMPLETED;
+            case DELEGATED -> SchemaMigrationStatus.State.DELEGATED;
+            case SKIPPED -> SchemaMigrationStatus.State.SKIPPED;
+            case FAILED -> SchemaMigrationStatus.State.FAILED;
+        }, result.getMessage());
+        if (meterRegistry != null) {
+            Timer.builder("amrit.migration.schema")
+                    .description("Wall time of one schema migration run")
+                    .tag("schema", result.getSchema())
+                    .tag("status", result.getStatus().name())
+                    .register(meterRegistry)
+                    .record(result.getDurationMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,58 @@
+package com.db.piramalswasthya.config;
+
+import java.time.Duration;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+
+@Configuration
+public class MetricsConfig {
+
+	private static final String HIKARI_ACQUIRE = "hikaricp.connections.acquire";
+
+	/**
+	 * Hikari tags its meters with the pool name, which is the schema name (see
+	 * {@link DatasourceConfig}); repeat it as {@code schema} so pool metrics join
+	 * the diagnostic and migration metrics on one label.
+	 */
+	@Bean
+	public MeterFilter hikariSchemaTag() {
+		return new MeterFilter() {
+			@Override
+			public Meter.Id map(Meter.Id id) {
+				String pool = id.getTag("pool");
+				if (id.getName().startsWith("hikaricp.") && pool != null && id.getTag("schema") == null) {
+					return id.withTag(Tag.of("schema", pool));
+				}
+				return id;
+			}
+		};
+	}
+
+	/**
+	 * Publish connection acquisition time as a histogram, so acquisition
+	 * latency percentiles can be compared across pools in Prometheus.
+	 */
+	@Bean
+	public MeterFilter hikariAcquireHistogram() {
+		return new MeterFilter() {
+			@Override
+			public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+				if (HIKARI_ACQUIRE.equals(id.getName())) {
+					return DistributionStatisticConfig.builder()
+							.percentilesHistogram(true)
+							.minimumExpectedValue((double) Duration.ofMillis(1).toNanos())
+							.maximumExpectedValue((double) Duration.ofSeconds(30).toNanos())
+							.build()
+							.merge(config);
+				}
+				return config;
+			}
+		};
+	}
+}
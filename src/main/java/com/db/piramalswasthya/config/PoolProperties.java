@@ -0,0 +1,135 @@
+package com.db.piramalswasthya.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import lombok.Data;
+
+/**
+ * Connection pool settings for the schema datasources, bound from
+ * {@code amrit.datasource.*}. Every pool starts from {@code defaults};
+ * {@code pools.<schema>} overrides individual values, and driver properties
+ * are merged key by key. Anything set under {@code spring.datasource.<schema>.*}
+ * is bound after these and still wins.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "amrit.datasource")
+public class PoolProperties {
+
+	private Pool defaults = Pool.defaults();
+
+	/** Per-schema overrides, keyed by schema (pool) name. */
+	private Map<String, Pool> pools = new LinkedHashMap<>(Map.of(
+			// Migration lock session + Flyway + backfill and index-build workers with their progress
+			// monitor during a deploy; the 2h archive run, diagnostics and partition jobs afterwards
+			"dbiemr", Pool.of(12, 2, null),
+			// Reporting extracts hold connections for long reads and large batches
+			"dbreporting", Pool.of(20, 4, Duration.ofMinutes(10))));
+
+	@Data
+	public static class Pool {
+
+		private Integer maximumPoolSize;
+		private Integer minimumIdle;
+		private Duration connectionTimeout;
+		private Duration idleTimeout;
+		private Duration maxLifetime;
+		private Duration keepaliveTime;
+		private Duration validationTimeout;
+		/** Log a warning with the borrower's stack trace when a connection is held longer than this; 0 disables. */
+		private Duration leakDetectionThreshold;
+		/** MySQL Connector/J properties, e.g. {@code cachePrepStmts}. */
+		private Map<String, String> driverProperties = new LinkedHashMap<>();
+
+		static Pool of(Integer maximumPoolSize, Integer minimumIdle, Duration leakDetectionThreshold) {
+			Pool pool = new Pool();
+			pool.setMaximumPoolSize(maximumPoolSize);
+			pool.setMinimumIdle(minimumIdle);
+			pool.setLeakDetectionThreshold(leakDetectionThreshold);
+			return pool;
+		}
+
+		static Pool defaults() {
+			// No leak detection by default: migrations, index builds and archival hold connections for long
+			Pool pool = of(10, 2, null);
+			pool.setConnectionTimeout(Duration.ofSeconds(10));
+			pool.setIdleTimeout(Duration.ofMinutes(5));
+			// Below MySQL's wait_timeout and any proxy idle cut-off
+			pool.setMaxLifetime(Duration.ofMinutes(30));
+			pool.setKeepaliveTime(Duration.ofMinutes(5));
+			pool.setValidationTimeout(Duration.ofSeconds(3));
+
+			Map<String, String> driver = pool.getDriverProperties();
+			// Server-side prepared statements, cached per connection
+			driver.put("useServerPrepStmts", "true");
+			driver.put("cachePrepStmts", "true");
+			driver.put("prepStmtCacheSize", "250");
+			driver.put("prepStmtCacheSqlLimit", "2048");
+			// One multi-row INSERT per JDBC batch instead of a round trip per row
+			driver.put("rewriteBatchedStatements", "true");
+			// Skip redundant session-state round trips
+			driver.put("useLocalSessionState", "true");
+			driver.put("useLocalTransactionState", "true");
+			driver.put("cacheServerConfiguration", "true");
+			driver.put("elideSetAutoCommits", "true");
+			driver.put("cacheResultSetMetadata", "true");
+			driver.put("maintainTimeStats", "false");
+			return pool;
+		}
+	}
+
+	/**
+	 * Applies {@code defaults} overlaid with the overrides for {@code schema}.
+	 */
+	public void apply(String schema, HikariDataSource dataSource) {
+		Pool override = pools.getOrDefault(schema, new Pool());
+
+		Integer maximumPoolSize = pick(override.getMaximumPoolSize(), defaults.getMaximumPoolSize());
+		if (maximumPoolSize != null) {
+			dataSource.setMaximumPoolSize(maximumPoolSize);
+		}
+		Integer minimumIdle = pick(override.getMinimumIdle(), defaults.getMinimumIdle());
+		if (minimumIdle != null) {
+			dataSource.setMinimumIdle(minimumIdle);
+		}
+		Duration connectionTimeout = pick(override.getConnectionTimeout(), defaults.getConnectionTimeout());
+		if (connectionTimeout != null) {
+			dataSource.setConnectionTimeout(connectionTimeout.toMillis());
+		}
+		Duration idleTimeout = pick(override.getIdleTimeout(), defaults.getIdleTimeout());
+		if (idleTimeout != null) {
+			dataSource.setIdleTimeout(idleTimeout.toMillis());
+		}
+		Duration maxLifetime = pick(override.getMaxLifetime(), defaults.getMaxLifetime());
+		if (maxLifetime != null) {
+			dataSource.setMaxLifetime(maxLifetime.toMillis());
+		}
+		Duration keepaliveTime = pick(override.getKeepaliveTime(), defaults.getKeepaliveTime());
+		if (keepaliveTime != null) {
+			dataSource.setKeepaliveTime(keepaliveTime.toMillis());
+		}
+		Duration validationTimeout = pick(override.getValidationTimeout(), defaults.getValidationTimeout());
+		if (validationTimeout != null) {
+			dataSource.setValidationTimeout(validationTimeout.toMillis());
+		}
+		Duration leakDetectionThreshold = pick(override.getLeakDetectionThreshold(), defaults.getLeakDetectionThreshold());
+		if (leakDetectionThreshold != null) {
+			dataSource.setLeakDetectionThreshold(leakDetectionThreshold.toMillis());
+		}
+
+		Map<String, String> driverProperties = new LinkedHashMap<>(defaults.getDriverProperties());
+		driverProperties.putAll(override.getDriverProperties());
+		driverProperties.forEach(dataSource::addDataSourceProperty);
+	}
+
+	private static <T> T pick(T override, T fallback) {
+		return override != null ? override : fallback;
+	}
+}
@@ -21,20 +21,33 @@
 */
 package com.db.piramalswasthya.controller;
 
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.db.piramalswasthya.diagnostics.HealthProperties;
+import com.db.piramalswasthya.diagnostics.StatementDigestAnalyzer;
 import com.db.piramalswasthya.service.HealthService;
 
 /**
  * Health check controller for AMRIT-DB.
- * Verifies application liveness and dependency health (Database).
+ * Verifies application liveness and dependency health of every configured
+ * database, reported per schema and rolled up. Probes are logged at INFO only
+ * when the status changes or once per sample interval.
  *
  * @author Piramal Swasthya
  */
@@ -44,18 +57,23 @@ public class HealthController {
 	private static final Logger logger = LoggerFactory.getLogger(HealthController.class);
 
 	private final HealthService healthService;
+	private final HealthProperties healthProperties;
 
-	public HealthController(HealthService healthService) {
+	private final Map<String, String> lastLoggedStatus = new ConcurrentHashMap<>();
+	private final AtomicLong lastLoggedAt = new AtomicLong();
+	private final LongAdder unloggedProbes = new LongAdder();
+
+	public HealthController(HealthService healthService, HealthProperties healthProperties) {
 		this.healthService = healthService;
+		this.healthProperties = healthProperties;
 	}
 
 	@GetMapping("/health")
 	public ResponseEntity<Map<String, Object>> health() {
-		logger.info("Health check endpoint called");
-
 		Map<String, Object> healthStatus = healthService.checkHealth();
 
-		// Standard HTTP Status logic with DEGRADED support
+		// Standard HTTP Status logic with DEGRADED support; MIGRATING stays 200 so
+		// startup probes do not kill a pod during a long background migration
 		String status = (String) healthStatus.get("status");
 		HttpStatus httpStatus = ("DOWN".equals(status) || "NOT_CONFIGURED".equals(status))
 			? HttpStatus.SERVICE_UNAVAILABLE
@@ -70,10 +88,118 @@ public class HealthController {
 			}
 		}
 
-		logger.info("Health check completed with status: {} | severity: {}", 
-			status, 
-			severity);
+		logProbe("/health", status, severity);
 
 		return ResponseEntity.status(httpStatus).body(healthStatus);
 	}
+
+	/**
+	 * The process is up and serving requests; never touches a database, so a
+	 * slow or unreachable MySQL cannot get the pod restarted.
+	 */
+	@GetMapping("/health/liveness")
+	public ResponseEntity<Map<String, Object>> liveness() {
+		return ResponseEntity.ok(Map.of("status", "UP"));
+	}
+
+	/**
+	 * Whether this instance should receive traffic: databases reachable and
+	 * migrations finished. Uses the same cached connectivity result as /health.
+	 */
+	@GetMapping("/health/readiness")
+	public ResponseEntity<Map<String, Object>> readiness() {
+		Map<String, Object> readiness = healthService.checkReadiness();
+		String status = (String) readiness.get("status");
+		logProbe("/health/readiness", status, readiness.get("reason"));
+		return ResponseEntity.status("READY".equals(status) ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE)
+			.body(readiness);
+	}
+
+	/**
+	 * Diagnostic trend per schema: rates between consecutive samples and
+	 * min/max/p95 over each requested window, e.g. {@code ?windows=15m,1h,24h}.
+	 */
+	@GetMapping("/health/history")
+	public ResponseEntity<Map<String, Object>> history(
+			@RequestParam(defaultValue = "15m,1h,24h") List<String> windows,
+			@RequestParam(defaultValue = "120") int points) {
+		List<Duration> durations;
+		try {
+			durations = windows.stream().map(String::trim).map(DurationStyle::detectAndParse).toList();
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(Map.of("error", "Invalid window: " + e.getMessage()));
+		}
+		return ResponseEntity.ok(healthService.getHistory(durations, Math.max(1, Math.min(points, 2880))));
+	}
+
+	/**
+	 * Top statement digests of the last sampled interval per schema, e.g.
+	 * {@code ?schema=dbiemr&orderBy=rows_examined&limit=10}. orderBy is one of
+	 * latency, rows_examined, no_index or regression.
+	 */
+	@GetMapping("/health/digests")
+	public ResponseEntity<Map<String, Object>> digests(
+			@RequestParam(required = false) String schema,
+			@RequestParam(defaultValue = "latency") String orderBy,
+			@RequestParam(defaultValue = "10") int limit) {
+		try {
+			StatementDigestAnalyzer.Ranking ranking = StatementDigestAnalyzer.Ranking.valueOf(orderBy.trim().toUpperCase(Locale.ROOT));
+			return ResponseEntity.ok(healthService.getTopDigests(schema, ranking, limit));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+		}
+	}
+
+	/**
+	 * Composite indexes proposed from the last digest sample of {@code schema},
+	 * with a versioned, idempotent migration script to review and commit.
+	 */
+	@GetMapping("/health/index-advice")
+	public ResponseEntity<Map<String, Object>> indexAdvice(
+			@RequestParam String schema,
+			@RequestParam(defaultValue = "20") int statements) {
+		try {
+			return ResponseEntity.ok(healthService.adviseIndexes(schema, Math.max(1, Math.min(statements, 100))));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+		} catch (SQLException e) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+		}
+	}
+
+	/**
+	 * Redundant (left-prefix duplicate) and unused indexes of {@code schema},
+	 * e.g. {@code ?schema=dbidentity&window=30d&scripts=true} for the guarded
+	 * invisible-then-drop migrations as well.
+	 */
+	@GetMapping("/health/index-usage")
+	public ResponseEntity<Map<String, Object>> indexUsage(
+			@RequestParam String schema,
+			@RequestParam(required = false) String window,
+			@RequestParam(defaultValue = "false") boolean scripts) {
+		try {
+			Duration observationWindow = window != null ? DurationStyle.detectAndParse(window.trim()) : null;
+			return ResponseEntity.ok(healthService.analyzeIndexUsage(schema, observationWindow, scripts));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+		} catch (SQLException e) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+		}
+	}
+
+	private void logProbe(String endpoint, String status, Object detail) {
+		long now = System.nanoTime();
+		long last = lastLoggedAt.get();
+		boolean changed = !status.equals(lastLoggedStatus.put(endpoint, status));
+		boolean due = now - last >= healthProperties.getLogSampleInterval().toNanos()
+			&& lastLoggedAt.compareAndSet(last, now);
+		if (changed || due) {
+			lastLoggedAt.set(now);
+			logger.info("Health check completed | endpoint={} | status={} | detail={} | probesSinceLastLog={}",
+				endpoint, status, detail, unloggedProbes.sumThenReset());
+		} else {
+			unloggedProbes.increment();
+			logger.debug("Health check completed | endpoint={} | status={} | detail={}", endpoint, status, detail);
+		}
+	}
 }
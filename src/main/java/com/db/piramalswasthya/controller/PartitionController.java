@@ -0,0 +1,109 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.controller;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.db.piramalswasthya.service.PartitionMaintenanceService;
+
+/**
+ * Layout, maintenance and pruning checks of the range-partitioned tables.
+ *
+ * @author Piramal Swasthya
+ */
+@RestController
+@RequestMapping("/db/partitions")
+public class PartitionController {
+
+	private final PartitionMaintenanceService partitionService;
+
+	public PartitionController(PartitionMaintenanceService partitionService) {
+		this.partitionService = partitionService;
+	}
+
+	/** Partitioned months, eligibility and last maintenance outcome per registered table. */
+	@GetMapping
+	public ResponseEntity<Map<String, Object>> status() {
+		return ResponseEntity.ok(partitionService.getStatus());
+	}
+
+	/** Adds missing future months and expires old ones for {@code schema} now. */
+	@PostMapping("/maintain")
+	public ResponseEntity<Map<String, Object>> maintain(@RequestParam String schema) {
+		try {
+			partitionService.maintain(schema);
+			return ResponseEntity.ok(partitionService.getStatus());
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+		} catch (SQLException e) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+		}
+	}
+
+	/**
+	 * Converts the registered tables of {@code schema} that are not partitioned
+	 * yet, in the background. Each table is rebuilt with writes blocked, so
+	 * this answers 403 unless {@code amrit.partition.conversion-enabled} is
+	 * set, and 409 while a conversion is already running or the schemas are
+	 * still migrating.
+	 */
+	@PostMapping("/convert")
+	public ResponseEntity<Map<String, Object>> convert(@RequestParam String schema) {
+		if (!partitionService.isConversionEnabled()) {
+			return ResponseEntity.status(HttpStatus.FORBIDDEN)
+				.body(Map.of("error", "Conversion is disabled (amrit.partition.conversion-enabled=false)"));
+		}
+		try {
+			if (!partitionService.triggerConversion(schema)) {
+				return ResponseEntity.status(HttpStatus.CONFLICT)
+					.body(Map.of("error", "Conversion or migration already running"));
+			}
+			return ResponseEntity.accepted().body(Map.of("status", "STARTED"));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+		}
+	}
+
+	/**
+	 * Partitions read by a one-month probe and by each sampled statement on
+	 * {@code table}; statements reading every partition are not pruning.
+	 */
+	@GetMapping("/pruning")
+	public ResponseEntity<Map<String, Object>> pruning(@RequestParam String schema, @RequestParam String table) {
+		try {
+			return ResponseEntity.ok(partitionService.checkPruning(schema, table));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+		} catch (SQLException e) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+		}
+	}
+}
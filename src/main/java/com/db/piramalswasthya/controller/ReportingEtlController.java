@@ -0,0 +1,64 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.controller;
+
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.db.piramalswasthya.service.ReportingEtlService;
+
+/**
+ * Status and manual trigger of the incremental db_reporting load.
+ *
+ * @author Piramal Swasthya
+ */
+@RestController
+@RequestMapping("/reporting/etl")
+public class ReportingEtlController {
+
+	private final ReportingEtlService etlService;
+
+	public ReportingEtlController(ReportingEtlService etlService) {
+		this.etlService = etlService;
+	}
+
+	/** Per-fact watermark, lag behind the source and last-run figures. */
+	@GetMapping
+	public ResponseEntity<Map<String, Object>> status() {
+		return ResponseEntity.ok(etlService.getStatus());
+	}
+
+	/** Starts a refresh now; 409 while one is already running on this instance. */
+	@PostMapping("/refresh")
+	public ResponseEntity<Map<String, Object>> refresh() {
+		if (!etlService.triggerRefresh()) {
+			return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "Refresh already running"));
+		}
+		return ResponseEntity.accepted().body(Map.of("status", "STARTED"));
+	}
+}
@@ -21,7 +21,9 @@
 */
 package com.db.piramalswasthya.controller;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,9 +31,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.db.piramalswasthya.data.FlywaySchemaVersion;
+import com.db.piramalswasthya.migration.MigrationStatusRegistry;
+import com.db.piramalswasthya.service.MigrationProfileService;
+import com.db.piramalswasthya.service.MigrationProgressService;
 import com.db.piramalswasthya .service.VersionService;
 import com.google.gson.Gson;
 
@@ -42,19 +49,52 @@ public class VersionController {
 	private Logger logger = LoggerFactory.getLogger(VersionController.class);
 	
 	private VersionService service;
+
+	private MigrationStatusRegistry migrationStatusRegistry;
+
+	private MigrationProgressService progressService;
+
+	private MigrationProfileService profileService;
 	
 	@Autowired
 	public void setCommonServiceImpl(VersionService service) {
 		this.service = service;
 	}
 
+	@Autowired
+	public void setMigrationStatusRegistry(MigrationStatusRegistry migrationStatusRegistry) {
+		this.migrationStatusRegistry = migrationStatusRegistry;
+	}
+
+	@Autowired
+	public void setProgressService(MigrationProgressService progressService) {
+		this.progressService = progressService;
+	}
+
+	@Autowired
+	public void setProfileService(MigrationProfileService profileService) {
+		this.profileService = profileService;
+	}
+
+	/**
+	 * Latest applied dbiemr migration. With {@code includeStatus=true} the response
+	 * also carries this instance's per-schema migration role and state, e.g. whether
+	 * it led the migration or waited for another replica.
+	 */
 	@GetMapping("/version")
-	public String getLatestDBMigrationVersion() throws Exception {
+	public String getLatestDBMigrationVersion(
+			@RequestParam(name = "includeStatus", defaultValue = "false") boolean includeStatus) throws Exception {
 		String resp = null;
 		try {
 			List<FlywaySchemaVersion> latestVersion = service.getLatestVersion();
 			Gson gson = new Gson();
-			if (null != latestVersion && !CollectionUtils.isEmpty(latestVersion)) {
+			if (includeStatus) {
+				Map<String, Object> body = new LinkedHashMap<>();
+				body.put("latestVersion", latestVersion);
+				body.put("instance", migrationStatusRegistry.getInstanceId());
+				body.put("migrationStatus", migrationStatusRegistry.snapshots());
+				resp = gson.toJson(body);
+			} else if (null != latestVersion && !CollectionUtils.isEmpty(latestVersion)) {
 				resp = gson.toJson(latestVersion);
 			}
 		} catch (Exception e) {
@@ -62,4 +102,33 @@ public class VersionController {
 		}
 		return resp;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Per-schema progress of the current migration run: current script, scripts
+	 * completed and remaining, and elapsed time.
+	 */
+	@GetMapping("/progress")
+	public String getMigrationProgress() {
+		return new Gson().toJson(progressService.getProgress());
+	}
+
+	/** Server-sent events with the same payload as {@code /progress}, once per second. */
+	@GetMapping("/progress/stream")
+	public SseEmitter streamMigrationProgress() {
+		return progressService.streamProgress();
+	}
+
+	/**
+	 * Top-N slowest migration statements recorded by the statement profiler,
+	 * across all four schemas.
+	 */
+	@GetMapping("/profile")
+	public String getSlowestMigrationStatements(@RequestParam(name = "limit", defaultValue = "20") int limit)
+			throws Exception {
+		try {
+			return new Gson().toJson(profileService.getSlowestStatements(limit));
+		} catch (Exception e) {
+			throw new Exception("Error while getting DB Migration profile: " + e.getMessage(), e);
+		}
+	}
+}
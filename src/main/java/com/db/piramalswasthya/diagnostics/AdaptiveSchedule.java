@@ -0,0 +1,110 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.diagnostics;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Next-run bookkeeping for one diagnostic check, on the monotonic clock.
+ * After each run the interval snaps to {@code minInterval} when the database
+ * is WARNING or CRITICAL and otherwise doubles back towards the steady
+ * {@code interval}. A run that cost more than the budget stretches the
+ * interval (up to {@value #MAX_STRETCH}x the steady one) so the check keeps
+ * to its budget, and every delay is spread by the jitter fraction.
+ *
+ * @author Piramal Swasthya
+ */
+public class AdaptiveSchedule {
+
+	private static final int MAX_STRETCH = 4;
+
+	private final long minIntervalNanos;
+	private final long intervalNanos;
+	private final long costBudgetNanos;
+	private final double jitter;
+
+	private long currentNanos;
+	private boolean ran;
+	private long lastRunAtNanos;
+	private long dueAtNanos;
+
+	public AdaptiveSchedule(HealthProperties.CheckSchedule properties, double jitter) {
+		this.intervalNanos = properties.getInterval().toNanos();
+		this.minIntervalNanos = Math.min(properties.getMinInterval().toNanos(), intervalNanos);
+		this.costBudgetNanos = properties.getCostBudget().toNanos();
+		this.jitter = Math.max(0, Math.min(jitter, 0.5));
+		this.currentNanos = intervalNanos;
+	}
+
+	/**
+	 * @return true before the first run and once the next run is due
+	 */
+	public synchronized boolean isDue(long nowNanos) {
+		return !ran || nowNanos - dueAtNanos >= 0;
+	}
+
+	/**
+	 * @return nanoseconds until the next run is due, 0 when it already is
+	 */
+	public synchronized long delayNanos(long nowNanos) {
+		return ran ? Math.max(0, dueAtNanos - nowNanos) : 0;
+	}
+
+	/**
+	 * Records a run that finished at {@code nowNanos} after {@code costNanos},
+	 * with the database at {@code severity}, and schedules the next one.
+	 */
+	public synchronized void completed(long nowNanos, long costNanos, Severity severity) {
+		currentNanos = severity.isAtLeast(Severity.WARNING)
+			? minIntervalNanos
+			: Math.min(intervalNanos, currentNanos * 2);
+		long withinBudget = costBudgetNanos > 0
+			? (long) ((double) costNanos / costBudgetNanos * intervalNanos)
+			: 0;
+		long next = Math.min((long) MAX_STRETCH * intervalNanos, Math.max(currentNanos, withinBudget));
+		ran = true;
+		lastRunAtNanos = nowNanos;
+		dueAtNanos = nowNanos + jittered(next);
+	}
+
+	/**
+	 * Brings the next run forward to the incident cadence when another check
+	 * found the database WARNING or CRITICAL in the meantime.
+	 */
+	public synchronized void escalate(Severity severity) {
+		if (ran && severity.isAtLeast(Severity.WARNING)) {
+			currentNanos = minIntervalNanos;
+			long incidentDueAt = lastRunAtNanos + minIntervalNanos;
+			if (incidentDueAt - dueAtNanos < 0) {
+				dueAtNanos = incidentDueAt;
+			}
+		}
+	}
+
+	private long jittered(long nanos) {
+		if (jitter == 0) {
+			return nanos;
+		}
+		double factor = 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+		return (long) (nanos * factor);
+	}
+}
@@ -0,0 +1,475 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.diagnostics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * MySQL diagnostics for one configured datasource. Each run collects one
+ * {@link DiagnosticSnapshot} and evaluates every check against it in memory;
+ * the previous snapshot (for since-last-run deltas such as deadlocks and slow
+ * queries) and the last computed severity are kept per datasource, since the
+ * schemas may live on different MySQL hosts.
+ *
+ * <p>Checks run on a dedicated diagnostic pool behind a
+ * {@link DiagnosticCircuitBreaker}: while the circuit is open they fail
+ * immediately as CRITICAL/DOWN instead of waiting on connect timeouts. Only
+ * connection and reachability failures count against the circuit; a query
+ * the server refuses degrades the run to WARNING. The cheap counters and the expensive activity scan each follow their own
+ * {@link AdaptiveSchedule}; the caller asks {@link #nextRunDelayNanos()} when
+ * to run again.</p>
+ *
+ * @author Piramal Swasthya
+ */
+public class DatabaseDiagnostics {
+
+	private static final Logger logger = LoggerFactory.getLogger(DatabaseDiagnostics.class);
+
+	// Event log constants
+	private static final String LOG_EVENT_STUCK_PROCESS = "MYSQL_STUCK_PROCESS";
+	private static final String LOG_EVENT_LONG_TXN = "MYSQL_LONG_TRANSACTION";
+	private static final String LOG_EVENT_DEADLOCK = "MYSQL_DEADLOCK";
+	private static final String LOG_EVENT_SLOW_QUERIES = "MYSQL_SLOW_QUERIES";
+	private static final String LOG_EVENT_CONN_USAGE = "MYSQL_CONNECTION_USAGE";
+	private static final String LOG_EVENT_POOL_EXHAUSTED = "MYSQL_POOL_EXHAUSTED";
+
+	// Thresholds
+	private static final int STUCK_PROCESS_THRESHOLD = 5;    // > 5 stuck → WARNING
+	private static final int STUCK_PROCESS_SECONDS = 30;     // process age in seconds
+	private static final int LONG_TXN_WARNING_THRESHOLD = 1;  // ≥1 long txn → WARNING
+	private static final int LONG_TXN_CRITICAL_THRESHOLD = 5; // ≥5 long txns → CRITICAL
+	private static final int LONG_TXN_SECONDS = 60;           // transaction age threshold
+	private static final int CONNECTION_USAGE_WARNING = 80;   // > 80% → WARNING
+	private static final int CONNECTION_USAGE_CRITICAL = 95;  // > 95% → CRITICAL
+	private static final int DIAGNOSTIC_QUERY_TIMEOUT_SECONDS = 3; // query timeout for diagnostic statements
+	private static final int HISTORY_CAPACITY = 2880;         // 24h of samples at the steady 30s cadence
+
+	private final String schema;
+	private final DataSource dataSource;
+	private final DataSource diagnosticDataSource;
+	private final DiagnosticCircuitBreaker circuitBreaker;
+	private final AdaptiveSchedule countersSchedule;
+	private final AdaptiveSchedule activitySchedule;
+	private final AdaptiveSchedule digestSchedule;
+	private final StatementDigestAnalyzer digestAnalyzer;
+	private final AdaptiveSchedule indexUsageSchedule;
+	private final IndexUsageAnalyzer indexUsageAnalyzer;
+
+	// Written only by the running diagnostic, published through the running flag
+	private DiagnosticSnapshotCollector.Activity lastActivity = DiagnosticSnapshotCollector.Activity.UNKNOWN;
+	private Severity activitySeverity = Severity.OK;
+
+	private final AtomicReference<Severity> cachedSeverity = new AtomicReference<>(Severity.OK);
+	private final AtomicBoolean running = new AtomicBoolean(false);
+	private final AtomicReference<DiagnosticSnapshot> lastSnapshot = new AtomicReference<>();
+	private final DiagnosticHistory history = new DiagnosticHistory(HISTORY_CAPACITY);
+	private final AtomicReference<Probe> connectivity = new AtomicReference<>();
+	private final DiagnosticSnapshotCollector collector;
+
+	/** Connectivity result shared by every caller until it is older than the TTL. */
+	private record Probe(CompletableFuture<Void> result, long startedAtNanos) {
+
+		boolean isFresh(long nowNanos, long ttlNanos) {
+			return !result.isDone() || nowNanos - startedAtNanos < ttlNanos;
+		}
+	}
+
+	public DatabaseDiagnostics(String schema, DataSource dataSource, DataSource diagnosticDataSource,
+			HealthProperties properties) {
+		this.schema = schema;
+		this.dataSource = dataSource;
+		this.diagnosticDataSource = diagnosticDataSource;
+		this.collector = new DiagnosticSnapshotCollector(schema, STUCK_PROCESS_SECONDS, LONG_TXN_SECONDS,
+			DIAGNOSTIC_QUERY_TIMEOUT_SECONDS);
+		this.circuitBreaker = new DiagnosticCircuitBreaker(schema, properties.getCircuitBreaker());
+		this.countersSchedule = new AdaptiveSchedule(properties.getCounters(), properties.getScheduleJitter());
+		this.activitySchedule = new AdaptiveSchedule(properties.getActivity(), properties.getScheduleJitter());
+		this.digestSchedule = new AdaptiveSchedule(properties.getDigests(), properties.getScheduleJitter());
+		this.digestAnalyzer = new StatementDigestAnalyzer(schema);
+		this.indexUsageSchedule = new AdaptiveSchedule(properties.getIndexUsage(), properties.getScheduleJitter());
+		this.indexUsageAnalyzer = new IndexUsageAnalyzer(schema);
+	}
+
+	public String getSchema() {
+		return schema;
+	}
+
+	/**
+	 * @return the application pool of this schema
+	 */
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+
+	public DiagnosticCircuitBreaker.State getCircuitState() {
+		return circuitBreaker.getState();
+	}
+
+	/**
+	 * Closes the dedicated diagnostic pool.
+	 */
+	public void close() {
+		DiagnosticPools.close(diagnosticDataSource, dataSource);
+	}
+
+	/**
+	 * @return severity computed by the last completed diagnostic cycle
+	 */
+	public Severity getCachedSeverity() {
+		return cachedSeverity.get();
+	}
+
+	/**
+	 * @return snapshot of the last successful diagnostic run, or null before the first
+	 */
+	public DiagnosticSnapshot getLastSnapshot() {
+		return lastSnapshot.get();
+	}
+
+	public DiagnosticHistory getHistory() {
+		return history;
+	}
+
+	/**
+	 * @return per-digest statement statistics of the last sampled interval
+	 */
+	public StatementDigestAnalyzer.Sample getDigests() {
+		return digestAnalyzer.getLatest();
+	}
+
+	/**
+	 * Marks the datasource as failed without waiting for its checks, used when
+	 * a run overruns its deadline or fails.
+	 */
+	public void markFailed() {
+		cachedSeverity.set(Severity.CRITICAL);
+		countersSchedule.completed(System.nanoTime(), 0, Severity.CRITICAL);
+	}
+
+	/**
+	 * @return nanoseconds until {@link #runDiagnostics()} should run again
+	 */
+	public long nextRunDelayNanos() {
+		return countersSchedule.delayNanos(System.nanoTime());
+	}
+
+	/**
+	 * Collects one snapshot, running the activity scan only when its own
+	 * schedule is due, evaluates the checks in memory and caches the worst
+	 * severity. Returns immediately with the cached value when the previous
+	 * run is still busy, so a hung host does not accumulate blocked workers.
+	 */
+	public Severity runDiagnostics() {
+		if (!running.compareAndSet(false, true)) {
+			logger.warn("[MYSQL_DIAGNOSTIC_SKIPPED] Previous diagnostic run still in progress | schema={}", schema);
+			return cachedSeverity.get();
+		}
+		try {
+			long start = System.nanoTime();
+			if (!circuitBreaker.tryAcquire()) {
+				logger.debug("[MYSQL_DIAGNOSTIC_SKIPPED] Circuit open, diagnostics not run | schema={}", schema);
+				cachedSeverity.set(Severity.CRITICAL);
+				countersSchedule.completed(start, 0, Severity.CRITICAL);
+				return Severity.CRITICAL;
+			}
+			Severity worstSeverity;
+			boolean connected = false;
+
+			try (Connection conn = diagnosticDataSource.getConnection()) {
+				connected = true;
+				boolean activityDue = activitySchedule.isDue(start);
+				if (activityDue) {
+					long activityStart = System.nanoTime();
+					lastActivity = collector.collectActivity(conn);
+					long activityCost = System.nanoTime() - activityStart;
+					activitySeverity = evaluateActivity(lastActivity);
+					activitySchedule.completed(System.nanoTime(), activityCost, activitySeverity);
+				}
+				long countersStart = System.nanoTime();
+				DiagnosticSnapshot snapshot = collector.collect(conn, lastActivity);
+				long countersCost = System.nanoTime() - countersStart;
+				circuitBreaker.onSuccess();
+				history.record(snapshot);
+				worstSeverity = evaluateCounters(snapshot, lastSnapshot.getAndSet(snapshot)).escalate(activitySeverity);
+				// A successful collection proves connectivity as well as SELECT 1 would
+				connectivity.set(new Probe(CompletableFuture.completedFuture(null), snapshot.capturedAtNanos()));
+
+				countersSchedule.completed(System.nanoTime(), countersCost, worstSeverity);
+				activitySchedule.escalate(worstSeverity);
+				if (digestSchedule.isDue(System.nanoTime())) {
+					sampleDigests(conn, worstSeverity);
+				}
+				if (indexUsageSchedule.isDue(System.nanoTime())) {
+					sampleIndexUsage(conn, snapshot.uptimeSeconds());
+				}
+
+			} catch (Exception e) {
+				if (!connected || DiagnosticCircuitBreaker.isConnectivityFailure(e)) {
+					circuitBreaker.onFailure();
+					logger.error("[MYSQL_DIAGNOSTIC_ERROR] Could not collect diagnostic snapshot | schema={} | error=\"{}\"",
+						schema, e.getMessage());
+					worstSeverity = Severity.CRITICAL;
+				} else {
+					// The server answered, so one refused query must not open the circuit or report it down
+					circuitBreaker.onSuccess();
+					logger.warn("[MYSQL_DIAGNOSTIC_ERROR] Diagnostic query failed, database reachable | schema={} | error=\"{}\"",
+						schema, e.getMessage());
+					worstSeverity = Severity.WARNING;
+				}
+				countersSchedule.completed(System.nanoTime(), System.nanoTime() - start, worstSeverity);
+			}
+
+			cachedSeverity.set(worstSeverity);
+			return worstSeverity;
+		} finally {
+			running.set(false);
+		}
+	}
+
+	/**
+	 * Runs the index advisor against the last digest sample, on the diagnostic pool.
+	 *
+	 * @throws SQLException when the database cannot be reached or the circuit is open
+	 */
+	public IndexAdvisor.Advice adviseIndexes(int maxStatements) throws SQLException {
+		if (circuitBreaker.getState() == DiagnosticCircuitBreaker.State.OPEN) {
+			throw new SQLException("Circuit open for schema " + schema + ", database considered unreachable");
+		}
+		try (Connection conn = diagnosticDataSource.getConnection()) {
+			return new IndexAdvisor(DIAGNOSTIC_QUERY_TIMEOUT_SECONDS, maxStatements).advise(conn, digestAnalyzer.getLatest());
+		}
+	}
+
+	/**
+	 * Reports redundant indexes and indexes unread for {@code window}, on the
+	 * diagnostic pool.
+	 *
+	 * @throws SQLException when the database cannot be reached or the circuit is open
+	 */
+	public IndexUsageAnalyzer.Report analyzeIndexUsage(Duration window) throws SQLException {
+		if (circuitBreaker.getState() == DiagnosticCircuitBreaker.State.OPEN) {
+			throw new SQLException("Circuit open for schema " + schema + ", database considered unreachable");
+		}
+		try (Connection conn = diagnosticDataSource.getConnection()) {
+			return indexUsageAnalyzer.analyze(conn, window);
+		}
+	}
+
+	private void sampleIndexUsage(Connection conn, long uptimeSeconds) {
+		long start = System.nanoTime();
+		try {
+			indexUsageAnalyzer.sample(conn, uptimeSeconds);
+		} catch (SQLException e) {
+			logger.warn("[MYSQL_INDEX_USAGE_ERROR] Could not sample index usage | schema={} | error=\"{}\"",
+				schema, e.getMessage());
+		}
+		indexUsageSchedule.completed(System.nanoTime(), System.nanoTime() - start, Severity.OK);
+	}
+
+	/**
+	 * Digest sampling is best effort: without performance_schema or the
+	 * privilege to read it the database is still healthy.
+	 */
+	private void sampleDigests(Connection conn, Severity severity) {
+		long start = System.nanoTime();
+		try {
+			digestAnalyzer.sample(conn, DIAGNOSTIC_QUERY_TIMEOUT_SECONDS);
+		} catch (SQLException e) {
+			logger.warn("[MYSQL_DIGEST_ERROR] Could not sample statement digests | schema={} | error=\"{}\"",
+				schema, e.getMessage());
+		}
+		digestSchedule.completed(System.nanoTime(), System.nanoTime() - start, severity);
+	}
+
+	/**
+	 * Evaluates the counter checks against {@code snapshot}; counters that only
+	 * make sense as deltas are compared with {@code previous} (null on the first run).
+	 */
+	Severity evaluateCounters(DiagnosticSnapshot snapshot, DiagnosticSnapshot previous) {
+		return Severity.OK
+			.escalate(evaluateDeadlocks(snapshot, previous))
+			.escalate(evaluateSlowQueries(snapshot, previous))
+			.escalate(evaluateConnectionUsage(snapshot));
+	}
+
+	/**
+	 * Evaluates the checks fed by the activity scan; only called when it ran.
+	 */
+	Severity evaluateActivity(DiagnosticSnapshotCollector.Activity activity) {
+		return Severity.OK
+			.escalate(evaluateStuckProcesses(activity.stuckProcesses()))
+			.escalate(evaluateLongTransactions(activity.longTransactions()));
+	}
+
+	/**
+	 * Single-flight connectivity check: while a check is in flight, or the last
+	 * one started less than {@code ttl} ago, callers share its result instead of
+	 * each borrowing a pool connection. A new check runs {@link #checkConnectivity()}
+	 * on {@code executor} and fails after {@code deadline}, so an outage is
+	 * reported once per TTL rather than blocking every probe. A successful
+	 * diagnostic run counts as a check.
+	 */
+	public CompletableFuture<Void> probeConnectivity(Executor executor, Duration ttl, Duration deadline) {
+		while (true) {
+			long now = System.nanoTime();
+			Probe current = connectivity.get();
+			if (current != null && current.isFresh(now, ttl.toNanos())) {
+				return current.result();
+			}
+			Probe next = new Probe(new CompletableFuture<>(), now);
+			if (connectivity.compareAndSet(current, next)) {
+				next.result().orTimeout(deadline.toMillis(), TimeUnit.MILLISECONDS).whenComplete((ok, e) -> {
+					if (e instanceof TimeoutException) {
+						logger.error("[MYSQL_CONNECT_TIMEOUT] MySQL connectivity check exceeded deadline | schema={} | deadlineMs={}",
+							schema, deadline.toMillis());
+					} else if (e != null && circuitBreaker.getState() == DiagnosticCircuitBreaker.State.OPEN) {
+						logger.debug("[MYSQL_CONNECT_FAILED] Circuit open, connectivity check failed fast | schema={}", schema);
+					} else if (e != null) {
+						logger.error("[MYSQL_CONNECT_FAILED] MySQL connectivity check failed | schema={} | error=\"{}\"",
+							schema, e.getMessage());
+					}
+				});
+				try {
+					executor.execute(() -> {
+						try {
+							checkConnectivity();
+							next.result().complete(null);
+						} catch (Exception e) {
+							next.result().completeExceptionally(e);
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					next.result().completeExceptionally(e);
+				}
+				return next.result();
+			}
+		}
+	}
+
+	/**
+	 * Runs {@code SELECT 1} on the diagnostic pool.
+	 *
+	 * @throws SQLException when the database cannot be reached or the circuit is open
+	 */
+	public void checkConnectivity() throws SQLException {
+		if (!circuitBreaker.tryAcquire()) {
+			throw new SQLException("Circuit open for schema " + schema + ", database considered unreachable");
+		}
+		try (Connection conn = diagnosticDataSource.getConnection();
+		     Statement stmt = conn.createStatement()) {
+			stmt.setQueryTimeout(DIAGNOSTIC_QUERY_TIMEOUT_SECONDS); // Bounds only the SELECT 1 execution
+			stmt.execute("SELECT 1");
+			circuitBreaker.onSuccess();
+		} catch (SQLException e) {
+			circuitBreaker.onFailure();
+			throw e;
+		}
+	}
+
+	private Severity evaluateStuckProcesses(long stuckCount) {
+		if (stuckCount > 0) {
+			if (stuckCount > STUCK_PROCESS_THRESHOLD) {
+				logger.warn(
+					"[{}] Stuck MySQL processes detected above threshold | schema={} | count={} | threshold={} | thresholdSeconds={}",
+					LOG_EVENT_STUCK_PROCESS, schema, stuckCount, STUCK_PROCESS_THRESHOLD, STUCK_PROCESS_SECONDS);
+				return Severity.WARNING;
+			} else {
+				logger.info(
+					"[{}] Stuck MySQL processes below threshold | schema={} | count={} | threshold={}",
+					LOG_EVENT_STUCK_PROCESS, schema, stuckCount, STUCK_PROCESS_THRESHOLD);
+			}
+		}
+		return Severity.OK;
+	}
+
+	private Severity evaluateLongTransactions(long lockCount) {
+		if (lockCount >= LONG_TXN_WARNING_THRESHOLD) {
+			logger.warn(
+				"[{}] InnoDB long-running transaction(s) detected | schema={} | count={} | thresholdSeconds={}",
+				LOG_EVENT_LONG_TXN, schema, lockCount, LONG_TXN_SECONDS);
+			// Graduated escalation: WARNING for 1-4, CRITICAL for 5+
+			return lockCount >= LONG_TXN_CRITICAL_THRESHOLD ? Severity.CRITICAL : Severity.WARNING;
+		}
+		return Severity.OK;
+	}
+
+	private Severity evaluateDeadlocks(DiagnosticSnapshot snapshot, DiagnosticSnapshot previous) {
+		if (previous == null) {
+			return Severity.OK; // baseline capture on first run
+		}
+		long deltaDeadlocks = snapshot.deadlocksSince(previous);
+		if (deltaDeadlocks > 0) {
+			logger.warn(
+				"[{}] InnoDB deadlocks detected since last run | schema={} | deltaCount={} | cumulativeCount={}",
+				LOG_EVENT_DEADLOCK, schema, deltaDeadlocks, snapshot.deadlocks());
+			return Severity.WARNING;
+		}
+		return Severity.OK;
+	}
+
+	private Severity evaluateSlowQueries(DiagnosticSnapshot snapshot, DiagnosticSnapshot previous) {
+		if (previous == null) {
+			return Severity.OK; // baseline capture on first run
+		}
+		// Only warn if slow queries have *increased* since last run
+		long delta = snapshot.slowQueriesSince(previous);
+		if (delta > 0) {
+			logger.warn(
+				"[{}] New slow queries detected since last run | schema={} | deltaCount={} | cumulativeCount={}",
+				LOG_EVENT_SLOW_QUERIES, schema, delta, snapshot.slowQueries());
+			return Severity.WARNING;
+		}
+		return Severity.OK;
+	}
+
+	private Severity evaluateConnectionUsage(DiagnosticSnapshot snapshot) {
+		int usagePct = snapshot.connectionUsagePercent();
+		if (usagePct >= CONNECTION_USAGE_CRITICAL) {
+			logger.error(
+				"[{}] MySQL connection pool near exhaustion | schema={} | threadsConnected={} | maxConnections={} | usagePercent={}",
+				LOG_EVENT_POOL_EXHAUSTED, schema, snapshot.threadsConnected(), snapshot.maxConnections(), usagePct);
+			return Severity.CRITICAL;
+
+		} else if (usagePct > CONNECTION_USAGE_WARNING) {
+			logger.warn(
+				"[{}] MySQL connection usage is high | schema={} | threadsConnected={} | maxConnections={} | usagePercent={}",
+				LOG_EVENT_CONN_USAGE, schema, snapshot.threadsConnected(), snapshot.maxConnections(), usagePct);
+			return Severity.WARNING;
+		}
+		return Severity.OK;
+	}
+}
@@ -0,0 +1,145 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.diagnostics;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker guarding the diagnostics of one datasource.
+ *
+ * <p>CLOSED lets every check through and opens after
+ * {@code failureThreshold} consecutive failures. OPEN rejects checks until
+ * the backoff has elapsed, then admits exactly one trial (HALF_OPEN). A
+ * successful trial closes the circuit; a failed one reopens it with the
+ * backoff doubled, up to {@code maxBackoff}, plus up to 10% jitter so that
+ * replicas do not reconnect in lockstep.</p>
+ *
+ * @author Piramal Swasthya
+ */
+public class DiagnosticCircuitBreaker {
+
+	private static final Logger logger = LoggerFactory.getLogger(DiagnosticCircuitBreaker.class);
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final String schema;
+	private final int failureThreshold;
+	private final long initialBackoffNanos;
+	private final long maxBackoffNanos;
+
+	private State state = State.CLOSED;
+	private int consecutiveFailures;
+	private long backoffNanos;
+	private long retryAtNanos;
+
+	public DiagnosticCircuitBreaker(String schema, HealthProperties.CircuitBreaker properties) {
+		this(schema, properties.getFailureThreshold(), properties.getInitialBackoff(), properties.getMaxBackoff());
+	}
+
+	public DiagnosticCircuitBreaker(String schema, int failureThreshold, Duration initialBackoff, Duration maxBackoff) {
+		this.schema = schema;
+		this.failureThreshold = Math.max(1, failureThreshold);
+		this.initialBackoffNanos = initialBackoff.toNanos();
+		this.maxBackoffNanos = Math.max(initialBackoff.toNanos(), maxBackoff.toNanos());
+		this.backoffNanos = initialBackoffNanos;
+	}
+
+	/**
+	 * @return true when the caller may touch the database; the caller must then
+	 *         report the outcome through {@link #onSuccess()} or {@link #onFailure()}
+	 */
+	public synchronized boolean tryAcquire() {
+		switch (state) {
+			case CLOSED:
+				return true;
+			case OPEN:
+				if (System.nanoTime() - retryAtNanos >= 0) {
+					state = State.HALF_OPEN;
+					logger.info("[MYSQL_CIRCUIT_HALF_OPEN] Probing database recovery | schema={}", schema);
+					return true;
+				}
+				return false;
+			default:
+				return false; // a recovery probe is already in flight
+		}
+	}
+
+	public synchronized void onSuccess() {
+		if (state != State.CLOSED) {
+			logger.info("[MYSQL_CIRCUIT_CLOSED] Database reachable again, circuit closed | schema={}", schema);
+		}
+		state = State.CLOSED;
+		consecutiveFailures = 0;
+		backoffNanos = initialBackoffNanos;
+	}
+
+	public synchronized void onFailure() {
+		if (state == State.HALF_OPEN) {
+			backoffNanos = Math.min(backoffNanos * 2, maxBackoffNanos);
+			open();
+		} else if (state == State.CLOSED && ++consecutiveFailures >= failureThreshold) {
+			backoffNanos = initialBackoffNanos;
+			open();
+		}
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return true when {@code e}, or one of its causes, means the database
+	 *         could not be reached (connection errors, SQLState class 08,
+	 *         timeouts) rather than that one query was refused
+	 */
+	public static boolean isConnectivityFailure(Throwable e) {
+		for (Throwable t = e; t != null; t = t.getCause()) {
+			if (t instanceof SQLTransientConnectionException
+					|| t instanceof SQLNonTransientConnectionException
+					|| t instanceof SQLTimeoutException) {
+				return true;
+			}
+			if (t instanceof SQLException sql && sql.getSQLState() != null && sql.getSQLState().startsWith("08")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void open() {
+		long jitter = ThreadLocalRandom.current().nextLong(backoffNanos / 10 + 1);
+		retryAtNanos = System.nanoTime() + backoffNanos + jitter;
+		state = State.OPEN;
+		logger.warn("[MYSQL_CIRCUIT_OPEN] Database unreachable, failing diagnostics fast | schema={} | retryInMs={}",
+			schema, (backoffNanos + jitter) / 1_000_000);
+	}
+}
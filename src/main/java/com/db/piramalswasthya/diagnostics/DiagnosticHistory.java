@@ -0,0 +1,239 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.diagnostics;
+
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Fixed-capacity ring buffer of {@link DiagnosticSnapshot} counters for one
+ * datasource, stored column-wise in primitive arrays so memory is constant
+ * and recording allocates nothing.
+ *
+ * <p>There is exactly one writer per datasource (the diagnostic run, which
+ * never overlaps itself) and any number of readers. The writer
+ * claims a slot, fills it and then publishes it by bumping the volatile
+ * {@code written} counter; readers copy the published slots, re-read the claim
+ * counter and drop every slot the writer may have reused in the meantime (a
+ * seqlock without retries). No locks are taken on either side.</p>
+ *
+ * @author Piramal Swasthya
+ */
+public class DiagnosticHistory {
+
+	private static final double MILLIS_PER_MINUTE = 60_000.0;
+
+	private final int capacity;
+	private final long[] capturedAtMillis;
+	private final long[] threadsConnected;
+	private final long[] threadsRunning;
+	private final long[] maxConnections;
+	private final long[] slowQueries;
+	private final long[] deadlocks;
+	private final long[] questions;
+	private final long[] uptimeSeconds;
+	private final long[] longTransactions;
+
+	// Number of samples ever published; slot of sample n is n % capacity
+	private volatile long written;
+	// Number of samples the writer has started; ahead of written while a slot is being filled
+	private volatile long claimed;
+
+	public DiagnosticHistory(int capacity) {
+		this.capacity = capacity;
+		this.capturedAtMillis = new long[capacity];
+		this.threadsConnected = new long[capacity];
+		this.threadsRunning = new long[capacity];
+		this.maxConnections = new long[capacity];
+		this.slowQueries = new long[capacity];
+		this.deadlocks = new long[capacity];
+		this.questions = new long[capacity];
+		this.uptimeSeconds = new long[capacity];
+		this.longTransactions = new long[capacity];
+	}
+
+	/** Single-writer: must not be called concurrently for the same history. */
+	public void record(DiagnosticSnapshot snapshot) {
+		long sequence = written;
+		int slot = (int) (sequence % capacity);
+		claimed = sequence + 1;
+		// Slot stores must not become visible before the claim
+		VarHandle.storeStoreFence();
+		capturedAtMillis[slot] = snapshot.capturedAt().toEpochMilli();
+		threadsConnected[slot] = snapshot.threadsConnected();
+		threadsRunning[slot] = snapshot.threadsRunning();
+		maxConnections[slot] = snapshot.maxConnections();
+		slowQueries[slot] = snapshot.slowQueries();
+		deadlocks[slot] = snapshot.deadlocks();
+		questions[slot] = snapshot.questions();
+		uptimeSeconds[slot] = snapshot.uptimeSeconds();
+		longTransactions[slot] = snapshot.longTransactions();
+		// Volatile write publishes the slot to readers
+		written = sequence + 1;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * One sample together with the rates since the sample before it. Rates are
+	 * null when unknown (first sample, counter missing or server restarted).
+	 */
+	public record Point(Instant at, Double deadlocksPerMin, Double slowQueriesPerMin, Double questionsPerSec,
+			Integer connectionUsagePercent, long threadsRunning, long longTransactions) {
+	}
+
+	/** Min, max and 95th percentile (nearest rank) of one series. */
+	public record Stats(double min, double max, double p95, int samples) {
+	}
+
+	/**
+	 * @return points captured at or after {@code since}, oldest first
+	 */
+	public List<Point> points(Instant since) {
+		Copy copy = copy();
+		long sinceMillis = since.toEpochMilli();
+		List<Point> points = new ArrayList<>();
+		for (int i = 0; i < copy.size; i++) {
+			if (copy.at[i] < sinceMillis) {
+				continue;
+			}
+			Double deadlockRate = null;
+			Double slowRate = null;
+			Double questionRate = null;
+			if (i > 0 && copy.uptime[i] >= copy.uptime[i - 1] && copy.at[i] > copy.at[i - 1]) {
+				long elapsedMillis = copy.at[i] - copy.at[i - 1];
+				deadlockRate = rate(copy.deadlocks[i], copy.deadlocks[i - 1], elapsedMillis / MILLIS_PER_MINUTE);
+				slowRate = rate(copy.slowQueries[i], copy.slowQueries[i - 1], elapsedMillis / MILLIS_PER_MINUTE);
+				questionRate = rate(copy.questions[i], copy.questions[i - 1], elapsedMillis / 1000.0);
+			}
+			Integer usage = copy.maxConnections[i] > 0 && copy.threadsConnected[i] >= 0
+				? (int) (copy.threadsConnected[i] * 100.0 / copy.maxConnections[i])
+				: null;
+			points.add(new Point(Instant.ofEpochMilli(copy.at[i]), deadlockRate, slowRate, questionRate, usage,
+				copy.threadsRunning[i], copy.longTransactions[i]));
+		}
+		return points;
+	}
+
+	/**
+	 * Min/max/p95 of each series over the trailing {@code window}.
+	 */
+	public Map<String, Stats> windowStats(Duration window) {
+		List<Point> points = points(Instant.now().minus(window));
+		Map<String, Stats> stats = new LinkedHashMap<>();
+		stats.put("deadlocksPerMin", stats(points.stream().map(Point::deadlocksPerMin)));
+		stats.put("slowQueriesPerMin", stats(points.stream().map(Point::slowQueriesPerMin)));
+		stats.put("questionsPerSec", stats(points.stream().map(Point::questionsPerSec)));
+		stats.put("connectionUsagePercent", stats(points.stream().map(p -> p.connectionUsagePercent() == null
+			? null : p.connectionUsagePercent().doubleValue())));
+		stats.put("threadsRunning", stats(points.stream().map(p -> (double) p.threadsRunning())));
+		stats.put("longTransactions", stats(points.stream().map(p -> (double) p.longTransactions())));
+		return stats;
+	}
+
+	private static Stats stats(Stream<Double> series) {
+		double[] values = series.filter(v -> v != null && v >= 0).mapToDouble(Double::doubleValue).toArray();
+		if (values.length == 0) {
+			return null;
+		}
+		Arrays.sort(values);
+		int p95Index = (int) Math.ceil(0.95 * values.length) - 1;
+		return new Stats(values[0], values[values.length - 1], values[Math.max(0, p95Index)], values.length);
+	}
+
+	private static Double rate(long current, long previous, double per) {
+		if (current < 0 || previous < 0 || current < previous || per <= 0) {
+			return null;
+		}
+		return (current - previous) / per;
+	}
+
+	/** Consistent, oldest-first copy of the published samples. */
+	private static final class Copy {
+		private long[] at;
+		private long[] threadsConnected;
+		private long[] threadsRunning;
+		private long[] maxConnections;
+		private long[] slowQueries;
+		private long[] deadlocks;
+		private long[] questions;
+		private long[] uptime;
+		private long[] longTransactions;
+		private int size;
+	}
+
+	private Copy copy() {
+		long end = written;
+		long start = Math.max(0, end - capacity);
+		int count = (int) (end - start);
+
+		Copy copy = new Copy();
+		copy.at = new long[count];
+		copy.threadsConnected = new long[count];
+		copy.threadsRunning = new long[count];
+		copy.maxConnections = new long[count];
+		copy.slowQueries = new long[count];
+		copy.deadlocks = new long[count];
+		copy.questions = new long[count];
+		copy.uptime = new long[count];
+		copy.longTransactions = new long[count];
+		for (int i = 0; i < count; i++) {
+			int slot = (int) ((start + i) % capacity);
+			copy.at[i] = capturedAtMillis[slot];
+			copy.threadsConnected[i] = threadsConnected[slot];
+			copy.threadsRunning[i] = threadsRunning[slot];
+			copy.maxConnections[i] = maxConnections[slot];
+			copy.slowQueries[i] = slowQueries[slot];
+			copy.deadlocks[i] = deadlocks[slot];
+			copy.questions[i] = questions[slot];
+			copy.uptime[i] = uptimeSeconds[slot];
+			copy.longTransactions[i] = longTransactions[slot];
+		}
+
+		// Drop the oldest slots if the writer claimed them for newer samples while we copied
+		VarHandle.loadLoadFence();
+		long claimedAfter = claimed;
+		int overwritten = (int) Math.min(count, Math.max(0, claimedAfter - capacity - start));
+		copy.size = count - overwritten;
+		if (overwritten > 0) {
+			copy.at = Arrays.copyOfRange(copy.at, overwritten, count);
+			copy.threadsConnected = Arrays.copyOfRange(copy.threadsConnected, overwritten, count);
+			copy.threadsRunning = Arrays.copyOfRange(copy.threadsRunning, overwritten, count);
+			copy.maxConnections = Arrays.copyOfRange(copy.maxConnections, overwritten, count);
+			copy.slowQueries = Arrays.copyOfRange(copy.slowQueries, overwritten, count);
+			copy.deadlocks = Arrays.copyOfRange(copy.deadlocks, overwritten, count);
+			copy.questions = Arrays.copyOfRange(copy.questions, overwritten, count);
+			copy.uptime = Arrays.copyOfRange(copy.uptime, overwritten, count);
+			copy.longTransactions = Arrays.copyOfRange(copy.longTransactions, overwritten, count);
+		}
+		return copy;
+	}
+}
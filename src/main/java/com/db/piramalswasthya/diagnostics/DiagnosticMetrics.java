@@ -0,0 +1,122 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.diagnostics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Publishes every {@link DiagnosticSnapshot} counter, the cached severity and
+ * the duration of each diagnostic run as Micrometer meters tagged with the
+ * schema. Gauges read the last snapshot lazily, so nothing is recorded on the
+ * sampling path beyond the cycle timer. Unknown values are reported as NaN.
+ *
+ * @author Piramal Swasthya
+ */
+@Component
+public class DiagnosticMetrics {
+
+	private static final String PREFIX = "amrit.db.";
+	private static final String TAG_SCHEMA = "schema";
+
+	private final MeterRegistry registry;
+
+	public DiagnosticMetrics(MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	public void bind(DatabaseDiagnostics database) {
+		String schema = database.getSchema();
+		gauge("threads.connected", "Threads_connected", database, DiagnosticSnapshot::threadsConnected);
+		gauge("threads.running", "Threads_running", database, DiagnosticSnapshot::threadsRunning);
+		gauge("max.connections", "max_connections", database, DiagnosticSnapshot::maxConnections);
+		gauge("stuck.processes", "Non-sleeping sessions older than the stuck-process threshold", database,
+			DiagnosticSnapshot::stuckProcesses);
+		gauge("long.transactions", "InnoDB transactions older than the long-transaction threshold", database,
+			DiagnosticSnapshot::longTransactions);
+		gauge("connection.usage", "Connections in use as percent of max_connections", database,
+			snapshot -> snapshot.connectionUsagePercent());
+		counter("slow.queries", "Slow_queries", database, DiagnosticSnapshot::slowQueries);
+		counter("deadlocks", "InnoDB deadlocks", database, DiagnosticSnapshot::deadlocks);
+		counter("questions", "Questions", database, DiagnosticSnapshot::questions);
+
+		Gauge.builder(PREFIX + "severity", database, d -> switch (d.getCachedSeverity()) {
+				case CRITICAL -> 2;
+				case WARNING -> 1;
+				default -> 0;
+			})
+			.description("Diagnostic severity: 0 OK, 1 WARNING, 2 CRITICAL")
+			.tag(TAG_SCHEMA, schema)
+			.register(registry);
+		Gauge.builder(PREFIX + "circuit.state", database, d -> d.getCircuitState().ordinal())
+			.description("Diagnostic circuit breaker: 0 CLOSED, 1 OPEN, 2 HALF_OPEN")
+			.tag(TAG_SCHEMA, schema)
+			.register(registry);
+	}
+
+	/**
+	 * Records the duration of one diagnostic run of {@code schema}.
+	 */
+	public void recordRun(String schema, long durationNanos, Severity severity) {
+		Timer.builder(PREFIX + "diagnostic.run")
+			.description("Duration of one diagnostic run per datasource")
+			.tag(TAG_SCHEMA, schema)
+			.tag("severity", severity.name())
+			.register(registry)
+			.record(durationNanos, TimeUnit.NANOSECONDS);
+	}
+
+	private void gauge(String name, String description, DatabaseDiagnostics database,
+			ToLongFunction<DiagnosticSnapshot> value) {
+		Gauge.builder(PREFIX + name, database, valueOf(value))
+			.description(description)
+			.tag(TAG_SCHEMA, database.getSchema())
+			.register(registry);
+	}
+
+	private void counter(String name, String description, DatabaseDiagnostics database,
+			ToLongFunction<DiagnosticSnapshot> value) {
+		FunctionCounter.builder(PREFIX + name, database, valueOf(value))
+			.description(description + " (server-wide, cumulative since server start)")
+			.tag(TAG_SCHEMA, database.getSchema())
+			.register(registry);
+	}
+
+	private static ToDoubleFunction<DatabaseDiagnostics> valueOf(ToLongFunction<DiagnosticSnapshot> value) {
+		return database -> {
+			DiagnosticSnapshot snapshot = database.getLastSnapshot();
+			if (snapshot == null) {
+				return Double.NaN;
+			}
+			long result = value.applyAsLong(snapshot);
+			return result < 0 ? Double.NaN : result;
+		};
+	}
+}
@@ -0,0 +1,80 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.diagnostics;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Builds the small, separate pool the health subsystem uses for one schema.
+ * It copies the URL and credentials of the application pool but keeps its
+ * own connections and short timeouts, so diagnostics keep working when the
+ * application pool is exhausted and fail quickly when the server is gone.
+ *
+ * @author Piramal Swasthya
+ */
+public final class DiagnosticPools {
+
+	private static final Logger logger = LoggerFactory.getLogger(DiagnosticPools.class);
+
+	private DiagnosticPools() {
+	}
+
+	/**
+	 * @return a dedicated pool, or {@code applicationPool} itself when it is not
+	 *         a Hikari pool whose connection settings can be copied
+	 */
+	public static DataSource create(String schema, DataSource applicationPool, HealthProperties.DiagnosticPool properties) {
+		if (!(applicationPool instanceof HikariDataSource app) || app.getJdbcUrl() == null) {
+			logger.warn("[MYSQL_DIAGNOSTIC_POOL] No dedicated diagnostic pool, sharing the application pool | schema={}", schema);
+			return applicationPool;
+		}
+		HikariDataSource pool = new HikariDataSource();
+		pool.setPoolName(schema + "-diagnostic");
+		pool.setJdbcUrl(app.getJdbcUrl());
+		pool.setUsername(app.getUsername());
+		pool.setPassword(app.getPassword());
+		if (app.getDriverClassName() != null) {
+			pool.setDriverClassName(app.getDriverClassName());
+		}
+		pool.setMaximumPoolSize(Math.max(1, properties.getMaxPoolSize()));
+		pool.setMinimumIdle(0);
+		pool.setConnectionTimeout(properties.getConnectionTimeout().toMillis());
+		pool.setValidationTimeout(Math.min(1000, properties.getConnectionTimeout().toMillis()));
+		pool.setIdleTimeout(60_000);
+		// Do not fail startup when the database is down; the circuit breaker reports it
+		pool.setInitializationFailTimeout(-1);
+		pool.addDataSourceProperty("connectTimeout", properties.getConnectionTimeout().toMillis());
+		pool.addDataSourceProperty("socketTimeout", properties.getSocketTimeout().toMillis());
+		return pool;
+	}
+
+	public static void close(DataSource diagnosticPool, DataSource applicationPool) {
+		if (diagnosticPool != applicationPool && diagnosticPool instanceof HikariDataSource pool) {
+			pool.close();
+		}
+	}
+}
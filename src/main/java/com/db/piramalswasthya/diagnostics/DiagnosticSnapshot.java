@@ -0,0 +1,96 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.diagnostics;
+
+import java.time.Instant;
+
+/**
+ * Immutable, point-in-time view of one MySQL server as seen through one
+ * datasource, collected by {@link DiagnosticSnapshotCollector}.
+ * All health checks evaluate this object in memory. Counters the server did
+ * not report are {@value #UNKNOWN}.
+ *
+ * @param capturedAt         wall-clock time of collection
+ * @param capturedAtNanos    {@link System#nanoTime()} at collection, for rate calculations
+ * @param collectionMillis   time the counter queries took
+ * @param threadsConnected   {@code Threads_connected}
+ * @param threadsRunning     {@code Threads_running}
+ * @param maxConnections     {@code max_connections}
+ * @param slowQueries        cumulative {@code Slow_queries}
+ * @param deadlocks          cumulative deadlocks ({@code Innodb_deadlocks}, or InnoDB metric {@code lock_deadlocks})
+ * @param questions          cumulative {@code Questions}
+ * @param uptimeSeconds      {@code Uptime}; a decrease means the server restarted and counters reset
+ * @param stuckProcesses     non-sleeping sessions running longer than the stuck-process threshold
+ * @param longTransactions   InnoDB transactions open longer than the long-transaction threshold
+ *
+ * @author Piramal Swasthya
+ */
+public record DiagnosticSnapshot(
+		Instant capturedAt,
+		long capturedAtNanos,
+		long collectionMillis,
+		long threadsConnected,
+		long threadsRunning,
+		long maxConnections,
+		long slowQueries,
+		long deadlocks,
+		long questions,
+		long uptimeSeconds,
+		long stuckProcesses,
+		long longTransactions) {
+
+	public static final long UNKNOWN = -1;
+
+	/**
+	 * @return connections in use as a percentage of {@code max_connections},
+	 *         or {@value #UNKNOWN}
+	 */
+	public int connectionUsagePercent() {
+		if (maxConnections <= 0 || threadsConnected < 0) {
+			return (int) UNKNOWN;
+		}
+		return (int) ((threadsConnected * 100.0) / maxConnections);
+	}
+
+	public long deadlocksSince(DiagnosticSnapshot previous) {
+		return delta(deadlocks, previous.deadlocks, previous);
+	}
+
+	public long slowQueriesSince(DiagnosticSnapshot previous) {
+		return delta(slowQueries, previous.slowQueries, previous);
+	}
+
+	public long questionsSince(DiagnosticSnapshot previous) {
+		return delta(questions, previous.questions, previous);
+	}
+
+	/**
+	 * Increase of a cumulative counter since {@code previous}, or
+	 * {@value #UNKNOWN} when either side is unknown or the server restarted.
+	 */
+	private long delta(long current, long before, DiagnosticSnapshot previous) {
+		if (current < 0 || before < 0 || uptimeSeconds < previous.uptimeSeconds) {
+			return UNKNOWN;
+		}
+		return Math.max(0, current - before);
+	}
+}
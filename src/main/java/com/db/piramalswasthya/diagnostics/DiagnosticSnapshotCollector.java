@@ -0,0 +1,200 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.diagnostics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects a {@link DiagnosticSnapshot}: one statement over
+ * {@code performance_schema.global_status}/{@code global_variables}, which
+ * every account can read, plus one statement per source that needs the
+ * PROCESS privilege (the InnoDB {@code lock_deadlocks} metric, since stock
+ * MySQL has no {@code Innodb_deadlocks} status variable, and the
+ * {@code PROCESSLIST} and {@code INNODB_TRX} scans of the activity check).
+ * Each source is guarded on its own: when the account may not read it, its
+ * counters are {@link DiagnosticSnapshot#UNKNOWN} and the rest of the snapshot
+ * is still collected. Only connectivity failures propagate. The activity scan
+ * is far more expensive, so it is collected separately on its own cadence and
+ * the last result is carried into the snapshots taken in between.
+ *
+ * @author Piramal Swasthya
+ */
+public class DiagnosticSnapshotCollector {
+
+	private static final Logger logger = LoggerFactory.getLogger(DiagnosticSnapshotCollector.class);
+
+	private static final String COUNTERS_SQL =
+		"SELECT UPPER(VARIABLE_NAME) AS name, VARIABLE_VALUE AS value FROM performance_schema.global_status "
+		+ "WHERE VARIABLE_NAME IN ('Threads_connected', 'Threads_running', 'Slow_queries', 'Innodb_deadlocks', 'Questions', 'Uptime') "
+		+ "UNION ALL "
+		+ "SELECT UPPER(VARIABLE_NAME), VARIABLE_VALUE FROM performance_schema.global_variables "
+		+ "WHERE VARIABLE_NAME = 'max_connections'";
+
+	private static final String LOCK_DEADLOCKS_SQL =
+		"SELECT COUNT FROM information_schema.INNODB_METRICS WHERE NAME = 'lock_deadlocks' AND STATUS = 'enabled'";
+
+	private static final String STUCK_PROCESSES_SQL =
+		"SELECT COUNT(*) FROM information_schema.PROCESSLIST WHERE TIME > ? AND COMMAND != 'Sleep'";
+
+	private static final String LONG_TRANSACTIONS_SQL =
+		"SELECT COUNT(*) FROM information_schema.INNODB_TRX WHERE trx_started < NOW() - INTERVAL ? SECOND";
+
+	/** Result of the activity scan. */
+	public record Activity(long stuckProcesses, long longTransactions) {
+
+		public static final Activity UNKNOWN = new Activity(DiagnosticSnapshot.UNKNOWN, DiagnosticSnapshot.UNKNOWN);
+	}
+
+	private final String schema;
+	private final int stuckProcessSeconds;
+	private final int longTransactionSeconds;
+	private final int queryTimeoutSeconds;
+	/** Sources already reported unreadable, so a missing grant is logged once rather than every run. */
+	private final Set<String> unavailableSources = ConcurrentHashMap.newKeySet();
+
+	public DiagnosticSnapshotCollector(String schema, int stuckProcessSeconds, int longTransactionSeconds,
+			int queryTimeoutSeconds) {
+		this.schema = schema;
+		this.stuckProcessSeconds = stuckProcessSeconds;
+		this.longTransactionSeconds = longTransactionSeconds;
+		this.queryTimeoutSeconds = queryTimeoutSeconds;
+	}
+
+	/**
+	 * Counts stuck sessions and long transactions ({@code PROCESSLIST} and
+	 * {@code INNODB_TRX} scans); either is {@link DiagnosticSnapshot#UNKNOWN}
+	 * when its table cannot be read.
+	 *
+	 * @throws SQLException only when the database cannot be reached
+	 */
+	public Activity collectActivity(Connection conn) throws SQLException {
+		return new Activity(
+			count(conn, "PROCESSLIST", STUCK_PROCESSES_SQL, stuckProcessSeconds),
+			count(conn, "INNODB_TRX", LONG_TRANSACTIONS_SQL, longTransactionSeconds));
+	}
+
+	/**
+	 * Reads the server counters and combines them with {@code activity}, the
+	 * latest result of {@link #collectActivity(Connection)}.
+	 *
+	 * @throws SQLException only when the database cannot be reached
+	 */
+	public DiagnosticSnapshot collect(Connection conn, Activity activity) throws SQLException {
+		Instant capturedAt = Instant.now();
+		long start = System.nanoTime();
+
+		Map<String, Long> counters = new HashMap<>();
+		try (Statement stmt = conn.createStatement()) {
+			stmt.setQueryTimeout(queryTimeoutSeconds);
+			try (ResultSet rs = stmt.executeQuery(COUNTERS_SQL)) {
+				while (rs.next()) {
+					counters.put(rs.getString("name"), parse(rs.getString("value")));
+				}
+			}
+			available("global_status");
+		} catch (SQLException e) {
+			unavailable("global_status", e);
+		}
+
+		long deadlocks = counter(counters, "INNODB_DEADLOCKS");
+		if (deadlocks == DiagnosticSnapshot.UNKNOWN) {
+			deadlocks = count(conn, "INNODB_METRICS", LOCK_DEADLOCKS_SQL, null);
+		}
+
+		return new DiagnosticSnapshot(
+			capturedAt,
+			start,
+			(System.nanoTime() - start) / 1_000_000,
+			counter(counters, "THREADS_CONNECTED"),
+			counter(counters, "THREADS_RUNNING"),
+			counter(counters, "MAX_CONNECTIONS"),
+			counter(counters, "SLOW_QUERIES"),
+			deadlocks,
+			counter(counters, "QUESTIONS"),
+			counter(counters, "UPTIME"),
+			activity.stuckProcesses(),
+			activity.longTransactions());
+	}
+
+	/**
+	 * Runs a single-value query against one source, or returns
+	 * {@link DiagnosticSnapshot#UNKNOWN} when the source cannot be read.
+	 */
+	private long count(Connection conn, String source, String sql, Integer seconds) throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			ps.setQueryTimeout(queryTimeoutSeconds);
+			if (seconds != null) {
+				ps.setInt(1, seconds);
+			}
+			try (ResultSet rs = ps.executeQuery()) {
+				long value = rs.next() ? parse(rs.getString(1)) : DiagnosticSnapshot.UNKNOWN;
+				available(source);
+				return value;
+			}
+		} catch (SQLException e) {
+			unavailable(source, e);
+			return DiagnosticSnapshot.UNKNOWN;
+		}
+	}
+
+	private void available(String source) {
+		if (unavailableSources.remove(source)) {
+			logger.info("[MYSQL_DIAGNOSTIC_SOURCE] Diagnostic source readable again | schema={} | source={}", schema, source);
+		}
+	}
+
+	private void unavailable(String source, SQLException e) throws SQLException {
+		if (DiagnosticCircuitBreaker.isConnectivityFailure(e)) {
+			throw e;
+		}
+		if (unavailableSources.add(source)) {
+			logger.warn("[MYSQL_DIAGNOSTIC_SOURCE] Diagnostic source unreadable, its counters are reported unknown "
+				+ "(the PROCESS privilege may be missing) | schema={} | source={} | error=\"{}\"",
+				schema, source, e.getMessage());
+		}
+	}
+
+	private static long counter(Map<String, Long> counters, String name) {
+		return counters.getOrDefault(name.toUpperCase(Locale.ROOT), DiagnosticSnapshot.UNKNOWN);
+	}
+
+	private static long parse(String value) {
+		try {
+			return value == null ? DiagnosticSnapshot.UNKNOWN : Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			return DiagnosticSnapshot.UNKNOWN;
+		}
+	}
+}
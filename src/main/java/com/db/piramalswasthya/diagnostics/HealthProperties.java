@@ -0,0 +1,132 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.diagnostics;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Settings for the health endpoints and background diagnostics, bound from
+ * {@code amrit.health.*}.
+ *
+ * @author Piramal Swasthya
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "amrit.health")
+public class HealthProperties {
+
+	/**
+	 * How long one connectivity result per datasource is reused by /health and
+	 * /health/readiness; concurrent probes within it share a single check.
+	 */
+	private Duration connectivityTtl = Duration.ofSeconds(2);
+
+	/** Health probes are logged at INFO at most once per interval, or when the status changes. */
+	private Duration logSampleInterval = Duration.ofMinutes(1);
+
+	/**
+	 * Cadence of the cheap counter queries ({@code global_status}); they also
+	 * set the pace of the background loop.
+	 */
+	private CheckSchedule counters = new CheckSchedule(Duration.ofSeconds(5), Duration.ofSeconds(30), Duration.ofMillis(200));
+
+	/** Cadence of the {@code PROCESSLIST}/{@code INNODB_TRX} scans. */
+	private CheckSchedule activity = new CheckSchedule(Duration.ofSeconds(15), Duration.ofMinutes(2), Duration.ofMillis(500));
+
+	/** Cadence of the statement-digest samples served by /health/digests. */
+	private CheckSchedule digests = new CheckSchedule(Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofSeconds(1));
+
+	/** Cadence of the index read-counter samples behind /health/index-usage. */
+	private CheckSchedule indexUsage = new CheckSchedule(Duration.ofHours(1), Duration.ofHours(1), Duration.ofSeconds(2));
+
+	/** An index not read for this long is reported as unused. */
+	private Duration unusedIndexWindow = Duration.ofDays(30);
+
+	/** Random spread, as a fraction of each delay, so replicas do not sample in step. */
+	private double scheduleJitter = 0.1;
+
+	private DiagnosticPool diagnosticPool = new DiagnosticPool();
+
+	private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+	/**
+	 * Adaptive cadence of one diagnostic check: {@code minInterval} while the
+	 * database is WARNING or CRITICAL, easing back to {@code interval} once it
+	 * is healthy. A run slower than {@code costBudget} stretches the interval
+	 * so the check never spends more than that per steady interval.
+	 */
+	@Data
+	public static class CheckSchedule {
+
+		private Duration minInterval;
+
+		private Duration interval;
+
+		private Duration costBudget;
+
+		public CheckSchedule() {
+		}
+
+		CheckSchedule(Duration minInterval, Duration interval, Duration costBudget) {
+			this.minInterval = minInterval;
+			this.interval = interval;
+			this.costBudget = costBudget;
+		}
+	}
+
+	/**
+	 * Small per-schema pool used only by diagnostics and connectivity checks,
+	 * so they still get a connection when the application pool is exhausted.
+	 */
+	@Data
+	public static class DiagnosticPool {
+
+		private int maxPoolSize = 2;
+
+		/** Wait for a pooled connection, and the JDBC connect timeout. */
+		private Duration connectionTimeout = Duration.ofSeconds(2);
+
+		/** Network read timeout; bounds a diagnostic query on a hung server. */
+		private Duration socketTimeout = Duration.ofSeconds(15);
+	}
+
+	/**
+	 * Fails diagnostics fast while a database is unreachable and probes it
+	 * again with exponential backoff.
+	 */
+	@Data
+	public static class CircuitBreaker {
+
+		/** Consecutive failures that open the circuit. */
+		private int failureThreshold = 2;
+
+		/** Wait before the first recovery probe; doubled after each failed probe. */
+		private Duration initialBackoff = Duration.ofSeconds(5);
+
+		private Duration maxBackoff = Duration.ofMinutes(5);
+	}
+}
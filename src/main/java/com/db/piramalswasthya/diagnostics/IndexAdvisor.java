@@ -0,0 +1,308 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.diagnostics;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.db.piramalswasthya.migration.SchemaSnapshot;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Proposes composite indexes from the observed workload of one schema.
+ *
+ * <p>Statements whose digests ran without a (good) index, or examined far more
+ * rows than they returned, are explained with {@code EXPLAIN FORMAT=JSON} using
+ * their {@code QUERY_SAMPLE_TEXT}. For every full table or index scan the
+ * attached condition is parsed into equality columns followed by at most one
+ * range column, the classic composite-index layout. Proposals already served
+ * by an existing index (same leading columns) are dropped, identical ones are
+ * merged, and the rest are ranked by estimated rows examined saved over the
+ * sampled interval: {@code calls * (rows examined per scan - rows produced)}.</p>
+ *
+ * <p>EXPLAIN never executes the statement. Samples that are truncated, use an
+ * alias in a join, or are not SELECT/UPDATE/DELETE are reported as skipped.</p>
+ *
+ * @author Piramal Swasthya
+ */
+public class IndexAdvisor {
+
+	private static final Logger logger = LoggerFactory.getLogger(IndexAdvisor.class);
+
+	private static final int MAX_EQUALITY_COLUMNS = 3;
+	private static final int MAX_INDEX_NAME = 64;
+	private static final long MIN_ROWS_EXAMINED = 1000;
+	private static final double MIN_EXAMINED_PER_ROW_SENT = 100;
+
+	private static final Pattern EXPLAINABLE = Pattern.compile("^\\s*(select|update|delete)\\b",
+		Pattern.CASE_INSENSITIVE);
+	private static final Pattern COLUMN_REF = Pattern.compile("`([^`]+)`\\.`([^`]+)`\\.`([^`]+)`");
+	private static final Pattern EQUALITY_AFTER = Pattern.compile("^\\s*(=|<=>|in\\s*\\(|is\\s+null)",
+		Pattern.CASE_INSENSITIVE);
+	private static final Pattern RANGE_AFTER = Pattern.compile("^\\s*(>=|<=|>|<|between\\s|like\\s)",
+		Pattern.CASE_INSENSITIVE);
+	private static final Pattern EQUALITY_BEFORE = Pattern.compile("(=|<=>)\\s*\\(?\\s*$");
+	// Plans name tables by their alias; map aliases back through the FROM/JOIN/UPDATE clauses
+	private static final Set<String> KEYWORDS = Set.of("where", "join", "inner", "left", "right", "cross", "on",
+		"using", "set", "group", "order", "limit", "straight_join", "natural", "union", "having", "for", "lock");
+	private static final Pattern TABLE_ALIAS = Pattern.compile(
+		"\\b(?:from|join|update)\\s+(?:`?\\w+`?\\.)?`?(\\w+)`?(?:\\s+(?:as\\s+)?`?(\\w+)`?)?",
+		Pattern.CASE_INSENSITIVE);
+
+	/** One proposed index. */
+	public record Proposal(String table, List<String> columns, String indexName, long estimatedRowsSaved,
+			List<String> digests) {
+	}
+
+	/** Statement that could not be analysed, with the reason. */
+	public record Skipped(String digest, String reason) {
+	}
+
+	public record Advice(String database, List<Proposal> proposals, List<Skipped> skipped) {
+	}
+
+	private record Candidate(String table, List<String> columns, long rowsSaved) {
+	}
+
+	private final int queryTimeoutSeconds;
+	private final int maxStatements;
+
+	public IndexAdvisor(int queryTimeoutSeconds, int maxStatements) {
+		this.queryTimeoutSeconds = queryTimeoutSeconds;
+		this.maxStatements = maxStatements;
+	}
+
+	/**
+	 * Explains the worst statements of {@code workload} on {@code conn}, whose
+	 * current database is the schema analysed.
+	 */
+	public Advice advise(Connection conn, StatementDigestAnalyzer.Sample workload) throws SQLException {
+		String database;
+		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT DATABASE()")) {
+			rs.next();
+			database = rs.getString(1);
+		}
+		SchemaSnapshot schema = SchemaSnapshot.load(conn);
+
+		Map<String, Proposal> proposals = new LinkedHashMap<>();
+		List<Skipped> skipped = new ArrayList<>();
+		List<StatementDigestAnalyzer.DigestStats> statements = workload.digests().stream()
+			.filter(IndexAdvisor::isIndexCandidate)
+			.sorted(StatementDigestAnalyzer.Ranking.NO_INDEX.order())
+			.limit(maxStatements)
+			.toList();
+
+		for (StatementDigestAnalyzer.DigestStats statement : statements) {
+			String sql = statement.sampleText();
+			if (sql == null || !EXPLAINABLE.matcher(sql).find()) {
+				skipped.add(new Skipped(statement.digest(), sql == null ? "no sample text" : "not a SELECT/UPDATE/DELETE"));
+				continue;
+			}
+			JsonObject plan;
+			try (Statement stmt = conn.createStatement()) {
+				stmt.setQueryTimeout(queryTimeoutSeconds);
+				try (ResultSet rs = stmt.executeQuery("EXPLAIN FORMAT=JSON " + sql)) {
+					rs.next();
+					plan = JsonParser.parseString(rs.getString(1)).getAsJsonObject();
+				}
+			} catch (SQLException e) {
+				// Typically a sample truncated by performance_schema_max_sql_text_length. The server
+				// message quotes the sample, so only the error code is reported.
+				skipped.add(new Skipped(statement.digest(),
+					"EXPLAIN failed: error " + e.getErrorCode() + " (" + e.getSQLState() + ")"));
+				continue;
+			} catch (RuntimeException e) {
+				skipped.add(new Skipped(statement.digest(), "unreadable plan"));
+				continue;
+			}
+
+			List<Candidate> candidates = new ArrayList<>();
+			collectCandidates(plan, database, statement.calls(), candidates, skipped, statement.digest());
+			Map<String, String> aliases = aliases(sql);
+			for (Candidate found : candidates) {
+				String realTable = schema.hasTable(found.table()) ? found.table()
+					: aliases.get(found.table().toLowerCase(Locale.ROOT));
+				if (realTable == null || !schema.hasTable(realTable)) {
+					skipped.add(new Skipped(statement.digest(), "cannot resolve table " + found.table()));
+					continue;
+				}
+				Candidate candidate = new Candidate(realTable, found.columns(), found.rowsSaved());
+				if (schema.findCoveringIndex(candidate.table(), candidate.columns()).isPresent()) {
+					continue;
+				}
+				String key = candidate.table().toLowerCase(Locale.ROOT) + "|"
+					+ String.join(",", candidate.columns()).toLowerCase(Locale.ROOT);
+				Proposal merged = proposals.get(key);
+				List<String> digests = new ArrayList<>(merged == null ? List.of() : merged.digests());
+				digests.add(statement.digest());
+				proposals.put(key, new Proposal(candidate.table(), candidate.columns(),
+					indexName(candidate.columns()), candidate.rowsSaved() + (merged == null ? 0 : merged.estimatedRowsSaved()),
+					digests));
+			}
+		}
+
+		List<Proposal> ranked = proposals.values().stream()
+			.sorted(Comparator.comparingLong(Proposal::estimatedRowsSaved).reversed())
+			.toList();
+		logger.info("[MYSQL_INDEX_ADVICE] Index advice computed | database={} | statements={} | proposals={} | skipped={}",
+			database, statements.size(), ranked.size(), skipped.size());
+		return new Advice(database, ranked, skipped);
+	}
+
+	private static Map<String, String> aliases(String sql) {
+		Map<String, String> aliases = new LinkedHashMap<>();
+		Matcher matcher = TABLE_ALIAS.matcher(sql);
+		while (matcher.find()) {
+			String alias = matcher.group(2);
+			if (alias != null && !KEYWORDS.contains(alias.toLowerCase(Locale.ROOT))) {
+				aliases.put(alias.toLowerCase(Locale.ROOT), matcher.group(1));
+			}
+		}
+		return aliases;
+	}
+
+	private static boolean isIndexCandidate(StatementDigestAnalyzer.DigestStats statement) {
+		return statement.noIndexUsed() + statement.noGoodIndexUsed() > 0
+			|| (statement.rowsExamined() >= MIN_ROWS_EXAMINED && statement.examinedPerRowSent() >= MIN_EXAMINED_PER_ROW_SENT);
+	}
+
+	/**
+	 * Walks the plan and turns every full scan with a usable condition into a candidate.
+	 */
+	private static void collectCandidates(JsonElement node, String database, long calls, List<Candidate> candidates,
+			List<Skipped> skipped, String digest) {
+		if (node.isJsonArray()) {
+			node.getAsJsonArray().forEach(child -> collectCandidates(child, database, calls, candidates, skipped, digest));
+			return;
+		}
+		if (!node.isJsonObject()) {
+			return;
+		}
+		JsonObject object = node.getAsJsonObject();
+		for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+			if (entry.getKey().equals("table") && entry.getValue().isJsonObject()) {
+				tableCandidate(entry.getValue().getAsJsonObject(), database, calls, candidates, skipped, digest);
+			}
+			collectCandidates(entry.getValue(), database, calls, candidates, skipped, digest);
+		}
+	}
+
+	private static void tableCandidate(JsonObject table, String database, long calls, List<Candidate> candidates,
+			List<Skipped> skipped, String digest) {
+		String access = string(table, "access_type");
+		if (!"ALL".equals(access) && !"index".equals(access)) {
+			return;
+		}
+		String condition = string(table, "attached_condition");
+		if (condition == null) {
+			return; // scans the whole table on purpose, nothing to index
+		}
+		String alias = string(table, "table_name");
+
+		Map<String, Set<String>> equality = new LinkedHashMap<>();
+		Map<String, Set<String>> range = new LinkedHashMap<>();
+		Matcher ref = COLUMN_REF.matcher(condition);
+		while (ref.find()) {
+			if (!ref.group(1).equalsIgnoreCase(database)) {
+				continue;
+			}
+			String tableName = ref.group(2);
+			String after = condition.substring(ref.end());
+			String before = condition.substring(0, ref.start());
+			if (EQUALITY_AFTER.matcher(after).find() || EQUALITY_BEFORE.matcher(before).find()) {
+				equality.computeIfAbsent(tableName, t -> new LinkedHashSet<>()).add(ref.group(3));
+			} else if (RANGE_AFTER.matcher(after).find()) {
+				range.computeIfAbsent(tableName, t -> new LinkedHashSet<>()).add(ref.group(3));
+			}
+		}
+
+		Set<String> tables = new LinkedHashSet<>(equality.keySet());
+		tables.addAll(range.keySet());
+		String tableName = tables.stream().filter(t -> t.equalsIgnoreCase(alias)).findFirst()
+			.orElse(tables.size() == 1 ? tables.iterator().next() : null);
+		if (tableName == null) {
+			if (!tables.isEmpty()) {
+				skipped.add(new Skipped(digest, "cannot resolve alias " + alias + " among " + tables));
+			}
+			return;
+		}
+
+		List<String> columns = new ArrayList<>();
+		equality.getOrDefault(tableName, Set.of()).stream().limit(MAX_EQUALITY_COLUMNS).forEach(columns::add);
+		range.getOrDefault(tableName, Set.of()).stream()
+			.filter(column -> !columns.contains(column))
+			.findFirst()
+			.ifPresent(columns::add);
+		if (columns.isEmpty()) {
+			return;
+		}
+
+		long examined = number(table, "rows_examined_per_scan");
+		long produced = number(table, "rows_produced_per_join");
+		long savedPerCall = Math.max(0, examined - Math.max(1, produced));
+		candidates.add(new Candidate(tableName, columns, savedPerCall * Math.max(1, calls)));
+	}
+
+	static String indexName(List<String> columns) {
+		String name = "idx_adv_" + String.join("_", columns).toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_]", "");
+		if (name.length() <= MAX_INDEX_NAME) {
+			return name;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(name.getBytes(StandardCharsets.UTF_8));
+		String suffix = "_" + Long.toHexString(crc.getValue());
+		return name.substring(0, MAX_INDEX_NAME - suffix.length()) + suffix;
+	}
+
+	private static String string(JsonObject object, String member) {
+		JsonElement value = object.get(member);
+		return value == null || value.isJsonNull() ? null : value.getAsString();
+	}
+
+	private static long number(JsonObject object, String member) {
+		JsonElement value = object.get(member);
+		try {
+			return value == null || value.isJsonNull() ? 0 : (long) value.getAsDouble();
+		} catch (RuntimeException e) {
+			return 0;
+		}
+	}
+}
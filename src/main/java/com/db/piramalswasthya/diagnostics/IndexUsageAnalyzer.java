@@ -0,0 +1,288 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.diagnostics;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.db.piramalswasthya.migration.SchemaSnapshot;
+
+/**
+ * Finds secondary indexes of one schema that cost writes without serving reads.
+ *
+ * <p>Redundant: the index columns are a left prefix of (or equal to) another
+ * index on the same table, so every lookup it serves the longer index serves
+ * too. Unused: no reads recorded in
+ * {@code performance_schema.table_io_waits_summary_by_index_usage} for the
+ * observation window. Those counters only exist since server start, so
+ * {@link #sample(Connection, long)} is called periodically to remember when
+ * each index was last read; an index is only reported once it has been
+ * watched (or the server has been up) for the whole window.</p>
+ *
+ * <p>Primary and unique indexes are never reported, as they enforce
+ * constraints, and neither is an index that is the only one on its table
+ * starting with the columns of a foreign key (either side): InnoDB needs it
+ * and refuses to drop it (error 1553). Size comes from {@code mysql.innodb_index_stats} when readable,
+ * write cost from the table's insert/update/delete rate since server start.</p>
+ *
+ * @author Piramal Swasthya
+ */
+public class IndexUsageAnalyzer {
+
+	private static final Logger logger = LoggerFactory.getLogger(IndexUsageAnalyzer.class);
+
+	private static final String PRIMARY = "primary";
+
+	private static final String USAGE_SQL = "SELECT OBJECT_NAME, INDEX_NAME, COUNT_READ "
+		+ "FROM performance_schema.table_io_waits_summary_by_index_usage "
+		+ "WHERE OBJECT_SCHEMA = DATABASE() AND INDEX_NAME IS NOT NULL";
+
+	private static final String TABLE_WRITES_SQL = "SELECT OBJECT_NAME, COUNT_INSERT, COUNT_UPDATE, COUNT_DELETE "
+		+ "FROM performance_schema.table_io_waits_summary_by_table WHERE OBJECT_SCHEMA = DATABASE()";
+
+	// Both sides of every foreign key within the schema, one row per column
+	private static final String FOREIGN_KEY_SQL = "SELECT TABLE_NAME, CONSTRAINT_NAME, COLUMN_NAME, "
+		+ "REFERENCED_TABLE_NAME, REFERENCED_COLUMN_NAME FROM information_schema.KEY_COLUMN_USAGE "
+		+ "WHERE TABLE_SCHEMA = DATABASE() AND REFERENCED_TABLE_SCHEMA = DATABASE() "
+		+ "ORDER BY TABLE_NAME, CONSTRAINT_NAME, ORDINAL_POSITION";
+
+	private static final String INDEX_SIZE_SQL = "SELECT table_name, index_name, stat_value * @@innodb_page_size AS bytes "
+		+ "FROM mysql.innodb_index_stats WHERE database_name = DATABASE() AND stat_name = 'size'";
+
+	public record RedundantIndex(String table, String index, List<String> columns, String coveredBy,
+			List<String> coveredByColumns, long bytes, long tableWritesPerHour) {
+	}
+
+	public record UnusedIndex(String table, String index, List<String> columns, long unusedForHours, long bytes,
+			long tableWritesPerHour) {
+	}
+
+	public record Report(String database, List<RedundantIndex> redundant, List<UnusedIndex> unused, long observedForHours,
+			Duration window) {
+	}
+
+	/** Reads seen at the last sample and when they last changed. */
+	private record Usage(long reads, long lastReadAtNanos) {
+	}
+
+	private final String schema;
+	private final Map<String, Usage> usage = new ConcurrentHashMap<>();
+	private volatile long firstSampleNanos;
+
+	public IndexUsageAnalyzer(String schema) {
+		this.schema = schema;
+	}
+
+	/**
+	 * Records the read counters of every index. An index never read since
+	 * server start counts as unread for the whole {@code uptimeSeconds}.
+	 */
+	public void sample(Connection conn, long uptimeSeconds) throws SQLException {
+		long now = System.nanoTime();
+		if (firstSampleNanos == 0) {
+			firstSampleNanos = now - Duration.ofSeconds(Math.max(0, uptimeSeconds)).toNanos();
+		}
+		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(USAGE_SQL)) {
+			while (rs.next()) {
+				String key = key(rs.getString("OBJECT_NAME"), rs.getString("INDEX_NAME"));
+				long reads = rs.getLong("COUNT_READ");
+				usage.compute(key, (k, previous) -> {
+					if (previous == null) {
+						return new Usage(reads, reads == 0 ? firstSampleNanos : now);
+					}
+					// Counters restart with the server (or a TRUNCATE); any change means it was read
+					return reads == previous.reads() ? previous : new Usage(reads, now);
+				});
+			}
+		}
+	}
+
+	public Report analyze(Connection conn, Duration window) throws SQLException {
+		long now = System.nanoTime();
+		String database;
+		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT DATABASE()")) {
+			rs.next();
+			database = rs.getString(1);
+		}
+		SchemaSnapshot snapshot = SchemaSnapshot.load(conn);
+		Map<String, Long> sizes = indexSizes(conn);
+		Map<String, Long> writes = tableWritesPerHour(conn, now);
+		Map<String, List<List<String>>> foreignKeys = foreignKeyColumns(conn);
+
+		List<RedundantIndex> redundant = new ArrayList<>();
+		List<UnusedIndex> unused = new ArrayList<>();
+		for (String table : tables(conn)) {
+			Collection<SchemaSnapshot.Index> indexes = snapshot.getIndexes(table);
+			for (SchemaSnapshot.Index index : indexes) {
+				if (index.unique() || index.name().equalsIgnoreCase(PRIMARY) || index.columns().contains("")
+					|| backsForeignKey(index, indexes, foreignKeys.getOrDefault(table.toLowerCase(Locale.ROOT), List.of()))) {
+					continue;
+				}
+				String key = key(table, index.name());
+				long bytes = sizes.getOrDefault(key, -1L);
+				long tableWrites = writes.getOrDefault(table.toLowerCase(Locale.ROOT), -1L);
+
+				SchemaSnapshot.Index wider = coveringIndex(index, indexes);
+				if (wider != null) {
+					redundant.add(new RedundantIndex(table, index.name(), index.columns(), wider.name(), wider.columns(),
+						bytes, tableWrites));
+					continue;
+				}
+				Usage seen = usage.get(key);
+				long unreadNanos = seen == null ? 0 : now - seen.lastReadAtNanos();
+				if (seen != null && unreadNanos >= window.toNanos()) {
+					unused.add(new UnusedIndex(table, index.name(), index.columns(),
+						Duration.ofNanos(unreadNanos).toHours(), bytes, tableWrites));
+				}
+			}
+		}
+
+		Comparator<Long> largestFirst = Comparator.reverseOrder();
+		redundant.sort(Comparator.comparing(RedundantIndex::bytes, largestFirst));
+		unused.sort(Comparator.comparing(UnusedIndex::bytes, largestFirst));
+		long observedHours = firstSampleNanos == 0 ? 0 : Duration.ofNanos(now - firstSampleNanos).toHours();
+		logger.info("[MYSQL_INDEX_USAGE] Index usage analysed | schema={} | redundant={} | unused={} | observedHours={}",
+			schema, redundant.size(), unused.size(), observedHours);
+		return new Report(database, redundant, unused, observedHours, window);
+	}
+
+	/**
+	 * Another index whose leading columns equal all of {@code index}'s columns.
+	 * For two identical indexes only the one sorting later by name is reported,
+	 * so one of them is always kept; a unique or primary duplicate always wins.
+	 */
+	private static SchemaSnapshot.Index coveringIndex(SchemaSnapshot.Index index, Collection<SchemaSnapshot.Index> indexes) {
+		for (SchemaSnapshot.Index other : indexes) {
+			if (other == index || other.columns().size() < index.columns().size()
+				|| !other.columns().subList(0, index.columns().size()).equals(index.columns())) {
+				continue;
+			}
+			boolean identical = other.columns().size() == index.columns().size();
+			if (!identical || other.unique() || other.name().compareToIgnoreCase(index.name()) < 0) {
+				return other;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * True when {@code index} is the only index of its table whose leading
+	 * columns are those of one of {@code foreignKeys}. A redundant index never
+	 * is, as the index covering it starts with the same columns.
+	 */
+	static boolean backsForeignKey(SchemaSnapshot.Index index, Collection<SchemaSnapshot.Index> indexes,
+			List<List<String>> foreignKeys) {
+		for (List<String> foreignKey : foreignKeys) {
+			if (startsWith(index.columns(), foreignKey)
+				&& indexes.stream().noneMatch(other -> other != index && startsWith(other.columns(), foreignKey))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean startsWith(List<String> columns, List<String> prefix) {
+		return columns.size() >= prefix.size() && columns.subList(0, prefix.size()).equals(prefix);
+	}
+
+	/** Column lists (lower case) of the foreign keys on each table, referencing and referenced side alike. */
+	private static Map<String, List<List<String>>> foreignKeyColumns(Connection conn) throws SQLException {
+		// table|constraint -> columns, on the referencing and on the referenced table
+		Map<String, List<String>> referencing = new LinkedHashMap<>();
+		Map<String, List<String>> referenced = new LinkedHashMap<>();
+		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(FOREIGN_KEY_SQL)) {
+			while (rs.next()) {
+				String constraint = rs.getString("TABLE_NAME") + "|" + rs.getString("CONSTRAINT_NAME");
+				referencing.computeIfAbsent(rs.getString("TABLE_NAME").toLowerCase(Locale.ROOT) + "|" + constraint,
+					k -> new ArrayList<>()).add(rs.getString("COLUMN_NAME").toLowerCase(Locale.ROOT));
+				referenced.computeIfAbsent(rs.getString("REFERENCED_TABLE_NAME").toLowerCase(Locale.ROOT) + "|" + constraint,
+					k -> new ArrayList<>()).add(rs.getString("REFERENCED_COLUMN_NAME").toLowerCase(Locale.ROOT));
+			}
+		}
+		Map<String, List<List<String>>> byTable = new HashMap<>();
+		for (Map<String, List<String>> side : List.of(referencing, referenced)) {
+			side.forEach((key, columns) -> byTable.computeIfAbsent(key.substring(0, key.indexOf('|')),
+				t -> new ArrayList<>()).add(columns));
+		}
+		return byTable;
+	}
+
+	private static List<String> tables(Connection conn) throws SQLException {
+		List<String> tables = new ArrayList<>();
+		try (Statement stmt = conn.createStatement();
+		     ResultSet rs = stmt.executeQuery("SELECT TABLE_NAME FROM information_schema.TABLES "
+		     	+ "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_TYPE = 'BASE TABLE'")) {
+			while (rs.next()) {
+				tables.add(rs.getString(1));
+			}
+		}
+		return tables;
+	}
+
+	private Map<String, Long> indexSizes(Connection conn) {
+		Map<String, Long> sizes = new HashMap<>();
+		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(INDEX_SIZE_SQL)) {
+			while (rs.next()) {
+				sizes.put(key(rs.getString("table_name"), rs.getString("index_name")), rs.getLong("bytes"));
+			}
+		} catch (SQLException e) {
+			logger.debug("[MYSQL_INDEX_USAGE] Index sizes unavailable | schema={} | error=\"{}\"", schema, e.getMessage());
+		}
+		return sizes;
+	}
+
+	/**
+	 * Inserts, updates and deletes per hour since server start; every insert
+	 * and delete maintains each secondary index, updates only when they touch
+	 * its columns.
+	 */
+	private Map<String, Long> tableWritesPerHour(Connection conn, long now) throws SQLException {
+		double hours = Math.max(1.0 / 60, (now - firstSampleNanos) / 3.6e12);
+		Map<String, Long> writes = new HashMap<>();
+		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(TABLE_WRITES_SQL)) {
+			while (rs.next()) {
+				long total = rs.getLong("COUNT_INSERT") + rs.getLong("COUNT_UPDATE") + rs.getLong("COUNT_DELETE");
+				writes.put(rs.getString("OBJECT_NAME").toLowerCase(Locale.ROOT), firstSampleNanos == 0 ? -1 : (long) (total / hours));
+			}
+		}
+		return writes;
+	}
+
+	private static String key(String table, String index) {
+		return (table + "." + index).toLowerCase(Locale.ROOT);
+	}
+}
@@ -0,0 +1,47 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.diagnostics;
+
+/**
+ * Severity of a diagnostic finding. INFO ranks like OK; it only marks a
+ * datasource that is not configured.
+ *
+ * @author Piramal Swasthya
+ */
+public enum Severity {
+
+	OK(0), INFO(0), WARNING(1), CRITICAL(2);
+
+	private final int rank;
+
+	Severity(int rank) {
+		this.rank = rank;
+	}
+
+	public Severity escalate(Severity candidate) {
+		return candidate.rank > rank ? candidate : this;
+	}
+
+	public boolean isAtLeast(Severity other) {
+		return rank >= other.rank;
+	}
+}
@@ -0,0 +1,322 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.diagnostics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Per-interval statement statistics of one schema from
+ * {@code performance_schema.events_statements_summary_by_digest}.
+ *
+ * <p>Each sample reads only the numeric counters of digests seen since the
+ * previous sample and diffs them against a compact map of cumulative values
+ * keyed by digest. The digests that rank highest by any {@link Ranking} are
+ * then looked up once more for their text, so the (large) statement texts are
+ * never pulled for the whole table. The first sample only sets the baseline.</p>
+ *
+ * @author Piramal Swasthya
+ */
+public class StatementDigestAnalyzer {
+
+	private static final Logger logger = LoggerFactory.getLogger(StatementDigestAnalyzer.class);
+
+	/** Candidates kept per ranking; also the largest top-N that can be served. */
+	public static final int MAX_TOP = 50;
+
+	private static final int MAX_TRACKED_DIGESTS = 20_000;
+	private static final int MAX_TEXT_LENGTH = 2000;
+	private static final int ER_BAD_FIELD = 1054;
+
+	private static final String SERVER_TIME_SQL = "SELECT NOW(6)";
+
+	// Timer columns are picoseconds (BIGINT UNSIGNED); reduce to microseconds so they fit a long
+	private static final String COUNTERS_SQL = "SELECT DIGEST, COUNT_STAR, SUM_TIMER_WAIT DIV 1000000 AS sum_timer_us, "
+		+ "SUM_ROWS_EXAMINED, SUM_ROWS_SENT, SUM_NO_INDEX_USED, SUM_NO_GOOD_INDEX_USED "
+		+ "FROM performance_schema.events_statements_summary_by_digest "
+		+ "WHERE SCHEMA_NAME = DATABASE() AND DIGEST IS NOT NULL AND LAST_SEEN >= ?";
+
+	private static final String TEXT_SQL = "SELECT DIGEST, DIGEST_TEXT, QUERY_SAMPLE_TEXT "
+		+ "FROM performance_schema.events_statements_summary_by_digest "
+		+ "WHERE SCHEMA_NAME = DATABASE() AND DIGEST IN (%s)";
+
+	// QUERY_SAMPLE_TEXT only exists from MySQL 8.0.3
+	private static final String TEXT_SQL_LEGACY = "SELECT DIGEST, DIGEST_TEXT, NULL AS QUERY_SAMPLE_TEXT "
+		+ "FROM performance_schema.events_statements_summary_by_digest "
+		+ "WHERE SCHEMA_NAME = DATABASE() AND DIGEST IN (%s)";
+
+	// Offsets into the per-digest counter arrays
+	private static final int CALLS = 0;
+	private static final int TIMER_US = 1;
+	private static final int ROWS_EXAMINED = 2;
+	private static final int ROWS_SENT = 3;
+	private static final int NO_INDEX = 4;
+	private static final int NO_GOOD_INDEX = 5;
+	private static final int LAST_INTERVAL_CALLS = 6;
+	private static final int LAST_INTERVAL_TIMER_US = 7;
+	private static final int SLOTS = 8;
+
+	public enum Ranking {
+		/** Total statement latency in the interval. */
+		LATENCY(Comparator.comparingDouble(DigestStats::totalLatencyMs)),
+		/** Rows examined per row sent, among statements examining at least 1000 rows. */
+		ROWS_EXAMINED(Comparator.comparingDouble((DigestStats d) -> d.rowsExamined() >= 1000 ? d.examinedPerRowSent() : 0)
+			.thenComparingLong(DigestStats::rowsExamined)),
+		/** Executions that used no index or no good index. */
+		NO_INDEX(Comparator.comparingLong((DigestStats d) -> d.noIndexUsed() + d.noGoodIndexUsed())
+			.thenComparingDouble(DigestStats::totalLatencyMs)),
+		/** Extra latency against the previous interval's average, weighted by calls. */
+		REGRESSION(Comparator.comparingDouble(DigestStats::regressionMs));
+
+		private final Comparator<DigestStats> order;
+
+		Ranking(Comparator<DigestStats> order) {
+			this.order = order.reversed();
+		}
+
+		public Comparator<DigestStats> order() {
+			return order;
+		}
+	}
+
+	/**
+	 * One digest's activity during the last interval.
+	 *
+	 * @param sampleText           one literal execution, kept for EXPLAIN only; it can carry patient
+	 *                             data, so it is never serialized into a response
+	 * @param previousAvgLatencyMs average latency in the interval before, or -1 when not seen then
+	 * @param regressionMs         (avg - previous avg) * calls; 0 without a previous average
+	 */
+	public record DigestStats(
+			String digest,
+			String digestText,
+			@JsonIgnore String sampleText,
+			long calls,
+			double totalLatencyMs,
+			double avgLatencyMs,
+			double previousAvgLatencyMs,
+			double regressionMs,
+			long rowsExamined,
+			long rowsSent,
+			double examinedPerRowSent,
+			long noIndexUsed,
+			long noGoodIndexUsed) {
+	}
+
+	/** Latest published interval. */
+	public record Sample(Instant sampledAt, long intervalSeconds, List<DigestStats> digests) {
+
+		static final Sample EMPTY = new Sample(null, 0, List.of());
+
+		public List<DigestStats> top(Ranking ranking, int limit) {
+			return digests.stream()
+				.sorted(ranking.order())
+				.limit(Math.max(1, Math.min(limit, MAX_TOP)))
+				.toList();
+		}
+	}
+
+	private final String schema;
+
+	// Only touched by the diagnostic run that owns this analyzer
+	private final Map<String, long[]> cumulative = new HashMap<>();
+	private Timestamp lastServerTime;
+	private long lastSampleNanos;
+	private boolean sampleTextSupported = true;
+
+	private volatile Sample latest = Sample.EMPTY;
+
+	public StatementDigestAnalyzer(String schema) {
+		this.schema = schema;
+	}
+
+	public Sample getLatest() {
+		return latest;
+	}
+
+	/**
+	 * Reads the counters changed since the previous call and publishes the
+	 * per-digest deltas; the first call only records the baseline.
+	 */
+	public void sample(Connection conn, int queryTimeoutSeconds) throws SQLException {
+		long now = System.nanoTime();
+		Timestamp serverTime;
+		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(SERVER_TIME_SQL)) {
+			rs.next();
+			serverTime = rs.getTimestamp(1);
+		}
+
+		boolean baseline = lastServerTime == null;
+		if (cumulative.size() > MAX_TRACKED_DIGESTS) {
+			// Digests evicted from the summary table are never reported as gone; start over
+			cumulative.clear();
+			baseline = true;
+		}
+
+		List<DigestStats> changed = new ArrayList<>();
+		try (PreparedStatement ps = conn.prepareStatement(COUNTERS_SQL)) {
+			ps.setQueryTimeout(queryTimeoutSeconds);
+			ps.setTimestamp(1, baseline ? new Timestamp(0) : lastServerTime);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					long[] current = {
+						rs.getLong("COUNT_STAR"), rs.getLong("sum_timer_us"), rs.getLong("SUM_ROWS_EXAMINED"),
+						rs.getLong("SUM_ROWS_SENT"), rs.getLong("SUM_NO_INDEX_USED"), rs.getLong("SUM_NO_GOOD_INDEX_USED")
+					};
+					DigestStats stats = update(rs.getString("DIGEST"), current);
+					if (!baseline && stats != null) {
+						changed.add(stats);
+					}
+				}
+			}
+		}
+
+		long intervalSeconds = lastSampleNanos == 0 ? 0 : Duration.ofNanos(now - lastSampleNanos).toSeconds();
+		lastServerTime = serverTime;
+		lastSampleNanos = now;
+		if (baseline) {
+			return;
+		}
+
+		Set<String> candidates = new LinkedHashSet<>();
+		for (Ranking ranking : Ranking.values()) {
+			changed.stream().sorted(ranking.order()).limit(MAX_TOP).forEach(d -> candidates.add(d.digest()));
+		}
+		Map<String, String[]> texts = loadTexts(conn, candidates, queryTimeoutSeconds);
+
+		List<DigestStats> published = new ArrayList<>(candidates.size());
+		for (DigestStats stats : changed) {
+			if (candidates.contains(stats.digest())) {
+				String[] text = texts.getOrDefault(stats.digest(), new String[2]);
+				published.add(withText(stats, text[0], text[1]));
+			}
+		}
+		latest = new Sample(Instant.now(), intervalSeconds, Collections.unmodifiableList(published));
+		logger.debug("[MYSQL_DIGEST_SAMPLE] Statement digests sampled | schema={} | changed={} | published={}",
+			schema, changed.size(), published.size());
+	}
+
+	/**
+	 * Stores the cumulative counters of {@code digest} and returns its delta,
+	 * or null when nothing ran since the previous sample.
+	 */
+	private DigestStats update(String digest, long[] current) {
+		long[] previous = cumulative.get(digest);
+		long[] delta = new long[NO_GOOD_INDEX + 1];
+		// A smaller count means the row was reset or evicted and re-added
+		boolean reset = previous == null || current[CALLS] < previous[CALLS];
+		for (int i = 0; i < delta.length; i++) {
+			delta[i] = reset ? current[i] : current[i] - previous[i];
+		}
+
+		long[] next = new long[SLOTS];
+		System.arraycopy(current, 0, next, 0, current.length);
+		if (delta[CALLS] == 0) {
+			if (previous != null) {
+				next[LAST_INTERVAL_CALLS] = previous[LAST_INTERVAL_CALLS];
+				next[LAST_INTERVAL_TIMER_US] = previous[LAST_INTERVAL_TIMER_US];
+			}
+			cumulative.put(digest, next);
+			return null;
+		}
+		next[LAST_INTERVAL_CALLS] = delta[CALLS];
+		next[LAST_INTERVAL_TIMER_US] = delta[TIMER_US];
+		cumulative.put(digest, next);
+
+		double totalMs = delta[TIMER_US] / 1000.0;
+		double avgMs = totalMs / delta[CALLS];
+		double previousAvgMs = previous != null && previous[LAST_INTERVAL_CALLS] > 0
+			? previous[LAST_INTERVAL_TIMER_US] / 1000.0 / previous[LAST_INTERVAL_CALLS]
+			: -1;
+		double regressionMs = previousAvgMs >= 0 ? Math.max(0, (avgMs - previousAvgMs) * delta[CALLS]) : 0;
+		return new DigestStats(digest, null, null, delta[CALLS], totalMs, avgMs, previousAvgMs, regressionMs,
+			delta[ROWS_EXAMINED], delta[ROWS_SENT], (double) delta[ROWS_EXAMINED] / Math.max(1, delta[ROWS_SENT]),
+			delta[NO_INDEX], delta[NO_GOOD_INDEX]);
+	}
+
+	private Map<String, String[]> loadTexts(Connection conn, Set<String> digests, int queryTimeoutSeconds)
+			throws SQLException {
+		Map<String, String[]> texts = new LinkedHashMap<>();
+		if (digests.isEmpty()) {
+			return texts;
+		}
+		String placeholders = String.join(",", Collections.nCopies(digests.size(), "?"));
+		try {
+			readTexts(conn, String.format(sampleTextSupported ? TEXT_SQL : TEXT_SQL_LEGACY, placeholders), digests,
+				queryTimeoutSeconds, texts);
+		} catch (SQLException e) {
+			if (!sampleTextSupported || e.getErrorCode() != ER_BAD_FIELD) {
+				throw e;
+			}
+			sampleTextSupported = false;
+			readTexts(conn, String.format(TEXT_SQL_LEGACY, placeholders), digests, queryTimeoutSeconds, texts);
+		}
+		return texts;
+	}
+
+	private static void readTexts(Connection conn, String sql, Set<String> digests, int queryTimeoutSeconds,
+			Map<String, String[]> texts) throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			ps.setQueryTimeout(queryTimeoutSeconds);
+			int index = 1;
+			for (String digest : digests) {
+				ps.setString(index++, digest);
+			}
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					texts.put(rs.getString("DIGEST"),
+						new String[] { truncate(rs.getString("DIGEST_TEXT")), truncate(rs.getString("QUERY_SAMPLE_TEXT")) });
+				}
+			}
+		}
+	}
+
+	private static DigestStats withText(DigestStats stats, String digestText, String sampleText) {
+		return new DigestStats(stats.digest(), digestText, sampleText, stats.calls(), stats.totalLatencyMs(),
+			stats.avgLatencyMs(), stats.previousAvgLatencyMs(), stats.regressionMs(), stats.rowsExamined(),
+			stats.rowsSent(), stats.examinedPerRowSent(), stats.noIndexUsed(), stats.noGoodIndexUsed());
+	}
+
+	private static String truncate(String text) {
+		return text == null || text.length() <= MAX_TEXT_LENGTH ? text : text.substring(0, MAX_TEXT_LENGTH);
+	}
+}
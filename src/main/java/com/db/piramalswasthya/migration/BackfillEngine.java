@@ -0,0 +1,185 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.db.piramalswasthya.migration.CheckpointStore.Checkpoint;
+import com.db.piramalswasthya.migration.CheckpointStore.Status;
+
+/**
+ * Runs a {@link BackfillJob} as a series of small transactions over primary-key
+ * ranges instead of one table-wide statement. Each chunk commits together with
+ * its checkpoint, so undo and replication stay bounded and a restarted
+ * migration continues after the last committed chunk. The batch size follows
+ * the measured chunk latency towards {@code amrit.migration.backfill.target-chunk-time}.
+ *
+ * @author Piramal Swasthya
+ */
+@Component
+public class BackfillEngine {
+
+	private static final Logger logger = LoggerFactory.getLogger(BackfillEngine.class);
+
+	private final MigrationProperties.Backfill config;
+	private final MigrationStatusRegistry registry;
+
+	public BackfillEngine(MigrationProperties properties, MigrationStatusRegistry registry) {
+		this.config = properties.getBackfill();
+		this.registry = registry;
+	}
+
+	/**
+	 * Runs (or resumes) {@code job} on {@code connection}, leaving the
+	 * connection's auto-commit setting as it was.
+	 *
+	 * @return total rows changed by the job, including earlier runs
+	 */
+	public long run(String schema, Connection connection, BackfillJob job) throws SQLException {
+		CheckpointStore checkpoints = new CheckpointStore(connection);
+		Optional<Checkpoint> previous = checkpoints.load(job.getName());
+		if (previous.isPresent() && previous.get().status() == Status.DONE) {
+			logger.info("[BACKFILL_SKIPPED] Already completed | schema={} | job={} | rows={}", schema, job.getName(),
+				previous.get().rowsProcessed());
+			return previous.get().rowsProcessed();
+		}
+
+		Long maxKey = queryKey(connection, "SELECT MAX(" + key(job) + ") FROM " + table(job), null);
+		long lastKey = previous.map(Checkpoint::lastKey).orElseGet(() -> minKeyExclusive(connection, job));
+		long rows = previous.map(Checkpoint::rowsProcessed).orElse(0L);
+		int batchSize = previous.map(Checkpoint::batchSize).orElse(config.getInitialBatchSize());
+		previous.ifPresent(cp -> logger.info("[BACKFILL_RESUMED] schema={} | job={} | lastKey={} | rows={}", schema,
+			job.getName(), cp.lastKey(), cp.rowsProcessed()));
+
+		SchemaMigrationStatus status = registry.forSchema(schema);
+		boolean autoCommit = connection.getAutoCommit();
+		long start = System.nanoTime();
+		int chunks = 0;
+		connection.setAutoCommit(false);
+		try {
+			while (maxKey != null && lastKey < maxKey) {
+				Long upperKey = queryKey(connection, "SELECT " + key(job) + " FROM " + table(job) + " WHERE " + key(job)
+					+ " > ? ORDER BY " + key(job) + " LIMIT 1 OFFSET " + (batchSize - 1), lastKey);
+				long chunkEnd = upperKey == null ? maxKey : Math.min(upperKey, maxKey);
+
+				long chunkStart = System.nanoTime();
+				int changed;
+				try (PreparedStatement ps = connection.prepareStatement(job.getChunkSql())) {
+					ps.setLong(1, lastKey);
+					ps.setLong(2, chunkEnd);
+					changed = ps.executeUpdate();
+				}
+				rows += changed;
+				lastKey = chunkEnd;
+				checkpoints.save(new Checkpoint(job.getName(), lastKey, rows, batchSize, Status.RUNNING));
+				connection.commit();
+				chunks++;
+
+				long chunkMs = (System.nanoTime() - chunkStart) / 1_000_000;
+				batchSize = nextBatchSize(batchSize, chunkMs);
+				status.setCurrentOperation(String.format("backfill %s: key %d of %d, %d rows", job.getName(), lastKey,
+					maxKey, rows));
+				logger.debug("[BACKFILL_CHUNK] schema={} | job={} | upToKey={} | changed={} | chunkMs={} | nextBatch={}",
+					schema, job.getName(), lastKey, changed, chunkMs, batchSize);
+				pause(config.getPauseBetweenChunks());
+			}
+			checkpoints.save(new Checkpoint(job.getName(), lastKey, rows, batchSize, Status.DONE));
+			connection.commit();
+		} catch (SQLException | RuntimeException e) {
+			connection.rollback();
+			logger.error("[BACKFILL_FAILED] schema={} | job={} | lastCommittedKey={} | error=\"{}\"", schema,
+				job.getName(), lastKey, e.getMessage());
+			throw e;
+		} finally {
+			connection.setAutoCommit(autoCommit);
+			status.setCurrentOperation(null);
+		}
+
+		logger.info("[BACKFILL_DONE] schema={} | job={} | rows={} | chunks={} | durationMs={}", schema, job.getName(),
+			rows, chunks, (System.nanoTime() - start) / 1_000_000);
+		return rows;
+	}
+
+	/**
+	 * Scales the batch towards the target latency, by at most a factor of two
+	 * per chunk so a single slow or fast chunk does not swing it wildly.
+	 */
+	int nextBatchSize(int batchSize, long chunkMs) {
+		long targetMs = config.getTargetChunkTime().toMillis();
+		double factor = chunkMs <= 0 ? 2.0 : Math.max(0.5, Math.min(2.0, (double) targetMs / chunkMs));
+		int next = (int) Math.round(batchSize * factor);
+		return Math.max(config.getMinBatchSize(), Math.min(config.getMaxBatchSize(), next));
+	}
+
+	private static long minKeyExclusive(Connection connection, BackfillJob job) {
+		try {
+			Long min = queryKey(connection, "SELECT MIN(" + key(job) + ") FROM " + table(job), null);
+			return min == null ? 0 : min - 1;
+		} catch (SQLException e) {
+			throw new IllegalStateException("Cannot read key range of " + job.getTable(), e);
+		}
+	}
+
+	private static Long queryKey(Connection connection, String sql, Long parameter) throws SQLException {
+		try (PreparedStatement ps = connection.prepareStatement(sql)) {
+			if (parameter != null) {
+				ps.setLong(1, parameter);
+			}
+			try (ResultSet rs = ps.executeQuery()) {
+				if (!rs.next()) {
+					return null;
+				}
+				long value = rs.getLong(1);
+				return rs.wasNull() ? null : value;
+			}
+		}
+	}
+
+	private static String table(BackfillJob job) {
+		return SchemaChangeSet.quote(job.getTable());
+	}
+
+	private static String key(BackfillJob job) {
+		return SchemaChangeSet.quote(job.getKeyColumn());
+	}
+
+	private static void pause(Duration pause) {
+		if (pause.isZero() || pause.isNegative()) {
+			return;
+		}
+		try {
+			Thread.sleep(pause.toMillis());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted during backfill", e);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.util.Objects;
+
+import lombok.Getter;
+
+/**
+ * Definition of a chunked backfill over a table with a numeric primary key.
+ * The chunk statement receives the exclusive lower and inclusive upper key of
+ * each chunk as its two parameters, e.g.
+ *
+ * <pre>
+ * BackfillJob.of("V96_visit_fiscal_year", "t_benvisitdetail", "BenVisitID",
+ *     "UPDATE t_benvisitdetail SET FiscalYear = YEAR(VisitDateTime) "
+ *     + "WHERE BenVisitID &gt; ? AND BenVisitID &lt;= ? AND FiscalYear IS NULL");
+ * </pre>
+ *
+ * The statement must be safe to re-run for a chunk, since a chunk interrupted
+ * before its commit is processed again on resume.
+ *
+ * @author Piramal Swasthya
+ */
+@Getter
+public class BackfillJob {
+
+	private final String name;
+	private final String table;
+	private final String keyColumn;
+	private final String chunkSql;
+
+	private BackfillJob(String name, String table, String keyColumn, String chunkSql) {
+		this.name = Objects.requireNonNull(name, "name");
+		this.table = Objects.requireNonNull(table, "table");
+		this.keyColumn = Objects.requireNonNull(keyColumn, "keyColumn");
+		this.chunkSql = Objects.requireNonNull(chunkSql, "chunkSql");
+	}
+
+	/**
+	 * @param name unique, stable job name; it keys the checkpoint
+	 */
+	public static BackfillJob of(String name, String table, String keyColumn, String chunkSql) {
+		return new BackfillJob(name, table, keyColumn, chunkSql);
+	}
+}
@@ -0,0 +1,230 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Consolidated schema of one database at a given migration version, generated
+ * by {@code BaselineSnapshotGenerator} (src/tools) into {@code db/baseline/<schema>.sql}.
+ * The file is plain SQL in mysql-client syntax (statements end with the current
+ * {@code DELIMITER}) preceded by a header:
+ *
+ * <pre>
+ * -- baseline-version: 93
+ * -- manifest-digest: 1a2b3c4d
+ * </pre>
+ *
+ * The digest covers the manifest checksums of every script up to the baseline
+ * version, so a snapshot is ignored once any of those scripts changes.
+ *
+ * @author Piramal Swasthya
+ */
+public class BaselineSnapshot {
+
+	private static final Logger logger = LoggerFactory.getLogger(BaselineSnapshot.class);
+
+	static final String LOCATION = "db/baseline/";
+	static final String FILE_SUFFIX = ".sql";
+	static final String VERSION_HEADER = "-- baseline-version: ";
+	static final String DIGEST_HEADER = "-- manifest-digest: ";
+	static final String DEFAULT_DELIMITER = ";";
+
+	private final String schema;
+	private final String version;
+	private final String manifestDigest;
+	private final List<String> statements;
+
+	BaselineSnapshot(String schema, String version, String manifestDigest, List<String> statements) {
+		this.schema = schema;
+		this.version = version;
+		this.manifestDigest = manifestDigest;
+		this.statements = List.copyOf(statements);
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	public List<String> getStatements() {
+		return statements;
+	}
+
+	public static Optional<BaselineSnapshot> load(String schema) {
+		ClassLoader classLoader = BaselineSnapshot.class.getClassLoader();
+		try (InputStream in = classLoader.getResourceAsStream(LOCATION + schema + FILE_SUFFIX)) {
+			if (in == null) {
+				return Optional.empty();
+			}
+			return Optional.of(parse(schema, new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))));
+		} catch (IOException | RuntimeException e) {
+			throw new IllegalStateException("Unreadable baseline snapshot for schema " + schema, e);
+		}
+	}
+
+	private static BaselineSnapshot parse(String schema, BufferedReader reader) throws IOException {
+		String version = null;
+		String digest = null;
+		String delimiter = DEFAULT_DELIMITER;
+		List<String> statements = new ArrayList<>();
+		StringBuilder current = new StringBuilder();
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (current.length() == 0) {
+				if (line.startsWith(VERSION_HEADER)) {
+					version = line.substring(VERSION_HEADER.length()).trim();
+					continue;
+				}
+				if (line.startsWith(DIGEST_HEADER)) {
+					digest = line.substring(DIGEST_HEADER.length()).trim();
+					continue;
+				}
+				if (line.isBlank() || line.startsWith("--")) {
+					continue;
+				}
+				if (line.regionMatches(true, 0, "DELIMITER ", 0, 10)) {
+					delimiter = line.substring(10).trim();
+					continue;
+				}
+			}
+			if (line.stripTrailing().endsWith(delimiter)) {
+				String end = line.stripTrailing();
+				current.append(end, 0, end.length() - delimiter.length());
+				statements.add(current.toString().trim());
+				current.setLength(0);
+			} else {
+				current.append(line).append('\n');
+			}
+		}
+		if (version == null || digest == null) {
+			throw new IllegalStateException("Baseline snapshot header incomplete");
+		}
+		return new BaselineSnapshot(schema, version, digest, statements);
+	}
+
+	/**
+	 * CRC32 over version and checksum of every manifest script up to and
+	 * including {@code upTo}, in manifest order.
+	 */
+	static String manifestDigest(MigrationManifest manifest, MigrationVersion upTo) {
+		CRC32 crc = new CRC32();
+		for (MigrationManifest.Entry entry : manifest.getEntries()) {
+			if (MigrationVersion.fromVersion(entry.version()).compareTo(upTo) <= 0) {
+				crc.update((entry.version() + ":" + entry.checksum() + "\n").getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		return HexFormat.of().toHexDigits((int) crc.getValue());
+	}
+
+	/**
+	 * Loads the snapshot into an empty database and records it as Flyway
+	 * baseline, after which a normal migrate applies only newer scripts.
+	 *
+	 * @param javaVersions Java migrations registered for the schema; a snapshot
+	 *        that would baseline over one of them is not used, since the
+	 *        generator does not run Java migrations
+	 * @return true when the snapshot was applied
+	 */
+	public boolean provision(Flyway flyway, Collection<MigrationVersion> javaVersions, SchemaMigrationStatus status)
+			throws SQLException {
+		MigrationVersion baselineVersion = MigrationVersion.fromVersion(version);
+		Optional<MigrationManifest> manifest = MigrationManifest.load(schema);
+		if (manifest.isEmpty() || !manifestDigest(manifest.get(), baselineVersion).equals(manifestDigest)) {
+			logger.warn("[FLYWAY_BASELINE_SNAPSHOT] Snapshot does not match the shipped scripts, replaying migrations | schema={} | version={}",
+				schema, version);
+			return false;
+		}
+		if (javaVersions.stream().anyMatch(v -> v.compareTo(baselineVersion) <= 0)) {
+			logger.warn("[FLYWAY_BASELINE_SNAPSHOT] Java migrations at or below the snapshot version, replaying migrations | schema={} | version={}",
+				schema, version);
+			return false;
+		}
+
+		DataSource dataSource = flyway.getConfiguration().getDataSource();
+		try (Connection connection = dataSource.getConnection(); Statement stmt = connection.createStatement()) {
+			if (!isEmpty(stmt)) {
+				return false;
+			}
+			logger.info("[FLYWAY_BASELINE_SNAPSHOT] Empty database, loading snapshot | schema={} | version={} | statements={}",
+				schema, version, statements.size());
+			long start = System.nanoTime();
+			stmt.execute("SET SESSION unique_checks = 0");
+			try {
+				for (int i = 0; i < statements.size(); i++) {
+					if (i % 100 == 0) {
+						status.setCurrentOperation("loading baseline snapshot: statement " + (i + 1) + " of " + statements.size());
+					}
+					try {
+						stmt.execute(statements.get(i));
+					} catch (SQLException e) {
+						// DDL is not transactional; the partial schema has to be dropped by hand
+						logger.error("[FLYWAY_BASELINE_SNAPSHOT] Snapshot load failed, recreate the empty database before retrying | schema={} | statement={} | error=\"{}\"",
+							schema, i + 1, e.getMessage());
+						throw e;
+					}
+				}
+			} finally {
+				// The connection goes back to the pool, so the session must not keep unique checks off
+				stmt.execute("SET SESSION unique_checks = 1");
+			}
+			logger.info("[FLYWAY_BASELINE_SNAPSHOT] Snapshot loaded | schema={} | durationMs={}", schema,
+				(System.nanoTime() - start) / 1_000_000);
+		} finally {
+			status.setCurrentOperation(null);
+		}
+
+		Flyway.configure()
+			.configuration(flyway.getConfiguration())
+			.baselineVersion(baselineVersion)
+			.baselineDescription("AMRIT baseline snapshot")
+			.load()
+			.baseline();
+		return true;
+	}
+
+	private static boolean isEmpty(Statement stmt) throws SQLException {
+		try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE()")) {
+			return rs.next() && rs.getLong(1) == 0;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Optional;
+
+/**
+ * Progress markers of long-running, resumable data jobs (backfills and the
+ * like), kept in {@value #TABLE} of the schema the job works on. Writing the
+ * checkpoint on the job's own connection lets it commit together with the
+ * chunk it describes, so a restart resumes exactly after the last committed chunk.
+ * The table is created by the {@code amrit_job_checkpoint} script of each
+ * schema's migrations.
+ *
+ * @author Piramal Swasthya
+ */
+public class CheckpointStore {
+
+	public static final String TABLE = "amrit_job_checkpoint";
+
+	public enum Status {
+		RUNNING, DONE
+	}
+
+	public record Checkpoint(String job, long lastKey, long rowsProcessed, int batchSize, Status status) {
+	}
+
+	private static final String UPSERT_SQL = "INSERT INTO " + TABLE
+		+ " (job_name, last_key, rows_processed, batch_size, status) VALUES (?, ?, ?, ?, ?) "
+		+ "ON DUPLICATE KEY UPDATE last_key = VALUES(last_key), rows_processed = VALUES(rows_processed), "
+		+ "batch_size = VALUES(batch_size), status = VALUES(status)";
+
+	private final Connection connection;
+
+	public CheckpointStore(Connection connection) {
+		this.connection = connection;
+	}
+
+	public Optional<Checkpoint> load(String job) throws SQLException {
+		try (PreparedStatement ps = connection.prepareStatement(
+			"SELECT last_key, rows_processed, batch_size, status FROM " + TABLE + " WHERE job_name = ?")) {
+			ps.setString(1, job);
+			try (ResultSet rs = ps.executeQuery()) {
+				if (!rs.next()) {
+					return Optional.empty();
+				}
+				return Optional.of(new Checkpoint(job, rs.getLong("last_key"), rs.getLong("rows_processed"),
+					rs.getInt("batch_size"), Status.valueOf(rs.getString("status"))));
+			}
+		}
+	}
+
+	/** Writes the checkpoint in the connection's current transaction; the caller commits. */
+	public void save(Checkpoint checkpoint) throws SQLException {
+		try (PreparedStatement ps = connection.prepareStatement(UPSERT_SQL)) {
+			ps.setString(1, checkpoint.job());
+			ps.setLong(2, checkpoint.lastKey());
+			ps.setLong(3, checkpoint.rowsProcessed());
+			ps.setInt(4, checkpoint.batchSize());
+			ps.setString(5, checkpoint.status().name());
+			ps.executeUpdate();
+		}
+	}
+}
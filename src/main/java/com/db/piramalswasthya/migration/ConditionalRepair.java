@@ -0,0 +1,114 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.exception.FlywayValidateException;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.flywaydb.core.api.output.RepairOutput;
+import org.flywaydb.core.api.output.RepairResult;
+import org.flywaydb.core.api.output.ValidateOutput;
+import org.flywaydb.core.api.output.ValidateResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Migrates a schema according to the configured {@link MigrationProperties.RepairMode}.
+ *
+ * <p>In VALIDATE_FIRST mode the validation Flyway performs as part of
+ * {@code migrate()} is the cheap check: a healthy schema is migrated without any
+ * repair pass. Only when that validation fails are the offending versions
+ * listed, {@code repair()} run for this schema, and the migration retried. Each
+ * repair action is logged so checksum drift is never hidden.</p>
+ *
+ * @author Piramal Swasthya
+ */
+public class ConditionalRepair {
+
+	private static final Logger logger = LoggerFactory.getLogger(ConditionalRepair.class);
+
+	private final MigrationProperties.RepairMode repairMode;
+
+	public ConditionalRepair(MigrationProperties.RepairMode repairMode) {
+		this.repairMode = repairMode;
+	}
+
+	public record Outcome(MigrateResult migrateResult, List<String> repairs) {
+	}
+
+	public Outcome migrate(String schema, Flyway flyway) {
+		switch (repairMode) {
+			case ALWAYS:
+				List<String> repairs = describe(flyway.repair());
+				return new Outcome(flyway.migrate(), repairs);
+			case NEVER:
+				return new Outcome(flyway.migrate(), List.of());
+			default:
+				try {
+					return new Outcome(flyway.migrate(), List.of());
+				} catch (FlywayValidateException e) {
+					return repairAndRetry(schema, flyway);
+				}
+		}
+	}
+
+	private Outcome repairAndRetry(String schema, Flyway flyway) {
+		ValidateResult validation = Flyway.configure(flyway.getConfiguration().getClassLoader())
+			.configuration(flyway.getConfiguration())
+			.ignoreMigrationPatterns("*:pending", "*:future")
+			.load()
+			.validateWithResult();
+
+		for (ValidateOutput invalid : validation.invalidMigrations) {
+			logger.warn("[FLYWAY_VALIDATION_FAILED] Migration failed validation | schema={} | version={} | script={} | errorCode={} | error=\"{}\"",
+				schema, invalid.version, invalid.filepath,
+				invalid.errorDetails != null ? invalid.errorDetails.errorCode : null,
+				invalid.errorDetails != null ? invalid.errorDetails.errorMessage : null);
+		}
+
+		List<String> repairs = describe(flyway.repair());
+		logger.warn("[FLYWAY_REPAIRED] Repaired schema history after failed validation | schema={} | invalidVersions={} | repairs={}",
+			schema,
+			validation.invalidMigrations.stream().map(v -> v.version).collect(Collectors.toList()),
+			repairs);
+
+		return new Outcome(flyway.migrate(), repairs);
+	}
+
+	private static List<String> describe(RepairResult result) {
+		List<String> repairs = new ArrayList<>();
+		describe(repairs, "aligned checksum", result.migrationsAligned);
+		describe(repairs, "removed failed", result.migrationsRemoved);
+		describe(repairs, "marked deleted", result.migrationsDeleted);
+		return repairs;
+	}
+
+	private static void describe(List<String> repairs, String action, List<RepairOutput> outputs) {
+		if (outputs != null) {
+			outputs.forEach(o -> repairs.add(action + " V" + o.version + " (" + o.description + ")"));
+		}
+	}
+}
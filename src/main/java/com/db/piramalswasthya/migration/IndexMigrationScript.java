@@ -0,0 +1,140 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.flywaydb.core.api.MigrationVersion;
+
+/**
+ * Renders index changes as a versioned migration script in the idempotent
+ * style of the hand-written index scripts (see
+ * {@code dbidentity/V18__db_identity_performanceidx.sql}): every statement is
+ * guarded by an {@code information_schema.statistics} lookup and run through
+ * PREPARE/EXECUTE, so the script is safe on databases where someone already
+ * created the index by hand.
+ *
+ * @author Piramal Swasthya
+ */
+public final class IndexMigrationScript {
+
+	/** One index to add; {@code comment} is written above its statement. */
+	public record IndexSpec(String table, String indexName, List<String> columns, String comment) {
+	}
+
+	private IndexMigrationScript() {
+	}
+
+	/**
+	 * @param javaVersions versions of the Java migrations of {@code schema},
+	 *                     which the SQL manifest does not list
+	 * @return the next major version after the newest script of {@code schema}
+	 *         in the build-time manifest or Java migration
+	 */
+	public static String nextVersion(String schema, Collection<MigrationVersion> javaVersions) {
+		MigrationManifest manifest = MigrationManifest.load(schema)
+			.orElseThrow(() -> new IllegalStateException("No migration manifest for schema " + schema));
+		BigInteger latest = Stream.concat(
+				manifest.getEntries().stream().map(entry -> MigrationVersion.fromVersion(entry.version())),
+				javaVersions.stream())
+			.max(MigrationVersion::compareTo)
+			.map(MigrationVersion::getMajor)
+			.orElse(BigInteger.ZERO);
+		return latest.add(BigInteger.ONE).toString();
+	}
+
+	public static String fileName(String version, String database, String description) {
+		return "V" + version + "__" + database + "_" + description + ".sql";
+	}
+
+	/**
+	 * @param header comment lines written at the top of the script
+	 */
+	public static String addIndexes(String database, List<String> header, List<IndexSpec> indexes) {
+		return render(database, header, indexes, index -> guarded(database, index.table(), index.indexName(), false,
+			"ALTER TABLE " + index.table() + "\n     ADD INDEX " + index.indexName() + "\n     ("
+				+ String.join(", ", index.columns()) + "),\n     ALGORITHM=INPLACE,\n     LOCK=NONE",
+			index.indexName() + " already exists"));
+	}
+
+	/**
+	 * Makes each index invisible to the optimizer while it is still maintained,
+	 * the reversible first step before dropping it (MySQL 8.0+).
+	 */
+	public static String makeInvisible(String database, List<String> header, List<IndexSpec> indexes) {
+		return render(database, header, indexes, index -> guarded(database, index.table(), index.indexName(), true,
+			"ALTER TABLE " + index.table() + "\n     ALTER INDEX " + index.indexName() + " INVISIBLE",
+			index.indexName() + " does not exist"));
+	}
+
+	/**
+	 * Drops each index; the comment should carry its columns so it can be recreated.
+	 */
+	public static String dropIndexes(String database, List<String> header, List<IndexSpec> indexes) {
+		return render(database, header, indexes, index -> guarded(database, index.table(), index.indexName(), true,
+			"ALTER TABLE " + index.table() + "\n     DROP INDEX " + index.indexName() + ",\n"
+				+ "     ALGORITHM=INPLACE,\n     LOCK=NONE",
+			index.indexName() + " already dropped"));
+	}
+
+	private static String render(String database, List<String> header, List<IndexSpec> indexes,
+			Function<IndexSpec, String> statement) {
+		StringBuilder script = new StringBuilder();
+		header.forEach(line -> script.append("-- ").append(line).append('\n'));
+		script.append("USE ").append(database).append(";\n");
+		for (IndexSpec index : indexes) {
+			script.append('\n');
+			if (index.comment() != null) {
+				script.append("-- ").append(index.comment()).append('\n');
+			}
+			script.append(statement.apply(index));
+		}
+		return script.toString();
+	}
+
+	/**
+	 * One guarded statement: {@code ddl} runs only while the index exists
+	 * ({@code whenPresent}) or is missing, otherwise {@code skipMessage} is selected.
+	 */
+	static String guarded(String database, String table, String indexName, boolean whenPresent, String ddl,
+			String skipMessage) {
+		return "SET @idx_exists = (\n"
+			+ "    SELECT COUNT(*)\n"
+			+ "    FROM information_schema.statistics\n"
+			+ "    WHERE table_schema = '" + database + "'\n"
+			+ "      AND table_name = '" + table + "'\n"
+			+ "      AND index_name = '" + indexName + "'\n"
+			+ ");\n\n"
+			+ "SET @sql = IF(\n"
+			+ "    @idx_exists " + (whenPresent ? "> 0" : "= 0") + ",\n"
+			+ "    '" + ddl.replace("'", "''") + "',\n"
+			+ "    'SELECT ''" + skipMessage.replace("'", "''''") + "'''\n"
+			+ ");\n\n"
+			+ "PREPARE stmt FROM @sql;\n"
+			+ "EXECUTE stmt;\n"
+			+ "DEALLOCATE PREPARE stmt;\n";
+	}
+}
@@ -0,0 +1,187 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Decides with a single {@code flyway_schema_history} query whether a schema
+ * already contains every migration listed in its build-time manifest. When it
+ * does, Flyway's classpath scan, checksum recomputation and validation can be
+ * skipped entirely. Any doubt (no manifest, no history table, failed rows,
+ * checksum drift, pending versions) sends the schema down the normal Flyway path.
+ * Registered Java migrations carry no checksum and only need to be applied.
+ *
+ * @author Piramal Swasthya
+ */
+public class ManifestFastPath {
+
+	private static final Logger logger = LoggerFactory.getLogger(ManifestFastPath.class);
+
+	private static final String TYPE_BASELINE = "BASELINE";
+
+	private record AppliedRow(String type, Integer checksum, boolean success) {
+	}
+
+	private final String schema;
+	private final Optional<MigrationManifest> manifest;
+	private final List<MigrationVersion> javaVersions;
+
+	public ManifestFastPath(String schema) {
+		this(schema, List.of());
+	}
+
+	/**
+	 * @param javaVersions versions of the Java migrations registered for the
+	 *        schema; they are not in the manifest but must be applied as well
+	 */
+	public ManifestFastPath(String schema, Collection<MigrationVersion> javaVersions) {
+		this.schema = schema;
+		this.manifest = MigrationManifest.load(schema);
+		this.javaVersions = List.copyOf(javaVersions);
+	}
+
+	/**
+	 * @return the highest version shipped in this build, if a manifest is present
+	 */
+	public Optional<String> targetVersion() {
+		return manifest.flatMap(m -> Stream.concat(javaVersions.stream(), m.getEntries().stream()
+			.map(entry -> MigrationVersion.fromVersion(entry.version())))
+			.max(MigrationVersion::compareTo))
+			.map(MigrationVersion::getVersion);
+	}
+
+	/**
+	 * @return the current schema version when nothing is pending, empty otherwise
+	 */
+	public Optional<String> currentVersion(Flyway flyway) {
+		if (manifest.isEmpty()) {
+			logger.debug("[FLYWAY_FAST_PATH] No manifest on classpath | schema={}", schema);
+			return Optional.empty();
+		}
+
+		Map<MigrationVersion, AppliedRow> applied;
+		try {
+			applied = loadHistory(flyway.getConfiguration());
+		} catch (DataAccessException e) {
+			logger.debug("[FLYWAY_FAST_PATH] History table not readable | schema={} | error=\"{}\"", schema,
+				e.getMessage());
+			return Optional.empty();
+		}
+
+		MigrationVersion highest = null;
+		for (Map.Entry<MigrationVersion, AppliedRow> row : applied.entrySet()) {
+			if (!row.getValue().success()) {
+				logger.info("[FLYWAY_FAST_PATH] Failed migration recorded, using full Flyway path | schema={} | version={}",
+					schema, row.getKey());
+				return Optional.empty();
+			}
+			if (highest == null || row.getKey().compareTo(highest) > 0) {
+				highest = row.getKey();
+			}
+		}
+		MigrationVersion baseline = baselineOf(applied);
+
+		for (MigrationManifest.Entry entry : manifest.get().getEntries()) {
+			MigrationVersion version = MigrationVersion.fromVersion(entry.version());
+			if (baseline != null && version.compareTo(baseline) <= 0) {
+				continue;
+			}
+			AppliedRow row = applied.get(version);
+			if (row == null) {
+				logger.info("[FLYWAY_FAST_PATH] Pending migration found | schema={} | script={}", schema, entry.script());
+				return Optional.empty();
+			}
+			if (row.checksum() == null || row.checksum() != entry.checksum()) {
+				logger.info("[FLYWAY_FAST_PATH] Checksum differs from manifest | schema={} | script={} | applied={} | manifest={}",
+					schema, entry.script(), row.checksum(), entry.checksum());
+				return Optional.empty();
+			}
+		}
+		for (MigrationVersion version : javaVersions) {
+			if ((baseline == null || version.compareTo(baseline) > 0) && !applied.containsKey(version)) {
+				logger.info("[FLYWAY_FAST_PATH] Pending Java migration found | schema={} | version={}", schema, version);
+				return Optional.empty();
+			}
+		}
+
+		return Optional.ofNullable(highest).map(MigrationVersion::getVersion);
+	}
+
+	/**
+	 * Number of manifest scripts not applied yet, used for progress reporting;
+	 * -1 when it cannot be determined without asking Flyway.
+	 */
+	public int pendingCount(Flyway flyway) {
+		if (manifest.isEmpty()) {
+			return -1;
+		}
+		Map<MigrationVersion, AppliedRow> applied;
+		try {
+			applied = loadHistory(flyway.getConfiguration());
+		} catch (DataAccessException e) {
+			// No history table yet: a fresh schema runs every script
+			return manifest.get().getEntries().size() + javaVersions.size();
+		}
+		MigrationVersion baseline = baselineOf(applied);
+		return (int) Stream.concat(javaVersions.stream(), manifest.get().getEntries().stream()
+			.map(entry -> MigrationVersion.fromVersion(entry.version())))
+			.filter(version -> baseline == null || version.compareTo(baseline) > 0)
+			.filter(version -> !applied.containsKey(version) || !applied.get(version).success())
+			.count();
+	}
+
+	private static MigrationVersion baselineOf(Map<MigrationVersion, AppliedRow> applied) {
+		return applied.entrySet().stream()
+			.filter(row -> TYPE_BASELINE.equals(row.getValue().type()))
+			.map(Map.Entry::getKey)
+			.max(MigrationVersion::compareTo)
+			.orElse(null);
+	}
+
+	private Map<MigrationVersion, AppliedRow> loadHistory(Configuration configuration) {
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(configuration.getDataSource());
+		String sql = "SELECT version, type, checksum, success FROM " + configuration.getTable()
+			+ " WHERE version IS NOT NULL ORDER BY installed_rank";
+
+		Map<MigrationVersion, AppliedRow> applied = new HashMap<>();
+		List<Map.Entry<MigrationVersion, AppliedRow>> rows = jdbcTemplate.query(sql, (rs, rowNum) -> Map.entry(
+			MigrationVersion.fromVersion(rs.getString("version")),
+			new AppliedRow(rs.getString("type"), rs.getObject("checksum", Integer.class), rs.getBoolean("success"))));
+		// Later rows for the same version (re-applied after a repair) supersede earlier ones
+		rows.forEach(row -> applied.put(row.getKey(), row.getValue()));
+		return applied;
+	}
+}
@@ -0,0 +1,144 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.db.piramalswasthya.migration.SchemaMigrationStatus.Role;
+import com.db.piramalswasthya.migration.SchemaMigrationStatus.State;
+
+/**
+ * Elects one migration leader per schema across all replicas using a MySQL
+ * named lock ({@code GET_LOCK}) scoped to the target database. The leader runs
+ * the migration; followers either defer to it immediately (SKIP) or poll until
+ * the schema reaches the manifest version or the lock is released (WAIT). A
+ * follower that obtains the lock later simply becomes the leader, so a crashed
+ * leader does not stall the rollout.
+ *
+ * @author Piramal Swasthya
+ */
+public class MigrationCoordinator {
+
+	private static final Logger logger = LoggerFactory.getLogger(MigrationCoordinator.class);
+
+	private static final String LOCK_PREFIX = "amrit_migration:";
+
+	private final MigrationProperties.Coordination config;
+	private final MigrationStatusRegistry registry;
+
+	public MigrationCoordinator(MigrationProperties.Coordination config, MigrationStatusRegistry registry) {
+		this.config = config;
+		this.registry = registry;
+	}
+
+	public SchemaMigrationResult run(String schema, Flyway flyway, ManifestFastPath fastPath,
+			Supplier<SchemaMigrationResult> migration) {
+		if (config.getMode() == MigrationProperties.Coordination.Mode.NONE) {
+			return migration.get();
+		}
+
+		SchemaMigrationStatus status = registry.forSchema(schema);
+		DataSource dataSource = flyway.getConfiguration().getDataSource();
+		long start = System.nanoTime();
+
+		// GET_LOCK is bound to the session, so the connection is held until the lock is released
+		try (Connection lockConnection = dataSource.getConnection()) {
+			String lockName = LOCK_PREFIX + lockConnection.getCatalog();
+
+			if (tryLock(lockConnection, lockName, 0)) {
+				return lead(schema, status, lockConnection, lockName, migration);
+			}
+
+			logger.info("[FLYWAY_FOLLOWER] Migration lock held by another instance | schema={} | lock={} | mode={}",
+				schema, lockName, config.getMode());
+			if (config.getMode() == MigrationProperties.Coordination.Mode.SKIP) {
+				status.update(Role.FOLLOWER, State.DELEGATED, "migration running on another instance");
+				return SchemaMigrationResult.delegated(schema, "migration running on another instance");
+			}
+
+			status.update(Role.FOLLOWER, State.WAITING_FOR_LEADER, "waiting for the instance holding " + lockName);
+			long deadline = start + config.getMaxWait().toNanos();
+			int pollSeconds = (int) Math.max(1, config.getPollInterval().toSeconds());
+			while (true) {
+				Optional<String> currentVersion = fastPath.currentVersion(flyway);
+				if (currentVersion.isPresent()) {
+					status.setCurrentVersion(currentVersion.get());
+					status.transition(State.COMPLETED, "migrated by another instance");
+					return SchemaMigrationResult.upToDate(schema, currentVersion.get(), elapsedMs(start))
+						.withMessage("migrated by another instance");
+				}
+				if (System.nanoTime() - deadline > 0) {
+					throw new IllegalStateException("Timed out after " + config.getMaxWait()
+						+ " waiting for the migration leader of schema " + schema);
+				}
+				if (tryLock(lockConnection, lockName, pollSeconds)) {
+					logger.info("[FLYWAY_LEADER_TAKEOVER] Acquired migration lock after waiting | schema={} | waitedMs={}",
+						schema, elapsedMs(start));
+					return lead(schema, status, lockConnection, lockName, migration);
+				}
+			}
+		} catch (SQLException e) {
+			status.transition(State.FAILED, e.getMessage());
+			return SchemaMigrationResult.failed(schema, elapsedMs(start), e);
+		}
+	}
+
+	private SchemaMigrationResult lead(String schema, SchemaMigrationStatus status, Connection lockConnection,
+			String lockName, Supplier<SchemaMigrationResult> migration) throws SQLException {
+		status.update(Role.LEADER, status.getState(), "holding " + lockName);
+		logger.info("[FLYWAY_LEADER] Acquired migration lock | schema={} | lock={} | instance={}",
+			schema, lockName, registry.getInstanceId());
+		try {
+			return migration.get();
+		} finally {
+			try (PreparedStatement ps = lockConnection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+				ps.setString(1, lockName);
+				ps.execute();
+			}
+		}
+	}
+
+	private static boolean tryLock(Connection connection, String lockName, int timeoutSeconds) throws SQLException {
+		try (PreparedStatement ps = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+			ps.setString(1, lockName);
+			ps.setInt(2, timeoutSeconds);
+			try (ResultSet rs = ps.executeQuery()) {
+				return rs.next() && rs.getInt(1) == 1;
+			}
+		}
+	}
+
+	private static long elapsedMs(long startNanos) {
+		return (System.nanoTime() - startNanos) / 1_000_000;
+	}
+}
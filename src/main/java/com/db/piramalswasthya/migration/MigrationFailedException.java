@@ -0,0 +1,58 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Raised after all schema pipelines have finished when at least one of them
+ * failed or was skipped. The individual causes are attached as suppressed
+ * exceptions so one failing schema does not hide another.
+ *
+ * @author Piramal Swasthya
+ */
+public class MigrationFailedException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient List<SchemaMigrationResult> results;
+
+	public MigrationFailedException(List<SchemaMigrationResult> results) {
+		super(summarize(results));
+		this.results = List.copyOf(results);
+		results.stream()
+			.filter(r -> r.getCause() != null)
+			.forEach(r -> addSuppressed(r.getCause()));
+	}
+
+	public List<SchemaMigrationResult> getResults() {
+		return results;
+	}
+
+	private static String summarize(List<SchemaMigrationResult> results) {
+		return "Flyway migration did not complete for all schemas: " + results.stream()
+			.filter(r -> !r.isSuccess())
+			.map(r -> r.getSchema() + "=" + r.getStatus() + " (" + r.getMessage() + ")")
+			.collect(Collectors.joining(", "));
+	}
+}
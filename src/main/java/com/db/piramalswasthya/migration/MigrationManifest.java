@@ -0,0 +1,90 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Versioned scripts of one schema as recorded at build time by
+ * {@link MigrationManifestGenerator}, loaded from {@code db/manifest/<schema>.manifest}.
+ *
+ * @author Piramal Swasthya
+ */
+public class MigrationManifest {
+
+	static final String LOCATION = "db/manifest/";
+	static final String FILE_SUFFIX = ".manifest";
+	static final Pattern VERSIONED_SCRIPT = Pattern.compile("^V([0-9][0-9._]*)__.+\\.sql$");
+
+	public record Entry(String version, String script, int checksum) {
+	}
+
+	private final String schema;
+	private final List<Entry> entries;
+
+	MigrationManifest(String schema, List<Entry> entries) {
+		this.schema = schema;
+		this.entries = List.copyOf(entries);
+	}
+
+	public String getSchema() {
+		return schema;
+	}
+
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Loads the manifest for {@code schema} from the classpath, or returns empty
+	 * when the build did not produce one (e.g. running from an IDE without Maven).
+	 */
+	public static Optional<MigrationManifest> load(String schema) {
+		ClassLoader classLoader = MigrationManifest.class.getClassLoader();
+		try (InputStream in = classLoader.getResourceAsStream(LOCATION + schema + FILE_SUFFIX)) {
+			if (in == null) {
+				return Optional.empty();
+			}
+			List<Entry> entries = new ArrayList<>();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isBlank() || line.startsWith("#")) {
+					continue;
+				}
+				String[] parts = line.split("\t");
+				entries.add(new Entry(parts[0], parts[1], Integer.parseInt(parts[2])));
+			}
+			return Optional.of(new MigrationManifest(schema, entries));
+		} catch (IOException | RuntimeException e) {
+			throw new IllegalStateException("Unreadable migration manifest for schema " + schema, e);
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Build-time tool that writes one manifest per schema folder under
+ * {@code db/migration}, listing version, script name and Flyway checksum of
+ * every versioned SQL migration. It is run by the {@code generate-migration-manifest}
+ * execution in {@code pom.xml} so the WAR ships with the checksums precomputed.
+ *
+ * <p>Usage: {@code MigrationManifestGenerator <migrationRoot> <outputDir>}</p>
+ *
+ * @author Piramal Swasthya
+ */
+public final class MigrationManifestGenerator {
+
+	private MigrationManifestGenerator() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			throw new IllegalArgumentException("Usage: MigrationManifestGenerator <migrationRoot> <outputDir>");
+		}
+		Path migrationRoot = Paths.get(args[0]);
+		Path outputDir = Paths.get(args[1]);
+		Files.createDirectories(outputDir);
+
+		try (Stream<Path> schemaDirs = Files.list(migrationRoot)) {
+			for (Path schemaDir : schemaDirs.filter(Files::isDirectory).sorted().toList()) {
+				String schema = schemaDir.getFileName().toString();
+				List<MigrationManifest.Entry> entries = scan(schemaDir);
+				write(outputDir.resolve(schema + MigrationManifest.FILE_SUFFIX), schema, entries);
+				System.out.println("Migration manifest written | schema=" + schema + " | scripts=" + entries.size());
+			}
+		}
+	}
+
+	private static List<MigrationManifest.Entry> scan(Path schemaDir) throws IOException {
+		List<MigrationManifest.Entry> entries = new ArrayList<>();
+		try (Stream<Path> scripts = Files.list(schemaDir)) {
+			for (Path script : scripts.filter(Files::isRegularFile).sorted().toList()) {
+				String name = script.getFileName().toString();
+				Matcher matcher = MigrationManifest.VERSIONED_SCRIPT.matcher(name);
+				if (matcher.matches()) {
+					entries.add(new MigrationManifest.Entry(matcher.group(1).replace('_', '.'), name, checksum(script)));
+				}
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Same algorithm as Flyway's checksum calculator: CRC32 over the UTF-8 bytes
+	 * of every line, without line terminators and with any byte order mark removed.
+	 */
+	static int checksum(Path script) throws IOException {
+		CRC32 crc32 = new CRC32();
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(Files.newInputStream(script), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.isEmpty() && line.charAt(0) == '\uFEFF') {
+					line = line.substring(1);
+				}
+				crc32.update(line.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		return (int) crc32.getValue();
+	}
+
+	private static void write(Path target, String schema, List<MigrationManifest.Entry> entries) throws IOException {
+		try (Writer writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+			writer.write("# Generated at build time for schema " + schema + ": version<TAB>script<TAB>checksum\n");
+			for (MigrationManifest.Entry entry : entries) {
+				writer.write(entry.version() + "\t" + entry.script() + "\t" + entry.checksum() + "\n");
+			}
+		}
+	}
+}
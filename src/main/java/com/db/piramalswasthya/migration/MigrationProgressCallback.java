@@ -0,0 +1,105 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.util.concurrent.TimeUnit;
+
+import org.flywaydb.core.api.MigrationInfo;
+import org.flywaydb.core.api.callback.Callback;
+import org.flywaydb.core.api.callback.Context;
+import org.flywaydb.core.api.callback.Event;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Flyway callback that publishes per-script progress of one schema into the
+ * {@link MigrationStatusRegistry} and, when a {@link MeterRegistry} is
+ * available, records the duration of every script as
+ * {@value #SCRIPT_TIMER} tagged with schema, script and outcome.
+ *
+ * @author Piramal Swasthya
+ */
+public class MigrationProgressCallback implements Callback {
+
+	public static final String SCRIPT_TIMER = "amrit.migration.script";
+
+	private final String schema;
+	private final MigrationStatusRegistry registry;
+	private final MeterRegistry meterRegistry;
+	private final ThreadLocal<Long> scriptStart = new ThreadLocal<>();
+
+	public MigrationProgressCallback(String schema, MigrationStatusRegistry registry, MeterRegistry meterRegistry) {
+		this.schema = schema;
+		this.registry = registry;
+		this.meterRegistry = meterRegistry;
+	}
+
+	@Override
+	public boolean supports(Event event, Context context) {
+		return event == Event.BEFORE_EACH_MIGRATE || event == Event.AFTER_EACH_MIGRATE
+			|| event == Event.AFTER_EACH_MIGRATE_ERROR;
+	}
+
+	@Override
+	public boolean canHandleInTransaction(Event event, Context context) {
+		return true;
+	}
+
+	@Override
+	public void handle(Event event, Context context) {
+		MigrationInfo info = context.getMigrationInfo();
+		if (info == null) {
+			return;
+		}
+		SchemaMigrationStatus status = registry.forSchema(schema);
+		if (event == Event.BEFORE_EACH_MIGRATE) {
+			scriptStart.set(System.nanoTime());
+			status.scriptStarted(info.getScript());
+			return;
+		}
+		recordDuration(info.getScript(), event == Event.AFTER_EACH_MIGRATE ? "success" : "failure");
+		if (event == Event.AFTER_EACH_MIGRATE) {
+			status.scriptCompleted(info.getVersion() != null ? info.getVersion().getVersion() : null);
+		}
+	}
+
+	private void recordDuration(String script, String outcome) {
+		Long start = scriptStart.get();
+		scriptStart.remove();
+		if (meterRegistry == null || start == null) {
+			return;
+		}
+		Timer.builder(SCRIPT_TIMER)
+			.description("Wall time of one Flyway migration script")
+			.tag("schema", schema)
+			.tag("script", script)
+			.tag("outcome", outcome)
+			.register(meterRegistry)
+			.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public String getCallbackName() {
+		return "amritMigrationProgress-" + schema;
+	}
+}
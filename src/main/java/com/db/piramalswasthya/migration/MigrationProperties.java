@@ -0,0 +1,184 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Settings for the startup schema migration run, bound from {@code amrit.migration.*}.
+ *
+ * @author Piramal Swasthya
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "amrit.migration")
+public class MigrationProperties {
+
+	public enum Mode {
+		SEQUENTIAL, PARALLEL
+	}
+
+	public enum RepairMode {
+		/** Repair every schema before migrating it (legacy behaviour). */
+		ALWAYS,
+		/** Repair a schema only when Flyway's validation of it fails. */
+		VALIDATE_FIRST,
+		/** Never repair; validation failures abort the schema's migration. */
+		NEVER
+	}
+
+	/**
+	 * SEQUENTIAL migrates one schema at a time, PARALLEL runs the per-schema
+	 * pipelines concurrently on a bounded executor.
+	 */
+	private Mode mode = Mode.SEQUENTIAL;
+
+	/** Upper bound on concurrently migrating schemas in PARALLEL mode. */
+	private int parallelism = 4;
+
+	/**
+	 * Ordering constraints keyed by schema, e.g.
+	 * {@code amrit.migration.dependencies.dbreporting=dbiemr} migrates dbreporting
+	 * only after dbiemr completed successfully.
+	 */
+	private Map<String, List<String>> dependencies = new LinkedHashMap<>();
+
+	/**
+	 * Compare the build-time migration manifest with {@code flyway_schema_history}
+	 * first and skip Flyway's scan/validate for schemas that are already current.
+	 */
+	private boolean manifestFastPath = true;
+
+	/** When to run {@code Flyway.repair()} for a schema. */
+	private RepairMode repairMode = RepairMode.VALIDATE_FIRST;
+
+	/**
+	 * Provision an empty database from {@code db/baseline/<schema>.sql} and
+	 * baseline Flyway at the snapshot version instead of replaying every script.
+	 */
+	private boolean baselineSnapshot = true;
+
+	private Coordination coordination = new Coordination();
+
+	private IndexBuild indexBuild = new IndexBuild();
+
+	private Backfill backfill = new Backfill();
+
+	/**
+	 * Run migrations on a dedicated background thread instead of blocking
+	 * application startup; progress is served under {@code /db/migration/progress}.
+	 */
+	private boolean async = false;
+
+	/**
+	 * Record wall time, rows affected and fingerprint of every migration
+	 * statement into {@code amrit_migration_statement_profile} of each schema.
+	 * Off by default, as it adds a write per statement to every migration; set
+	 * {@code amrit.migration.statement-profiling=true} for the deploys whose
+	 * timings should be kept.
+	 */
+	private boolean statementProfiling = false;
+
+	/**
+	 * Cross-instance coordination through MySQL named locks, so that only one
+	 * replica migrates a given schema during a rolling deploy.
+	 */
+	@Data
+	public static class Coordination {
+
+		public enum Mode {
+			/** Every instance migrates independently. */
+			NONE,
+			/** Followers poll until the schema is current or the lock frees up. */
+			WAIT,
+			/** Followers leave the migration to the leader and start serving. */
+			SKIP
+		}
+
+		private Mode mode = Mode.WAIT;
+
+		/** How long a follower blocks on the lock between version checks. */
+		private Duration pollInterval = Duration.ofSeconds(5);
+
+		/** Upper bound a follower waits for the leader before giving up. */
+		private Duration maxWait = Duration.ofMinutes(30);
+	}
+
+	/**
+	 * Guard rails for index builds issued by Java migrations through
+	 * {@link OnlineIndexBuilder}.
+	 */
+	@Data
+	public static class IndexBuild {
+
+		/** Wait before starting a build while more threads than this are running. */
+		private int maxThreadsRunning = 40;
+
+		/** Transactions open longer than this count as long-running. */
+		private Duration longTransactionAge = Duration.ofSeconds(60);
+
+		/**
+		 * Wait before starting a build while more long transactions than this
+		 * are open; they would block the metadata lock the build needs to finish.
+		 * Counted from {@code information_schema.INNODB_TRX}, which needs the
+		 * PROCESS privilege; without it the check is skipped with a warning.
+		 */
+		private int maxLongTransactions = 0;
+
+		/** Pause between load checks while throttled. */
+		private Duration throttleInterval = Duration.ofSeconds(15);
+
+		/** Give up, failing the migration, when throttled for longer than this. */
+		private Duration maxThrottleWait = Duration.ofHours(1);
+
+		/** How often build progress is read and logged. */
+		private Duration progressInterval = Duration.ofSeconds(30);
+	}
+
+	/**
+	 * Chunking of data backfills run through {@link BackfillEngine}.
+	 */
+	@Data
+	public static class Backfill {
+
+		/** Rows per chunk for a job without a checkpoint. */
+		private int initialBatchSize = 1000;
+
+		private int minBatchSize = 100;
+
+		private int maxBatchSize = 50000;
+
+		/** Chunk latency the batch size is adjusted towards. */
+		private Duration targetChunkTime = Duration.ofMillis(500);
+
+		/** Sleep after each committed chunk, giving replicas time to catch up. */
+		private Duration pauseBetweenChunks = Duration.ZERO;
+	}
+}
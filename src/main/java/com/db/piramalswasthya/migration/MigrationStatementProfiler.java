@@ -0,0 +1,286 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.api.MigrationInfo;
+import org.flywaydb.core.api.callback.Callback;
+import org.flywaydb.core.api.callback.Context;
+import org.flywaydb.core.api.callback.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Records wall time, rows affected and a normalised fingerprint for every
+ * statement Flyway executes while applying a migration script, and stores them
+ * in {@value #PROFILE_TABLE} of the migrated schema after each script.
+ *
+ * <p>Flyway's per-statement callback events are not raised by the community
+ * edition, so statements are observed through a thin JDBC proxy around the
+ * DataSource handed to Flyway. Recording is bound to the migrating thread and
+ * only active between BEFORE_EACH_MIGRATE and AFTER_EACH_MIGRATE, so Flyway's
+ * own history-table queries are not profiled.</p>
+ *
+ * @author Piramal Swasthya
+ */
+public class MigrationStatementProfiler implements Callback {
+
+	private static final Logger logger = LoggerFactory.getLogger(MigrationStatementProfiler.class);
+
+	public static final String PROFILE_TABLE = "amrit_migration_statement_profile";
+
+	private static final int MAX_STATEMENT_TEXT = 1000;
+	private static final Set<String> EXECUTE_METHODS = Set.of(
+		"execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+	private static final Pattern BLOCK_COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+	private static final Pattern LINE_COMMENT = Pattern.compile("(--|#)[^\\n]*");
+	private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'");
+	private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(\\.\\d+)?\\b");
+	private static final Pattern VALUE_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)(\\s*,\\s*\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\))*");
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	private static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS " + PROFILE_TABLE + " ("
+		+ "id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, "
+		+ "script VARCHAR(255) NOT NULL, "
+		+ "version VARCHAR(50), "
+		+ "statement_seq INT NOT NULL, "
+		+ "fingerprint CHAR(40) NOT NULL, "
+		+ "statement_text VARCHAR(" + MAX_STATEMENT_TEXT + "), "
+		+ "elapsed_micros BIGINT NOT NULL, "
+		+ "rows_affected BIGINT, "
+		+ "executed_at DATETIME NOT NULL, "
+		+ "KEY idx_profile_elapsed (elapsed_micros), "
+		+ "KEY idx_profile_fingerprint (fingerprint))";
+
+	private static final String INSERT_SQL = "INSERT INTO " + PROFILE_TABLE
+		+ " (script, version, statement_seq, fingerprint, statement_text, elapsed_micros, rows_affected, executed_at)"
+		+ " VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+	private record Sample(int seq, String sql, long elapsedNanos, long rowsAffected, long executedAtMillis) {
+	}
+
+	private static final class ScriptRecording {
+		private final String script;
+		private final String version;
+		private final List<Sample> samples = new ArrayList<>();
+
+		private ScriptRecording(String script, String version) {
+			this.script = script;
+			this.version = version;
+		}
+	}
+
+	private final String schema;
+	private final DataSource target;
+	private final JdbcTemplate profileJdbcTemplate;
+	private final ThreadLocal<ScriptRecording> recording = new ThreadLocal<>();
+	private volatile boolean tableReady;
+
+	public MigrationStatementProfiler(String schema, DataSource target) {
+		this.schema = schema;
+		this.target = target;
+		this.profileJdbcTemplate = new JdbcTemplate(target);
+	}
+
+	/** DataSource to hand to Flyway; statements are only recorded while a script runs. */
+	public DataSource profilingDataSource() {
+		return proxy(DataSource.class, target, (method, args, result) -> method.getName().equals("getConnection")
+			? proxy(Connection.class, result, this::wrapStatement)
+			: result);
+	}
+
+	private Object wrapStatement(Method method, Object[] args, Object result) {
+		if (result instanceof CallableStatement) {
+			return profiledStatement(CallableStatement.class, (Statement) result, (String) args[0]);
+		}
+		if (result instanceof PreparedStatement) {
+			return profiledStatement(PreparedStatement.class, (Statement) result, (String) args[0]);
+		}
+		if (result instanceof Statement) {
+			return profiledStatement(Statement.class, (Statement) result, null);
+		}
+		return result;
+	}
+
+	private <T extends Statement> T profiledStatement(Class<T> type, Statement statement, String preparedSql) {
+		return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type }, (p, method, args) -> {
+			ScriptRecording current = recording.get();
+			if (current == null || !EXECUTE_METHODS.contains(method.getName())) {
+				return invoke(statement, method, args);
+			}
+			String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : preparedSql;
+			long executedAt = System.currentTimeMillis();
+			long start = System.nanoTime();
+			Object result = invoke(statement, method, args);
+			long elapsed = System.nanoTime() - start;
+			if (sql != null) {
+				current.samples.add(new Sample(current.samples.size() + 1, sql, elapsed,
+					rowsAffected(statement, method, result), executedAt));
+			}
+			return result;
+		}));
+	}
+
+	private static long rowsAffected(Statement statement, Method method, Object result) {
+		try {
+			if (result instanceof Integer i) {
+				return i;
+			}
+			if (result instanceof Long l) {
+				return l;
+			}
+			if (result instanceof int[] batch) {
+				long total = 0;
+				for (int count : batch) {
+					total += Math.max(count, 0);
+				}
+				return total;
+			}
+			if (method.getName().equals("execute")) {
+				return statement.getUpdateCount();
+			}
+		} catch (Exception e) {
+			// Row counts are best effort and must never break a migration
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean supports(Event event, Context context) {
+		return event == Event.BEFORE_EACH_MIGRATE || event == Event.AFTER_EACH_MIGRATE
+			|| event == Event.AFTER_EACH_MIGRATE_ERROR;
+	}
+
+	@Override
+	public boolean canHandleInTransaction(Event event, Context context) {
+		return true;
+	}
+
+	@Override
+	public void handle(Event event, Context context) {
+		MigrationInfo info = context.getMigrationInfo();
+		if (event == Event.BEFORE_EACH_MIGRATE) {
+			if (info != null) {
+				recording.set(new ScriptRecording(info.getScript(),
+					info.getVersion() != null ? info.getVersion().getVersion() : null));
+			}
+			return;
+		}
+		ScriptRecording finished = recording.get();
+		recording.remove();
+		if (finished != null && !finished.samples.isEmpty()) {
+			persist(finished);
+		}
+	}
+
+	@Override
+	public String getCallbackName() {
+		return "amritStatementProfiler-" + schema;
+	}
+
+	private void persist(ScriptRecording finished) {
+		try {
+			if (!tableReady) {
+				profileJdbcTemplate.execute(CREATE_TABLE_SQL);
+				tableReady = true;
+			}
+			profileJdbcTemplate.batchUpdate(INSERT_SQL, finished.samples, 500, (ps, sample) -> {
+				String normalized = normalize(sample.sql());
+				ps.setString(1, finished.script);
+				ps.setString(2, finished.version);
+				ps.setInt(3, sample.seq());
+				ps.setString(4, fingerprint(normalized));
+				ps.setString(5, normalized.length() > MAX_STATEMENT_TEXT
+					? normalized.substring(0, MAX_STATEMENT_TEXT) : normalized);
+				ps.setLong(6, sample.elapsedNanos() / 1_000);
+				ps.setLong(7, sample.rowsAffected());
+				ps.setTimestamp(8, new Timestamp(sample.executedAtMillis()));
+			});
+			logger.debug("[FLYWAY_PROFILE] Statement profile stored | schema={} | script={} | statements={}",
+				schema, finished.script, finished.samples.size());
+		} catch (Exception e) {
+			logger.warn("[FLYWAY_PROFILE] Could not store statement profile | schema={} | script={} | error=\"{}\"",
+				schema, finished.script, e.getMessage());
+		}
+	}
+
+	/**
+	 * Reduces a statement to its shape: comments dropped, literals replaced by
+	 * {@code ?}, multi-row VALUES lists collapsed and whitespace normalised.
+	 */
+	static String normalize(String sql) {
+		String normalized = BLOCK_COMMENT.matcher(sql).replaceAll(" ");
+		normalized = LINE_COMMENT.matcher(normalized).replaceAll(" ");
+		normalized = STRING_LITERAL.matcher(normalized).replaceAll("?");
+		normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+		normalized = VALUE_LIST.matcher(normalized).replaceAll("(...)");
+		return WHITESPACE.matcher(normalized).replaceAll(" ").trim().toLowerCase();
+	}
+
+	static String fingerprint(String normalizedSql) {
+		try {
+			MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+			return HexFormat.of().formatHex(sha1.digest(normalizedSql.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@FunctionalInterface
+	private interface ResultDecorator {
+		Object decorate(Method method, Object[] args, Object result) throws Exception;
+	}
+
+	private <T> T proxy(Class<T> type, Object delegate, ResultDecorator decorator) {
+		InvocationHandler handler = (p, method, args) -> decorator.decorate(method, args, invoke(delegate, method, args));
+		return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type }, handler));
+	}
+
+	private static Object invoke(Object delegate, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(delegate, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-schema migration status of this instance, shared between the migration
+ * pipeline and the {@code /db/migration} endpoints.
+ *
+ * @author Piramal Swasthya
+ */
+@Component
+public class MigrationStatusRegistry {
+
+	private final Map<String, SchemaMigrationStatus> statuses = Collections.synchronizedMap(new LinkedHashMap<>());
+	private final String instanceId = resolveInstanceId();
+
+	public SchemaMigrationStatus forSchema(String schema) {
+		return statuses.computeIfAbsent(schema, SchemaMigrationStatus::new);
+	}
+
+	public Collection<SchemaMigrationStatus> all() {
+		synchronized (statuses) {
+			return List.copyOf(statuses.values());
+		}
+	}
+
+	public List<Map<String, Object>> snapshots() {
+		return all().stream().map(SchemaMigrationStatus::snapshot).toList();
+	}
+
+	/** True while any schema has not reached a terminal state on this instance. */
+	public boolean isMigrating() {
+		return all().stream().anyMatch(status -> status.getState().isInProgress());
+	}
+
+	public boolean hasFailures() {
+		return all().stream().anyMatch(status -> status.getState() == SchemaMigrationStatus.State.FAILED);
+	}
+
+	public String getInstanceId() {
+		return instanceId;
+	}
+
+	private static String resolveInstanceId() {
+		try {
+			return InetAddress.getLocalHost().getHostName();
+		} catch (UnknownHostException e) {
+			return "unknown";
+		}
+	}
+}
@@ -0,0 +1,405 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs index-building {@code ALTER TABLE} statements for Java migrations so
+ * they can ship outside a maintenance window:
+ * <ul>
+ * <li>statements must request {@code ALGORITHM=INPLACE|INSTANT, LOCK=NONE};
+ * MySQL then rejects any change it could only do by copying the table, and
+ * that rejection is surfaced instead of retried with a locking copy;</li>
+ * <li>before each statement the server is checked for running threads and
+ * long transactions, and the build waits while either is above its limit;</li>
+ * <li>while the statement runs, the InnoDB alter stages in
+ * {@code performance_schema.events_stages_current} are polled from a second
+ * connection and reported as percentage and ETA.</li>
+ * </ul>
+ * An online ALTER cannot be paused once started, so throttling applies between
+ * statements; keep one table per statement (as {@link SchemaChangeSet} does).
+ *
+ * @author Piramal Swasthya
+ */
+@Component
+public class OnlineIndexBuilder {
+
+	private static final Logger logger = LoggerFactory.getLogger(OnlineIndexBuilder.class);
+
+	// ER_ALTER_OPERATION_NOT_SUPPORTED, ER_ALTER_OPERATION_NOT_SUPPORTED_REASON
+	private static final int ER_NOT_ONLINE = 1845;
+	private static final int ER_NOT_ONLINE_REASON = 1846;
+
+	private static final Pattern ONLINE_ALGORITHM = Pattern.compile("ALGORITHM\\s*=\\s*(INPLACE|INSTANT)");
+	private static final Pattern NO_LOCK = Pattern.compile("LOCK\\s*=\\s*NONE");
+
+	private static final String THREADS_RUNNING_SQL =
+		"SELECT VARIABLE_VALUE FROM performance_schema.global_status WHERE VARIABLE_NAME = 'Threads_running'";
+	// INNODB_TRX needs the PROCESS privilege, so it is read separately from the status variable
+	private static final String LONG_TRX_SQL =
+		"SELECT COUNT(*) FROM information_schema.INNODB_TRX WHERE trx_started < NOW() - INTERVAL ? SECOND";
+
+	private static final long UNKNOWN = -1;
+
+	private static final String THREAD_ID_SQL =
+		"SELECT THREAD_ID FROM performance_schema.threads WHERE PROCESSLIST_ID = CONNECTION_ID()";
+
+	private static final String STAGE_SQL = "SELECT EVENT_NAME, WORK_COMPLETED, WORK_ESTIMATED "
+		+ "FROM performance_schema.events_stages_current WHERE THREAD_ID = ? AND EVENT_NAME LIKE 'stage/innodb/alter%'";
+
+	private static final String DISABLED_INSTRUMENTS_SQL = "SELECT NAME, ENABLED, TIMED FROM performance_schema.setup_instruments "
+		+ "WHERE NAME LIKE 'stage/innodb/alter%' AND (ENABLED <> 'YES' OR TIMED <> 'YES')";
+	private static final String ENABLE_INSTRUMENTS_SQL = "UPDATE performance_schema.setup_instruments "
+		+ "SET ENABLED = 'YES', TIMED = 'YES' WHERE NAME LIKE 'stage/innodb/alter%'";
+	private static final String RESTORE_INSTRUMENT_SQL = "UPDATE performance_schema.setup_instruments "
+		+ "SET ENABLED = ?, TIMED = ? WHERE NAME = ?";
+	// Only the consumer the progress query reads; the history consumers stay as configured
+	private static final String STAGES_CONSUMER_SQL = "SELECT ENABLED FROM performance_schema.setup_consumers "
+		+ "WHERE NAME = 'events_stages_current'";
+	private static final String SET_STAGES_CONSUMER_SQL = "UPDATE performance_schema.setup_consumers "
+		+ "SET ENABLED = ? WHERE NAME = 'events_stages_current'";
+
+	/** performance_schema settings changed for progress reporting, put back once the statement is done. */
+	private record StageSetup(List<String[]> instruments, boolean consumerEnabled) {
+
+		static final StageSetup UNCHANGED = new StageSetup(List.of(), true);
+	}
+
+	private final MigrationProperties.IndexBuild config;
+	private final MigrationStatusRegistry registry;
+
+	private final ScheduledExecutorService monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "index-build-monitor");
+		t.setDaemon(true);
+		return t;
+	});
+
+	public OnlineIndexBuilder(MigrationProperties properties, MigrationStatusRegistry registry) {
+		this.config = properties.getIndexBuild();
+		this.registry = registry;
+	}
+
+	/**
+	 * Executes {@code alterSql} on {@code connection}, reading progress through
+	 * a separate connection from {@code monitorDataSource}.
+	 */
+	public void build(String schema, Connection connection, DataSource monitorDataSource, String table, String alterSql)
+			throws SQLException {
+		requireOnline(alterSql);
+		SchemaMigrationStatus status = registry.forSchema(schema);
+
+		waitForHeadroom(schema, table, connection, status);
+
+		Long threadId = performanceSchemaThreadId(connection);
+		ProgressMonitor progress = threadId != null ? new ProgressMonitor(schema, table, threadId,
+			enableStages(connection), monitorDataSource, status) : null;
+		ScheduledFuture<?> task = null;
+		if (progress != null) {
+			long intervalMs = Math.max(1000, config.getProgressInterval().toMillis());
+			task = monitor.scheduleWithFixedDelay(progress::poll, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+		}
+
+		status.setCurrentOperation("building indexes on " + table);
+		long start = System.nanoTime();
+		try (Statement stmt = connection.createStatement()) {
+			logger.info("[INDEX_BUILD_START] schema={} | table={} | sql=\"{}\"", schema, table, alterSql);
+			stmt.execute(alterSql);
+		} catch (SQLException e) {
+			if (e.getErrorCode() == ER_NOT_ONLINE || e.getErrorCode() == ER_NOT_ONLINE_REASON) {
+				throw new SQLException("Refusing to rebuild " + table + " with a locking table copy: " + e.getMessage()
+					+ ". Split the change or schedule it for a maintenance window.", e.getSQLState(), e.getErrorCode(), e);
+			}
+			throw e;
+		} finally {
+			if (task != null) {
+				task.cancel(false);
+				// Same single thread as the polls, so a poll in flight finishes first
+				monitor.execute(progress::close);
+			}
+			status.setCurrentOperation(null);
+		}
+		logger.info("[INDEX_BUILD_DONE] schema={} | table={} | durationMs={}", schema, table,
+			(System.nanoTime() - start) / 1_000_000);
+	}
+
+	private static void requireOnline(String alterSql) {
+		String normalized = alterSql.toUpperCase(Locale.ROOT);
+		if (!ONLINE_ALGORITHM.matcher(normalized).find() || !NO_LOCK.matcher(normalized).find()) {
+			throw new IllegalArgumentException(
+				"Index builds must request ALGORITHM=INPLACE (or INSTANT) and LOCK=NONE: " + alterSql);
+		}
+	}
+
+	/**
+	 * Waits until the server load is within the configured limits. A load
+	 * signal that cannot be read (performance_schema off, no PROCESS privilege
+	 * for {@code INNODB_TRX}) is logged once and not throttled on.
+	 */
+	private void waitForHeadroom(String schema, String table, Connection connection, SchemaMigrationStatus status) {
+		long deadline = System.nanoTime() + config.getMaxThrottleWait().toNanos();
+		boolean throttled = false;
+		Set<String> unavailable = new HashSet<>();
+		while (true) {
+			long threadsRunning = load(connection, "threads_running", THREADS_RUNNING_SQL, null, schema, unavailable);
+			long longTransactions = load(connection, "long_transactions", LONG_TRX_SQL,
+				config.getLongTransactionAge().toSeconds(), schema, unavailable);
+			if (threadsRunning <= config.getMaxThreadsRunning() && longTransactions <= config.getMaxLongTransactions()) {
+				if (throttled) {
+					logger.info("[INDEX_BUILD_RESUMED] schema={} | table={} | threadsRunning={} | longTransactions={}",
+						schema, table, threadsRunning, longTransactions);
+				}
+				return;
+			}
+			if (System.nanoTime() - deadline > 0) {
+				throw new IllegalStateException("Index build on " + schema + "." + table + " throttled for longer than "
+					+ config.getMaxThrottleWait() + " (threadsRunning=" + threadsRunning + ", longTransactions="
+					+ longTransactions + ")");
+			}
+			throttled = true;
+			status.setCurrentOperation("index build on " + table + " throttled: threadsRunning=" + threadsRunning
+				+ ", longTransactions=" + longTransactions);
+			logger.warn("[INDEX_BUILD_THROTTLED] schema={} | table={} | threadsRunning={} (max {}) | longTransactions={} (max {})",
+				schema, table, threadsRunning, config.getMaxThreadsRunning(), longTransactions, config.getMaxLongTransactions());
+			sleep(config.getThrottleInterval());
+		}
+	}
+
+	/**
+	 * @return the single value of {@code sql}, or {@value #UNKNOWN} when it
+	 *         cannot be read
+	 */
+	private static long load(Connection connection, String signal, String sql, Long seconds, String schema,
+			Set<String> unavailable) {
+		try (PreparedStatement ps = connection.prepareStatement(sql)) {
+			if (seconds != null) {
+				ps.setLong(1, seconds);
+			}
+			try (ResultSet rs = ps.executeQuery()) {
+				return rs.next() ? rs.getLong(1) : UNKNOWN;
+			}
+		} catch (SQLException e) {
+			if (unavailable.add(signal)) {
+				logger.warn("[INDEX_BUILD] Load signal unavailable, building without throttling on it | schema={} | signal={} | error=\"{}\"",
+					schema, signal, e.getMessage());
+			}
+			return UNKNOWN;
+		}
+	}
+
+	/**
+	 * @return the performance_schema thread of the migration connection, or
+	 *         null when performance_schema is unavailable
+	 */
+	private static Long performanceSchemaThreadId(Connection connection) {
+		try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(THREAD_ID_SQL)) {
+			return rs.next() ? rs.getLong(1) : null;
+		} catch (SQLException e) {
+			logger.info("[INDEX_BUILD] performance_schema unavailable, progress will not be reported | error=\"{}\"",
+				e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Enables the InnoDB alter stage instruments and the
+	 * {@code events_stages_current} consumer, remembering what was off.
+	 * Best effort: needs UPDATE on performance_schema, which migration users
+	 * often have.
+	 */
+	private static StageSetup enableStages(Connection connection) {
+		List<String[]> instruments = new ArrayList<>();
+		boolean consumerEnabled = true;
+		boolean instrumentsChanged = false;
+		try (Statement stmt = connection.createStatement()) {
+			try (ResultSet rs = stmt.executeQuery(DISABLED_INSTRUMENTS_SQL)) {
+				while (rs.next()) {
+					instruments.add(new String[] { rs.getString("NAME"), rs.getString("ENABLED"), rs.getString("TIMED") });
+				}
+			}
+			try (ResultSet rs = stmt.executeQuery(STAGES_CONSUMER_SQL)) {
+				consumerEnabled = !rs.next() || "YES".equalsIgnoreCase(rs.getString(1));
+			}
+			if (!instruments.isEmpty()) {
+				stmt.executeUpdate(ENABLE_INSTRUMENTS_SQL);
+				instrumentsChanged = true;
+			}
+			if (!consumerEnabled) {
+				try (PreparedStatement ps = connection.prepareStatement(SET_STAGES_CONSUMER_SQL)) {
+					ps.setString(1, "YES");
+					ps.executeUpdate();
+				}
+			}
+			return new StageSetup(List.copyOf(instruments), consumerEnabled);
+		} catch (SQLException e) {
+			logger.debug("Could not enable InnoDB alter stage instruments | error=\"{}\"", e.getMessage());
+			// The consumer update comes last, so at most the instruments were changed
+			return instrumentsChanged ? new StageSetup(List.copyOf(instruments), true) : StageSetup.UNCHANGED;
+		}
+	}
+
+	private static void sleep(Duration duration) {
+		try {
+			Thread.sleep(duration.toMillis());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting to start an index build", e);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		monitor.shutdownNow();
+	}
+
+	/** Polls the alter stages of one running statement; used by the monitor thread only. */
+	private static final class ProgressMonitor {
+
+		private final String schema;
+		private final String table;
+		private final long threadId;
+		private final StageSetup stageSetup;
+		private final DataSource dataSource;
+		private final SchemaMigrationStatus status;
+		private final long startNanos = System.nanoTime();
+		private Connection connection;
+
+		private ProgressMonitor(String schema, String table, long threadId, StageSetup stageSetup, DataSource dataSource,
+				SchemaMigrationStatus status) {
+			this.schema = schema;
+			this.table = table;
+			this.threadId = threadId;
+			this.stageSetup = stageSetup;
+			this.dataSource = dataSource;
+			this.status = status;
+		}
+
+		private void poll() {
+			try {
+				if (connection == null) {
+					connection = dataSource.getConnection();
+				}
+				try (PreparedStatement ps = connection.prepareStatement(STAGE_SQL)) {
+					ps.setLong(1, threadId);
+					try (ResultSet rs = ps.executeQuery()) {
+						if (rs.next()) {
+							report(rs.getString("EVENT_NAME"), rs.getLong("WORK_COMPLETED"), rs.getLong("WORK_ESTIMATED"));
+						}
+					}
+				}
+			} catch (SQLException e) {
+				logger.debug("Index build progress unavailable | schema={} | table={} | error=\"{}\"", schema, table,
+					e.getMessage());
+			}
+		}
+
+		private void report(String stage, long completed, long estimated) {
+			String stageName = stage.substring(stage.lastIndexOf('/') + 1);
+			long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
+			if (estimated <= 0) {
+				status.setCurrentOperation("building indexes on " + table + ": " + stageName);
+				return;
+			}
+			double percent = Math.min(100.0, 100.0 * completed / estimated);
+			// The estimate grows as InnoDB discovers work, so the ETA is a lower bound
+			Long etaSeconds = completed > 0 ? elapsedMs * (estimated - completed) / completed / 1000 : null;
+			String progress = String.format(Locale.ROOT, "%.1f%%", percent);
+			status.setCurrentOperation("building indexes on " + table + ": " + progress + " (" + stageName + ")"
+				+ (etaSeconds != null ? ", eta " + Duration.ofSeconds(etaSeconds) : ""));
+			logger.info("[INDEX_BUILD_PROGRESS] schema={} | table={} | stage={} | progress={} | elapsedMs={} | etaSeconds={}",
+				schema, table, stageName, progress, elapsedMs, etaSeconds);
+		}
+
+		/**
+		 * Puts back the instruments and consumer enabled for this statement. A
+		 * build running concurrently on the same server may lose its progress
+		 * reporting from here on, never its statement.
+		 */
+		private void close() {
+			if (stageSetup.instruments().isEmpty() && stageSetup.consumerEnabled() && connection == null) {
+				return;
+			}
+			try {
+				if (connection == null) {
+					connection = dataSource.getConnection();
+				}
+				restore();
+			} catch (SQLException e) {
+				logger.warn("[INDEX_BUILD] Could not restore performance_schema stage settings | schema={} | error=\"{}\"",
+					schema, e.getMessage());
+			}
+			if (connection == null) {
+				return;
+			}
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				logger.debug("Could not close index build monitor connection | error=\"{}\"", e.getMessage());
+			}
+			connection = null;
+		}
+
+		private void restore() throws SQLException {
+			if (!stageSetup.consumerEnabled()) {
+				try (PreparedStatement ps = connection.prepareStatement(SET_STAGES_CONSUMER_SQL)) {
+					ps.setString(1, "NO");
+					ps.executeUpdate();
+				}
+			}
+			if (stageSetup.instruments().isEmpty()) {
+				return;
+			}
+			try (PreparedStatement ps = connection.prepareStatement(RESTORE_INSTRUMENT_SQL)) {
+				for (String[] instrument : stageSetup.instruments()) {
+					ps.setString(1, instrument[1]);
+					ps.setString(2, instrument[2]);
+					ps.setString(3, instrument[0]);
+					ps.addBatch();
+				}
+				ps.executeBatch();
+			}
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects idempotent "ensure" operations against a {@link SchemaSnapshot} and
+ * applies them as one {@code ALTER TABLE} per table, so a table that gains
+ * several indexes is rebuilt or scanned once instead of once per index.
+ * Operations already satisfied by the snapshot (same name, or an existing index
+ * with the same leading columns) are dropped while planning.
+ *
+ * @author Piramal Swasthya
+ */
+public class SchemaChangeSet {
+
+	private static final Logger logger = LoggerFactory.getLogger(SchemaChangeSet.class);
+
+	private static final String ONLINE_OPTIONS = "ALGORITHM=INPLACE, LOCK=NONE";
+
+	private final SchemaSnapshot snapshot;
+	private final Map<String, List<String>> clauses = new LinkedHashMap<>();
+	private boolean online = true;
+
+	public SchemaChangeSet(SchemaSnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	public SchemaSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Appends {@code ALGORITHM=INPLACE, LOCK=NONE} to every statement (default),
+	 * so MySQL fails instead of silently copying the table under a write lock.
+	 */
+	public SchemaChangeSet online(boolean online) {
+		this.online = online;
+		return this;
+	}
+
+	public SchemaChangeSet ensureColumn(String table, String column, String definition) {
+		requireTable(table);
+		if (snapshot.hasColumn(table, column)) {
+			logger.debug("[SCHEMA_CHANGE] Column exists, skipping | table={} | column={}", table, column);
+			return this;
+		}
+		clauses.computeIfAbsent(table, t -> new ArrayList<>())
+			.add("ADD COLUMN " + quote(column) + " " + definition);
+		snapshot.addColumn(table, column);
+		return this;
+	}
+
+	public SchemaChangeSet ensureIndex(String table, String indexName, String... columns) {
+		return ensureIndex(table, indexName, false, columns);
+	}
+
+	public SchemaChangeSet ensureUniqueIndex(String table, String indexName, String... columns) {
+		return ensureIndex(table, indexName, true, columns);
+	}
+
+	private SchemaChangeSet ensureIndex(String table, String indexName, boolean unique, String... columns) {
+		requireTable(table);
+		if (columns.length == 0) {
+			throw new IllegalArgumentException("Index " + indexName + " on " + table + " needs at least one column");
+		}
+		if (snapshot.hasIndex(table, indexName)) {
+			logger.debug("[SCHEMA_CHANGE] Index exists, skipping | table={} | index={}", table, indexName);
+			return this;
+		}
+		List<String> columnList = List.of(columns);
+		for (String column : columnList) {
+			if (!snapshot.hasColumn(table, column)) {
+				throw new IllegalStateException("Column " + table + "." + column + " does not exist for index " + indexName);
+			}
+		}
+		if (!unique) {
+			Optional<SchemaSnapshot.Index> covering = snapshot.findCoveringIndex(table, columnList);
+			if (covering.isPresent()) {
+				logger.info("[SCHEMA_CHANGE] Existing index already covers columns, skipping | table={} | index={} | coveredBy={}",
+					table, indexName, covering.get().name());
+				return this;
+			}
+		}
+		clauses.computeIfAbsent(table, t -> new ArrayList<>()).add((unique ? "ADD UNIQUE INDEX " : "ADD INDEX ")
+			+ quote(indexName) + " (" + String.join(", ", columnList.stream().map(SchemaChangeSet::quote).toList()) + ")");
+		snapshot.addIndex(table, indexName, columnList, unique);
+		return this;
+	}
+
+	public boolean isEmpty() {
+		return clauses.isEmpty();
+	}
+
+	/**
+	 * @return one {@code ALTER TABLE} statement per table with pending changes
+	 */
+	public List<String> statements() {
+		return new ArrayList<>(statementsByTable().values());
+	}
+
+	/**
+	 * @return the pending {@code ALTER TABLE} statement of each table, in planning order
+	 */
+	public Map<String, String> statementsByTable() {
+		Map<String, String> statements = new LinkedHashMap<>();
+		clauses.forEach((table, tableClauses) -> statements.put(table, "ALTER TABLE " + quote(table) + " "
+			+ String.join(", ", tableClauses) + (online ? ", " + ONLINE_OPTIONS : "")));
+		return statements;
+	}
+
+	public void apply(Connection connection) throws SQLException {
+		try (Statement stmt = connection.createStatement()) {
+			for (String sql : statements()) {
+				long start = System.nanoTime();
+				stmt.execute(sql);
+				logger.info("[SCHEMA_CHANGE] Applied | durationMs={} | sql=\"{}\"",
+					(System.nanoTime() - start) / 1_000_000, sql);
+			}
+		}
+		clauses.clear();
+	}
+
+	/**
+	 * Runs each table's statement through the index builder, which throttles on
+	 * server load, reports progress and refuses a locking table copy.
+	 */
+	public void apply(String schema, Connection connection, DataSource monitorDataSource, OnlineIndexBuilder builder)
+			throws SQLException {
+		for (Map.Entry<String, String> statement : statementsByTable().entrySet()) {
+			builder.build(schema, connection, monitorDataSource, statement.getKey(), statement.getValue());
+		}
+		clauses.clear();
+	}
+
+	private void requireTable(String table) {
+		if (!snapshot.hasTable(table)) {
+			throw new IllegalStateException("Table " + table + " does not exist");
+		}
+	}
+
+	static String quote(String identifier) {
+		return "`" + identifier.replace("`", "``") + "`";
+	}
+}
@@ -0,0 +1,166 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the per-schema migration pipelines on a bounded executor while honouring
+ * declared ordering constraints. A schema starts once all schemas it depends on
+ * have finished; if any of them did not succeed it is skipped instead of run.
+ * Every schema yields a {@link SchemaMigrationResult}, so failures are collected
+ * rather than aborting the remaining pipelines.
+ *
+ * @author Piramal Swasthya
+ */
+public class SchemaMigrationExecutor {
+
+	private static final Logger logger = LoggerFactory.getLogger(SchemaMigrationExecutor.class);
+
+	private final int parallelism;
+	private final Map<String, List<String>> dependencies;
+
+	public SchemaMigrationExecutor(int parallelism, Map<String, List<String>> dependencies) {
+		this.parallelism = Math.max(1, parallelism);
+		this.dependencies = dependencies;
+	}
+
+	/**
+	 * Runs {@code pipeline} once per schema and returns the results in the order
+	 * of {@code schemas}. The pipeline is expected to translate its own failures
+	 * into a FAILED result; anything it throws is recorded the same way.
+	 */
+	public List<SchemaMigrationResult> execute(Collection<String> schemas,
+			Function<String, SchemaMigrationResult> pipeline) {
+		List<String> order = resolveOrder(schemas);
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, order.size()), r -> {
+			Thread t = new Thread(r, "flyway-migrate-" + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+
+		try {
+			Map<String, CompletableFuture<SchemaMigrationResult>> futures = new LinkedHashMap<>();
+			for (String schema : order) {
+				CompletableFuture<?>[] upstream = dependenciesOf(schema).stream()
+					.map(futures::get)
+					.toArray(CompletableFuture[]::new);
+
+				futures.put(schema, CompletableFuture.allOf(upstream)
+					.thenApplyAsync(ignored -> runAfterDependencies(schema, futures, pipeline), executor));
+			}
+
+			List<SchemaMigrationResult> results = new ArrayList<>();
+			for (String schema : schemas) {
+				results.add(futures.get(schema).join());
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private SchemaMigrationResult runAfterDependencies(String schema,
+			Map<String, CompletableFuture<SchemaMigrationResult>> futures,
+			Function<String, SchemaMigrationResult> pipeline) {
+		for (String dependency : dependenciesOf(schema)) {
+			// Ordering cannot be guaranteed while the dependency migrates elsewhere
+			SchemaMigrationResult upstream = futures.get(dependency).join();
+			if (upstream.getStatus() == SchemaMigrationResult.Status.DELEGATED) {
+				return SchemaMigrationResult.delegated(schema,
+					"dependency " + dependency + " is being migrated by another instance");
+			}
+			if (!upstream.isSuccess()) {
+				logger.warn("[FLYWAY_SCHEMA_SKIPPED] Skipping schema because a dependency did not succeed | schema={} | dependency={} | dependencyStatus={}",
+					schema, dependency, upstream.getStatus());
+				return SchemaMigrationResult.skipped(schema,
+					"dependency " + dependency + " finished with status " + upstream.getStatus());
+			}
+		}
+
+		long start = System.nanoTime();
+		try {
+			return pipeline.apply(schema);
+		} catch (Exception e) {
+			return SchemaMigrationResult.failed(schema, (System.nanoTime() - start) / 1_000_000, e);
+		}
+	}
+
+	private List<String> dependenciesOf(String schema) {
+		return dependencies.getOrDefault(schema, List.of());
+	}
+
+	/**
+	 * Orders schemas so every schema appears after its dependencies, keeping the
+	 * declared order otherwise. Unknown dependencies and cycles are configuration
+	 * errors and fail fast before anything is migrated.
+	 */
+	private List<String> resolveOrder(Collection<String> schemas) {
+		for (Map.Entry<String, List<String>> entry : dependencies.entrySet()) {
+			if (!schemas.contains(entry.getKey())) {
+				throw new IllegalStateException("Migration dependency declared for unknown schema: " + entry.getKey());
+			}
+			for (String dependency : entry.getValue()) {
+				if (!schemas.contains(dependency)) {
+					throw new IllegalStateException(
+						"Schema " + entry.getKey() + " depends on unknown schema: " + dependency);
+				}
+			}
+		}
+
+		List<String> order = new ArrayList<>();
+		Set<String> visiting = new HashSet<>();
+		for (String schema : schemas) {
+			visit(schema, visiting, order);
+		}
+		return order;
+	}
+
+	private void visit(String schema, Set<String> visiting, List<String> order) {
+		if (order.contains(schema)) {
+			return;
+		}
+		if (!visiting.add(schema)) {
+			throw new IllegalStateException("Cyclic migration dependency involving schema: " + schema);
+		}
+		for (String dependency : dependenciesOf(schema)) {
+			visit(dependency, visiting, order);
+		}
+		visiting.remove(schema);
+		order.add(schema);
+	}
+}
@@ -0,0 +1,81 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import lombok.Value;
+import lombok.With;
+
+/**
+ * Outcome of the migration pipeline for a single schema.
+ *
+ * @author Piramal Swasthya
+ */
+@Value
+public class SchemaMigrationResult {
+
+	public enum Status {
+		SUCCESS, FAILED, SKIPPED,
+		/** Another instance holds the migration lock and is migrating this schema. */
+		DELEGATED
+	}
+
+	String schema;
+	Status status;
+	int migrationsExecuted;
+	String targetVersion;
+	long durationMs;
+	@With
+	String message;
+	transient Throwable cause;
+
+	public static SchemaMigrationResult success(String schema, int migrationsExecuted, String targetVersion,
+			long durationMs) {
+		return new SchemaMigrationResult(schema, Status.SUCCESS, migrationsExecuted, targetVersion, durationMs,
+				null, null);
+	}
+
+	public static SchemaMigrationResult upToDate(String schema, String currentVersion, long durationMs) {
+		return new SchemaMigrationResult(schema, Status.SUCCESS, 0, currentVersion, durationMs,
+				"already current, Flyway scan skipped", null);
+	}
+
+	public static SchemaMigrationResult failed(String schema, long durationMs, Throwable cause) {
+		return new SchemaMigrationResult(schema, Status.FAILED, 0, null, durationMs, cause.getMessage(), cause);
+	}
+
+	public static SchemaMigrationResult delegated(String schema, String reason) {
+		return new SchemaMigrationResult(schema, Status.DELEGATED, 0, null, 0, reason, null);
+	}
+
+	public static SchemaMigrationResult skipped(String schema, String reason) {
+		return new SchemaMigrationResult(schema, Status.SKIPPED, 0, null, 0, reason, null);
+	}
+
+	public boolean isSuccess() {
+		return status == Status.SUCCESS;
+	}
+
+	/** Successful here, or intentionally left to the instance holding the lock. */
+	public boolean isCompleted() {
+		return status == Status.SUCCESS || status == Status.DELEGATED;
+	}
+}
@@ -0,0 +1,150 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * Live migration state of one schema on this instance. Written by the migration
+ * threads and read by HTTP requests, hence the volatile fields.
+ *
+ * @author Piramal Swasthya
+ */
+@Getter
+public class SchemaMigrationStatus {
+
+	public enum Role {
+		/** No cluster coordination configured. */
+		STANDALONE,
+		/** This instance holds the schema's migration lock. */
+		LEADER,
+		/** Another instance holds the lock; this one waits or defers. */
+		FOLLOWER
+	}
+
+	public enum State {
+		PENDING, WAITING_FOR_LEADER, MIGRATING, COMPLETED, DELEGATED, FAILED, SKIPPED;
+
+		public boolean isInProgress() {
+			return this == PENDING || this == WAITING_FOR_LEADER || this == MIGRATING;
+		}
+	}
+
+	private final String schema;
+	private volatile Role role = Role.STANDALONE;
+	private volatile State state = State.PENDING;
+	private volatile String currentVersion;
+	private volatile String targetVersion;
+	private volatile String message;
+	private volatile String updatedAt = Instant.now().toString();
+
+	// Progress of the running migrate() call; -1 means unknown
+	private volatile String currentScript;
+	// Long-running step inside the current script, e.g. an index build
+	private volatile String currentOperation;
+	private volatile int scriptsCompleted;
+	private volatile int scriptsTotal = -1;
+	private volatile long startedAtNanos;
+	private volatile long finishedAtNanos;
+
+	SchemaMigrationStatus(String schema) {
+		this.schema = schema;
+	}
+
+	public void update(Role role, State state, String message) {
+		this.role = role;
+		transition(state, message);
+	}
+
+	public void transition(State state, String message) {
+		if (state == State.MIGRATING && this.state != State.MIGRATING) {
+			startedAtNanos = System.nanoTime();
+			finishedAtNanos = 0;
+		} else if (!state.isInProgress() && startedAtNanos != 0 && finishedAtNanos == 0) {
+			finishedAtNanos = System.nanoTime();
+		}
+		this.state = state;
+		this.message = message;
+		this.updatedAt = Instant.now().toString();
+	}
+
+	public void setCurrentVersion(String currentVersion) {
+		this.currentVersion = currentVersion;
+	}
+
+	public void setTargetVersion(String targetVersion) {
+		this.targetVersion = targetVersion;
+	}
+
+	public void startScripts(int scriptsTotal) {
+		this.scriptsTotal = scriptsTotal;
+		this.scriptsCompleted = 0;
+		this.currentScript = null;
+	}
+
+	public void scriptStarted(String script) {
+		this.currentScript = script;
+		this.updatedAt = Instant.now().toString();
+	}
+
+	public void setCurrentOperation(String currentOperation) {
+		this.currentOperation = currentOperation;
+		this.updatedAt = Instant.now().toString();
+	}
+
+	public void scriptCompleted(String version) {
+		this.scriptsCompleted++;
+		this.currentScript = null;
+		this.currentOperation = null;
+		if (version != null) {
+			this.currentVersion = version;
+		}
+		this.updatedAt = Instant.now().toString();
+	}
+
+	/**
+	 * Point-in-time view for the progress endpoints, with the elapsed time and
+	 * remaining script count derived at read time.
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> view = new LinkedHashMap<>();
+		view.put("schema", schema);
+		view.put("role", role);
+		view.put("state", state);
+		view.put("currentVersion", currentVersion);
+		view.put("targetVersion", targetVersion);
+		view.put("currentScript", currentScript);
+		view.put("currentOperation", currentOperation);
+		view.put("scriptsCompleted", scriptsCompleted);
+		view.put("scriptsRemaining", scriptsTotal < 0 ? null : Math.max(0, scriptsTotal - scriptsCompleted));
+		long started = startedAtNanos;
+		long finished = finishedAtNanos;
+		view.put("elapsedMs", started == 0 ? 0 : ((finished != 0 ? finished : System.nanoTime()) - started) / 1_000_000);
+		view.put("message", message);
+		view.put("updatedAt", updatedAt);
+		return view;
+	}
+}
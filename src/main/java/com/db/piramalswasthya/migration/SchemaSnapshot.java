@@ -0,0 +1,149 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * In-memory copy of the tables, columns and indexes of the connection's current
+ * database, loaded with a single {@code information_schema} query. Java
+ * migrations consult it instead of issuing one {@code information_schema.statistics}
+ * lookup per index. Names are compared case-insensitively, as MySQL does on
+ * the platforms we deploy to.
+ *
+ * @author Piramal Swasthya
+ */
+public class SchemaSnapshot {
+
+	private static final String SNAPSHOT_SQL =
+		"SELECT 'I' AS kind, TABLE_NAME, INDEX_NAME AS object_name, COLUMN_NAME, SEQ_IN_INDEX AS position, NON_UNIQUE "
+		+ "FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE() "
+		+ "UNION ALL "
+		+ "SELECT 'C', TABLE_NAME, COLUMN_NAME, COLUMN_NAME, ORDINAL_POSITION, NULL "
+		+ "FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() "
+		+ "ORDER BY 2, 1, 3, 5";
+
+	/** Index definition with its columns in key order. */
+	public record Index(String name, List<String> columns, boolean unique) {
+	}
+
+	private static final class Table {
+		private final Set<String> columns = new LinkedHashSet<>();
+		private final Map<String, Index> indexes = new LinkedHashMap<>();
+	}
+
+	private final Map<String, Table> tables = new HashMap<>();
+
+	private SchemaSnapshot() {
+	}
+
+	public static SchemaSnapshot load(Connection connection) throws SQLException {
+		SchemaSnapshot snapshot = new SchemaSnapshot();
+		Map<String, Map<String, List<String>>> indexColumns = new HashMap<>();
+		Map<String, Set<String>> uniqueIndexes = new HashMap<>();
+
+		try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(SNAPSHOT_SQL)) {
+			while (rs.next()) {
+				String table = key(rs.getString("TABLE_NAME"));
+				Table info = snapshot.tables.computeIfAbsent(table, t -> new Table());
+				if ("C".equals(rs.getString("kind"))) {
+					info.columns.add(key(rs.getString("COLUMN_NAME")));
+				} else {
+					String index = rs.getString("object_name");
+					// Functional index parts have no column name
+					String column = rs.getString("COLUMN_NAME");
+					indexColumns.computeIfAbsent(table, t -> new LinkedHashMap<>())
+						.computeIfAbsent(index, i -> new ArrayList<>())
+						.add(column == null ? "" : key(column));
+					if (rs.getInt("NON_UNIQUE") == 0) {
+						uniqueIndexes.computeIfAbsent(table, t -> new LinkedHashSet<>()).add(index);
+					}
+				}
+			}
+		}
+
+		indexColumns.forEach((table, indexes) -> indexes.forEach((name, columns) -> snapshot.tables.get(table).indexes
+			.put(key(name), new Index(name, List.copyOf(columns),
+				uniqueIndexes.getOrDefault(table, Set.of()).contains(name)))));
+		return snapshot;
+	}
+
+	public boolean hasTable(String table) {
+		return tables.containsKey(key(table));
+	}
+
+	public boolean hasColumn(String table, String column) {
+		Table info = tables.get(key(table));
+		return info != null && info.columns.contains(key(column));
+	}
+
+	public boolean hasIndex(String table, String indexName) {
+		Table info = tables.get(key(table));
+		return info != null && info.indexes.containsKey(key(indexName));
+	}
+
+	public Collection<Index> getIndexes(String table) {
+		Table info = tables.get(key(table));
+		return info == null ? List.of() : Collections.unmodifiableCollection(info.indexes.values());
+	}
+
+	/**
+	 * Finds an existing index whose leading columns are exactly {@code columns},
+	 * i.e. one that already serves any lookup the requested index would.
+	 */
+	public Optional<Index> findCoveringIndex(String table, List<String> columns) {
+		List<String> wanted = columns.stream().map(SchemaSnapshot::key).toList();
+		return getIndexes(table).stream()
+			.filter(index -> index.columns().size() >= wanted.size()
+				&& index.columns().subList(0, wanted.size()).equals(wanted))
+			.findFirst();
+	}
+
+	/** Records a column added by a pending change so later checks see it. */
+	void addColumn(String table, String column) {
+		tables.computeIfAbsent(key(table), t -> new Table()).columns.add(key(column));
+	}
+
+	/** Records an index added by a pending change so later checks see it. */
+	void addIndex(String table, String indexName, List<String> columns, boolean unique) {
+		tables.computeIfAbsent(key(table), t -> new Table()).indexes.put(key(indexName),
+			new Index(indexName, columns.stream().map(SchemaSnapshot::key).toList(), unique));
+	}
+
+	private static String key(String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+}
@@ -0,0 +1,116 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Base class for index and column migrations. The schema is read once into a
+ * {@link SchemaSnapshot}, the subclass declares what it needs through the
+ * idempotent operations of {@link SchemaChangeSet}, and the changes are applied
+ * merged per table. Version and description come from the class name as for
+ * any Flyway Java migration, e.g. {@code V95__Report_indexes}.
+ *
+ * <pre>
+ * &#64;Component
+ * public class V95__Report_indexes extends SnapshotJavaMigration {
+ *     public V95__Report_indexes() { super("dbiemr"); }
+ *
+ *     protected void plan(SchemaChangeSet changes, Context context) {
+ *         changes.ensureIndex("t_benvisitdetail", "idx_visit_ben_created", "BeneficiaryRegID", "CreatedDate")
+ *                .ensureIndex("t_benvisitdetail", "idx_visit_provider", "ProviderServiceMapID");
+ *     }
+ *
+ *     protected void populate(Context context) throws Exception {
+ *         backfill(context, BackfillJob.of(...));
+ *     }
+ * }
+ * </pre>
+ *
+ * @author Piramal Swasthya
+ */
+public abstract class SnapshotJavaMigration extends BaseJavaMigration implements SchemaJavaMigration {
+
+	private final String schema;
+	private OnlineIndexBuilder indexBuilder;
+	private BackfillEngine backfillEngine;
+
+	protected SnapshotJavaMigration(String schema) {
+		this.schema = schema;
+	}
+
+	/** Optional; without it statements run directly on the migration connection. */
+	@Autowired(required = false)
+	public void setIndexBuilder(OnlineIndexBuilder indexBuilder) {
+		this.indexBuilder = indexBuilder;
+	}
+
+	@Autowired(required = false)
+	public void setBackfillEngine(BackfillEngine backfillEngine) {
+		this.backfillEngine = backfillEngine;
+	}
+
+	@Override
+	public String getSchema() {
+		return schema;
+	}
+
+	/** MySQL DDL commits implicitly, so there is no transaction to run in. */
+	@Override
+	public boolean canExecuteInTransaction() {
+		return false;
+	}
+
+	@Override
+	public final void migrate(Context context) throws Exception {
+		SchemaChangeSet changes = new SchemaChangeSet(SchemaSnapshot.load(context.getConnection()));
+		plan(changes, context);
+		if (indexBuilder != null) {
+			changes.apply(schema, context.getConnection(), context.getConfiguration().getDataSource(), indexBuilder);
+		} else {
+			changes.apply(context.getConnection());
+		}
+		populate(context);
+	}
+
+	/**
+	 * Declares the required schema objects; nothing is executed until this returns.
+	 */
+	protected abstract void plan(SchemaChangeSet changes, Context context) throws Exception;
+
+	/**
+	 * Fills new columns once the schema changes are in place; by default
+	 * nothing. Use {@link #backfill(Context, BackfillJob)} rather than a
+	 * table-wide UPDATE.
+	 */
+	protected void populate(Context context) throws Exception {
+	}
+
+	protected long backfill(Context context, BackfillJob job) throws Exception {
+		if (backfillEngine == null) {
+			throw new IllegalStateException("No BackfillEngine available for " + getClass().getSimpleName());
+		}
+		return backfillEngine.run(schema, context.getConnection(), job);
+	}
+}
@@ -0,0 +1,430 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.partition;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Monthly {@code RANGE COLUMNS} partitioning of one table on a DATE/DATETIME
+ * column, on the connection's current database. Partitions are named
+ * {@code pYYYYMM} and hold that month; a trailing {@code pmax} catches rows
+ * beyond the last month and is split when new months are added, which is
+ * instant while it is still empty.
+ * <p>
+ * MySQL only partitions a table when every unique key, the primary key
+ * included, contains the partitioning column, and InnoDB does not allow
+ * foreign keys on either side. Conversion therefore appends the column to the
+ * primary key (making it NOT NULL) and refuses tables with foreign keys,
+ * other unique keys without the column, or rows where it is NULL.
+ *
+ * @author Piramal Swasthya
+ */
+public class PartitionManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(PartitionManager.class);
+
+	static final String OVERFLOW_PARTITION = "pmax";
+	// MySQL's limit per table, pmax included
+	static final int MAX_PARTITIONS = 8192;
+	private static final Pattern MONTH_PARTITION = Pattern.compile("p(\\d{4})(\\d{2})");
+	private static final DateTimeFormatter MONTH_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+	private static final int MAX_TABLE_NAME = 64;
+	private static final Set<String> KEYWORDS = Set.of("where", "join", "inner", "left", "right", "cross", "on",
+		"using", "set", "group", "order", "limit", "straight_join", "natural", "union", "having", "for", "lock");
+
+	/**
+	 * What the database says about a registered table.
+	 *
+	 * @param months             months with their own partition, ascending; empty when not partitioned
+	 * @param managed            partitioned with the {@code pYYYYMM}/{@code pmax} scheme
+	 * @param ineligibleReason   why the table cannot be converted, or null
+	 */
+	public record TableState(String table, String column, boolean partitioned, boolean managed, List<YearMonth> months,
+			String ineligibleReason) {
+
+		public YearMonth lastMonth() {
+			return months.isEmpty() ? null : months.get(months.size() - 1);
+		}
+	}
+
+	/**
+	 * Partitions one statement reads from {@code table}.
+	 *
+	 * @param statement    statement as reported; the normalized digest text for sampled statements, never
+	 *                     their literal sample
+	 * @param partitions   partitions accessed, empty when the plan did not touch the table
+	 * @param total        partitions the table has
+	 * @param pruned       true when fewer than all partitions are read
+	 */
+	public record Pruning(String source, String statement, List<String> partitions, int total, boolean pruned,
+			String error) {
+	}
+
+	private final int queryTimeoutSeconds;
+
+	public PartitionManager(int queryTimeoutSeconds) {
+		this.queryTimeoutSeconds = queryTimeoutSeconds;
+	}
+
+	public TableState inspect(Connection conn, String table, String column) throws SQLException {
+		List<String> names = new ArrayList<>();
+		try (PreparedStatement ps = conn.prepareStatement("SELECT PARTITION_NAME FROM information_schema.PARTITIONS "
+			+ "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL "
+			+ "ORDER BY PARTITION_ORDINAL_POSITION")) {
+			ps.setString(1, table);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					names.add(rs.getString(1));
+				}
+			}
+		}
+		if (!names.isEmpty()) {
+			List<YearMonth> months = new ArrayList<>();
+			boolean managed = OVERFLOW_PARTITION.equals(names.get(names.size() - 1));
+			for (String name : names.subList(0, names.size() - 1)) {
+				YearMonth month = month(name);
+				managed &= month != null;
+				if (month != null) {
+					months.add(month);
+				}
+			}
+			return new TableState(table, column, true, managed, managed ? months : List.of(),
+				managed ? null : "partitioned with a different scheme");
+		}
+		return new TableState(table, column, false, false, List.of(), ineligibleReason(conn, table, column));
+	}
+
+	/**
+	 * Converts {@code table} to monthly partitions from the month of its oldest
+	 * row through {@code futureMonths} after the current one. This rebuilds
+	 * the table (ALGORITHM=COPY), blocking writes for the duration. Zero dates
+	 * are ignored when looking for the oldest row and end up in the first
+	 * partition, as does anything older than the partition limit allows.
+	 *
+	 * @return false when the table is already partitioned or not eligible
+	 */
+	public boolean convert(Connection conn, String table, String column, int futureMonths) throws SQLException {
+		TableState state = inspect(conn, table, column);
+		if (state.partitioned() || state.ineligibleReason() != null) {
+			logger.info("[PARTITION_CONVERT_SKIPPED] table={} | reason={}", table,
+				state.partitioned() ? "already partitioned" : state.ineligibleReason());
+			return false;
+		}
+
+		List<String> primaryKey = primaryKey(conn, table);
+		String columnType = queryString(conn, "SELECT COLUMN_TYPE FROM information_schema.COLUMNS "
+			+ "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?", table, column);
+		YearMonth current = YearMonth.now();
+		YearMonth last = current.plusMonths(futureMonths);
+		String oldest = queryString(conn, "SELECT DATE_FORMAT(MIN(" + quote(column) + "), '%Y-%m-01') FROM "
+			+ quote(table) + " WHERE " + quote(column) + " >= '1000-01-01'");
+		YearMonth first = firstMonth(oldest, current, last);
+
+		StringBuilder ddl = new StringBuilder("ALTER TABLE ").append(quote(table));
+		ddl.append(" MODIFY ").append(quote(column)).append(' ').append(columnType).append(" NOT NULL");
+		if (primaryKey.stream().noneMatch(c -> c.equalsIgnoreCase(column))) {
+			List<String> keyColumns = new ArrayList<>(primaryKey);
+			keyColumns.add(column);
+			ddl.append(", DROP PRIMARY KEY, ADD PRIMARY KEY (")
+				.append(keyColumns.stream().map(PartitionManager::quote).collect(Collectors.joining(", "))).append(')');
+		}
+		ddl.append(" PARTITION BY RANGE COLUMNS(").append(quote(column)).append(") (")
+			.append(partitionDefinitions(first, last))
+			.append(')');
+
+		long start = System.nanoTime();
+		logger.info("[PARTITION_CONVERT_STARTED] table={} | column={} | from={} | through={}", table, column, first,
+			last);
+		try (Statement stmt = conn.createStatement()) {
+			stmt.execute(ddl.toString());
+		}
+		logger.info("[PARTITION_CONVERT_DONE] table={} | partitions={} | durationMs={}", table,
+			ChronoUnit.MONTHS.between(first, last) + 2, (System.nanoTime() - start) / 1_000_000);
+		return true;
+	}
+
+	/**
+	 * Splits {@code pmax} so every month through {@code through} has its own partition.
+	 *
+	 * @return months added
+	 */
+	public List<YearMonth> ensureMonths(Connection conn, TableState state, YearMonth through) throws SQLException {
+		if (!state.managed()) {
+			return List.of();
+		}
+		YearMonth last = state.lastMonth();
+		YearMonth from = last == null ? YearMonth.now() : last.plusMonths(1);
+		if (from.isAfter(through)) {
+			return List.of();
+		}
+		List<YearMonth> added = new ArrayList<>();
+		for (YearMonth month = from; !month.isAfter(through); month = month.plusMonths(1)) {
+			added.add(month);
+		}
+		try (Statement stmt = conn.createStatement()) {
+			stmt.execute("ALTER TABLE " + quote(state.table()) + " REORGANIZE PARTITION " + OVERFLOW_PARTITION
+				+ " INTO (" + partitionDefinitions(from, through) + ")");
+		}
+		logger.info("[PARTITION_MONTHS_ADDED] table={} | from={} | through={}", state.table(), from, through);
+		return added;
+	}
+
+	/**
+	 * Removes partitions of months before {@code before}, keeping at least one
+	 * month partition. With {@code exchange} each partition is first swapped
+	 * into a standalone {@code <table>_<partition>} table, so its rows stay
+	 * available for archiving.
+	 *
+	 * @return partitions removed
+	 */
+	public List<String> expire(Connection conn, TableState state, YearMonth before, boolean exchange)
+			throws SQLException {
+		if (!state.managed()) {
+			return List.of();
+		}
+		List<YearMonth> expired = state.months().stream().filter(month -> month.isBefore(before))
+			.limit(Math.max(0, state.months().size() - 1))
+			.toList();
+		List<String> removed = new ArrayList<>();
+		for (YearMonth month : expired) {
+			String partition = name(month);
+			try (Statement stmt = conn.createStatement()) {
+				if (exchange) {
+					String archive = archiveTable(state.table(), partition);
+					// Fails if the archive exists, rather than swapping earlier archived rows back in
+					stmt.execute("CREATE TABLE " + quote(archive) + " LIKE " + quote(state.table()));
+					stmt.execute("ALTER TABLE " + quote(archive) + " REMOVE PARTITIONING");
+					stmt.execute("ALTER TABLE " + quote(state.table()) + " EXCHANGE PARTITION " + partition
+						+ " WITH TABLE " + quote(archive));
+					logger.info("[PARTITION_EXCHANGED] table={} | partition={} | archive={}", state.table(), partition,
+						archive);
+				}
+				stmt.execute("ALTER TABLE " + quote(state.table()) + " DROP PARTITION " + partition);
+			}
+			logger.info("[PARTITION_DROPPED] table={} | partition={}", state.table(), partition);
+			removed.add(partition);
+		}
+		return removed;
+	}
+
+	/**
+	 * Explains {@code sql} and reports which partitions of {@code table} it
+	 * reads. Only {@code statement} is echoed back, and failures are reported
+	 * by error code, so a sampled statement's literals never leave the server.
+	 */
+	public Pruning checkPruning(Connection conn, String source, String table, int totalPartitions, String sql,
+			String statement) {
+		Set<String> names = aliases(sql, table);
+		List<String> partitions = new ArrayList<>();
+		try (Statement stmt = conn.createStatement()) {
+			stmt.setQueryTimeout(queryTimeoutSeconds);
+			try (ResultSet rs = stmt.executeQuery("EXPLAIN FORMAT=JSON " + sql)) {
+				rs.next();
+				collectPartitions(JsonParser.parseString(rs.getString(1)), names, partitions);
+			}
+		} catch (SQLException e) {
+			return new Pruning(source, statement, List.of(), totalPartitions, false,
+				"EXPLAIN failed: error " + e.getErrorCode() + " (" + e.getSQLState() + ")");
+		} catch (RuntimeException e) {
+			return new Pruning(source, statement, List.of(), totalPartitions, false, "unreadable plan");
+		}
+		Set<String> distinct = new LinkedHashSet<>(partitions);
+		return new Pruning(source, statement, List.copyOf(distinct), totalPartitions,
+			!distinct.isEmpty() && distinct.size() < totalPartitions, null);
+	}
+
+	/** Range query over one month, which must read exactly that month's partition. */
+	public static String probeSql(String table, String column, YearMonth month) {
+		return "SELECT COUNT(*) FROM " + quote(table) + " WHERE " + quote(column) + " >= '" + month.atDay(1)
+			+ "' AND " + quote(column) + " < '" + month.plusMonths(1).atDay(1) + "'";
+	}
+
+	private static void collectPartitions(JsonElement node, Set<String> names, List<String> partitions) {
+		if (node.isJsonArray()) {
+			for (JsonElement element : node.getAsJsonArray()) {
+				collectPartitions(element, names, partitions);
+			}
+			return;
+		}
+		if (!node.isJsonObject()) {
+			return;
+		}
+		JsonObject object = node.getAsJsonObject();
+		if (object.has("table_name") && object.has("partitions")
+			&& names.contains(object.get("table_name").getAsString().toLowerCase(Locale.ROOT))) {
+			JsonArray accessed = object.getAsJsonArray("partitions");
+			accessed.forEach(partition -> partitions.add(partition.getAsString()));
+		}
+		for (String key : object.keySet()) {
+			collectPartitions(object.get(key), names, partitions);
+		}
+	}
+
+	/** The table's name plus every alias it is given in {@code sql}, lower case. */
+	private static Set<String> aliases(String sql, String table) {
+		Set<String> names = new LinkedHashSet<>();
+		names.add(table.toLowerCase(Locale.ROOT));
+		Matcher m = Pattern.compile("\\b(?:from|join)\\s+(?:`?\\w+`?\\.)?`?" + Pattern.quote(table)
+			+ "`?(?:\\s+(?:as\\s+)?`?(\\w+)`?)?", Pattern.CASE_INSENSITIVE).matcher(sql);
+		while (m.find()) {
+			if (m.group(1) != null && !KEYWORDS.contains(m.group(1).toLowerCase(Locale.ROOT))) {
+				names.add(m.group(1).toLowerCase(Locale.ROOT));
+			}
+		}
+		return names;
+	}
+
+	private String ineligibleReason(Connection conn, String table, String column) throws SQLException {
+		String dataType = queryString(conn, "SELECT DATA_TYPE FROM information_schema.COLUMNS "
+			+ "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?", table, column);
+		if (dataType == null) {
+			return "column " + column + " not found";
+		}
+		if (!"date".equalsIgnoreCase(dataType) && !"datetime".equalsIgnoreCase(dataType)) {
+			return "column " + column + " is " + dataType + ", RANGE COLUMNS needs DATE or DATETIME";
+		}
+		String foreignKey = queryString(conn, "SELECT CONCAT(TABLE_NAME, '.', CONSTRAINT_NAME) "
+			+ "FROM information_schema.REFERENTIAL_CONSTRAINTS WHERE CONSTRAINT_SCHEMA = DATABASE() "
+			+ "AND (TABLE_NAME = ? OR REFERENCED_TABLE_NAME = ?) LIMIT 1", table, table);
+		if (foreignKey != null) {
+			return "foreign key " + foreignKey;
+		}
+		if (primaryKey(conn, table).isEmpty()) {
+			return "no primary key";
+		}
+		String uniqueKey = queryString(conn, "SELECT INDEX_NAME FROM information_schema.STATISTICS "
+			+ "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND NON_UNIQUE = 0 AND INDEX_NAME <> 'PRIMARY' "
+			+ "GROUP BY INDEX_NAME HAVING SUM(UPPER(COLUMN_NAME) = UPPER(?)) = 0 LIMIT 1", table, column);
+		if (uniqueKey != null) {
+			return "unique key " + uniqueKey + " does not include " + column;
+		}
+		try (Statement stmt = conn.createStatement()) {
+			stmt.setQueryTimeout(queryTimeoutSeconds);
+			try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM " + quote(table) + " WHERE " + quote(column)
+				+ " IS NULL LIMIT 1")) {
+				if (rs.next()) {
+					return "rows with NULL " + column;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static List<String> primaryKey(Connection conn, String table) throws SQLException {
+		List<String> columns = new ArrayList<>();
+		try (PreparedStatement ps = conn.prepareStatement("SELECT COLUMN_NAME FROM information_schema.STATISTICS "
+			+ "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = 'PRIMARY' ORDER BY SEQ_IN_INDEX")) {
+			ps.setString(1, table);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					columns.add(rs.getString(1));
+				}
+			}
+		}
+		return columns;
+	}
+
+	private static String queryString(Connection conn, String sql, String... parameters) throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			for (int i = 0; i < parameters.length; i++) {
+				ps.setString(i + 1, parameters[i]);
+			}
+			try (ResultSet rs = ps.executeQuery()) {
+				return rs.next() ? rs.getString(1) : null;
+			}
+		}
+	}
+
+	/**
+	 * First month to give its own partition: the month of {@code oldest}
+	 * (yyyy-MM-dd), kept between the earliest month the partition limit
+	 * allows before {@code last} and {@code current}. Unreadable dates fall
+	 * back to {@code current}.
+	 */
+	static YearMonth firstMonth(String oldest, YearMonth current, YearMonth last) {
+		YearMonth first;
+		try {
+			first = oldest == null ? current : YearMonth.from(LocalDate.parse(oldest));
+		} catch (DateTimeParseException e) {
+			logger.warn("[PARTITION_CONVERT] Unreadable oldest date, starting at the current month | oldest={}", oldest);
+			first = current;
+		}
+		YearMonth earliest = last.minusMonths(MAX_PARTITIONS - 2);
+		if (first.isBefore(earliest)) {
+			return earliest;
+		}
+		return first.isAfter(current) ? current : first;
+	}
+
+	/** {@code pFIRST ... pLAST, pmax} partition clauses. */
+	static String partitionDefinitions(YearMonth first, YearMonth last) {
+		List<String> definitions = new ArrayList<>();
+		for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+			definitions.add("PARTITION " + name(month) + " VALUES LESS THAN ('" + month.plusMonths(1).atDay(1) + "')");
+		}
+		definitions.add("PARTITION " + OVERFLOW_PARTITION + " VALUES LESS THAN (MAXVALUE)");
+		return String.join(", ", definitions);
+	}
+
+	static String name(YearMonth month) {
+		return month.format(MONTH_NAME);
+	}
+
+	static YearMonth month(String partition) {
+		Matcher m = MONTH_PARTITION.matcher(partition);
+		return m.matches() ? YearMonth.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2))) : null;
+	}
+
+	private static String archiveTable(String table, String partition) {
+		String suffix = "_" + partition;
+		return table.substring(0, Math.min(table.length(), MAX_TABLE_NAME - suffix.length())) + suffix;
+	}
+
+	private static String quote(String identifier) {
+		return "`" + identifier.replace("`", "``") + "`";
+	}
+}
@@ -0,0 +1,101 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.partition;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Settings for monthly range-partition maintenance, bound from
+ * {@code amrit.partition.*}. Tables are registered per schema, e.g.
+ * {@code amrit.partition.tables.dbreporting.fact_bencall.retention-months=36}.
+ *
+ * @author Piramal Swasthya
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "amrit.partition")
+public class PartitionProperties {
+
+	public enum ExpiryAction {
+		/** Keep expired partitions. */
+		NONE,
+		/** Drop expired partitions and their rows. */
+		DROP,
+		/** Swap each expired partition into a standalone {@code <table>_<partition>} table, then drop it. */
+		EXCHANGE
+	}
+
+	/** Runs the maintenance job; it only alters tables already partitioned by {@link PartitionManager}. */
+	private boolean enabled = true;
+
+	/**
+	 * Allows converting registered tables to partitions through
+	 * {@code POST /db/partitions/convert}. Each conversion rebuilds the table,
+	 * blocking writes to it for the duration, so it stays off unless a
+	 * maintenance window is planned.
+	 */
+	private boolean conversionEnabled = false;
+
+	/** Pause between maintenance runs. */
+	private Duration interval = Duration.ofHours(6);
+
+	/** Months of empty partitions kept ready ahead of the current month. */
+	private int futureMonths = 3;
+
+	/** Registered tables: schema, then table name. */
+	private Map<String, Map<String, Table>> tables = defaultTables();
+
+	@Data
+	public static class Table {
+
+		/** DATE or DATETIME column the table is partitioned on. */
+		private String column = "CreatedDate";
+
+		/** Partitions whose whole month is older than this many months expire; null keeps them all. */
+		private Integer retentionMonths;
+
+		private ExpiryAction expiryAction = ExpiryAction.NONE;
+	}
+
+	private static Map<String, Map<String, Table>> defaultTables() {
+		Map<String, Map<String, Table>> tables = new LinkedHashMap<>();
+		Map<String, Table> reporting = new LinkedHashMap<>();
+		reporting.put("fact_bencall", new Table());
+		reporting.put("fact_mctscallresponse", new Table());
+		reporting.put("fact_benvisitdetail", new Table());
+		tables.put("dbreporting", reporting);
+		// Reported for eligibility only until their foreign keys are gone: InnoDB
+		// cannot partition a table that has or is referenced by a foreign key
+		Map<String, Table> iemr = new LinkedHashMap<>();
+		iemr.put("t_bencall", new Table());
+		iemr.put("t_benvisitdetail", new Table());
+		tables.put("dbiemr", iemr);
+		return tables;
+	}
+}
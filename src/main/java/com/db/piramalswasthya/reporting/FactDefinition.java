@@ -0,0 +1,124 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.reporting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * How one db_reporting table is loaded: the source schema (a {@code JdbcTemplate}
+ * bean name prefix), the driving table's modification timestamp and primary
+ * key that together form the watermark, and the fact columns with the source
+ * expressions that fill them.
+ *
+ * @param fact             target table in db_reporting
+ * @param source           source schema, e.g. {@code dbiemr}
+ * @param naturalKey       fact column holding the source primary key
+ * @param modifiedColumn   source timestamp, maintained {@code ON UPDATE CURRENT_TIMESTAMP}
+ * @param keyColumn        source primary key, the watermark tie-breaker
+ * @param from             FROM clause, driving table first
+ * @param columns          fact column to source expression, in insert order
+ *
+ * @author Piramal Swasthya
+ */
+public record FactDefinition(
+		String fact,
+		String source,
+		String naturalKey,
+		String modifiedColumn,
+		String keyColumn,
+		String from,
+		Map<String, String> columns) {
+
+	static final String MODIFIED_ALIAS = "etl_modified";
+	static final String KEY_ALIAS = "etl_key";
+
+	public List<String> factColumns() {
+		return new ArrayList<>(columns.keySet());
+	}
+
+	/**
+	 * One keyset page of rows changed after the watermark
+	 * {@code (modified, key)} and no later than the upper bound. Parameters:
+	 * modified, modified, key, upper bound, limit.
+	 */
+	String extractSql() {
+		String select = columns.entrySet().stream()
+			.map(c -> c.getValue() + " AS `" + c.getKey() + "`")
+			.collect(Collectors.joining(", "));
+		return "SELECT " + select + ", " + modifiedColumn + " AS " + MODIFIED_ALIAS + ", " + keyColumn + " AS " + KEY_ALIAS
+			+ " FROM " + from
+			+ " WHERE (" + modifiedColumn + " > ? OR (" + modifiedColumn + " = ? AND " + keyColumn + " > ?))"
+			+ " AND " + modifiedColumn + " <= ?"
+			+ " ORDER BY " + modifiedColumn + ", " + keyColumn + " LIMIT ?";
+	}
+
+	static Builder builder(String fact, String source, String naturalKey) {
+		return new Builder(fact, source, naturalKey);
+	}
+
+	static final class Builder {
+
+		private final String fact;
+		private final String source;
+		private final String naturalKey;
+		private String modifiedColumn;
+		private String keyColumn;
+		private String from;
+		private final Map<String, String> columns = new LinkedHashMap<>();
+
+		private Builder(String fact, String source, String naturalKey) {
+			this.fact = fact;
+			this.source = source;
+			this.naturalKey = naturalKey;
+		}
+
+		Builder from(String from, String modifiedColumn, String keyColumn) {
+			this.from = from;
+			this.modifiedColumn = modifiedColumn;
+			this.keyColumn = keyColumn;
+			return this;
+		}
+
+		/** Columns copied unchanged from {@code alias}. */
+		Builder copy(String alias, String... names) {
+			for (String name : names) {
+				columns.put(name, alias + "." + name);
+			}
+			return this;
+		}
+
+		Builder column(String factColumn, String expression) {
+			columns.put(factColumn, expression);
+			return this;
+		}
+
+		FactDefinition build() {
+			return new FactDefinition(fact, source, naturalKey, modifiedColumn, keyColumn, from,
+				Collections.unmodifiableMap(new LinkedHashMap<>(columns)));
+		}
+	}
+}
@@ -0,0 +1,345 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.reporting;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import com.db.piramalswasthya.reporting.WatermarkStore.Watermark;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Loads one {@link FactDefinition} incrementally: source rows modified after
+ * the fact's watermark are read in keyset pages of
+ * {@code (LastModDate, primary key)} through the source schema's
+ * {@code JdbcTemplate}, and written to db_reporting in multi-row statements.
+ * Each page commits together with the advanced watermark, so the cost of a
+ * refresh follows the number of changed rows, not the table size, and an
+ * interrupted load resumes after its last committed page.
+ * <p>
+ * Facts with a unique key on the natural key are upserted with
+ * {@code INSERT ... ON DUPLICATE KEY UPDATE}. The stock db_reporting facts
+ * only have a plain index there (the legacy procedures insert duplicates), so
+ * for them each batch deletes the changed keys and re-inserts the rows in the
+ * same transaction.
+ *
+ * @author Piramal Swasthya
+ */
+@Component
+public class ReportingEtlEngine {
+
+	private static final Logger logger = LoggerFactory.getLogger(ReportingEtlEngine.class);
+
+	static final String REPORTING_SCHEMA = "dbreporting";
+	private static final String JDBC_TEMPLATE_BEAN_SUFFIX = "JdbcTemplate";
+
+	private static final String LAG_GAUGE = "amrit.reporting.etl.lag";
+	private static final String ROWS_COUNTER = "amrit.reporting.etl.rows";
+	private static final String RUN_TIMER = "amrit.reporting.etl.run";
+
+	private static final String UNIQUE_KEY_SQL = "SELECT COUNT(*) FROM ("
+		+ "SELECT INDEX_NAME FROM information_schema.STATISTICS "
+		+ "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND NON_UNIQUE = 0 "
+		+ "GROUP BY INDEX_NAME HAVING COUNT(*) = 1 AND MAX(UPPER(COLUMN_NAME)) = UPPER(?)) unique_keys";
+
+	public enum WriteMode {
+		/** {@code INSERT ... ON DUPLICATE KEY UPDATE} on a unique natural key. */
+		UPSERT,
+		/** Delete the batch's natural keys, then insert, in one transaction. */
+		DELETE_INSERT
+	}
+
+	/**
+	 * Load state of one fact.
+	 *
+	 * @param lagSeconds   age of the newest point up to which the fact is complete, null before the first full pass
+	 * @param lastRunRows  rows written by the most recent run
+	 */
+	public record FactStatus(String fact, String source, WriteMode mode, LocalDateTime lastModified, Long lastKey,
+			LocalDateTime completeTo, long rowsLoaded, long lastRunRows, long lastRunMillis, Double lagSeconds,
+			String lastError) {
+	}
+
+	private record SourceRow(Object[] values, LocalDateTime modified, long key) {
+	}
+
+	private static final class FactState {
+		private volatile WriteMode mode;
+		private volatile Watermark watermark;
+		private volatile long completedAtNanos;
+		private volatile long lastRunRows;
+		private volatile long lastRunMillis;
+		private volatile String lastError;
+	}
+
+	private final Map<String, JdbcTemplate> jdbcTemplates = new LinkedHashMap<>();
+	private final ReportingEtlProperties properties;
+	private final MeterRegistry meterRegistry;
+	private final Map<String, FactState> states = new LinkedHashMap<>();
+	private final List<FactDefinition> facts;
+
+	public ReportingEtlEngine(Map<String, JdbcTemplate> jdbcTemplates, ReportingEtlProperties properties,
+			ObjectProvider<MeterRegistry> meterRegistry) {
+		jdbcTemplates.forEach((beanName, template) -> this.jdbcTemplates.put(
+			beanName.endsWith(JDBC_TEMPLATE_BEAN_SUFFIX)
+				? beanName.substring(0, beanName.length() - JDBC_TEMPLATE_BEAN_SUFFIX.length())
+				: beanName,
+			template));
+		this.properties = properties;
+		this.meterRegistry = meterRegistry.getIfAvailable();
+		this.facts = ReportingFacts.all();
+		for (FactDefinition fact : facts) {
+			FactState state = new FactState();
+			states.put(fact.fact(), state);
+			if (this.meterRegistry != null) {
+				TimeGauge.builder(LAG_GAUGE, state, TimeUnit.SECONDS, this::lagSeconds)
+					.description("Age of the newest source change the fact is known to include")
+					.tag("fact", fact.fact())
+					.register(this.meterRegistry);
+			}
+		}
+	}
+
+	public List<FactDefinition> getFacts() {
+		return facts;
+	}
+
+	/**
+	 * Brings {@code fact} up to the source clock minus the settle time.
+	 *
+	 * @return rows written
+	 */
+	public long load(FactDefinition fact) {
+		FactState state = states.get(fact.fact());
+		JdbcTemplate source = jdbcTemplates.get(fact.source());
+		JdbcTemplate reporting = jdbcTemplates.get(REPORTING_SCHEMA);
+		if (source == null || reporting == null) {
+			throw new IllegalStateException("No JdbcTemplate for " + (source == null ? fact.source() : REPORTING_SCHEMA));
+		}
+
+		long start = System.nanoTime();
+		String outcome = "success";
+		try {
+			long rows = reporting.execute((ConnectionCallback<Long>) conn -> loadInto(conn, source, fact, state));
+			state.lastRunRows = rows;
+			state.lastError = null;
+			if (meterRegistry != null) {
+				Counter.builder(ROWS_COUNTER).tag("fact", fact.fact()).register(meterRegistry).increment(rows);
+			}
+			logger.info("[ETL_FACT_LOADED] fact={} | rows={} | mode={} | completeTo={} | durationMs={}", fact.fact(),
+				rows, state.mode, state.watermark.completeTo(), (System.nanoTime() - start) / 1_000_000);
+			return rows;
+		} catch (RuntimeException e) {
+			outcome = "failure";
+			state.lastError = e.getMessage();
+			logger.error("[ETL_FACT_FAILED] fact={} | watermark={} | error=\"{}\"", fact.fact(),
+				state.watermark == null ? null : state.watermark.lastModified(), e.getMessage());
+			try {
+				reporting.execute((ConnectionCallback<Void>) conn -> {
+					new WatermarkStore(conn).saveError(fact.fact(), e.getMessage());
+					return null;
+				});
+			} catch (RuntimeException ignored) {
+				// the error is already logged and kept in memory
+			}
+			throw e;
+		} finally {
+			state.lastRunMillis = (System.nanoTime() - start) / 1_000_000;
+			if (meterRegistry != null) {
+				Timer.builder(RUN_TIMER)
+					.tag("fact", fact.fact())
+					.tag("outcome", outcome)
+					.register(meterRegistry)
+					.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			}
+		}
+	}
+
+	private long loadInto(Connection conn, JdbcTemplate source, FactDefinition fact, FactState state)
+			throws SQLException {
+		WatermarkStore store = new WatermarkStore(conn);
+		Watermark watermark = store.load(fact.fact()).orElse(null);
+		if (watermark == null) {
+			watermark = store.seed(fact.fact());
+			logger.info("[ETL_WATERMARK_SEEDED] fact={} | from={}", fact.fact(), watermark.lastModified());
+		}
+		state.watermark = watermark;
+		if (state.mode == null) {
+			state.mode = uniqueNaturalKey(conn, fact) ? WriteMode.UPSERT : WriteMode.DELETE_INSERT;
+		}
+
+		LocalDateTime upperBound = source.queryForObject("SELECT NOW() - INTERVAL ? SECOND", LocalDateTime.class,
+			properties.getSettleTime().toSeconds());
+		int width = fact.columns().size();
+		String extractSql = fact.extractSql();
+		RowMapper<SourceRow> mapper = (rs, rowNum) -> sourceRow(rs, width);
+
+		boolean autoCommit = conn.getAutoCommit();
+		long rows = 0;
+		conn.setAutoCommit(false);
+		try {
+			while (true) {
+				List<SourceRow> page = source.query(extractSql, mapper, watermark.lastModified(),
+					watermark.lastModified(), watermark.lastKey(), upperBound, properties.getPageSize());
+				if (page.isEmpty()) {
+					break;
+				}
+				write(conn, fact, state.mode, page);
+				SourceRow last = page.get(page.size() - 1);
+				watermark = watermark.advance(last.modified(), last.key(), page.size());
+				store.save(watermark);
+				conn.commit();
+				state.watermark = watermark;
+				rows += page.size();
+				logger.debug("[ETL_PAGE] fact={} | rows={} | watermark={}/{}", fact.fact(), page.size(),
+					last.modified(), last.key());
+				if (page.size() < properties.getPageSize()) {
+					break;
+				}
+			}
+			watermark = watermark.completedTo(upperBound);
+			store.save(watermark);
+			conn.commit();
+			state.watermark = watermark;
+			state.completedAtNanos = System.nanoTime();
+			return rows;
+		} catch (SQLException | RuntimeException e) {
+			conn.rollback();
+			throw e;
+		} finally {
+			conn.setAutoCommit(autoCommit);
+		}
+	}
+
+	private static SourceRow sourceRow(ResultSet rs, int width) throws SQLException {
+		Object[] values = new Object[width];
+		for (int i = 0; i < width; i++) {
+			values[i] = rs.getObject(i + 1);
+		}
+		return new SourceRow(values, rs.getObject(FactDefinition.MODIFIED_ALIAS, LocalDateTime.class),
+			rs.getLong(FactDefinition.KEY_ALIAS));
+	}
+
+	private void write(Connection conn, FactDefinition fact, WriteMode mode, List<SourceRow> page) throws SQLException {
+		int keyIndex = fact.factColumns().indexOf(fact.naturalKey());
+		int batchSize = Math.max(1, properties.getBatchSize());
+		for (int from = 0; from < page.size(); from += batchSize) {
+			List<SourceRow> batch = page.subList(from, Math.min(page.size(), from + batchSize));
+			if (mode == WriteMode.DELETE_INSERT) {
+				try (PreparedStatement ps = conn.prepareStatement("DELETE FROM " + fact.fact() + " WHERE `"
+					+ fact.naturalKey() + "` IN (" + placeholders(batch.size()) + ")")) {
+					for (int i = 0; i < batch.size(); i++) {
+						ps.setObject(i + 1, batch.get(i).values()[keyIndex]);
+					}
+					ps.executeUpdate();
+				}
+			}
+			try (PreparedStatement ps = conn.prepareStatement(insertSql(fact, batch.size(), mode))) {
+				int index = 1;
+				for (SourceRow row : batch) {
+					for (Object value : row.values()) {
+						ps.setObject(index++, value);
+					}
+				}
+				ps.executeUpdate();
+			}
+		}
+	}
+
+	static String insertSql(FactDefinition fact, int rows, WriteMode mode) {
+		List<String> columns = fact.factColumns();
+		String row = "(" + placeholders(columns.size()) + ")";
+		StringBuilder sql = new StringBuilder("INSERT INTO ").append(fact.fact()).append(" (")
+			.append(columns.stream().map(c -> "`" + c + "`").collect(Collectors.joining(", ")))
+			.append(") VALUES ")
+			.append(String.join(", ", Collections.nCopies(rows, row)));
+		if (mode == WriteMode.UPSERT) {
+			sql.append(" ON DUPLICATE KEY UPDATE ").append(columns.stream()
+				.filter(c -> !c.equals(fact.naturalKey()))
+				.map(c -> "`" + c + "` = VALUES(`" + c + "`)")
+				.collect(Collectors.joining(", ")));
+		}
+		return sql.toString();
+	}
+
+	private static String placeholders(int count) {
+		return String.join(", ", Collections.nCopies(count, "?"));
+	}
+
+	private static boolean uniqueNaturalKey(Connection conn, FactDefinition fact) throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement(UNIQUE_KEY_SQL)) {
+			ps.setString(1, fact.fact());
+			ps.setString(2, fact.naturalKey());
+			try (ResultSet rs = ps.executeQuery()) {
+				return rs.next() && rs.getLong(1) > 0;
+			}
+		}
+	}
+
+	private double lagSeconds(FactState state) {
+		long completedAt = state.completedAtNanos;
+		if (completedAt == 0) {
+			return Double.NaN;
+		}
+		return properties.getSettleTime().toSeconds()
+			+ Duration.ofNanos(System.nanoTime() - completedAt).toMillis() / 1000.0;
+	}
+
+	public List<FactStatus> status() {
+		List<FactStatus> status = new ArrayList<>();
+		for (FactDefinition fact : facts) {
+			FactState state = states.get(fact.fact());
+			Watermark watermark = state.watermark;
+			double lag = lagSeconds(state);
+			status.add(new FactStatus(fact.fact(), fact.source(), state.mode,
+				watermark == null ? null : watermark.lastModified(),
+				watermark == null ? null : watermark.lastKey(),
+				watermark == null ? null : watermark.completeTo(),
+				watermark == null ? 0 : watermark.rowsLoaded(),
+				state.lastRunRows, state.lastRunMillis, Double.isNaN(lag) ? null : lag, state.lastError));
+		}
+		return status;
+	}
+}
@@ -0,0 +1,122 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.reporting;
+
+import java.util.List;
+
+/**
+ * The db_reporting tables kept current by {@link ReportingEtlEngine}. Each
+ * definition mirrors its {@code SP_Load_Fact_*} procedure in
+ * {@code dbreporting/V1__DB_REPORTING.sql}, with the procedure's
+ * "created yesterday" filter replaced by the {@code LastModDate} watermark so
+ * later updates to a source row reach the fact as well.
+ *
+ * @author Piramal Swasthya
+ */
+public final class ReportingFacts {
+
+	static final String LOADED_BY = "ReportingEtl";
+
+	private ReportingFacts() {
+	}
+
+	public static List<FactDefinition> all() {
+		return List.of(benCall(), benVisitDetail(), itemStockEntry(), mctsOutboundCall());
+	}
+
+	static FactDefinition benCall() {
+		return audited(FactDefinition.builder("fact_bencall", "dbiemr", "BenCallID")
+			.from("t_bencall TB"
+				+ " LEFT JOIN m_calltype MC ON MC.CallTypeID = TB.CallTypeID"
+				+ " LEFT JOIN m_dispositionstatus MD ON MD.DispositionStatusID = TB.DispositionStatusID",
+				"TB.LastModDate", "TB.BenCallID")
+			.copy("TB", "BenCallID", "BeneficiaryRegID", "CallID", "SessionID", "PhoneNo")
+			.column("ProviderServiceMapID", "TB.CalledServiceID")
+			.copy("TB", "CallTypeID")
+			.column("CallTypeName", "MC.callgroupType")
+			.column("CallSubTypeName", "MC.callType")
+			.copy("TB", "is1097", "CallTime", "Remarks", "ServicesProvided", "CallClosureType")
+			.column("DispositionStatusID", "MD.DispositionStatusID")
+			.column("DispositionStatusName", "MD.DispositionStatus")
+			.copy("TB", "CallReceivedUserID", "ReceivedRoleName", "ReceivedAgentID", "CallEndUserID", "CallEndTime",
+				"CallDuration", "Category", "SubCategory", "CDICallStatus", "IsOutbound", "IsCalledEarlier",
+				"RecordingFilePath", "ArchiveFilePath", "OBCallID", "ChangeLog", "IsMother", "SMS_Advice", "SMS_Ph",
+				"IsVerified", "CZcallStartTime", "CZcallEndTime", "CZcallDuration", "isCallAnswered",
+				"isCallDisconnected", "isFurtherCallRequired", "TypeOfComplaint", "complaintRemarks",
+				"reasonForNoFurtherCalls", "reasonForCallNotAnswered", "isCallAudited", "isWrongNumber"),
+			"TB");
+	}
+
+	static FactDefinition benVisitDetail() {
+		return audited(FactDefinition.builder("fact_benvisitdetail", "dbiemr", "BenVisitID")
+			.from("t_benvisitdetail BVD LEFT JOIN m_van VAN ON BVD.VanID = VAN.VanID",
+				"BVD.LastModDate", "BVD.BenVisitID")
+			.copy("BVD", "BenVisitID", "BeneficiaryRegID", "ProviderServiceMapID", "VisitCode", "VisitDateTime",
+				"VisitNo", "VisitReasonID", "VisitReason", "VisitCategoryID", "VisitCategory", "PregnancyStatus", "RCHID",
+				"HealthFacilityType", "HealthFacilityLocation", "ReportFilePath", "Deleted", "Processed", "VanSerialNo",
+				"VanID")
+			.copy("VAN", "VanName", "VehicalNo", "ParkingPlaceID")
+			.copy("BVD", "SyncedBy", "SyncedDate", "VisitFlowStatusFlag"),
+			"BVD");
+	}
+
+	static FactDefinition itemStockEntry() {
+		return audited(FactDefinition.builder("fact_itemstockentry", "dbiemr", "ItemStockEntryID")
+			.from("t_itemstockentry ISE"
+				+ " INNER JOIN m_item ITM ON ISE.ItemID = ITM.ItemID"
+				+ " INNER JOIN m_facility FAC ON ISE.FacilityID = FAC.FacilityID"
+				+ " INNER JOIN m_itemcategory ITMC ON ITM.ItemCategoryID = ITMC.ItemCategoryID",
+				"ISE.LastModDate", "ISE.ItemStockEntryID")
+			.copy("ISE", "ItemStockEntryID", "FacilityID")
+			.copy("FAC", "FacilityName", "FacilityDesc", "FacilityCode", "FacilityTypeID", "IsMainFacility",
+				"MainFacilityID")
+			.copy("ISE", "ItemID")
+			.copy("ITM", "ItemName", "ItemDesc", "ItemCategoryID")
+			.copy("ITMC", "ItemCategoryName", "AlertBeforeDays")
+			.copy("ITM", "Strength")
+			.copy("ISE", "BatchNo", "Quantity", "QuantityInHand", "UnitCostPrice", "ExpiryDate", "EntryTypeID",
+				"EntryType", "VanSerialNo")
+			.column("vanid", "ISE.VanID")
+			.copy("ISE", "ProviderServiceMapID", "Deleted", "Processed"),
+			"ISE");
+	}
+
+	static FactDefinition mctsOutboundCall() {
+		return audited(FactDefinition.builder("fact_mctsoutboundcall", "dbiemr", "OBCallID")
+			.from("t_mctsoutboundcalls OBC", "OBC.LastModDate", "OBC.OBCallID")
+			.copy("OBC", "OBCallID", "MotherID", "ChildID", "BeneficiaryRegID", "AllocatedUserID",
+				"ProviderServiceMapID", "OutboundCallType", "DisplayOBCallType", "CallDateFrom", "CallDateTo",
+				"PrefferedCallDate", "CallStatus", "NoOfTrials", "AllocationStatus", "IsSMSSent", "Deleted",
+				"IsHighRisk", "HighRisk_Reason", "IsHrni", "Hrni_Reason", "congenitalanomalies", "phoneNumberType"),
+			"OBC");
+	}
+
+	/** Audit and load-tracking columns every fact carries. */
+	private static FactDefinition audited(FactDefinition.Builder builder, String alias) {
+		return builder
+			.copy(alias, "CreatedBy", "CreatedDate", "ModifiedBy", "LastModDate")
+			.column("fact_CreatedDate", "REPLACE(DATE(" + alias + ".CreatedDate), '-', '')")
+			.column("LoadedBy", "'" + LOADED_BY + "'")
+			.column("LodadedDate", "NOW()")
+			.build();
+	}
+}
@@ -0,0 +1,128 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.reporting;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Per-fact load positions in db_reporting's {@value #TABLE} (created by
+ * {@code dbreporting/V4__reporting_etl_watermark.sql}). A watermark is the
+ * source {@code (LastModDate, primary key)} of the last row loaded; it is
+ * written on the load connection so it commits together with the rows it
+ * covers, and a restarted load resumes right after them.
+ *
+ * @author Piramal Swasthya
+ */
+public class WatermarkStore {
+
+	public static final String TABLE = "etl_watermark";
+
+	/**
+	 * @param lastModified  source modification time of the last row loaded
+	 * @param lastKey       source primary key of that row
+	 * @param completeTo    every source row modified up to here has been loaded, or null before the first full pass
+	 * @param rowsLoaded    rows loaded over the watermark's lifetime
+	 */
+	public record Watermark(String fact, LocalDateTime lastModified, long lastKey, LocalDateTime completeTo,
+			long rowsLoaded) {
+
+		Watermark advance(LocalDateTime modified, long key, long rows) {
+			return new Watermark(fact, modified, key, completeTo, rowsLoaded + rows);
+		}
+
+		Watermark completedTo(LocalDateTime upperBound) {
+			return new Watermark(fact, lastModified, lastKey, upperBound, rowsLoaded);
+		}
+	}
+
+	private static final String UPSERT_SQL = "INSERT INTO " + TABLE
+		+ " (fact_name, last_modified, last_key, complete_to, rows_loaded, last_error) VALUES (?, ?, ?, ?, ?, NULL) "
+		+ "ON DUPLICATE KEY UPDATE last_modified = VALUES(last_modified), last_key = VALUES(last_key), "
+		+ "complete_to = VALUES(complete_to), rows_loaded = VALUES(rows_loaded), last_error = NULL";
+
+	private static final String ERROR_SQL = "UPDATE " + TABLE + " SET last_error = ? WHERE fact_name = ?";
+
+	private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0, 1);
+
+	private final Connection connection;
+
+	public WatermarkStore(Connection connection) {
+		this.connection = connection;
+	}
+
+	public Optional<Watermark> load(String fact) throws SQLException {
+		try (PreparedStatement ps = connection.prepareStatement(
+			"SELECT last_modified, last_key, complete_to, rows_loaded FROM " + TABLE + " WHERE fact_name = ?")) {
+			ps.setString(1, fact);
+			try (ResultSet rs = ps.executeQuery()) {
+				if (!rs.next()) {
+					return Optional.empty();
+				}
+				Timestamp completeTo = rs.getTimestamp("complete_to");
+				return Optional.of(new Watermark(fact, rs.getTimestamp("last_modified").toLocalDateTime(),
+					rs.getLong("last_key"), completeTo == null ? null : completeTo.toLocalDateTime(),
+					rs.getLong("rows_loaded")));
+			}
+		}
+	}
+
+	/**
+	 * First watermark of a fact the legacy procedures have been filling: start
+	 * after the newest source modification already present in the fact, or at
+	 * the epoch when it is empty.
+	 */
+	public Watermark seed(String fact) throws SQLException {
+		try (PreparedStatement ps = connection.prepareStatement("SELECT MAX(LastModDate) FROM " + fact);
+			ResultSet rs = ps.executeQuery()) {
+			Timestamp newest = rs.next() ? rs.getTimestamp(1) : null;
+			LocalDateTime start = newest != null ? newest.toLocalDateTime() : EPOCH;
+			return new Watermark(fact, start, Long.MAX_VALUE, null, 0);
+		}
+	}
+
+	/** Writes the watermark in the connection's current transaction; the caller commits. */
+	public void save(Watermark watermark) throws SQLException {
+		try (PreparedStatement ps = connection.prepareStatement(UPSERT_SQL)) {
+			ps.setString(1, watermark.fact());
+			ps.setObject(2, watermark.lastModified());
+			ps.setLong(3, watermark.lastKey());
+			ps.setObject(4, watermark.completeTo());
+			ps.setLong(5, watermark.rowsLoaded());
+			ps.executeUpdate();
+		}
+	}
+
+	/** Records a failed run on an existing watermark without moving it. */
+	public void saveError(String fact, String error) throws SQLException {
+		try (PreparedStatement ps = connection.prepareStatement(ERROR_SQL)) {
+			ps.setString(1, error == null ? null : error.substring(0, Math.min(error.length(), 1000)));
+			ps.setString(2, fact);
+			ps.executeUpdate();
+		}
+	}
+}
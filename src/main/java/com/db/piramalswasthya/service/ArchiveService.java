@@ -0,0 +1,308 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+
+import com.db.piramalswasthya.archive.ArchiveEngine;
+import com.db.piramalswasthya.archive.ArchiveProperties;
+import com.db.piramalswasthya.diagnostics.DiagnosticSnapshot;
+import com.db.piramalswasthya.migration.MigrationStatusRegistry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs the archival policies of {@code amrit.archive.policies} with
+ * {@link ArchiveEngine}, one schema and table at a time. Before every chunk it
+ * reads the schema's last diagnostic snapshot and pauses while connection
+ * usage or long-running transactions are above the throttle limits. A MySQL
+ * named lock per schema lets only one replica archive it at a time, and runs
+ * wait until this instance has finished migrating.
+ */
+@Service
+public class ArchiveService {
+
+	private static final Logger logger = LoggerFactory.getLogger(ArchiveService.class);
+
+	private static final String DATASOURCE_BEAN_SUFFIX = "DataSource";
+	private static final String LOCK_PREFIX = "amrit_archive:";
+	private static final int QUERY_TIMEOUT_SECONDS = 120;
+
+	private final Map<String, DataSource> dataSources = new LinkedHashMap<>();
+	private final ArchiveProperties properties;
+	private final MigrationStatusRegistry migrationStatusRegistry;
+	private final HealthService healthService;
+	private final ArchiveEngine engine;
+	private final MeterRegistry meterRegistry;
+	private final AtomicBoolean running = new AtomicBoolean();
+
+	// schema.table -> outcome of the last run
+	private final Map<String, Map<String, Object>> lastRuns = new ConcurrentHashMap<>();
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "archive-scheduler");
+		t.setDaemon(true);
+		return t;
+	});
+
+	public ArchiveService(ObjectProvider<Map<String, DataSource>> dataSourcesProvider, ArchiveProperties properties,
+			MigrationStatusRegistry migrationStatusRegistry, HealthService healthService,
+			ObjectProvider<MeterRegistry> meterRegistry) {
+		dataSourcesProvider.getIfAvailable(Map::of).forEach((beanName, dataSource) -> dataSources.put(
+			beanName.endsWith(DATASOURCE_BEAN_SUFFIX)
+				? beanName.substring(0, beanName.length() - DATASOURCE_BEAN_SUFFIX.length())
+				: beanName,
+			dataSource));
+		this.properties = properties;
+		this.migrationStatusRegistry = migrationStatusRegistry;
+		this.healthService = healthService;
+		this.meterRegistry = meterRegistry.getIfAvailable();
+		this.engine = new ArchiveEngine(properties.getChunkSize(), properties.getPauseBetweenChunks(),
+			QUERY_TIMEOUT_SECONDS);
+		if (properties.isEnabled()) {
+			long intervalMs = properties.getInterval().toMillis();
+			scheduler.scheduleWithFixedDelay(this::scheduledRun, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+			logger.info("[ARCHIVE_SCHEDULED] interval={} | chunkSize={}", properties.getInterval(),
+				properties.getChunkSize());
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+
+	private void scheduledRun() {
+		try {
+			run();
+		} catch (RuntimeException e) {
+			logger.error("[ARCHIVE_RUN_FAILED] error=\"{}\"", e.getMessage());
+		}
+	}
+
+	/**
+	 * Archives every policy unless archival is disabled, a run is already
+	 * going on here, or this instance is still migrating. A schema another
+	 * replica holds is skipped.
+	 *
+	 * @return false when the run was skipped
+	 */
+	public boolean run() {
+		if (!properties.isEnabled()) {
+			logger.info("[ARCHIVE_SKIPPED] Archival disabled");
+			return false;
+		}
+		if (migrationStatusRegistry.isMigrating()) {
+			logger.info("[ARCHIVE_SKIPPED] Schema migration in progress");
+			return false;
+		}
+		if (!running.compareAndSet(false, true)) {
+			return false;
+		}
+		try {
+			Instant deadline = Instant.now().plus(properties.getMaxRunTime());
+			properties.getPolicies().forEach((schema, policies) -> {
+				DataSource dataSource = dataSources.get(schema);
+				if (dataSource == null) {
+					logger.warn("[ARCHIVE_SKIPPED] No datasource | schema={}", schema);
+					return;
+				}
+				// GET_LOCK is bound to the session, so the connection is held for the whole schema
+				try (Connection conn = dataSource.getConnection()) {
+					if (!lock(conn, "SELECT GET_LOCK(?, 0)", schema)) {
+						logger.info("[ARCHIVE_SKIPPED] Running on another instance | schema={}", schema);
+						return;
+					}
+					try {
+						policies.forEach((table, policy) -> archive(conn, schema, table, policy, deadline));
+					} finally {
+						lock(conn, "SELECT RELEASE_LOCK(?)", schema);
+					}
+				} catch (SQLException e) {
+					logger.error("[ARCHIVE_RUN_FAILED] schema={} | error=\"{}\"", schema, e.getMessage());
+				}
+			});
+			return true;
+		} finally {
+			running.set(false);
+		}
+	}
+
+	private void archive(Connection conn, String schema, String table, ArchiveProperties.Policy policy,
+			Instant deadline) {
+		Map<String, Object> run = new LinkedHashMap<>();
+		run.put("startedAt", Instant.now().toString());
+		try {
+			ArchiveEngine.RunResult result = engine.run(conn, table, policy, () -> awaitCapacity(schema), deadline);
+			run.put("rows", result.rows());
+			run.put("dependentRows", result.dependentRows());
+			run.put("chunks", result.chunks());
+			run.put("caughtUp", result.caughtUp());
+			run.put("stoppedBy", result.stoppedBy());
+			count("amrit.archive.rows", schema, table, result.rows());
+			count("amrit.archive.dependent.rows", schema, table, result.dependentRows());
+		} catch (SQLException | RuntimeException e) {
+			run.put("error", e.getMessage());
+			logger.error("[ARCHIVE_TABLE_FAILED] schema={} | table={} | error=\"{}\"", schema, table, e.getMessage());
+		}
+		run.put("endedAt", Instant.now().toString());
+		lastRuns.put(schema + "." + table, run);
+	}
+
+	/**
+	 * Waits while {@link #busyReason(String)} reports load, up to the
+	 * throttle's max wait.
+	 */
+	private boolean awaitCapacity(String schema) {
+		ArchiveProperties.Throttle throttle = properties.getThrottle();
+		long waitedMs = 0;
+		for (String reason = busyReason(schema); reason != null; reason = busyReason(schema)) {
+			if (waitedMs >= throttle.getMaxWait().toMillis()) {
+				logger.warn("[ARCHIVE_THROTTLED] Giving up for this run | schema={} | reason={} | waitedMs={}", schema,
+					reason, waitedMs);
+				return false;
+			}
+			logger.debug("[ARCHIVE_THROTTLED] schema={} | reason={}", schema, reason);
+			count("amrit.archive.throttled", schema, null, 1);
+			try {
+				Thread.sleep(throttle.getBackoff().toMillis());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+			waitedMs += throttle.getBackoff().toMillis();
+		}
+		return true;
+	}
+
+	/** Why the schema is too busy for another chunk according to its last diagnostic snapshot, or null. */
+	private String busyReason(String schema) {
+		DiagnosticSnapshot snapshot = healthService.getLastSnapshot(schema);
+		if (snapshot == null) {
+			return "no diagnostic snapshot yet";
+		}
+		ArchiveProperties.Throttle throttle = properties.getThrottle();
+		int usage = snapshot.connectionUsagePercent();
+		if (usage != DiagnosticSnapshot.UNKNOWN && usage > throttle.getMaxConnectionUsagePercent()) {
+			return "connection usage " + usage + "%";
+		}
+		long longTransactions = snapshot.longTransactions();
+		if (longTransactions != DiagnosticSnapshot.UNKNOWN && longTransactions > throttle.getMaxLongTransactions()) {
+			return longTransactions + " long transactions";
+		}
+		return null;
+	}
+
+	private void count(String name, String schema, String table, long amount) {
+		if (meterRegistry == null || amount <= 0) {
+			return;
+		}
+		Counter.Builder counter = Counter.builder(name).tag("schema", schema);
+		if (table != null) {
+			counter.tag("table", table);
+		}
+		counter.register(meterRegistry).increment(amount);
+	}
+
+	private static boolean lock(Connection conn, String sql, String schema) throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			// schemas can share a server, and GET_LOCK names are server-wide
+			ps.setString(1, LOCK_PREFIX + schema);
+			try (ResultSet rs = ps.executeQuery()) {
+				return rs.next() && rs.getInt(1) == 1;
+			}
+		}
+	}
+
+	public boolean isEnabled() {
+		return properties.isEnabled();
+	}
+
+	/**
+	 * Starts a run in the background.
+	 *
+	 * @return false when archival is disabled or a run is already going on this instance
+	 */
+	public boolean triggerRun() {
+		if (!properties.isEnabled() || running.get()) {
+			return false;
+		}
+		scheduler.execute(this::scheduledRun);
+		return true;
+	}
+
+	/** Tables moved along with each policy's table, eligibility and last-run outcome. */
+	public Map<String, Object> getStatus() {
+		Map<String, Object> status = new LinkedHashMap<>();
+		status.put("enabled", properties.isEnabled());
+		status.put("interval", properties.getInterval().toString());
+		status.put("running", running.get());
+		Map<String, Object> schemas = new LinkedHashMap<>();
+		properties.getPolicies().forEach((schema, policies) -> {
+			Map<String, Object> tables = new LinkedHashMap<>();
+			DataSource dataSource = dataSources.get(schema);
+			try (Connection conn = dataSource == null ? null : dataSource.getConnection()) {
+				for (Map.Entry<String, ArchiveProperties.Policy> entry : policies.entrySet()) {
+					ArchiveProperties.Policy policy = entry.getValue();
+					Map<String, Object> table = new LinkedHashMap<>();
+					table.put("ageColumn", policy.getAgeColumn());
+					table.put("retention", policy.getRetention().toString());
+					table.put("archiveSchema", policy.getArchiveSchema());
+					table.put("condition", policy.getCondition());
+					if (conn != null) {
+						ArchiveEngine.Plan plan = engine.plan(conn, entry.getKey(), policy);
+						table.put("keyColumn", plan.keyColumn());
+						table.put("ineligibleReason", plan.ineligibleReason());
+						table.put("dependents", plan.dependents());
+					}
+					table.put("lastRun", lastRuns.get(schema + "." + entry.getKey()));
+					tables.put(entry.getKey(), table);
+				}
+			} catch (SQLException | RuntimeException e) {
+				tables.put("error", e.getMessage());
+			}
+			schemas.put(schema, tables);
+		});
+		status.put("schemas", schemas);
+		return status;
+	}
+}
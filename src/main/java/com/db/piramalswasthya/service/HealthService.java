@@ -21,25 +21,48 @@
 */
 package com.db.piramalswasthya.service;
 
-import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.Statement;
+import java.sql.SQLException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
 
+import org.flywaydb.core.api.MigrationVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 
+import com.db.piramalswasthya.diagnostics.DatabaseDiagnostics;
+import com.db.piramalswasthya.diagnostics.DiagnosticCircuitBreaker;
+import com.db.piramalswasthya.diagnostics.DiagnosticHistory;
+import com.db.piramalswasthya.diagnostics.DiagnosticMetrics;
+import com.db.piramalswasthya.diagnostics.DiagnosticPools;
+import com.db.piramalswasthya.diagnostics.DiagnosticSnapshot;
+import com.db.piramalswasthya.diagnostics.HealthProperties;
+import com.db.piramalswasthya.diagnostics.IndexAdvisor;
+import com.db.piramalswasthya.diagnostics.IndexUsageAnalyzer;
+import com.db.piramalswasthya.diagnostics.Severity;
+import com.db.piramalswasthya.diagnostics.StatementDigestAnalyzer;
+import com.db.piramalswasthya.migration.IndexMigrationScript;
+import com.db.piramalswasthya.migration.MigrationStatusRegistry;
+import com.db.piramalswasthya.migration.SchemaJavaMigration;
+import com.db.piramalswasthya.migration.SchemaMigrationStatus;
+
 import jakarta.annotation.PreDestroy;
 
 @Service
@@ -47,77 +70,95 @@ public class HealthService {
 
 	private static final Logger logger = LoggerFactory.getLogger(HealthService.class);
 
-	// Event log constants
-	private static final String LOG_EVENT_STUCK_PROCESS = "MYSQL_STUCK_PROCESS";
-	private static final String LOG_EVENT_LONG_TXN = "MYSQL_LONG_TRANSACTION";
-	private static final String LOG_EVENT_DEADLOCK = "MYSQL_DEADLOCK";
-	private static final String LOG_EVENT_SLOW_QUERIES = "MYSQL_SLOW_QUERIES";
-	private static final String LOG_EVENT_CONN_USAGE = "MYSQL_CONNECTION_USAGE";
-	private static final String LOG_EVENT_POOL_EXHAUSTED = "MYSQL_POOL_EXHAUSTED";
-
 	// Response field constants
 	private static final String FIELD_STATUS = "status";
 	private static final String FIELD_SEVERITY = "severity";
 	private static final String FIELD_DATABASE = "database";
+	private static final String FIELD_DATABASES = "databases";
 	private static final String FIELD_CHECKED_AT = "checkedAt";
+	private static final String FIELD_MIGRATION = "migration";
+	private static final String FIELD_CIRCUIT = "circuit";
 
-	// Severity constants
-	private static final String SEVERITY_CRITICAL = "CRITICAL";
-	private static final String SEVERITY_WARNING = "WARNING";
-	private static final String SEVERITY_OK = "OK";
-	private static final String SEVERITY_INFO = "INFO";
-
-	// Database query constants
-	private static final String STATUS_VALUE = "Value";
+	// Status constants
 	private static final String STATUS_UP = "UP";
 	private static final String STATUS_DOWN = "DOWN";
 	private static final String STATUS_DEGRADED = "DEGRADED";
 	private static final String STATUS_NOT_CONFIGURED = "NOT_CONFIGURED";
+	private static final String STATUS_MIGRATING = "MIGRATING";
+	private static final String STATUS_READY = "READY";
+	private static final String STATUS_NOT_READY = "NOT_READY";
+
+	// Scheduling; cadence per check comes from amrit.health.counters/activity
+	private static final long DIAGNOSTIC_STARTUP_SPREAD_SEC = 5; // random start offset per datasource
+	private static final long DIAGNOSTIC_DEADLINE_SEC = 20;   // per-datasource bound on one diagnostic run
+	private static final long CONNECTIVITY_DEADLINE_SEC = 5;  // per-datasource bound on the /health probe
+
+	private static final String DATASOURCE_BEAN_SUFFIX = "DataSource";
+
+	// Keyed by schema (bean name without the DataSource suffix), in declaration order
+	private final Map<String, DatabaseDiagnostics> diagnostics = new LinkedHashMap<>();
+	private final MigrationStatusRegistry migrationStatusRegistry;
+	private final DiagnosticMetrics diagnosticMetrics;
+	private final HealthProperties healthProperties;
+	private final ObjectProvider<SchemaJavaMigration> javaMigrations;
 
-	// Thresholds
-	private static final int STUCK_PROCESS_THRESHOLD = 5;    // > 5 stuck → WARNING
-	private static final int STUCK_PROCESS_SECONDS = 30;     // process age in seconds
-	private static final int LONG_TXN_WARNING_THRESHOLD = 1;  // ≥1 long txn → WARNING
-	private static final int LONG_TXN_CRITICAL_THRESHOLD = 5; // ≥5 long txns → CRITICAL
-	private static final int LONG_TXN_SECONDS = 60;           // transaction age threshold
-	private static final int CONNECTION_USAGE_WARNING = 80;   // > 80% → WARNING
-	private static final int CONNECTION_USAGE_CRITICAL = 95;  // > 95% → CRITICAL
-	private static final int DIAGNOSTIC_QUERY_TIMEOUT_SECONDS = 3; // query timeout for diagnostic statements
-	private static final long DIAGNOSTIC_INTERVAL_SEC = 30;   // background run interval
-	private static final long DIAGNOSTIC_GUARD_SEC = 25;      // safety dedup guard
-
-	private final DataSource dataSource;
-
-	private final ScheduledExecutorService diagnosticScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+	private final ScheduledThreadPoolExecutor diagnosticScheduler = new ScheduledThreadPoolExecutor(1, r -> {
 		Thread t = new Thread(r, "mysql-diagnostic-thread");
 		t.setDaemon(true);
 		return t;
 	});
-
-	private final AtomicLong lastDiagnosticRunAt = new AtomicLong(0);
-	private final AtomicReference<String> cachedDbSeverity = new AtomicReference<>(SEVERITY_OK);
-	private final AtomicLong previousDeadlockCount = new AtomicLong(-1);
-	private final AtomicLong previousSlowQueryCount = new AtomicLong(-1);
-
-	public HealthService(ObjectProvider<DataSource> dataSourceProvider) {
-		this.dataSource = dataSourceProvider.getIfAvailable();
-
-		// Start background diagnostics only if DB is configured.
-		// Initial delay = 0 so the first run happens at startup.
-		if (this.dataSource != null) {
-			diagnosticScheduler.scheduleAtFixedRate(
-				this::runAdvancedMySQLDiagnostics,
-				0,
-				DIAGNOSTIC_INTERVAL_SEC,
-				TimeUnit.SECONDS
-			);
+	private final ExecutorService diagnosticWorkers;
+	private final ExecutorService connectivityWorkers;
+
+	public HealthService(ObjectProvider<Map<String, DataSource>> dataSourcesProvider,
+			MigrationStatusRegistry migrationStatusRegistry, DiagnosticMetrics diagnosticMetrics,
+			HealthProperties healthProperties, ObjectProvider<SchemaJavaMigration> javaMigrations) {
+		Map<String, DataSource> dataSources = dataSourcesProvider.getIfAvailable(Map::of);
+		dataSources.forEach((beanName, dataSource) -> {
+			String schema = beanName.endsWith(DATASOURCE_BEAN_SUFFIX)
+				? beanName.substring(0, beanName.length() - DATASOURCE_BEAN_SUFFIX.length())
+				: beanName;
+			diagnostics.put(schema, new DatabaseDiagnostics(schema, dataSource,
+				DiagnosticPools.create(schema, dataSource, healthProperties.getDiagnosticPool()), healthProperties));
+		});
+		this.migrationStatusRegistry = migrationStatusRegistry;
+		this.diagnosticMetrics = diagnosticMetrics;
+		this.healthProperties = healthProperties;
+		this.javaMigrations = javaMigrations;
+		// Pending next runs and deadline watchdogs are dropped on shutdown
+		diagnosticScheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		diagnosticScheduler.setRemoveOnCancelPolicy(true);
+		diagnostics.values().forEach(diagnosticMetrics::bind);
+
+		// One worker per datasource so a slow host never delays the others
+		int workers = Math.max(1, diagnostics.size());
+		this.diagnosticWorkers = Executors.newFixedThreadPool(workers, daemonThreads("mysql-diagnostic-worker-"));
+		this.connectivityWorkers = Executors.newFixedThreadPool(workers * 2, daemonThreads("mysql-health-check-"));
+
+		// Each datasource reschedules itself on its own adaptive cadence; a random
+		// start offset keeps replicas and schemas from sampling in the same second
+		for (DatabaseDiagnostics database : diagnostics.values()) {
+			scheduleDiagnostics(database, ThreadLocalRandom.current()
+				.nextLong(TimeUnit.SECONDS.toNanos(DIAGNOSTIC_STARTUP_SPREAD_SEC)));
 		}
 	}
 
+	private static ThreadFactory daemonThreads(String prefix) {
+		AtomicInteger counter = new AtomicInteger();
+		return r -> {
+			Thread t = new Thread(r, prefix + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+
 	@PreDestroy
 	public void shutdownDiagnostics() {
 		logger.info("[HEALTH_SERVICE_SHUTDOWN] Shutting down diagnostic scheduler...");
 		diagnosticScheduler.shutdown();
+		diagnosticWorkers.shutdownNow();
+		connectivityWorkers.shutdownNow();
+		diagnostics.values().forEach(DatabaseDiagnostics::close);
 		try {
 			if (!diagnosticScheduler.awaitTermination(5, TimeUnit.SECONDS)) {
 				logger.warn("[HEALTH_SERVICE_SHUTDOWN] Diagnostic scheduler did not terminate gracefully");
@@ -134,251 +175,351 @@ public class HealthService {
 	public Map<String, Object> checkHealth() {
 		Map<String, Object> response = new LinkedHashMap<>();
 
-		Map<String, Object> databaseResult = checkDatabaseConnectivity();
+		Map<String, Map<String, Object>> perSchema = checkDatabaseConnectivity();
+		Map<String, Object> databaseResult = rollUp(perSchema);
 
-		response.put(FIELD_STATUS, databaseResult.get(FIELD_STATUS));
+		response.put(FIELD_STATUS, resolveOverallStatus((String) databaseResult.get(FIELD_STATUS)));
 		response.put(FIELD_CHECKED_AT, Instant.now().toString());
 
 		// Expose only status and severity
-		Map<String, Object> databaseSummary = new LinkedHashMap<>();
-		databaseSummary.put(FIELD_STATUS, databaseResult.get(FIELD_STATUS));
-		databaseSummary.put(FIELD_SEVERITY, databaseResult.get(FIELD_SEVERITY));
+		response.put(FIELD_DATABASE, databaseResult);
+		if (!perSchema.isEmpty()) {
+			response.put(FIELD_DATABASES, perSchema);
+		}
 
-		response.put(FIELD_DATABASE, databaseSummary);
+		if (migrationStatusRegistry.isMigrating() || migrationStatusRegistry.hasFailures()) {
+			Map<String, Object> migrationSummary = new LinkedHashMap<>();
+			for (SchemaMigrationStatus schemaStatus : migrationStatusRegistry.all()) {
+				migrationSummary.put(schemaStatus.getSchema(), schemaStatus.getState());
+			}
+			response.put(FIELD_MIGRATION, migrationSummary);
+		}
 
 		return response;
 	}
 
-	private Map<String, Object> checkDatabaseConnectivity() {
-		Map<String, Object> result = new LinkedHashMap<>();
+	/**
+	 * An unreachable database wins; otherwise a failed background migration is
+	 * DOWN and a running one is MIGRATING, so probes see progress instead of a
+	 * timeout while the schemas are still being upgraded.
+	 */
+	private String resolveOverallStatus(String databaseStatus) {
+		if (STATUS_DOWN.equals(databaseStatus) || STATUS_NOT_CONFIGURED.equals(databaseStatus)) {
+			return databaseStatus;
+		}
+		if (migrationStatusRegistry.hasFailures()) {
+			return STATUS_DOWN;
+		}
+		if (migrationStatusRegistry.isMigrating()) {
+			return STATUS_MIGRATING;
+		}
+		return databaseStatus;
+	}
 
-		if (dataSource == null) {
+	/**
+	 * Worst status and severity across all datasources.
+	 */
+	private Map<String, Object> rollUp(Map<String, Map<String, Object>> perSchema) {
+		Map<String, Object> result = new LinkedHashMap<>();
+		if (perSchema.isEmpty()) {
 			result.put(FIELD_STATUS, STATUS_NOT_CONFIGURED);
-			result.put(FIELD_SEVERITY, SEVERITY_INFO);
+			result.put(FIELD_SEVERITY, Severity.INFO);
 			return result;
 		}
-
-		try (Connection conn = dataSource.getConnection(); 
-		     Statement stmt = conn.createStatement()) {
-
-			stmt.setQueryTimeout(3); // Bounds only the SELECT 1 execution
-			stmt.execute("SELECT 1");
-
-			// If SELECT 1 succeeds, use cached severity from background diagnostics
-			String severity = cachedDbSeverity.get();
-			result.put(FIELD_STATUS, resolveDatabaseStatus(severity));
-			result.put(FIELD_SEVERITY, severity);
-
-		} catch (Exception e) {
-			// Log connection failure as a structured event
-			logger.error("[MYSQL_CONNECT_FAILED] MySQL connectivity check failed | error=\"{}\"", 
-				e.getMessage());
-
-			result.put(FIELD_STATUS, STATUS_DOWN);
-			result.put(FIELD_SEVERITY, SEVERITY_CRITICAL);
+		Severity worst = Severity.OK;
+		boolean anyDown = false;
+		for (Map<String, Object> schemaResult : perSchema.values()) {
+			worst = worst.escalate((Severity) schemaResult.get(FIELD_SEVERITY));
+			anyDown |= STATUS_DOWN.equals(schemaResult.get(FIELD_STATUS));
 		}
-
+		result.put(FIELD_STATUS, anyDown ? STATUS_DOWN : resolveDatabaseStatus(worst));
+		result.put(FIELD_SEVERITY, worst);
 		return result;
 	}
 
-	private void runAdvancedMySQLDiagnostics() {
-		// Dedup guard: skip if last run was within the past 25 seconds
-		long now = System.currentTimeMillis();
-		if (now - lastDiagnosticRunAt.get() < TimeUnit.SECONDS.toMillis(DIAGNOSTIC_GUARD_SEC)) {
-			return;
+	/**
+	 * Probes every datasource concurrently through its single-flight check, so
+	 * a burst of probes costs at most one {@code SELECT 1} per datasource per
+	 * TTL. A datasource that does not answer within {@value #CONNECTIVITY_DEADLINE_SEC}s
+	 * is reported DOWN without holding up the others.
+	 */
+	private Map<String, Map<String, Object>> checkDatabaseConnectivity() {
+		Map<String, CompletableFuture<Map<String, Object>>> checks = new LinkedHashMap<>();
+		for (DatabaseDiagnostics database : diagnostics.values()) {
+			checks.put(database.getSchema(), database
+				.probeConnectivity(connectivityWorkers, healthProperties.getConnectivityTtl(),
+					Duration.ofSeconds(CONNECTIVITY_DEADLINE_SEC))
+				.handle((ok, e) -> {
+					Map<String, Object> result = e == null ? upResult(database) : downResult();
+					if (database.getCircuitState() != DiagnosticCircuitBreaker.State.CLOSED) {
+						result.put(FIELD_CIRCUIT, database.getCircuitState());
+					}
+					return result;
+				}));
 		}
-		lastDiagnosticRunAt.set(now);
 
-		String worstSeverity = SEVERITY_OK;
+		Map<String, Map<String, Object>> results = new LinkedHashMap<>();
+		checks.forEach((schema, check) -> results.put(schema, check.join()));
+		return results;
+	}
 
-		try (Connection conn = dataSource.getConnection()) {
-			worstSeverity = escalate(worstSeverity, performStuckProcessCheck(conn));
-			worstSeverity = escalate(worstSeverity, performLongTransactionCheck(conn));
-			worstSeverity = escalate(worstSeverity, performDeadlockCheck(conn));
-			worstSeverity = escalate(worstSeverity, performSlowQueryCheck(conn));
-			worstSeverity = escalate(worstSeverity, performConnectionUsageCheck(conn));
+	/**
+	 * Reachable: report the severity cached by the background diagnostics.
+	 */
+	private Map<String, Object> upResult(DatabaseDiagnostics database) {
+		Map<String, Object> result = new LinkedHashMap<>();
+		Severity severity = database.getCachedSeverity();
+		result.put(FIELD_STATUS, resolveDatabaseStatus(severity));
+		result.put(FIELD_SEVERITY, severity);
+		return result;
+	}
 
-		} catch (Exception e) {
-			logger.error("[MYSQL_DIAGNOSTIC_ERROR] Could not open connection for diagnostics | error=\"{}\"", 
-				e.getMessage());
-			worstSeverity = SEVERITY_CRITICAL;
-		}
+	/**
+	 * Whether this instance should receive traffic: every database reachable
+	 * (DEGRADED still serves) and no schema migrating or failed.
+	 */
+	public Map<String, Object> checkReadiness() {
+		Map<String, Object> health = checkHealth();
+		String status = (String) health.get(FIELD_STATUS);
+		boolean ready = STATUS_UP.equals(status) || STATUS_DEGRADED.equals(status);
 
-		cachedDbSeverity.set(worstSeverity);
-		logger.debug("[MYSQL_DIAGNOSTIC_COMPLETE] Background diagnostic cycle complete | severity={}", 
-			worstSeverity);
+		Map<String, Object> response = new LinkedHashMap<>();
+		response.put(FIELD_STATUS, ready ? STATUS_READY : STATUS_NOT_READY);
+		response.put(FIELD_CHECKED_AT, health.get(FIELD_CHECKED_AT));
+		if (!ready) {
+			response.put("reason", status);
+		}
+		return response;
 	}
 
-	private String performStuckProcessCheck(Connection conn) {
-		try (Statement stmt = conn.createStatement()) {
-			stmt.setQueryTimeout(DIAGNOSTIC_QUERY_TIMEOUT_SECONDS);
-			try (ResultSet rs = stmt.executeQuery(
-				"SELECT COUNT(*) AS cnt FROM information_schema.PROCESSLIST " +
-				"WHERE TIME > " + STUCK_PROCESS_SECONDS + " AND COMMAND != 'Sleep'")) {
-
-				if (rs.next()) {
-					int stuckCount = rs.getInt("cnt");
-					if (stuckCount > 0) {
-						if (stuckCount > STUCK_PROCESS_THRESHOLD) {
-							logger.warn(
-								"[{}] Stuck MySQL processes detected above threshold | count={} | threshold={} | thresholdSeconds={}",
-								LOG_EVENT_STUCK_PROCESS, stuckCount, STUCK_PROCESS_THRESHOLD, STUCK_PROCESS_SECONDS);
-							return SEVERITY_WARNING;
-						} else {
-							logger.info(
-								"[{}] Stuck MySQL processes below threshold | count={} | threshold={}",
-								LOG_EVENT_STUCK_PROCESS, stuckCount, STUCK_PROCESS_THRESHOLD);
-						}
-					}
-				}
+	/**
+	 * Recent per-interval rates ({@code limit} newest points) and min/max/p95
+	 * over each of {@code windows}, per schema.
+	 */
+	public Map<String, Object> getHistory(List<Duration> windows, int limit) {
+		Map<String, Object> response = new LinkedHashMap<>();
+		for (DatabaseDiagnostics database : diagnostics.values()) {
+			DiagnosticHistory history = database.getHistory();
+			Duration longest = windows.stream().max(Duration::compareTo).orElse(Duration.ofHours(1));
+			List<DiagnosticHistory.Point> points = history.points(Instant.now().minus(longest));
+
+			Map<String, Object> windowStats = new LinkedHashMap<>();
+			for (Duration window : windows) {
+				windowStats.put(window.toString(), history.windowStats(window));
 			}
-		} catch (Exception e) {
-			logger.error("[MYSQL_DIAGNOSTIC_ERROR] Stuck process check failed | error=\"{}\"", 
-				e.getMessage());
+
+			Map<String, Object> schemaHistory = new LinkedHashMap<>();
+			schemaHistory.put("capacity", history.getCapacity());
+			schemaHistory.put("points", points.subList(Math.max(0, points.size() - limit), points.size()));
+			schemaHistory.put("windows", windowStats);
+			response.put(database.getSchema(), schemaHistory);
 		}
-		return SEVERITY_OK;
+		return response;
 	}
 
-	private String performLongTransactionCheck(Connection conn) {
-		try (Statement stmt = conn.createStatement()) {
-			stmt.setQueryTimeout(DIAGNOSTIC_QUERY_TIMEOUT_SECONDS);
-			try (ResultSet rs = stmt.executeQuery(
-				"SELECT COUNT(*) AS cnt FROM information_schema.INNODB_TRX " +
-				"WHERE TIME_TO_SEC(TIMEDIFF(NOW(), trx_started)) > " + LONG_TXN_SECONDS)) {
-
-				if (rs.next()) {
-					int lockCount = rs.getInt("cnt");
-					if (lockCount >= LONG_TXN_WARNING_THRESHOLD) {
-						logger.warn(
-							"[{}] InnoDB long-running transaction(s) detected | count={} | thresholdSeconds={}",
-							LOG_EVENT_LONG_TXN, lockCount, LONG_TXN_SECONDS);
-						// Graduated escalation: WARNING for 1-4, CRITICAL for 5+
-						return lockCount >= LONG_TXN_CRITICAL_THRESHOLD ? SEVERITY_CRITICAL : SEVERITY_WARNING;
-					}
-				}
+	/**
+	 * Top {@code limit} statement digests of the last sampled interval by
+	 * {@code ranking}, for one schema or (when {@code schema} is null) each schema.
+	 *
+	 * @throws IllegalArgumentException when {@code schema} is not configured
+	 */
+	public Map<String, Object> getTopDigests(String schema, StatementDigestAnalyzer.Ranking ranking, int limit) {
+		if (schema != null && !diagnostics.containsKey(schema)) {
+			throw new IllegalArgumentException("Unknown schema: " + schema);
+		}
+		Map<String, Object> response = new LinkedHashMap<>();
+		for (DatabaseDiagnostics database : diagnostics.values()) {
+			if (schema != null && !schema.equals(database.getSchema())) {
+				continue;
 			}
-		} catch (Exception e) {
-			logger.error("[MYSQL_DIAGNOSTIC_ERROR] Long transaction check failed | error=\"{}\"", 
-				e.getMessage());
+			StatementDigestAnalyzer.Sample sample = database.getDigests();
+			Map<String, Object> schemaDigests = new LinkedHashMap<>();
+			schemaDigests.put("sampledAt", sample.sampledAt() != null ? sample.sampledAt().toString() : null);
+			schemaDigests.put("intervalSeconds", sample.intervalSeconds());
+			schemaDigests.put("orderBy", ranking);
+			schemaDigests.put("digests", sample.top(ranking, limit));
+			response.put(database.getSchema(), schemaDigests);
 		}
-		return SEVERITY_OK;
+		return response;
 	}
 
-	private String performDeadlockCheck(Connection conn) {
-		try (Statement stmt = conn.createStatement()) {
-			stmt.setQueryTimeout(DIAGNOSTIC_QUERY_TIMEOUT_SECONDS);
-			try (ResultSet rs = stmt.executeQuery("SHOW STATUS LIKE 'Innodb_deadlocks'")) {
-
-				if (rs.next()) {
-					long currentDeadlocks = rs.getLong(STATUS_VALUE);
-					long previousDeadlocks = previousDeadlockCount.getAndSet(currentDeadlocks);
-					if (previousDeadlocks < 0) {
-						return SEVERITY_OK; // baseline capture on first run
-					}
-					if (currentDeadlocks > previousDeadlocks) {
-						long deltaDeadlocks = currentDeadlocks - previousDeadlocks;
-						logger.warn(
-							"[{}] InnoDB deadlocks detected since last run | deltaCount={} | cumulativeCount={}",
-							LOG_EVENT_DEADLOCK, deltaDeadlocks, currentDeadlocks);
-						return SEVERITY_WARNING;
-					}
-				}
-			}
-		} catch (Exception e) {
-			logger.error("[MYSQL_DIAGNOSTIC_ERROR] Deadlock check failed | error=\"{}\"", 
-				e.getMessage());
+	/**
+	 * Last diagnostic snapshot of {@code schema}, or null before the first
+	 * successful run. Background jobs read their load signals from here
+	 * rather than querying the server themselves.
+	 *
+	 * @throws IllegalArgumentException when {@code schema} is not configured
+	 */
+	public DiagnosticSnapshot getLastSnapshot(String schema) {
+		DatabaseDiagnostics database = diagnostics.get(schema);
+		if (database == null) {
+			throw new IllegalArgumentException("Unknown schema: " + schema);
 		}
-		return SEVERITY_OK;
+		return database.getLastSnapshot();
 	}
 
-	private String performSlowQueryCheck(Connection conn) {
-		try (Statement stmt = conn.createStatement()) {
-			stmt.setQueryTimeout(DIAGNOSTIC_QUERY_TIMEOUT_SECONDS);
-			try (ResultSet rs = stmt.executeQuery("SHOW STATUS LIKE 'Slow_queries'")) {
-
-				if (rs.next()) {
-					long slowQueries = rs.getLong(STATUS_VALUE);
-					long previousSlow = previousSlowQueryCount.getAndSet(slowQueries);
-					if (previousSlow < 0) {
-						return SEVERITY_OK; // baseline capture on first run
-					}
-					// Only warn if slow queries have *increased* since last run
-					if (slowQueries > previousSlow) {
-						long delta = slowQueries - previousSlow;
-						logger.warn(
-							"[{}] New slow queries detected since last run | deltaCount={} | cumulativeCount={}",
-							LOG_EVENT_SLOW_QUERIES, delta, slowQueries);
-						return SEVERITY_WARNING;
-					}
-				}
-			}
-		} catch (Exception e) {
-			logger.error("[MYSQL_DIAGNOSTIC_ERROR] Slow query check failed | error=\"{}\"", 
-				e.getMessage());
+	/**
+	 * Last sampled statement digests of {@code schema}.
+	 *
+	 * @throws IllegalArgumentException when {@code schema} is not configured
+	 */
+	public StatementDigestAnalyzer.Sample getDigestSample(String schema) {
+		DatabaseDiagnostics database = diagnostics.get(schema);
+		if (database == null) {
+			throw new IllegalArgumentException("Unknown schema: " + schema);
 		}
-		return SEVERITY_OK;
+		return database.getDigests();
 	}
 
-	private String performConnectionUsageCheck(Connection conn) {
-		try (Statement stmt = conn.createStatement()) {
-			stmt.setQueryTimeout(DIAGNOSTIC_QUERY_TIMEOUT_SECONDS);
-			int threadsConnected = 0;
-			int maxConnections = 0;
-
-			try (ResultSet rs = stmt.executeQuery("SHOW STATUS LIKE 'Threads_connected'")) {
-				if (rs.next())
-					threadsConnected = rs.getInt(STATUS_VALUE);
-			}
-
-			stmt.setQueryTimeout(DIAGNOSTIC_QUERY_TIMEOUT_SECONDS);
-			try (ResultSet rs = stmt.executeQuery("SHOW VARIABLES LIKE 'max_connections'")) {
-				if (rs.next())
-					maxConnections = rs.getInt(STATUS_VALUE);
-			}
+	/**
+	 * Index proposals for {@code schema} from its last digest sample, with a
+	 * ready-to-review migration script taking the next free version.
+	 *
+	 * @throws IllegalArgumentException when {@code schema} is not configured
+	 */
+	public Map<String, Object> adviseIndexes(String schema, int maxStatements) throws SQLException {
+		DatabaseDiagnostics database = diagnostics.get(schema);
+		if (database == null) {
+			throw new IllegalArgumentException("Unknown schema: " + schema);
+		}
+		StatementDigestAnalyzer.Sample workload = database.getDigests();
+		IndexAdvisor.Advice advice = database.adviseIndexes(maxStatements);
 
-			if (maxConnections > 0) {
-				int usagePct = (int) ((threadsConnected * 100.0) / maxConnections);
+		Map<String, Object> response = new LinkedHashMap<>();
+		response.put("schema", schema);
+		response.put("database", advice.database());
+		response.put("workloadSampledAt", workload.sampledAt() != null ? workload.sampledAt().toString() : null);
+		response.put("proposals", advice.proposals());
+		response.put("skipped", advice.skipped());
+		if (!advice.proposals().isEmpty()) {
+			String version = IndexMigrationScript.nextVersion(schema, javaMigrationVersions(schema));
+			List<IndexMigrationScript.IndexSpec> indexes = advice.proposals().stream()
+				.map(p -> new IndexMigrationScript.IndexSpec(p.table(), p.indexName(), p.columns(),
+					String.format("~%d rows examined saved per %ds interval | digests: %s",
+						p.estimatedRowsSaved(), workload.intervalSeconds(), String.join(", ", p.digests()))))
+				.toList();
+			response.put("fileName", IndexMigrationScript.fileName(version, advice.database(), "advisor_indexes"));
+			response.put("script", IndexMigrationScript.addIndexes(advice.database(), List.of(
+				"Proposed by the index advisor from statement digests sampled at " + workload.sampledAt() + ".",
+				"Review every index (column order, overlap with existing indexes, write cost) before committing."),
+				indexes));
+		}
+		return response;
+	}
 
-				if (usagePct >= CONNECTION_USAGE_CRITICAL) {
-					logger.error(
-						"[{}] MySQL connection pool near exhaustion | threadsConnected={} | maxConnections={} | usagePercent={}",
-						LOG_EVENT_POOL_EXHAUSTED, threadsConnected, maxConnections, usagePct);
-					return SEVERITY_CRITICAL;
+	/**
+	 * Redundant and unused indexes of {@code schema}. With {@code scripts}, the
+	 * reported indexes also come as two guarded migrations: one making them
+	 * invisible, and one dropping them to ship once nothing regressed.
+	 *
+	 * @param window how long an index must go unread to count as unused;
+	 *               null for {@code amrit.health.unused-index-window}
+	 * @throws IllegalArgumentException when {@code schema} is not configured
+	 */
+	public Map<String, Object> analyzeIndexUsage(String schema, Duration window, boolean scripts) throws SQLException {
+		DatabaseDiagnostics database = diagnostics.get(schema);
+		if (database == null) {
+			throw new IllegalArgumentException("Unknown schema: " + schema);
+		}
+		IndexUsageAnalyzer.Report report = database.analyzeIndexUsage(
+			window != null ? window : healthProperties.getUnusedIndexWindow());
 
-				} else if (usagePct > CONNECTION_USAGE_WARNING) {
-					logger.warn(
-						"[{}] MySQL connection usage is high | threadsConnected={} | maxConnections={} | usagePercent={}",
-						LOG_EVENT_CONN_USAGE, threadsConnected, maxConnections, usagePct);
-					return SEVERITY_WARNING;
-				}
-			}
-		} catch (Exception e) {
-			logger.error("[MYSQL_DIAGNOSTIC_ERROR] Connection usage check failed | error=\"{}\"", 
-				e.getMessage());
+		Map<String, Object> response = new LinkedHashMap<>();
+		response.put("schema", schema);
+		response.put("database", report.database());
+		response.put("window", report.window().toString());
+		response.put("observedForHours", report.observedForHours());
+		response.put("redundant", report.redundant());
+		response.put("unused", report.unused());
+
+		List<IndexMigrationScript.IndexSpec> indexes = new ArrayList<>();
+		report.redundant().forEach(index -> indexes.add(new IndexMigrationScript.IndexSpec(index.table(), index.index(),
+			index.columns(), "(" + String.join(", ", index.columns()) + ") is a left prefix of " + index.coveredBy()
+				+ " (" + String.join(", ", index.coveredByColumns()) + ")")));
+		report.unused().forEach(index -> indexes.add(new IndexMigrationScript.IndexSpec(index.table(), index.index(),
+			index.columns(), "(" + String.join(", ", index.columns()) + ") not read for " + index.unusedForHours() + "h")));
+		if (scripts && !indexes.isEmpty()) {
+			String databaseName = report.database();
+			int version = Integer.parseInt(IndexMigrationScript.nextVersion(schema, javaMigrationVersions(schema)));
+			String note = "Generated from index usage of " + schema + " observed for " + report.observedForHours() + "h.";
+			Map<String, String> migrations = new LinkedHashMap<>();
+			migrations.put(IndexMigrationScript.fileName(String.valueOf(version), databaseName, "invisible_indexes"),
+				IndexMigrationScript.makeInvisible(databaseName, List.of(note,
+					"Step 1: the optimizer stops using these indexes but they are still maintained;",
+					"revert with ALTER INDEX ... VISIBLE if any query regresses."), indexes));
+			migrations.put(IndexMigrationScript.fileName(String.valueOf(version + 1), databaseName, "drop_indexes"),
+				IndexMigrationScript.dropIndexes(databaseName, List.of(note,
+					"Step 2: ship only after step 1 ran in production for a full business cycle without regressions."),
+					indexes));
+			response.put("migrations", migrations);
 		}
-		return SEVERITY_OK;
+		return response;
 	}
 
-
-	private String resolveDatabaseStatus(String severity) {
-		return switch (severity) {
-			case SEVERITY_CRITICAL -> STATUS_DOWN;
-			case SEVERITY_WARNING -> STATUS_DEGRADED;
-			default -> STATUS_UP;
-		};
+	/** Versions of the Java migrations of {@code schema}, which the SQL manifest does not list. */
+	private List<MigrationVersion> javaMigrationVersions(String schema) {
+		return javaMigrations.orderedStream()
+			.filter(migration -> schema.equals(migration.getSchema()))
+			.map(SchemaJavaMigration::getVersion)
+			.toList();
 	}
 
+	private static Map<String, Object> downResult() {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put(FIELD_STATUS, STATUS_DOWN);
+		result.put(FIELD_SEVERITY, Severity.CRITICAL);
+		return result;
+	}
 
-	private String escalate(String current, String candidate) {
-		return severityRank(candidate) > severityRank(current) ? candidate : current;
+	private void scheduleDiagnostics(DatabaseDiagnostics database, long delayNanos) {
+		try {
+			diagnosticScheduler.schedule(() -> runAdvancedMySQLDiagnostics(database), delayNanos, TimeUnit.NANOSECONDS);
+		} catch (RejectedExecutionException e) {
+			logger.debug("[MYSQL_DIAGNOSTIC_STOPPED] Scheduler shut down | schema={}", database.getSchema());
+		}
 	}
 
+	/**
+	 * Runs one diagnostic pass of {@code database} on its worker and schedules
+	 * the next pass when it ends, at the delay its checks ask for. A pass that
+	 * overruns {@value #DIAGNOSTIC_DEADLINE_SEC}s is cancelled and reported CRITICAL.
+	 */
+	private void runAdvancedMySQLDiagnostics(DatabaseDiagnostics database) {
+		Future<?> run;
+		try {
+			run = diagnosticWorkers.submit(() -> {
+				long start = System.nanoTime();
+				try {
+					Severity severity = database.runDiagnostics();
+					diagnosticMetrics.recordRun(database.getSchema(), System.nanoTime() - start, severity);
+					logger.debug("[MYSQL_DIAGNOSTIC_COMPLETE] Background diagnostic run complete | schema={} | severity={} | nextRunMs={}",
+						database.getSchema(), severity, TimeUnit.NANOSECONDS.toMillis(database.nextRunDelayNanos()));
+				} catch (RuntimeException e) {
+					database.markFailed();
+					logger.error("[MYSQL_DIAGNOSTIC_ERROR] Diagnostics failed | schema={} | error=\"{}\"",
+						database.getSchema(), e.getMessage());
+				} finally {
+					scheduleDiagnostics(database, database.nextRunDelayNanos());
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			return; // shutting down
+		}
+		diagnosticScheduler.schedule(() -> {
+			if (!run.isDone()) {
+				run.cancel(true);
+				database.markFailed();
+				logger.error("[MYSQL_DIAGNOSTIC_TIMEOUT] Diagnostics exceeded deadline | schema={} | deadlineSeconds={}",
+					database.getSchema(), DIAGNOSTIC_DEADLINE_SEC);
+			}
+		}, DIAGNOSTIC_DEADLINE_SEC, TimeUnit.SECONDS);
+	}
 
-	private int severityRank(String severity) {
+	private String resolveDatabaseStatus(Severity severity) {
 		return switch (severity) {
-			case SEVERITY_CRITICAL -> 2;
-			case SEVERITY_WARNING -> 1;
-			default -> 0;
+			case CRITICAL -> STATUS_DOWN;
+			case WARNING -> STATUS_DEGRADED;
+			default -> STATUS_UP;
 		};
 	}
 }
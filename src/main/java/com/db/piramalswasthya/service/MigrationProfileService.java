@@ -0,0 +1,95 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.db.piramalswasthya.data.MigrationStatementProfile;
+import com.db.piramalswasthya.migration.MigrationStatementProfiler;
+
+@Service
+public class MigrationProfileService {
+
+	private static final Logger logger = LoggerFactory.getLogger(MigrationProfileService.class);
+
+	private static final int MAX_LIMIT = 500;
+
+	private final Map<String, JdbcTemplate> schemaTemplates = new LinkedHashMap<>();
+
+	public MigrationProfileService(@Qualifier("dbiemrJdbcTemplate") JdbcTemplate dbiemrJdbcTemplate,
+			@Qualifier("dbidentityJdbcTemplate") JdbcTemplate dbidentityJdbcTemplate,
+			@Qualifier("dbreportingJdbcTemplate") JdbcTemplate dbreportingJdbcTemplate,
+			@Qualifier("db1097identityJdbcTemplate") JdbcTemplate db1097identityJdbcTemplate) {
+		schemaTemplates.put("dbiemr", dbiemrJdbcTemplate);
+		schemaTemplates.put("dbidentity", dbidentityJdbcTemplate);
+		schemaTemplates.put("dbreporting", dbreportingJdbcTemplate);
+		schemaTemplates.put("db1097identity", db1097identityJdbcTemplate);
+	}
+
+	/**
+	 * Slowest recorded migration statements across all four schemas. Each schema
+	 * contributes its own top {@code limit} rows, which are then merged.
+	 */
+	public List<MigrationStatementProfile> getSlowestStatements(int limit) {
+		int boundedLimit = Math.max(1, Math.min(limit, MAX_LIMIT));
+		String sql = "SELECT script, version, statement_seq, fingerprint, statement_text, elapsed_micros, "
+			+ "rows_affected, executed_at FROM " + MigrationStatementProfiler.PROFILE_TABLE
+			+ " ORDER BY elapsed_micros DESC LIMIT ?";
+
+		List<MigrationStatementProfile> merged = new ArrayList<>();
+		schemaTemplates.forEach((schema, jdbcTemplate) -> {
+			try {
+				merged.addAll(jdbcTemplate.query(sql, (rs, rowNum) -> {
+					MigrationStatementProfile profile = new MigrationStatementProfile();
+					profile.setSchema(schema);
+					profile.setScript(rs.getString("script"));
+					profile.setVersion(rs.getString("version"));
+					profile.setStatementSeq(rs.getInt("statement_seq"));
+					profile.setFingerprint(rs.getString("fingerprint"));
+					profile.setStatementText(rs.getString("statement_text"));
+					profile.setElapsedMs(rs.getLong("elapsed_micros") / 1000.0);
+					profile.setRowsAffected(rs.getLong("rows_affected"));
+					profile.setExecutedAt(String.valueOf(rs.getTimestamp("executed_at")));
+					return profile;
+				}, boundedLimit));
+			} catch (DataAccessException e) {
+				// Schema never migrated with profiling enabled, so there is no profile table yet
+				logger.debug("No migration statement profile for schema | schema={} | error=\"{}\"", schema,
+					e.getMessage());
+			}
+		});
+
+		merged.sort(Comparator.comparingDouble(MigrationStatementProfile::getElapsedMs).reversed());
+		return merged.size() > boundedLimit ? new ArrayList<>(merged.subList(0, boundedLimit)) : merged;
+	}
+}
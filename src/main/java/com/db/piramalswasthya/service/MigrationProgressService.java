@@ -0,0 +1,111 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.service;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.db.piramalswasthya.migration.MigrationStatusRegistry;
+import com.google.gson.Gson;
+
+import jakarta.annotation.PreDestroy;
+
+@Service
+public class MigrationProgressService {
+
+	private static final Logger logger = LoggerFactory.getLogger(MigrationProgressService.class);
+
+	private static final long STREAM_INTERVAL_MS = 1000;
+	private static final long STREAM_TIMEOUT_MS = TimeUnit.HOURS.toMillis(6);
+
+	private final MigrationStatusRegistry registry;
+	private final Gson gson = new Gson();
+
+	private final ScheduledExecutorService streamScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "migration-progress-stream");
+		t.setDaemon(true);
+		return t;
+	});
+
+	public MigrationProgressService(MigrationStatusRegistry registry) {
+		this.registry = registry;
+	}
+
+	public Map<String, Object> getProgress() {
+		Map<String, Object> progress = new LinkedHashMap<>();
+		progress.put("instance", registry.getInstanceId());
+		progress.put("migrating", registry.isMigrating());
+		progress.put("schemas", registry.snapshots());
+		return progress;
+	}
+
+	/**
+	 * Pushes a progress event every second until no schema is in progress any
+	 * more, then sends a final event and completes the stream.
+	 */
+	public SseEmitter streamProgress() {
+		SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+		AtomicReference<ScheduledFuture<?>> task = new AtomicReference<>();
+
+		task.set(streamScheduler.scheduleAtFixedRate(() -> {
+			try {
+				Map<String, Object> progress = getProgress();
+				emitter.send(SseEmitter.event().name("progress").data(gson.toJson(progress)));
+				if (!Boolean.TRUE.equals(progress.get("migrating"))) {
+					emitter.complete();
+					cancel(task);
+				}
+			} catch (IOException | IllegalStateException e) {
+				logger.debug("Migration progress stream closed | error=\"{}\"", e.getMessage());
+				cancel(task);
+			}
+		}, 0, STREAM_INTERVAL_MS, TimeUnit.MILLISECONDS));
+
+		emitter.onCompletion(() -> cancel(task));
+		emitter.onTimeout(() -> cancel(task));
+		emitter.onError(e -> cancel(task));
+		return emitter;
+	}
+
+	private static void cancel(AtomicReference<ScheduledFuture<?>> task) {
+		ScheduledFuture<?> future = task.get();
+		if (future != null) {
+			future.cancel(false);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		streamScheduler.shutdownNow();
+	}
+}
@@ -0,0 +1,350 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+
+import com.db.piramalswasthya.diagnostics.StatementDigestAnalyzer;
+import com.db.piramalswasthya.migration.MigrationStatusRegistry;
+import com.db.piramalswasthya.partition.PartitionManager;
+import com.db.piramalswasthya.partition.PartitionManager.Pruning;
+import com.db.piramalswasthya.partition.PartitionManager.TableState;
+import com.db.piramalswasthya.partition.PartitionProperties;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Keeps the registered partitioned tables ready for the coming months and,
+ * where a retention is configured, drops or exchanges expired months.
+ * Converting a table to partitions is a separate, opt-in job
+ * ({@code amrit.partition.conversion-enabled}) started by hand, because it
+ * rebuilds the table and blocks writes for as long as the copy takes. Also
+ * checks that report queries prune: the statements recorded by the digest
+ * sampler that touch a table are explained and their partition lists compared
+ * with the table's partition count.
+ */
+@Service
+public class PartitionMaintenanceService {
+
+	private static final Logger logger = LoggerFactory.getLogger(PartitionMaintenanceService.class);
+
+	private static final String DATASOURCE_BEAN_SUFFIX = "DataSource";
+	private static final String LOCK_NAME = "amrit_partition_maintenance";
+	private static final int QUERY_TIMEOUT_SECONDS = 10;
+	// Eligibility checks scan the whole table before a conversion
+	private static final int CONVERT_QUERY_TIMEOUT_SECONDS = 300;
+	private static final long STARTUP_DELAY_SEC = 60;
+	private static final String MONTHS_AHEAD_GAUGE = "amrit.partition.months.ahead";
+
+	private final Map<String, DataSource> dataSources = new LinkedHashMap<>();
+	private final PartitionProperties properties;
+	private final MigrationStatusRegistry migrationStatusRegistry;
+	private final HealthService healthService;
+	private final PartitionManager manager = new PartitionManager(QUERY_TIMEOUT_SECONDS);
+	private final PartitionManager converter = new PartitionManager(CONVERT_QUERY_TIMEOUT_SECONDS);
+	private final MeterRegistry meterRegistry;
+	private final AtomicBoolean converting = new AtomicBoolean();
+
+	// schema.table -> last maintenance outcome / last conversion outcome / months of ready partitions ahead
+	private final Map<String, Map<String, Object>> lastRuns = new ConcurrentHashMap<>();
+	private final Map<String, Map<String, Object>> lastConversions = new ConcurrentHashMap<>();
+	private final Map<String, Double> monthsAhead = new ConcurrentHashMap<>();
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "partition-maintenance");
+		t.setDaemon(true);
+		return t;
+	});
+
+	public PartitionMaintenanceService(ObjectProvider<Map<String, DataSource>> dataSourcesProvider,
+			PartitionProperties properties, MigrationStatusRegistry migrationStatusRegistry, HealthService healthService,
+			ObjectProvider<MeterRegistry> meterRegistry) {
+		dataSourcesProvider.getIfAvailable(Map::of).forEach((beanName, dataSource) -> dataSources.put(
+			beanName.endsWith(DATASOURCE_BEAN_SUFFIX)
+				? beanName.substring(0, beanName.length() - DATASOURCE_BEAN_SUFFIX.length())
+				: beanName,
+			dataSource));
+		this.properties = properties;
+		this.migrationStatusRegistry = migrationStatusRegistry;
+		this.healthService = healthService;
+		this.meterRegistry = meterRegistry.getIfAvailable();
+		if (properties.isEnabled()) {
+			scheduler.scheduleWithFixedDelay(this::scheduledMaintenance, STARTUP_DELAY_SEC,
+				properties.getInterval().toSeconds(), TimeUnit.SECONDS);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+
+	private void scheduledMaintenance() {
+		if (migrationStatusRegistry.isMigrating()) {
+			logger.info("[PARTITION_MAINTENANCE_SKIPPED] Schema migration in progress");
+			return;
+		}
+		properties.getTables().keySet().forEach(schema -> {
+			try {
+				maintain(schema);
+			} catch (SQLException | RuntimeException e) {
+				logger.error("[PARTITION_MAINTENANCE_FAILED] schema={} | error=\"{}\"", schema, e.getMessage());
+			}
+		});
+	}
+
+	/**
+	 * Adds missing future months and expires old ones for every registered
+	 * table of {@code schema}. Only one instance maintains a schema at a time.
+	 */
+	public void maintain(String schema) throws SQLException {
+		Map<String, PartitionProperties.Table> tables = properties.getTables().getOrDefault(schema, Map.of());
+		DataSource dataSource = dataSource(schema);
+		YearMonth current = YearMonth.now();
+		try (Connection conn = dataSource.getConnection()) {
+			if (!lock(conn, "SELECT GET_LOCK(?, 0)")) {
+				logger.info("[PARTITION_MAINTENANCE_SKIPPED] Running on another instance | schema={}", schema);
+				return;
+			}
+			try {
+				for (Map.Entry<String, PartitionProperties.Table> entry : tables.entrySet()) {
+					maintainTable(conn, schema, entry.getKey(), entry.getValue(), current);
+				}
+			} finally {
+				lock(conn, "SELECT RELEASE_LOCK(?)");
+			}
+		}
+	}
+
+	private void maintainTable(Connection conn, String schema, String table, PartitionProperties.Table config,
+			YearMonth current) {
+		String key = schema + "." + table;
+		Map<String, Object> run = new LinkedHashMap<>();
+		run.put("ranAt", Instant.now().toString());
+		try {
+			TableState state = manager.inspect(conn, table, config.getColumn());
+			if (!state.managed()) {
+				run.put("skipped", state.ineligibleReason() != null ? state.ineligibleReason() : "not partitioned");
+			} else {
+				List<YearMonth> added = manager.ensureMonths(conn, state, current.plusMonths(properties.getFutureMonths()));
+				run.put("monthsAdded", added.stream().map(YearMonth::toString).toList());
+				if (config.getRetentionMonths() != null && config.getExpiryAction() != PartitionProperties.ExpiryAction.NONE) {
+					state = manager.inspect(conn, table, config.getColumn());
+					run.put("expired", manager.expire(conn, state, current.minusMonths(config.getRetentionMonths()),
+						config.getExpiryAction() == PartitionProperties.ExpiryAction.EXCHANGE));
+				}
+				state = manager.inspect(conn, table, config.getColumn());
+				recordMonthsAhead(schema, table, state.lastMonth() == null ? 0
+					: ChronoUnit.MONTHS.between(current, state.lastMonth()));
+			}
+		} catch (SQLException | RuntimeException e) {
+			run.put("error", e.getMessage());
+			logger.error("[PARTITION_MAINTENANCE_FAILED] schema={} | table={} | error=\"{}\"", schema, table,
+				e.getMessage());
+		}
+		lastRuns.put(key, run);
+	}
+
+	public boolean isConversionEnabled() {
+		return properties.isConversionEnabled();
+	}
+
+	/**
+	 * Converts, in the background, every registered table of {@code schema}
+	 * that is not partitioned yet. A table that cannot be converted is logged
+	 * and skipped; the others still are.
+	 *
+	 * @return false when conversion is disabled, a conversion is already
+	 *         running here, or this instance is still migrating
+	 * @throws IllegalArgumentException when the schema has no datasource
+	 */
+	public boolean triggerConversion(String schema) {
+		DataSource dataSource = dataSource(schema);
+		if (!properties.isConversionEnabled() || migrationStatusRegistry.isMigrating()
+				|| !converting.compareAndSet(false, true)) {
+			return false;
+		}
+		scheduler.execute(() -> {
+			try {
+				convert(schema, dataSource);
+			} catch (SQLException | RuntimeException e) {
+				logger.error("[PARTITION_CONVERT_FAILED] schema={} | error=\"{}\"", schema, e.getMessage());
+			} finally {
+				converting.set(false);
+			}
+		});
+		return true;
+	}
+
+	private void convert(String schema, DataSource dataSource) throws SQLException {
+		Map<String, PartitionProperties.Table> tables = properties.getTables().getOrDefault(schema, Map.of());
+		try (Connection conn = dataSource.getConnection()) {
+			// Shares the maintenance lock, so no replica splits pmax while a table is being rebuilt
+			if (!lock(conn, "SELECT GET_LOCK(?, 0)")) {
+				logger.info("[PARTITION_CONVERT_SKIPPED] Maintenance running on another instance | schema={}", schema);
+				return;
+			}
+			try {
+				for (Map.Entry<String, PartitionProperties.Table> entry : tables.entrySet()) {
+					String table = entry.getKey();
+					Map<String, Object> run = new LinkedHashMap<>();
+					run.put("startedAt", Instant.now().toString());
+					try {
+						run.put("converted", converter.convert(conn, table, entry.getValue().getColumn(),
+							properties.getFutureMonths()));
+					} catch (SQLException | RuntimeException e) {
+						run.put("error", e.getMessage());
+						logger.warn("[PARTITION_CONVERT_SKIPPED] schema={} | table={} | error=\"{}\"", schema, table,
+							e.getMessage());
+					}
+					run.put("endedAt", Instant.now().toString());
+					lastConversions.put(schema + "." + table, run);
+				}
+			} finally {
+				lock(conn, "SELECT RELEASE_LOCK(?)");
+			}
+		}
+	}
+
+	private void recordMonthsAhead(String schema, String table, long months) {
+		String key = schema + "." + table;
+		if (monthsAhead.put(key, (double) months) == null && meterRegistry != null) {
+			Gauge.builder(MONTHS_AHEAD_GAUGE, monthsAhead, m -> m.getOrDefault(key, Double.NaN))
+				.description("Months after the current one that already have their own partition")
+				.tag("schema", schema)
+				.tag("table", table)
+				.register(meterRegistry);
+		}
+	}
+
+	/** Partition layout, eligibility and last maintenance outcome of every registered table. */
+	public Map<String, Object> getStatus() {
+		Map<String, Object> response = new LinkedHashMap<>();
+		properties.getTables().forEach((schema, tables) -> {
+			Map<String, Object> schemaStatus = new LinkedHashMap<>();
+			try (Connection conn = dataSource(schema).getConnection()) {
+				for (Map.Entry<String, PartitionProperties.Table> entry : tables.entrySet()) {
+					TableState state = manager.inspect(conn, entry.getKey(), entry.getValue().getColumn());
+					Map<String, Object> tableStatus = new LinkedHashMap<>();
+					tableStatus.put("column", state.column());
+					tableStatus.put("partitioned", state.partitioned());
+					tableStatus.put("managed", state.managed());
+					tableStatus.put("firstMonth", state.months().isEmpty() ? null : state.months().get(0).toString());
+					tableStatus.put("lastMonth", state.lastMonth() == null ? null : state.lastMonth().toString());
+					tableStatus.put("ineligibleReason", state.ineligibleReason());
+					tableStatus.put("retentionMonths", entry.getValue().getRetentionMonths());
+					tableStatus.put("expiryAction", entry.getValue().getExpiryAction());
+					tableStatus.put("lastMaintenance", lastRuns.get(schema + "." + entry.getKey()));
+					tableStatus.put("lastConversion", lastConversions.get(schema + "." + entry.getKey()));
+					schemaStatus.put(entry.getKey(), tableStatus);
+				}
+			} catch (SQLException | RuntimeException e) {
+				schemaStatus.put("error", e.getMessage());
+			}
+			response.put(schema, schemaStatus);
+		});
+		return response;
+	}
+
+	/**
+	 * Explains a one-month probe query and every sampled statement that
+	 * mentions {@code table}, reporting which partitions each would read.
+	 *
+	 * @throws IllegalArgumentException when the table is not registered
+	 */
+	public Map<String, Object> checkPruning(String schema, String table) throws SQLException {
+		PartitionProperties.Table config = properties.getTables().getOrDefault(schema, Map.of()).get(table);
+		if (config == null) {
+			throw new IllegalArgumentException("Table not registered for partitioning: " + schema + "." + table);
+		}
+		Map<String, Object> response = new LinkedHashMap<>();
+		try (Connection conn = dataSource(schema).getConnection()) {
+			TableState state = manager.inspect(conn, table, config.getColumn());
+			response.put("partitioned", state.managed());
+			if (!state.managed()) {
+				response.put("reason", state.ineligibleReason() != null ? state.ineligibleReason() : "not partitioned");
+				return response;
+			}
+			// +1 for pmax
+			int total = state.months().size() + 1;
+			List<Pruning> checks = new ArrayList<>();
+			String probe = PartitionManager.probeSql(table, config.getColumn(), YearMonth.now());
+			checks.add(manager.checkPruning(conn, "probe", table, total, probe, probe));
+
+			Pattern mentions = Pattern.compile("\\b" + Pattern.quote(table.toLowerCase(Locale.ROOT)) + "\\b");
+			for (StatementDigestAnalyzer.DigestStats digest : healthService.getDigestSample(schema).digests()) {
+				String sql = digest.sampleText();
+				if (sql != null && mentions.matcher(sql.toLowerCase(Locale.ROOT)).find()) {
+					checks.add(manager.checkPruning(conn, digest.digest(), table, total, sql, digest.digestText()));
+				}
+			}
+			response.put("partitions", total);
+			response.put("statements", checks.size());
+			response.put("unpruned", checks.stream().filter(c -> c.error() == null && !c.pruned()).count());
+			response.put("checks", checks);
+		}
+		return response;
+	}
+
+	private DataSource dataSource(String schema) {
+		DataSource dataSource = dataSources.get(schema);
+		if (dataSource == null) {
+			throw new IllegalArgumentException("Unknown schema: " + schema);
+		}
+		return dataSource;
+	}
+
+	private static boolean lock(Connection conn, String sql) throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			ps.setString(1, LOCK_NAME);
+			try (ResultSet rs = ps.executeQuery()) {
+				return rs.next() && rs.getInt(1) == 1;
+			}
+		}
+	}
+}
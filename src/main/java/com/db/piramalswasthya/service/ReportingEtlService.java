@@ -0,0 +1,200 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.db.piramalswasthya.migration.MigrationStatusRegistry;
+import com.db.piramalswasthya.reporting.FactDefinition;
+import com.db.piramalswasthya.reporting.ReportingEtlEngine;
+import com.db.piramalswasthya.reporting.ReportingEtlProperties;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Keeps the db_reporting facts current with {@link ReportingEtlEngine}: one
+ * refresh every {@code amrit.reporting.etl.interval}, facts loaded in parallel.
+ * A MySQL named lock on db_reporting lets only one replica refresh at a time,
+ * and refreshes wait until this instance has finished migrating.
+ */
+@Service
+public class ReportingEtlService {
+
+	private static final Logger logger = LoggerFactory.getLogger(ReportingEtlService.class);
+
+	private static final String LOCK_NAME = "amrit_reporting_etl";
+
+	private final ReportingEtlEngine engine;
+	private final ReportingEtlProperties properties;
+	private final MigrationStatusRegistry migrationStatusRegistry;
+	private final JdbcTemplate reportingJdbcTemplate;
+	private final AtomicBoolean running = new AtomicBoolean();
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "reporting-etl-scheduler");
+		t.setDaemon(true);
+		return t;
+	});
+	private final ExecutorService loaders;
+
+	public ReportingEtlService(ReportingEtlEngine engine, ReportingEtlProperties properties,
+			MigrationStatusRegistry migrationStatusRegistry,
+			@Qualifier("dbreportingJdbcTemplate") JdbcTemplate reportingJdbcTemplate) {
+		this.engine = engine;
+		this.properties = properties;
+		this.migrationStatusRegistry = migrationStatusRegistry;
+		this.reportingJdbcTemplate = reportingJdbcTemplate;
+		AtomicInteger counter = new AtomicInteger();
+		this.loaders = Executors.newFixedThreadPool(Math.max(1, properties.getParallelism()), r -> {
+			Thread t = new Thread(r, "reporting-etl-" + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		if (properties.isEnabled()) {
+			long intervalMs = properties.getInterval().toMillis();
+			scheduler.scheduleWithFixedDelay(this::scheduledRefresh, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+			logger.info("[ETL_SCHEDULED] interval={} | facts={} | parallelism={}", properties.getInterval(),
+				engine.getFacts().size(), properties.getParallelism());
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		scheduler.shutdownNow();
+		loaders.shutdownNow();
+	}
+
+	private void scheduledRefresh() {
+		try {
+			refresh();
+		} catch (RuntimeException e) {
+			logger.error("[ETL_REFRESH_FAILED] error=\"{}\"", e.getMessage());
+		}
+	}
+
+	/**
+	 * Runs one refresh of every fact unless one is already running here or on
+	 * another replica, or this instance is still migrating.
+	 *
+	 * @return false when the refresh was skipped
+	 */
+	public boolean refresh() {
+		if (migrationStatusRegistry.isMigrating()) {
+			logger.info("[ETL_SKIPPED] Schema migration in progress");
+			return false;
+		}
+		if (!running.compareAndSet(false, true)) {
+			return false;
+		}
+		try {
+			// GET_LOCK is bound to the session, so the connection is held for the whole refresh
+			Boolean ran = reportingJdbcTemplate.execute((ConnectionCallback<Boolean>) conn -> {
+				if (!lock(conn, "SELECT GET_LOCK(?, 0)")) {
+					logger.info("[ETL_SKIPPED] Refresh running on another instance | lock={}", LOCK_NAME);
+					return false;
+				}
+				try {
+					runAll();
+				} finally {
+					lock(conn, "SELECT RELEASE_LOCK(?)");
+				}
+				return true;
+			});
+			return Boolean.TRUE.equals(ran);
+		} finally {
+			running.set(false);
+		}
+	}
+
+	private void runAll() {
+		long start = System.nanoTime();
+		List<CompletableFuture<Long>> loads = new ArrayList<>();
+		for (FactDefinition fact : engine.getFacts()) {
+			loads.add(CompletableFuture.supplyAsync(() -> engine.load(fact), loaders));
+		}
+		long rows = 0;
+		int failed = 0;
+		for (CompletableFuture<Long> load : loads) {
+			try {
+				rows += load.join();
+			} catch (RuntimeException e) {
+				// logged by the engine; the other facts still complete
+				failed++;
+			}
+		}
+		logger.info("[ETL_REFRESH_DONE] facts={} | failed={} | rows={} | durationMs={}", loads.size(), failed, rows,
+			(System.nanoTime() - start) / 1_000_000);
+	}
+
+	private static boolean lock(Connection conn, String sql) throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			ps.setString(1, LOCK_NAME);
+			try (ResultSet rs = ps.executeQuery()) {
+				return rs.next() && rs.getInt(1) == 1;
+			}
+		}
+	}
+
+	/**
+	 * Starts a refresh in the background.
+	 *
+	 * @return false when one is already running on this instance
+	 */
+	public boolean triggerRefresh() {
+		if (running.get()) {
+			return false;
+		}
+		scheduler.execute(this::scheduledRefresh);
+		return true;
+	}
+
+	/** Watermark, lag and last-run figures per fact. */
+	public Map<String, Object> getStatus() {
+		Map<String, Object> status = new LinkedHashMap<>();
+		status.put("enabled", properties.isEnabled());
+		status.put("interval", properties.getInterval().toString());
+		status.put("running", running.get());
+		status.put("facts", engine.status());
+		return status;
+	}
+}
@@ -0,0 +1,12 @@
+USE db_identity;
+
+-- Progress markers of resumable data jobs (backfills, archival), one row per job
+CREATE TABLE IF NOT EXISTS amrit_job_checkpoint (
+    job_name VARCHAR(150) NOT NULL,
+    last_key BIGINT NOT NULL,
+    rows_processed BIGINT NOT NULL DEFAULT 0,
+    batch_size INT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (job_name)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
@@ -0,0 +1,88 @@
+USE db_iemr;
+
+-- Incremental reporting load: changed rows are read in (LastModDate, primary key)
+-- order, which a LastModDate index serves as a range scan (InnoDB appends the key).
+
+SET @idx_exists = (
+    SELECT COUNT(*)
+    FROM information_schema.statistics
+    WHERE table_schema = 'db_iemr'
+      AND table_name = 't_bencall'
+      AND index_name = 'idx_LastModDate'
+);
+
+SET @sql = IF(
+    @idx_exists = 0,
+    'ALTER TABLE t_bencall
+     ADD INDEX idx_LastModDate (LastModDate),
+     ALGORITHM=INPLACE,
+     LOCK=NONE',
+    'SELECT ''idx_LastModDate already exists'''
+);
+
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @idx_exists = (
+    SELECT COUNT(*)
+    FROM information_schema.statistics
+    WHERE table_schema = 'db_iemr'
+      AND table_name = 't_benvisitdetail'
+      AND index_name = 'idx_LastModDate'
+);
+
+SET @sql = IF(
+    @idx_exists = 0,
+    'ALTER TABLE t_benvisitdetail
+     ADD INDEX idx_LastModDate (LastModDate),
+     ALGORITHM=INPLACE,
+     LOCK=NONE',
+    'SELECT ''idx_LastModDate already exists'''
+);
+
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @idx_exists = (
+    SELECT COUNT(*)
+    FROM information_schema.statistics
+    WHERE table_schema = 'db_iemr'
+      AND table_name = 't_itemstockentry'
+      AND index_name = 'idx_LastModDate'
+);
+
+SET @sql = IF(
+    @idx_exists = 0,
+    'ALTER TABLE t_itemstockentry
+     ADD INDEX idx_LastModDate (LastModDate),
+     ALGORITHM=INPLACE,
+     LOCK=NONE',
+    'SELECT ''idx_LastModDate already exists'''
+);
+
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @idx_exists = (
+    SELECT COUNT(*)
+    FROM information_schema.statistics
+    WHERE table_schema = 'db_iemr'
+      AND table_name = 't_mctsoutboundcalls'
+      AND index_name = 'idx_LastModDate'
+);
+
+SET @sql = IF(
+    @idx_exists = 0,
+    'ALTER TABLE t_mctsoutboundcalls
+     ADD INDEX idx_LastModDate (LastModDate),
+     ALGORITHM=INPLACE,
+     LOCK=NONE',
+    'SELECT ''idx_LastModDate already exists'''
+);
+
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
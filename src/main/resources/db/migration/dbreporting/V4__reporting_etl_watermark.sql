@@ -0,0 +1,56 @@
+USE db_reporting;
+
+-- Load positions of the incremental reporting load, one row per fact
+CREATE TABLE IF NOT EXISTS etl_watermark (
+    fact_name VARCHAR(64) NOT NULL,
+    last_modified DATETIME NOT NULL,
+    last_key BIGINT NOT NULL,
+    complete_to DATETIME DEFAULT NULL,
+    rows_loaded BIGINT NOT NULL DEFAULT 0,
+    last_error VARCHAR(1000) DEFAULT NULL,
+    updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (fact_name)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- Changed rows are replaced by their source key
+SET @idx_exists = (
+    SELECT COUNT(*)
+    FROM information_schema.statistics
+    WHERE table_schema = 'db_reporting'
+      AND table_name = 'fact_benvisitdetail'
+      AND index_name = 'inx_BenVisitID'
+);
+
+SET @sql = IF(
+    @idx_exists = 0,
+    'ALTER TABLE fact_benvisitdetail
+     ADD INDEX inx_BenVisitID (BenVisitID),
+     ALGORITHM=INPLACE,
+     LOCK=NONE',
+    'SELECT ''inx_BenVisitID already exists'''
+);
+
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @idx_exists = (
+    SELECT COUNT(*)
+    FROM information_schema.statistics
+    WHERE table_schema = 'db_reporting'
+      AND table_name = 'fact_itemstockentry'
+      AND index_name = 'inx_ItemStockEntryID'
+);
+
+SET @sql = IF(
+    @idx_exists = 0,
+    'ALTER TABLE fact_itemstockentry
+     ADD INDEX inx_ItemStockEntryID (ItemStockEntryID),
+     ALGORITHM=INPLACE,
+     LOCK=NONE',
+    'SELECT ''inx_ItemStockEntryID already exists'''
+);
+
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
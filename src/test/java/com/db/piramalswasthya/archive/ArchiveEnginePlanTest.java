@@ -0,0 +1,204 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+
+package com.db.piramalswasthya.archive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class ArchiveEnginePlanTest {
+
+	private final ArchiveEngine engine = new ArchiveEngine(500, Duration.ZERO, 10);
+	private final ArchiveProperties.Policy policy = new ArchiveProperties.Policy();
+
+	@Test
+	void dependentsMoveBeforeTheTablesTheyReference() throws SQLException {
+		Catalog catalog = new Catalog()
+			.table("t_visit", "VisitID", "bigint")
+			.table("t_prescription", "PrescriptionID", "bigint")
+			.table("t_prescribeddrug", "DrugID", "bigint")
+			.table("t_referral", "ReferralID", "int")
+			.foreignKey("t_prescription", "fk_prescription_visit", "VisitID", "t_visit", "VisitID")
+			.foreignKey("t_prescribeddrug", "fk_drug_prescription", "PrescriptionID", "t_prescription", "PrescriptionID")
+			.foreignKey("t_referral", "fk_referral_visit", "VisitID", "t_visit", "VisitID");
+
+		ArchiveEngine.Plan plan = engine.plan(catalog.connection(), "t_visit", policy);
+
+		assertThat(plan.ineligibleReason()).isNull();
+		assertThat(plan.keyColumn()).isEqualTo("VisitID");
+		assertThat(plan.steps()).extracting(ArchiveEngine.Step::table)
+			.containsExactly("t_prescribeddrug", "t_prescription", "t_referral", "t_visit");
+		assertThat(plan.dependents()).containsExactly("t_prescribeddrug", "t_prescription", "t_referral");
+	}
+
+	@Test
+	void dependentPredicatesNestTheArchivedRange() throws SQLException {
+		Catalog catalog = new Catalog()
+			.table("t_visit", "VisitID", "bigint")
+			.table("t_prescription", "PrescriptionID", "bigint")
+			.foreignKey("t_prescription", "fk_prescription_visit", "VisitID", "t_visit", "VisitID");
+
+		ArchiveEngine.Plan plan = engine.plan(catalog.connection(), "t_visit", policy);
+
+		ArchiveEngine.Step child = plan.steps().get(0);
+		ArchiveEngine.Step root = plan.steps().get(1);
+		assertThat(root.predicate()).startsWith("`t_visit`.`VisitID` > ? AND `t_visit`.`VisitID` <= ? AND "
+			+ "`t_visit`.`CreatedDate` < ?");
+		assertThat(child.predicate()).isEqualTo("`VisitID` IN (SELECT `t_visit`.`VisitID` FROM `t_visit` WHERE "
+			+ root.predicate() + ")");
+		assertThat(child.columns()).containsExactly("PrescriptionID", "CreatedDate", "VisitID");
+	}
+
+	@Test
+	void foreignKeyCycleIsIneligible() throws SQLException {
+		Catalog catalog = new Catalog()
+			.table("t_a", "AID", "bigint")
+			.table("t_b", "BID", "bigint")
+			.foreignKey("t_b", "fk_b_a", "AID", "t_a", "AID")
+			.foreignKey("t_a", "fk_a_b", "BID", "t_b", "BID");
+
+		ArchiveEngine.Plan plan = engine.plan(catalog.connection(), "t_a", policy);
+
+		assertThat(plan.ineligibleReason()).startsWith("foreign key cycle fk_a_b");
+		assertThat(plan.steps()).isEmpty();
+	}
+
+	@Test
+	void compositeOrNonIntegerKeysAreIneligible() throws SQLException {
+		Catalog catalog = new Catalog()
+			.table("t_composite", "PartA", "bigint")
+			.primaryKeyColumn("t_composite", "PartB")
+			.table("t_uuid", "UUID", "varchar");
+
+		assertThat(engine.plan(catalog.connection(), "t_composite", policy).ineligibleReason())
+			.startsWith("composite primary key");
+		assertThat(engine.plan(catalog.connection(), "t_uuid", policy).ineligibleReason())
+			.isEqualTo("primary key UUID is varchar, not an integer");
+		assertThat(engine.plan(catalog.connection(), "t_missing", policy).ineligibleReason())
+			.isEqualTo("no primary key or table not found");
+	}
+
+	@Test
+	void ageColumnMustBeADate() throws SQLException {
+		Catalog catalog = new Catalog().table("t_visit", "VisitID", "bigint");
+		catalog.types.put("t_visit.CreatedDate", "varchar");
+
+		assertThat(engine.plan(catalog.connection(), "t_visit", policy).ineligibleReason())
+			.isEqualTo("column CreatedDate is varchar");
+	}
+
+	/** The information_schema lookups of {@link ArchiveEngine#plan}, answered from maps. */
+	private static final class Catalog {
+
+		private final Map<String, List<String>> primaryKeys = new HashMap<>();
+		private final Map<String, List<String>> columns = new HashMap<>();
+		// table.column -> data type
+		private final Map<String, String> types = new HashMap<>();
+		// referenced table -> rows of TABLE_NAME, CONSTRAINT_NAME, COLUMN_NAME, REFERENCED_COLUMN_NAME
+		private final Map<String, List<String[]>> referencing = new HashMap<>();
+
+		/** A table keyed by {@code key}, with a CreatedDate DATETIME column. */
+		Catalog table(String table, String key, String keyType) {
+			primaryKeys.computeIfAbsent(table, t -> new ArrayList<>()).add(key);
+			columns.computeIfAbsent(table, t -> new ArrayList<>()).addAll(List.of(key, "CreatedDate"));
+			types.put(table + "." + key, keyType);
+			types.put(table + ".CreatedDate", "datetime");
+			return this;
+		}
+
+		Catalog primaryKeyColumn(String table, String column) {
+			primaryKeys.get(table).add(column);
+			return this;
+		}
+
+		Catalog foreignKey(String table, String name, String column, String referencedTable, String referencedColumn) {
+			referencing.computeIfAbsent(referencedTable, t -> new ArrayList<>())
+				.add(new String[] { table, name, column, referencedColumn });
+			if (!columns.get(table).contains(column)) {
+				columns.get(table).add(column);
+			}
+			return this;
+		}
+
+		Connection connection() throws SQLException {
+			Connection connection = mock(Connection.class);
+			when(connection.prepareStatement(anyString())).thenAnswer(invocation -> statement(invocation.getArgument(0)));
+			return connection;
+		}
+
+		private PreparedStatement statement(String sql) throws SQLException {
+			PreparedStatement ps = mock(PreparedStatement.class);
+			Map<Integer, String> parameters = new HashMap<>();
+			doAnswer(invocation -> parameters.put(invocation.getArgument(0), invocation.getArgument(1)))
+				.when(ps).setString(anyInt(), anyString());
+			when(ps.executeQuery()).thenAnswer(invocation -> resultSet(rows(sql, parameters)));
+			return ps;
+		}
+
+		private List<String[]> rows(String sql, Map<Integer, String> parameters) {
+			String table = parameters.get(1);
+			if (sql.contains("INDEX_NAME = 'PRIMARY'")) {
+				return single(primaryKeys.getOrDefault(table, List.of()));
+			}
+			if (sql.contains("DATA_TYPE")) {
+				String type = types.get(table + "." + parameters.get(2));
+				return type == null ? List.of() : List.<String[]>of(new String[] { type });
+			}
+			if (sql.contains("KEY_COLUMN_USAGE")) {
+				return referencing.getOrDefault(table, List.of());
+			}
+			if (sql.contains("information_schema.COLUMNS")) {
+				return single(columns.getOrDefault(table, List.of()));
+			}
+			throw new AssertionError("Unexpected query: " + sql);
+		}
+
+		private static List<String[]> single(List<String> values) {
+			return values.stream().map(value -> new String[] { value }).toList();
+		}
+
+		private static ResultSet resultSet(List<String[]> rows) throws SQLException {
+			ResultSet rs = mock(ResultSet.class);
+			AtomicInteger current = new AtomicInteger(-1);
+			when(rs.next()).thenAnswer(invocation -> current.incrementAndGet() < rows.size());
+			when(rs.getString(anyInt())).thenAnswer(invocation -> rows.get(current.get())[(int) invocation.getArgument(0) - 1]);
+			return rs;
+		}
+	}
+}
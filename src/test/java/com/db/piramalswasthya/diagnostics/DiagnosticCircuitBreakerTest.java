@@ -0,0 +1,125 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+
+package com.db.piramalswasthya.diagnostics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import com.db.piramalswasthya.diagnostics.DiagnosticCircuitBreaker.State;
+
+class DiagnosticCircuitBreakerTest {
+
+	@Test
+	void opensAfterConsecutiveFailures() {
+		DiagnosticCircuitBreaker breaker = new DiagnosticCircuitBreaker("test", 3, Duration.ofHours(1),
+			Duration.ofHours(2));
+
+		breaker.onFailure();
+		breaker.onFailure();
+		assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+		assertThat(breaker.tryAcquire()).isTrue();
+
+		breaker.onFailure();
+		assertThat(breaker.getState()).isEqualTo(State.OPEN);
+		assertThat(breaker.tryAcquire()).isFalse();
+	}
+
+	@Test
+	void successResetsTheFailureCount() {
+		DiagnosticCircuitBreaker breaker = new DiagnosticCircuitBreaker("test", 2, Duration.ofHours(1),
+			Duration.ofHours(2));
+
+		breaker.onFailure();
+		breaker.onSuccess();
+		breaker.onFailure();
+
+		assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+	}
+
+	@Test
+	void admitsOneTrialOnceTheBackoffHasElapsed() {
+		DiagnosticCircuitBreaker breaker = new DiagnosticCircuitBreaker("test", 1, Duration.ZERO, Duration.ZERO);
+		breaker.onFailure();
+
+		assertThat(breaker.tryAcquire()).isTrue();
+		assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+		// The probe is still in flight
+		assertThat(breaker.tryAcquire()).isFalse();
+	}
+
+	@Test
+	void successfulTrialCloses() {
+		DiagnosticCircuitBreaker breaker = new DiagnosticCircuitBreaker("test", 1, Duration.ZERO, Duration.ZERO);
+		breaker.onFailure();
+		breaker.tryAcquire();
+
+		breaker.onSuccess();
+
+		assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+		assertThat(breaker.tryAcquire()).isTrue();
+	}
+
+	@Test
+	void failedTrialReopens() {
+		DiagnosticCircuitBreaker breaker = new DiagnosticCircuitBreaker("test", 1, Duration.ZERO, Duration.ZERO);
+		breaker.onFailure();
+		breaker.tryAcquire();
+
+		breaker.onFailure();
+
+		assertThat(breaker.getState()).isEqualTo(State.OPEN);
+	}
+
+	@Test
+	void staysOpenUntilTheBackoffHasElapsed() {
+		DiagnosticCircuitBreaker breaker = new DiagnosticCircuitBreaker("test", 1, Duration.ofHours(1),
+			Duration.ofHours(2));
+		breaker.onFailure();
+
+		assertThat(breaker.tryAcquire()).isFalse();
+		assertThat(breaker.getState()).isEqualTo(State.OPEN);
+	}
+
+	@Test
+	void onlyConnectivityFailuresCountAgainstTheCircuit() {
+		assertThat(DiagnosticCircuitBreaker.isConnectivityFailure(
+			new SQLTransientConnectionException("dbiemr - Connection is not available, request timed out"))).isTrue();
+		assertThat(DiagnosticCircuitBreaker.isConnectivityFailure(
+			new SQLException("Communications link failure", "08S01"))).isTrue();
+		assertThat(DiagnosticCircuitBreaker.isConnectivityFailure(
+			new RuntimeException(new SQLTimeoutException("Statement cancelled due to timeout")))).isTrue();
+
+		assertThat(DiagnosticCircuitBreaker.isConnectivityFailure(
+			new SQLSyntaxErrorException("Access denied; you need the PROCESS privilege", "42000", 1227))).isFalse();
+		assertThat(DiagnosticCircuitBreaker.isConnectivityFailure(
+			new SQLSyntaxErrorException("Table 'performance_schema.global_status' doesn't exist", "42S02", 1146)))
+			.isFalse();
+	}
+}
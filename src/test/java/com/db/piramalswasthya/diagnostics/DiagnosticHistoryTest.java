@@ -0,0 +1,96 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+
+package com.db.piramalswasthya.diagnostics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class DiagnosticHistoryTest {
+
+	private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+	@Test
+	void keepsOnlyTheLastCapacitySamplesOldestFirst() {
+		DiagnosticHistory history = new DiagnosticHistory(3);
+		for (int i = 0; i < 5; i++) {
+			history.record(snapshot(i, 10 * i, 100L * i));
+		}
+
+		List<DiagnosticHistory.Point> points = history.points(Instant.EPOCH);
+
+		assertThat(points).extracting(DiagnosticHistory.Point::at)
+			.containsExactly(START.plusSeconds(120), START.plusSeconds(180), START.plusSeconds(240));
+	}
+
+	@Test
+	void ratesComeFromConsecutiveSamplesAfterWrapping() {
+		DiagnosticHistory history = new DiagnosticHistory(2);
+		for (int i = 0; i < 4; i++) {
+			history.record(snapshot(i, 2 * i, 600L * i));
+		}
+
+		List<DiagnosticHistory.Point> points = history.points(Instant.EPOCH);
+
+		// The oldest retained sample has no predecessor left in the ring
+		assertThat(points.get(0).deadlocksPerMin()).isNull();
+		assertThat(points.get(1).deadlocksPerMin()).isEqualTo(2.0);
+		assertThat(points.get(1).questionsPerSec()).isEqualTo(10.0);
+		assertThat(points.get(1).connectionUsagePercent()).isEqualTo(25);
+	}
+
+	@Test
+	void restartedServerHasNoRates() {
+		DiagnosticHistory history = new DiagnosticHistory(4);
+		history.record(snapshot(0, 50, 5000));
+		history.record(new DiagnosticSnapshot(START.plusSeconds(60), 0, 0, 25, 1, 100, 0, 0, 10, 5, 0, 0));
+
+		assertThat(history.points(Instant.EPOCH).get(1).deadlocksPerMin()).isNull();
+	}
+
+	@Test
+	void pointsBeforeSinceAreLeftOut() {
+		DiagnosticHistory history = new DiagnosticHistory(4);
+		for (int i = 0; i < 3; i++) {
+			history.record(snapshot(i, 0, 0));
+		}
+
+		assertThat(history.points(START.plusSeconds(60))).hasSize(2);
+		assertThat(history.points(START.plus(Duration.ofHours(1)))).isEmpty();
+	}
+
+	@Test
+	void emptyHistoryHasNoPoints() {
+		assertThat(new DiagnosticHistory(8).points(Instant.EPOCH)).isEmpty();
+	}
+
+	/** One sample a minute, with the server up since {@code START}. */
+	private static DiagnosticSnapshot snapshot(int minute, long deadlocks, long questions) {
+		return new DiagnosticSnapshot(START.plusSeconds(60L * minute), 0, 0, 25, 1, 100, 0, deadlocks, questions,
+			3600 + 60L * minute, 0, 0);
+	}
+}
@@ -0,0 +1,185 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+
+
+package com.db.piramalswasthya.diagnostics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class DiagnosticSnapshotCollectorTest {
+
+	private static final SQLException ACCESS_DENIED = new SQLSyntaxErrorException(
+		"Access denied; you need (at least one of) the PROCESS privilege(s) for this operation", "42000", 1227);
+
+	private final DiagnosticSnapshotCollector collector = new DiagnosticSnapshotCollector("dbiemr", 30, 60, 3);
+
+	@Test
+	void missingProcessPrivilegeOnlyLosesTheAffectedCounters() throws SQLException {
+		Server server = new Server()
+			.status("THREADS_CONNECTED", "40")
+			.status("MAX_CONNECTIONS", "200")
+			.status("UPTIME", "1000")
+			.denied("INNODB_METRICS")
+			.denied("INNODB_TRX")
+			.count("PROCESSLIST", 2);
+
+		DiagnosticSnapshotCollector.Activity activity = collector.collectActivity(server.connection());
+		DiagnosticSnapshot snapshot = collector.collect(server.connection(), activity);
+
+		assertThat(activity.stuckProcesses()).isEqualTo(2);
+		assertThat(activity.longTransactions()).isEqualTo(DiagnosticSnapshot.UNKNOWN);
+		assertThat(snapshot.connectionUsagePercent()).isEqualTo(20);
+		assertThat(snapshot.deadlocks()).isEqualTo(DiagnosticSnapshot.UNKNOWN);
+		assertThat(snapshot.longTransactions()).isEqualTo(DiagnosticSnapshot.UNKNOWN);
+	}
+
+	@Test
+	void deadlockMetricIsOnlyReadWithoutTheStatusVariable() throws SQLException {
+		Server server = new Server()
+			.status("INNODB_DEADLOCKS", "7")
+			.denied("INNODB_METRICS");
+
+		assertThat(collector.collect(server.connection(), DiagnosticSnapshotCollector.Activity.UNKNOWN).deadlocks())
+			.isEqualTo(7);
+	}
+
+	@Test
+	void unreadableStatusTablesStillYieldASnapshot() throws SQLException {
+		Server server = new Server().deniedStatus().count("INNODB_METRICS", 3);
+
+		DiagnosticSnapshot snapshot = collector.collect(server.connection(), DiagnosticSnapshotCollector.Activity.UNKNOWN);
+
+		assertThat(snapshot.threadsConnected()).isEqualTo(DiagnosticSnapshot.UNKNOWN);
+		assertThat(snapshot.deadlocks()).isEqualTo(3);
+	}
+
+	@Test
+	void connectivityFailuresPropagate() throws SQLException {
+		Server server = new Server().failing(new SQLNonTransientConnectionException("Communications link failure", "08S01"));
+
+		assertThatThrownBy(() -> collector.collectActivity(server.connection()))
+			.isInstanceOf(SQLNonTransientConnectionException.class);
+	}
+
+	/** Mocked connection answering the collector's statements by the table they read. */
+	private static final class Server {
+
+		private final Map<String, String> status = new LinkedHashMap<>();
+		private final Map<String, Long> counts = new LinkedHashMap<>();
+		private final Map<String, SQLException> failures = new LinkedHashMap<>();
+		private SQLException statusFailure;
+		private SQLException allFailure;
+
+		Server status(String name, String value) {
+			status.put(name, value);
+			return this;
+		}
+
+		Server count(String table, long value) {
+			counts.put(table, value);
+			return this;
+		}
+
+		Server denied(String table) {
+			failures.put(table, ACCESS_DENIED);
+			return this;
+		}
+
+		Server deniedStatus() {
+			statusFailure = ACCESS_DENIED;
+			return this;
+		}
+
+		Server failing(SQLException e) {
+			allFailure = e;
+			return this;
+		}
+
+		Connection connection() throws SQLException {
+			Connection conn = mock(Connection.class);
+			Statement stmt = mock(Statement.class);
+			when(conn.createStatement()).thenReturn(stmt);
+			when(stmt.executeQuery(anyString())).thenAnswer(invocation -> {
+				if (allFailure != null || statusFailure != null) {
+					throw allFailure != null ? allFailure : statusFailure;
+				}
+				return statusRows();
+			});
+			when(conn.prepareStatement(anyString())).thenAnswer(invocation -> {
+				String sql = invocation.getArgument(0);
+				PreparedStatement ps = mock(PreparedStatement.class);
+				when(ps.executeQuery()).thenAnswer(query -> {
+					if (allFailure != null) {
+						throw allFailure;
+					}
+					for (Map.Entry<String, SQLException> failure : failures.entrySet()) {
+						if (sql.contains(failure.getKey())) {
+							throw failure.getValue();
+						}
+					}
+					long value = counts.entrySet().stream()
+						.filter(entry -> sql.contains(entry.getKey()))
+						.mapToLong(Map.Entry::getValue)
+						.findFirst()
+						.orElse(0);
+					ResultSet rs = mock(ResultSet.class);
+					when(rs.next()).thenReturn(true, false);
+					when(rs.getString(1)).thenReturn(Long.toString(value));
+					return rs;
+				});
+				return ps;
+			});
+			return conn;
+		}
+
+		private ResultSet statusRows() throws SQLException {
+			Iterator<Map.Entry<String, String>> rows = status.entrySet().iterator();
+			ResultSet rs = mock(ResultSet.class);
+			AtomicReference<Map.Entry<String, String>> current = new AtomicReference<>();
+			when(rs.next()).thenAnswer(invocation -> {
+				current.set(rows.hasNext() ? rows.next() : null);
+				return current.get() != null;
+			});
+			when(rs.getString("name")).thenAnswer(invocation -> current.get().getKey());
+			when(rs.getString("value")).thenAnswer(invocation -> current.get().getValue());
+			return rs;
+		}
+	}
+}
@@ -0,0 +1,162 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+
+package com.db.piramalswasthya.migration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.configuration.Configuration;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs against {@code src/test/resources/db/manifest/fastpathtest.manifest}
+ * (versions 1-3, checksums 100/200/300) and a mocked history table.
+ */
+class ManifestFastPathTest {
+
+	private static final String SCHEMA = "fastpathtest";
+
+	/** One {@code flyway_schema_history} row. */
+	private record Row(String version, String type, Integer checksum, boolean success) {
+	}
+
+	@Test
+	void currentWhenEveryManifestScriptIsApplied() throws SQLException {
+		Flyway flyway = flyway(sql(1, 100), sql(2, 200), sql(3, 300));
+
+		assertThat(new ManifestFastPath(SCHEMA).currentVersion(flyway)).contains("3");
+	}
+
+	@Test
+	void pendingScriptTakesTheFullPath() throws SQLException {
+		Flyway flyway = flyway(sql(1, 100), sql(2, 200));
+		ManifestFastPath fastPath = new ManifestFastPath(SCHEMA);
+
+		assertThat(fastPath.currentVersion(flyway)).isEmpty();
+		assertThat(fastPath.pendingCount(flyway)).isEqualTo(1);
+	}
+
+	@Test
+	void checksumDriftTakesTheFullPath() throws SQLException {
+		Flyway flyway = flyway(sql(1, 100), sql(2, 201), sql(3, 300));
+
+		assertThat(new ManifestFastPath(SCHEMA).currentVersion(flyway)).isEmpty();
+	}
+
+	@Test
+	void failedMigrationTakesTheFullPath() throws SQLException {
+		Flyway flyway = flyway(sql(1, 100), sql(2, 200), new Row("3", "SQL", 300, false));
+
+		assertThat(new ManifestFastPath(SCHEMA).currentVersion(flyway)).isEmpty();
+	}
+
+	@Test
+	void scriptsUpToTheBaselineAreNotRequired() throws SQLException {
+		Flyway flyway = flyway(new Row("2", "BASELINE", null, true), sql(3, 300));
+
+		assertThat(new ManifestFastPath(SCHEMA).currentVersion(flyway)).contains("3");
+	}
+
+	@Test
+	void pendingJavaMigrationTakesTheFullPath() throws SQLException {
+		Flyway flyway = flyway(sql(1, 100), sql(2, 200), sql(3, 300));
+		ManifestFastPath fastPath = new ManifestFastPath(SCHEMA, List.of(MigrationVersion.fromVersion("4")));
+
+		assertThat(fastPath.currentVersion(flyway)).isEmpty();
+		assertThat(fastPath.targetVersion()).contains("4");
+	}
+
+	@Test
+	void appliedJavaMigrationNeedsNoChecksum() throws SQLException {
+		Flyway flyway = flyway(sql(1, 100), sql(2, 200), sql(3, 300), new Row("4", "JDBC", null, true));
+
+		assertThat(new ManifestFastPath(SCHEMA, List.of(MigrationVersion.fromVersion("4"))).currentVersion(flyway))
+			.contains("4");
+	}
+
+	@Test
+	void unreadableHistoryTakesTheFullPath() throws SQLException {
+		DataSource dataSource = mock(DataSource.class);
+		when(dataSource.getConnection()).thenThrow(new SQLException("Table 'flyway_schema_history' doesn't exist"));
+		ManifestFastPath fastPath = new ManifestFastPath(SCHEMA);
+
+		assertThat(fastPath.currentVersion(flyway(dataSource))).isEmpty();
+		assertThat(fastPath.pendingCount(flyway(dataSource))).isEqualTo(3);
+	}
+
+	@Test
+	void noManifestTakesTheFullPath() throws SQLException {
+		ManifestFastPath fastPath = new ManifestFastPath("nomanifest");
+
+		assertThat(fastPath.currentVersion(flyway(sql(1, 100)))).isEmpty();
+		assertThat(fastPath.targetVersion()).isEmpty();
+		assertThat(fastPath.pendingCount(flyway(sql(1, 100)))).isEqualTo(-1);
+	}
+
+	private static Row sql(int version, int checksum) {
+		return new Row(String.valueOf(version), "SQL", checksum, true);
+	}
+
+	private static Flyway flyway(Row... rows) throws SQLException {
+		Connection connection = mock(Connection.class);
+		Statement statement = mock(Statement.class);
+		DataSource dataSource = mock(DataSource.class);
+		when(dataSource.getConnection()).thenReturn(connection);
+		when(connection.createStatement()).thenReturn(statement);
+		when(statement.executeQuery(anyString())).thenAnswer(invocation -> resultSet(rows));
+		return flyway(dataSource);
+	}
+
+	private static Flyway flyway(DataSource dataSource) {
+		Configuration configuration = mock(Configuration.class);
+		when(configuration.getDataSource()).thenReturn(dataSource);
+		when(configuration.getTable()).thenReturn("flyway_schema_history");
+		Flyway flyway = mock(Flyway.class);
+		when(flyway.getConfiguration()).thenReturn(configuration);
+		return flyway;
+	}
+
+	private static ResultSet resultSet(Row... rows) throws SQLException {
+		ResultSet rs = mock(ResultSet.class);
+		AtomicInteger current = new AtomicInteger(-1);
+		when(rs.next()).thenAnswer(invocation -> current.incrementAndGet() < rows.length);
+		when(rs.getString("version")).thenAnswer(invocation -> rows[current.get()].version());
+		when(rs.getString("type")).thenAnswer(invocation -> rows[current.get()].type());
+		when(rs.getObject("checksum", Integer.class)).thenAnswer(invocation -> rows[current.get()].checksum());
+		when(rs.getBoolean("success")).thenAnswer(invocation -> rows[current.get()].success());
+		return rs;
+	}
+}
@@ -0,0 +1,123 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+
+package com.db.piramalswasthya.migration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+class SchemaMigrationExecutorTest {
+
+	private static final List<String> SCHEMAS = List.of("dbiemr", "dbidentity", "dbreporting", "db1097identity");
+
+	private static final Function<String, SchemaMigrationResult> SUCCEED = schema -> SchemaMigrationResult.success(
+		schema, 1, "1", 0);
+
+	@Test
+	void rejectsCyclicDependencies() {
+		SchemaMigrationExecutor executor = new SchemaMigrationExecutor(2, Map.of(
+			"dbiemr", List.of("dbreporting"),
+			"dbreporting", List.of("dbidentity"),
+			"dbidentity", List.of("dbiemr")));
+		List<String> ran = Collections.synchronizedList(new ArrayList<>());
+
+		assertThatThrownBy(() -> executor.execute(SCHEMAS, schema -> {
+			ran.add(schema);
+			return SUCCEED.apply(schema);
+		}))
+			.isInstanceOf(IllegalStateException.class)
+			.hasMessageContaining("Cyclic");
+		assertThat(ran).isEmpty();
+	}
+
+	@Test
+	void rejectsDependencyOnUnknownSchema() {
+		SchemaMigrationExecutor executor = new SchemaMigrationExecutor(2, Map.of("dbreporting", List.of("dbmissing")));
+
+		assertThatThrownBy(() -> executor.execute(SCHEMAS, SUCCEED))
+			.isInstanceOf(IllegalStateException.class)
+			.hasMessageContaining("dbmissing");
+	}
+
+	@Test
+	void rejectsDependenciesDeclaredForUnknownSchema() {
+		SchemaMigrationExecutor executor = new SchemaMigrationExecutor(2, Map.of("dbmissing", List.of("dbiemr")));
+
+		assertThatThrownBy(() -> executor.execute(SCHEMAS, SUCCEED))
+			.isInstanceOf(IllegalStateException.class)
+			.hasMessageContaining("dbmissing");
+	}
+
+	@Test
+	void runsDependenciesFirstAndReturnsResultsInDeclaredOrder() {
+		SchemaMigrationExecutor executor = new SchemaMigrationExecutor(4, Map.of(
+			"dbiemr", List.of("dbidentity"),
+			"dbreporting", List.of("dbiemr", "dbidentity")));
+		List<String> ran = Collections.synchronizedList(new ArrayList<>());
+
+		List<SchemaMigrationResult> results = executor.execute(SCHEMAS, schema -> {
+			ran.add(schema);
+			return SUCCEED.apply(schema);
+		});
+
+		assertThat(results).extracting(SchemaMigrationResult::getSchema).containsExactlyElementsOf(SCHEMAS);
+		assertThat(results).allMatch(SchemaMigrationResult::isSuccess);
+		assertThat(ran.indexOf("dbidentity")).isLessThan(ran.indexOf("dbiemr"));
+		assertThat(ran.indexOf("dbiemr")).isLessThan(ran.indexOf("dbreporting"));
+	}
+
+	@Test
+	void skipsDependentsOfAFailedSchema() {
+		SchemaMigrationExecutor executor = new SchemaMigrationExecutor(2, Map.of("dbreporting", List.of("dbiemr")));
+
+		List<SchemaMigrationResult> results = executor.execute(SCHEMAS, schema -> {
+			if (schema.equals("dbiemr")) {
+				throw new IllegalStateException("checksum mismatch");
+			}
+			return SUCCEED.apply(schema);
+		});
+
+		assertThat(results).extracting(SchemaMigrationResult::getStatus).containsExactly(
+			SchemaMigrationResult.Status.FAILED, SchemaMigrationResult.Status.SUCCESS,
+			SchemaMigrationResult.Status.SKIPPED, SchemaMigrationResult.Status.SUCCESS);
+		assertThat(results.get(0).getMessage()).isEqualTo("checksum mismatch");
+	}
+
+	@Test
+	void delegatesDependentsOfADelegatedSchema() {
+		SchemaMigrationExecutor executor = new SchemaMigrationExecutor(2, Map.of("dbreporting", List.of("dbiemr")));
+
+		List<SchemaMigrationResult> results = executor.execute(List.of("dbiemr", "dbreporting"),
+			schema -> schema.equals("dbiemr") ? SchemaMigrationResult.delegated(schema, "locked")
+				: SUCCEED.apply(schema));
+
+		assertThat(results.get(1).getStatus()).isEqualTo(SchemaMigrationResult.Status.DELEGATED);
+	}
+}
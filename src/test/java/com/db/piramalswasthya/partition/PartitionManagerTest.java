@@ -0,0 +1,86 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+
+package com.db.piramalswasthya.partition;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+
+import org.junit.jupiter.api.Test;
+
+class PartitionManagerTest {
+
+	private static final YearMonth CURRENT = YearMonth.of(2026, 10);
+
+	@Test
+	void definesOnePartitionPerMonthThenPmax() {
+		assertThat(PartitionManager.partitionDefinitions(YearMonth.of(2025, 11), YearMonth.of(2026, 1))).isEqualTo(
+			"PARTITION p202511 VALUES LESS THAN ('2025-12-01'), "
+				+ "PARTITION p202512 VALUES LESS THAN ('2026-01-01'), "
+				+ "PARTITION p202601 VALUES LESS THAN ('2026-02-01'), "
+				+ "PARTITION pmax VALUES LESS THAN (MAXVALUE)");
+	}
+
+	@Test
+	void singleMonthStillGetsPmax() {
+		assertThat(PartitionManager.partitionDefinitions(CURRENT, CURRENT)).isEqualTo(
+			"PARTITION p202610 VALUES LESS THAN ('2026-11-01'), PARTITION pmax VALUES LESS THAN (MAXVALUE)");
+	}
+
+	@Test
+	void partitionNamesRoundTrip() {
+		assertThat(PartitionManager.name(YearMonth.of(2024, 2))).isEqualTo("p202402");
+		assertThat(PartitionManager.month("p202402")).isEqualTo(YearMonth.of(2024, 2));
+		assertThat(PartitionManager.month("pmax")).isNull();
+		assertThat(PartitionManager.month("p2024")).isNull();
+	}
+
+	@Test
+	void firstMonthIsTheOldestRowsMonth() {
+		assertThat(PartitionManager.firstMonth("2019-04-01", CURRENT, CURRENT.plusMonths(3)))
+			.isEqualTo(YearMonth.of(2019, 4));
+	}
+
+	@Test
+	void emptyOrUnreadableOldestStartsAtTheCurrentMonth() {
+		assertThat(PartitionManager.firstMonth(null, CURRENT, CURRENT.plusMonths(3))).isEqualTo(CURRENT);
+		assertThat(PartitionManager.firstMonth("0000-00-01", CURRENT, CURRENT.plusMonths(3))).isEqualTo(CURRENT);
+	}
+
+	@Test
+	void futureOldestStartsAtTheCurrentMonth() {
+		assertThat(PartitionManager.firstMonth("2030-01-01", CURRENT, CURRENT.plusMonths(3))).isEqualTo(CURRENT);
+	}
+
+	@Test
+	void firstMonthStaysWithinThePartitionLimit() {
+		YearMonth last = CURRENT.plusMonths(3);
+
+		YearMonth first = PartitionManager.firstMonth("1000-01-01", CURRENT, last);
+
+		// months first..last plus pmax
+		long partitions = first.until(last, ChronoUnit.MONTHS) + 2;
+		assertThat(partitions).isEqualTo(PartitionManager.MAX_PARTITIONS);
+	}
+}
@@ -0,0 +1,152 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.datagen;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * What to generate, read from a properties file (the default is
+ * {@code db/datagen/amrit-scale.properties}):
+ *
+ * <pre>
+ * volume.&lt;schema&gt;.&lt;table&gt;=&lt;rows per scale unit&gt;
+ * link.&lt;schema&gt;.&lt;table|*&gt;.&lt;column&gt;=&lt;schema&gt;.&lt;table&gt;.&lt;column&gt;[ sequential]
+ * sequence.&lt;schema&gt;.&lt;table&gt;.&lt;column&gt;=&lt;first value&gt;
+ * default-parent-rows=&lt;rows&gt;
+ * </pre>
+ *
+ * Links stand in for the relationships the schemas keep without a foreign
+ * key, such as {@code BeneficiaryRegID} across databases. A sequential link
+ * pairs row n with the n-th parent row; otherwise parents are picked with
+ * the run's skew. Sequence columns get consecutive values, which makes them
+ * unique and usable as link or foreign key targets.
+ *
+ * @author Piramal Swasthya
+ */
+public final class GenerationSpec {
+
+	public static final String DEFAULT_RESOURCE = "db/datagen/amrit-scale.properties";
+	private static final String ANY_TABLE = "*";
+
+	public record TableRef(String schema, String table) {
+
+		@Override
+		public String toString() {
+			return schema + "." + table;
+		}
+	}
+
+	public record Link(TableRef target, String targetColumn, boolean sequential) {
+	}
+
+	private final Map<TableRef, Double> volumes = new LinkedHashMap<>();
+	private final Map<String, Link> links = new LinkedHashMap<>();
+	private final Map<String, Long> sequences = new LinkedHashMap<>();
+	private int defaultParentRows = 100;
+
+	private GenerationSpec() {
+	}
+
+	public static GenerationSpec load(InputStream in) throws IOException {
+		Properties properties = new Properties();
+		properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+		GenerationSpec spec = new GenerationSpec();
+		// sorted so volumes keep a stable order independent of hashing
+		new TreeMap<>(properties).forEach((k, v) -> spec.add(k.toString().trim(), v.toString().trim()));
+		return spec;
+	}
+
+	private void add(String key, String value) {
+		String[] parts = key.split("\\.");
+		switch (parts[0]) {
+			case "volume" -> {
+				expectParts(key, parts, 3);
+				volumes.put(new TableRef(parts[1], parts[2]), Double.parseDouble(value));
+			}
+			case "link" -> {
+				expectParts(key, parts, 4);
+				String[] words = value.split("\\s+");
+				String[] target = words[0].split("\\.");
+				if (target.length != 3) {
+					throw new IllegalArgumentException("Link target must be <schema>.<table>.<column>: " + key + "=" + value);
+				}
+				links.put(columnKey(parts[1], parts[2], parts[3]), new Link(new TableRef(target[0], target[1]),
+					target[2], words.length > 1 && "sequential".equalsIgnoreCase(words[1])));
+			}
+			case "sequence" -> {
+				expectParts(key, parts, 4);
+				sequences.put(columnKey(parts[1], parts[2], parts[3]), Long.parseLong(value));
+			}
+			case "default-parent-rows" -> defaultParentRows = Integer.parseInt(value);
+			default -> throw new IllegalArgumentException("Unknown setting " + key);
+		}
+	}
+
+	private static void expectParts(String key, String[] parts, int expected) {
+		if (parts.length != expected) {
+			throw new IllegalArgumentException("Malformed setting " + key);
+		}
+	}
+
+	private static String columnKey(String schema, String table, String column) {
+		return (schema + "." + table + "." + column).toLowerCase(Locale.ROOT);
+	}
+
+	/** Rows per scale unit, by schema and table name. */
+	public Map<TableRef, Double> getVolumes() {
+		return volumes;
+	}
+
+	/** Link of a column, a table-specific one winning over a {@code *} one; null when none. */
+	public Link link(String schema, String table, String column) {
+		Link link = links.get(columnKey(schema, table, column));
+		return link != null ? link : links.get(columnKey(schema, ANY_TABLE, column));
+	}
+
+	/** First value of a sequence column, or null. */
+	public Long sequenceStart(String schema, String table, String column) {
+		return sequences.get(columnKey(schema, table, column));
+	}
+
+	/** Sequence columns of a table, lower case. */
+	public List<String> sequenceColumns(String schema, String table) {
+		String prefix = (schema + "." + table + ".").toLowerCase(Locale.ROOT);
+		List<String> columns = new ArrayList<>();
+		sequences.keySet().stream().filter(k -> k.startsWith(prefix)).forEach(k -> columns.add(k.substring(prefix.length())));
+		return columns;
+	}
+
+	/** Rows generated for a referenced table that is empty and not given a volume. */
+	public int getDefaultParentRows() {
+		return defaultParentRows;
+	}
+}
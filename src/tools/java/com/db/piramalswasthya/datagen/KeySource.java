@@ -0,0 +1,68 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.datagen;
+
+import java.util.List;
+
+/**
+ * Keys a generated column can point at: a range of consecutive values
+ * generated in this run, or values read from the database.
+ *
+ * @author Piramal Swasthya
+ */
+interface KeySource {
+
+	long size();
+
+	/** Key at {@code index}, one value per referencing column. */
+	Object[] key(long index);
+
+	static KeySource range(long start, long count) {
+		return new KeySource() {
+
+			@Override
+			public long size() {
+				return count;
+			}
+
+			@Override
+			public Object[] key(long index) {
+				return new Object[] { start + index };
+			}
+		};
+	}
+
+	static KeySource of(List<Object[]> keys) {
+		return new KeySource() {
+
+			@Override
+			public long size() {
+				return keys.size();
+			}
+
+			@Override
+			public Object[] key(long index) {
+				return keys.get((int) index);
+			}
+		};
+	}
+}
@@ -0,0 +1,313 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.datagen;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Produces the rows of one table. Every column gets a value from its type
+ * and, for the columns every AMRIT table shares ({@code Deleted},
+ * {@code CreatedDate}, {@code CreatedBy}, ...), from its name; key columns
+ * count up, and foreign key or linked columns are pointed at parent keys.
+ * Rows are a pure function of the random source and the row number, so a
+ * segment written by any thread is reproducible from the run's seed.
+ *
+ * @author Piramal Swasthya
+ */
+final class RowGenerator {
+
+	/** Fills one or more values of {@code row}. */
+	@FunctionalInterface
+	interface Filler {
+		void fill(Object[] row, RowContext context);
+	}
+
+	/** State of the row being generated. */
+	static final class RowContext {
+		SplittableRandom random;
+		long index;
+		LocalDateTime created;
+		// parent row picked per parent table, so two references to one parent agree
+		final Map<String, Long> picks = new HashMap<>();
+	}
+
+	private static final double NULL_RATE = 0.2;
+	private static final int ID_DOMAIN = 100;
+	private static final Pattern ENUM_VALUE = Pattern.compile("'((?:[^']|'')*)'");
+	private static final LocalDateTime TIMESTAMP_MIN = LocalDateTime.of(1970, 1, 2, 0, 0);
+
+	private final SchemaModel.Table table;
+	private final Filler[] fillers;
+	private final long total;
+	private final LocalDateTime from;
+	private final long spanSeconds;
+
+	/**
+	 * @param consecutive columns counting up from the given first value (keys, sequences, unique integers)
+	 */
+	RowGenerator(SchemaModel.Table table, long total, LocalDateTime from, LocalDateTime to,
+			Map<String, Long> consecutive) {
+		this.table = table;
+		this.total = total;
+		this.from = from;
+		this.spanSeconds = Math.max(1, Duration.between(from, to).getSeconds());
+		List<SchemaModel.Column> columns = table.columns();
+		this.fillers = new Filler[columns.size()];
+		Set<String> uniqueStrings = uniqueSingleColumns(table);
+		for (int i = 0; i < columns.size(); i++) {
+			SchemaModel.Column column = columns.get(i);
+			Long first = consecutive.get(column.name().toLowerCase(Locale.ROOT));
+			if (first != null) {
+				fillers[i] = at(i, ctx -> first + ctx.index);
+			} else if (uniqueStrings.contains(column.name().toLowerCase(Locale.ROOT))) {
+				fillers[i] = at(i, ctx -> unique(column, ctx.index));
+			} else {
+				fillers[i] = byName(i, column);
+				if (fillers[i] == null) {
+					Filler typed = byType(i, column);
+					fillers[i] = column.nullable() ? nullable(i, typed) : typed;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Points {@code columns} at keys of {@code keys}: the n-th row at the n-th
+	 * key when {@code sequential}, otherwise a key picked with {@code skew}.
+	 * References sharing a {@code parent} use the same pick within a row.
+	 */
+	void reference(List<String> columns, String parent, KeySource keys, boolean sequential, double skew) {
+		int[] positions = columns.stream().mapToInt(this::position).toArray();
+		for (int position : positions) {
+			fillers[position] = null;
+		}
+		fillers[positions[0]] = (row, ctx) -> {
+			long pick = ctx.picks.computeIfAbsent(parent + (sequential ? "#sequential" : ""),
+				p -> sequential ? ctx.index : Skew.index(ctx.random, keys.size(), skew));
+			Object[] key = keys.key(Math.floorMod(pick, keys.size()));
+			for (int k = 0; k < positions.length; k++) {
+				row[positions[k]] = key[k];
+			}
+		};
+	}
+
+	/** Leaves {@code columns} NULL. */
+	void nullOut(List<String> columns) {
+		for (String column : columns) {
+			int position = position(column);
+			fillers[position] = (row, ctx) -> row[position] = null;
+		}
+	}
+
+	Object[] next(RowContext context) {
+		long offset = (long) (Skew.timeline(context.index, total) * spanSeconds);
+		// a few hours of jitter, never before the window
+		offset = Math.max(0, offset - context.random.nextLong(6 * 3600));
+		context.created = from.plusSeconds(offset);
+		context.picks.clear();
+		Object[] row = new Object[fillers.length];
+		for (Filler filler : fillers) {
+			if (filler != null) {
+				filler.fill(row, context);
+			}
+		}
+		return row;
+	}
+
+	private int position(String column) {
+		List<SchemaModel.Column> columns = table.columns();
+		for (int i = 0; i < columns.size(); i++) {
+			if (columns.get(i).name().equalsIgnoreCase(column)) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("No column " + column + " in " + table.name());
+	}
+
+	private static Set<String> uniqueSingleColumns(SchemaModel.Table table) {
+		List<String> unique = new ArrayList<>();
+		table.uniqueKeys().stream().filter(k -> k.size() == 1).forEach(k -> unique.add(k.get(0).toLowerCase(Locale.ROOT)));
+		if (table.primaryKey().size() == 1) {
+			unique.add(table.primaryKey().get(0).toLowerCase(Locale.ROOT));
+		}
+		return Set.copyOf(unique);
+	}
+
+	private static Object unique(SchemaModel.Column column, long index) {
+		if (column.isInteger()) {
+			return index + 1;
+		}
+		String value = "G" + Long.toString(index, 36);
+		return column.maxLength() > 0 && value.length() > column.maxLength()
+			? value.substring(value.length() - (int) column.maxLength())
+			: value;
+	}
+
+	private static Filler at(int position, Function<RowContext, Object> value) {
+		return (row, ctx) -> row[position] = value.apply(ctx);
+	}
+
+	private static Filler nullable(int position, Filler filler) {
+		return (row, ctx) -> {
+			if (ctx.random.nextDouble() < NULL_RATE) {
+				row[position] = null;
+			} else {
+				filler.fill(row, ctx);
+			}
+		};
+	}
+
+	/** Values for the audit and status columns shared by the AMRIT tables; null for other names. */
+	private static Filler byName(int position, SchemaModel.Column column) {
+		String name = column.name().toLowerCase(Locale.ROOT);
+		boolean temporal = column.dataType().equals("date") || column.dataType().equals("datetime")
+			|| column.dataType().equals("timestamp");
+		switch (name) {
+			case "deleted":
+				return at(position, ctx -> ctx.random.nextInt(100) == 0 ? 1 : 0);
+			case "processed":
+				return at(position, ctx -> "N");
+			case "createdby":
+			case "modifiedby":
+				return at(position, ctx -> "datagen");
+			default:
+				break;
+		}
+		if (!temporal) {
+			return null;
+		}
+		if (name.equals("createddate")) {
+			return at(position, ctx -> temporal(column, ctx.created));
+		}
+		if (name.equals("lastmoddate")) {
+			return at(position, ctx -> temporal(column, ctx.created.plusMinutes(ctx.random.nextInt(24 * 60))));
+		}
+		if (name.equals("dob") || name.equals("dateofbirth")) {
+			return at(position, ctx -> temporal(column, ctx.created.minusDays(ctx.random.nextInt(80 * 365))));
+		}
+		return null;
+	}
+
+	private static Filler byType(int position, SchemaModel.Column column) {
+		String name = column.name().toLowerCase(Locale.ROOT);
+		switch (column.dataType()) {
+			case "tinyint":
+				if (column.columnType().startsWith("tinyint(1)")) {
+					return at(position, ctx -> ctx.random.nextInt(2));
+				}
+				return at(position, ctx -> ctx.random.nextInt(100));
+			case "smallint":
+			case "mediumint":
+			case "int":
+			case "bigint":
+				// ID-like columns (VanID, ProviderServiceMapID, ...) are low-cardinality and skewed
+				if (name.endsWith("id")) {
+					return at(position, ctx -> 1 + Skew.index(ctx.random, ID_DOMAIN, 1.0));
+				}
+				return at(position, ctx -> ctx.random.nextInt(1_000));
+			case "decimal": {
+				int integerDigits = Math.max(1, column.precision() - column.scale());
+				double bound = Math.min(Math.pow(10, integerDigits) - 1, 100_000);
+				return at(position, ctx -> BigDecimal.valueOf(ctx.random.nextDouble() * bound)
+					.setScale(column.scale(), RoundingMode.DOWN));
+			}
+			case "float":
+			case "double":
+				return at(position, ctx -> ctx.random.nextDouble() * 1_000);
+			case "bit":
+				return at(position, ctx -> column.columnType().equals("bit(1)") ? ctx.random.nextInt(2) : 0);
+			case "char":
+			case "varchar":
+				return at(position, ctx -> truncate(Skew.word(ctx.random), column.maxLength()));
+			case "tinytext":
+			case "text":
+			case "mediumtext":
+			case "longtext": {
+				return at(position, ctx -> {
+					StringBuilder text = new StringBuilder();
+					for (int w = 0; w < 6; w++) {
+						text.append(w == 0 ? "" : " ").append(Skew.word(ctx.random));
+					}
+					return truncate(text.toString(), column.maxLength());
+				});
+			}
+			case "date":
+			case "datetime":
+			case "timestamp":
+				return at(position, ctx -> temporal(column, ctx.created.minusDays(ctx.random.nextInt(30))));
+			case "time":
+				return at(position, ctx -> LocalTime.ofSecondOfDay(ctx.random.nextInt(24 * 3600)));
+			case "year":
+				return at(position, ctx -> ctx.created.getYear());
+			case "enum": {
+				List<String> values = enumValues(column.columnType());
+				return at(position, ctx -> values.get((int) Skew.index(ctx.random, values.size(), 1.0)));
+			}
+			case "set": {
+				List<String> values = enumValues(column.columnType());
+				return at(position, ctx -> values.isEmpty() ? "" : values.get(0));
+			}
+			case "json":
+				return at(position, ctx -> "{}");
+			default:
+				// binary, blob and spatial columns stay empty
+				return at(position, ctx -> column.nullable() ? null : new byte[0]);
+		}
+	}
+
+	private static Object temporal(SchemaModel.Column column, LocalDateTime value) {
+		if (column.dataType().equals("date")) {
+			return value.toLocalDate();
+		}
+		if (column.dataType().equals("timestamp") && value.isBefore(TIMESTAMP_MIN)) {
+			return TIMESTAMP_MIN;
+		}
+		return value.withNano(0);
+	}
+
+	private static String truncate(String value, long maxLength) {
+		return maxLength > 0 && value.length() > maxLength ? value.substring(0, (int) maxLength) : value;
+	}
+
+	private static List<String> enumValues(String columnType) {
+		List<String> values = new ArrayList<>();
+		Matcher m = ENUM_VALUE.matcher(columnType);
+		while (m.find()) {
+			values.add(m.group(1).replace("''", "'"));
+		}
+		return values;
+	}
+}
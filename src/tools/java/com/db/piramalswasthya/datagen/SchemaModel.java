@@ -0,0 +1,155 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.datagen;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Table definitions of one migrated database, read from
+ * {@code information_schema}: columns, primary and unique keys, and foreign
+ * keys (including ones into other databases on the same server).
+ *
+ * @author Piramal Swasthya
+ */
+public final class SchemaModel {
+
+	private static final Set<String> INTEGER_TYPES = Set.of("tinyint", "smallint", "mediumint", "int", "bigint");
+
+	/**
+	 * @param maxLength character length for string types, 0 otherwise
+	 */
+	public record Column(String name, String dataType, String columnType, boolean nullable, boolean autoIncrement,
+			long maxLength, int precision, int scale) {
+
+		public boolean isInteger() {
+			return INTEGER_TYPES.contains(dataType);
+		}
+	}
+
+	public record ForeignKey(String name, List<String> columns, String referencedDatabase, String referencedTable,
+			List<String> referencedColumns) {
+	}
+
+	/**
+	 * @param columns insertable columns in table order; generated columns are left out
+	 */
+	public record Table(String database, String name, List<Column> columns, List<String> primaryKey,
+			List<List<String>> uniqueKeys, List<ForeignKey> foreignKeys) {
+
+		public Column column(String name) {
+			return columns.stream().filter(c -> c.name().equalsIgnoreCase(name)).findFirst().orElse(null);
+		}
+
+		/** The single integer primary-key column, or null. */
+		public Column integerKey() {
+			if (primaryKey.size() != 1) {
+				return null;
+			}
+			Column key = column(primaryKey.get(0));
+			return key != null && key.isInteger() ? key : null;
+		}
+	}
+
+	private SchemaModel() {
+	}
+
+	/** Every base table of {@code database}, by name. */
+	public static Map<String, Table> load(Connection conn, String database) throws SQLException {
+		Map<String, List<Column>> columns = new LinkedHashMap<>();
+		try (PreparedStatement ps = conn.prepareStatement("SELECT c.TABLE_NAME, c.COLUMN_NAME, LOWER(c.DATA_TYPE), "
+			+ "LOWER(c.COLUMN_TYPE), c.IS_NULLABLE, c.EXTRA, c.CHARACTER_MAXIMUM_LENGTH, c.NUMERIC_PRECISION, "
+			+ "c.NUMERIC_SCALE FROM information_schema.COLUMNS c JOIN information_schema.TABLES t "
+			+ "ON t.TABLE_SCHEMA = c.TABLE_SCHEMA AND t.TABLE_NAME = c.TABLE_NAME AND t.TABLE_TYPE = 'BASE TABLE' "
+			+ "WHERE c.TABLE_SCHEMA = ? ORDER BY c.TABLE_NAME, c.ORDINAL_POSITION")) {
+			ps.setString(1, database);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					String extra = rs.getString(6).toLowerCase(Locale.ROOT);
+					if (extra.contains("generated")) {
+						continue;
+					}
+					columns.computeIfAbsent(rs.getString(1), t -> new ArrayList<>()).add(new Column(rs.getString(2),
+						rs.getString(3), rs.getString(4), "YES".equals(rs.getString(5)), extra.contains("auto_increment"),
+						rs.getLong(7), rs.getInt(8), rs.getInt(9)));
+				}
+			}
+		}
+
+		Map<String, List<String>> primaryKeys = new LinkedHashMap<>();
+		Map<String, Map<String, List<String>>> uniqueKeys = new LinkedHashMap<>();
+		try (PreparedStatement ps = conn.prepareStatement("SELECT TABLE_NAME, INDEX_NAME, COLUMN_NAME "
+			+ "FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = ? AND NON_UNIQUE = 0 "
+			+ "ORDER BY TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX")) {
+			ps.setString(1, database);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					if ("PRIMARY".equals(rs.getString(2))) {
+						primaryKeys.computeIfAbsent(rs.getString(1), t -> new ArrayList<>()).add(rs.getString(3));
+					} else {
+						uniqueKeys.computeIfAbsent(rs.getString(1), t -> new LinkedHashMap<>())
+							.computeIfAbsent(rs.getString(2), i -> new ArrayList<>()).add(rs.getString(3));
+					}
+				}
+			}
+		}
+
+		Map<String, Map<String, ForeignKey>> foreignKeys = new LinkedHashMap<>();
+		try (PreparedStatement ps = conn.prepareStatement("SELECT TABLE_NAME, CONSTRAINT_NAME, COLUMN_NAME, "
+			+ "REFERENCED_TABLE_SCHEMA, REFERENCED_TABLE_NAME, REFERENCED_COLUMN_NAME "
+			+ "FROM information_schema.KEY_COLUMN_USAGE WHERE TABLE_SCHEMA = ? AND REFERENCED_TABLE_NAME IS NOT NULL "
+			+ "ORDER BY TABLE_NAME, CONSTRAINT_NAME, ORDINAL_POSITION")) {
+			ps.setString(1, database);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					String constraint = rs.getString(2);
+					String referencedDatabase = rs.getString(4);
+					String referencedTable = rs.getString(5);
+					ForeignKey key = foreignKeys.computeIfAbsent(rs.getString(1), t -> new LinkedHashMap<>())
+						.computeIfAbsent(constraint, c -> new ForeignKey(constraint, new ArrayList<>(), referencedDatabase,
+							referencedTable, new ArrayList<>()));
+					key.columns().add(rs.getString(3));
+					key.referencedColumns().add(rs.getString(6));
+				}
+			}
+		}
+
+		Map<String, Table> tables = new LinkedHashMap<>();
+		columns.forEach((name, tableColumns) -> tables.put(name, new Table(database, name, List.copyOf(tableColumns),
+			primaryKeys.getOrDefault(name, List.of()),
+			List.copyOf(uniqueKeys.getOrDefault(name, Map.of()).values()),
+			List.copyOf(foreignKeys.getOrDefault(name, Map.of()).values()))));
+		return tables;
+	}
+
+	static String quote(String identifier) {
+		return "`" + identifier.replace("`", "``") + "`";
+	}
+}
@@ -0,0 +1,97 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.datagen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Skewed choices that make generated data behave like production data under
+ * the optimizer: a few beneficiaries with many visits, a few facilities with
+ * most of the stock movements, more rows in recent months than in old ones,
+ * and names drawn from a limited vocabulary.
+ *
+ * @author Piramal Swasthya
+ */
+final class Skew {
+
+	private static final String[] SYLLABLES = { "ra", "vi", "ka", "an", "mi", "sh", "ta", "pu", "de", "la", "ni", "ro",
+		"su", "ga", "ma", "ja", "ya", "ha", "bi", "ku", "po", "ve", "na", "di" };
+	private static final int WORDS = 2_000;
+	private static final List<String> VOCABULARY = vocabulary();
+	// spreads hot ranks over the key range so the busiest parents are not all the oldest ones
+	private static final long SCRAMBLE = 0x9E3779B97F4A7C15L;
+
+	private Skew() {
+	}
+
+	/**
+	 * Index in {@code [0, n)} following a power law of {@code exponent}
+	 * (about Zipf): rank 1 is the most frequent. 0 gives a uniform choice.
+	 */
+	static long index(SplittableRandom random, long n, double exponent) {
+		if (n <= 1) {
+			return 0;
+		}
+		double u = random.nextDouble();
+		long rank;
+		if (exponent <= 0) {
+			return random.nextLong(n);
+		} else if (Math.abs(exponent - 1.0) < 1e-9) {
+			rank = (long) Math.pow(n, u);
+		} else {
+			double oneMinus = 1.0 - exponent;
+			rank = (long) Math.pow((Math.pow(n, oneMinus) - 1.0) * u + 1.0, 1.0 / oneMinus);
+		}
+		rank = Math.max(1, Math.min(n, rank));
+		return Math.floorMod((rank - 1) * SCRAMBLE, n);
+	}
+
+	/**
+	 * Position in time, 0 (oldest) to 1 (now), of row {@code row} of
+	 * {@code total}: increasing with the row, denser towards the end, like a
+	 * table that grows with the programme.
+	 */
+	static double timeline(long row, long total) {
+		return total <= 1 ? 1.0 : Math.sqrt((double) row / (total - 1));
+	}
+
+	static String word(SplittableRandom random) {
+		return VOCABULARY.get((int) index(random, WORDS, 1.0));
+	}
+
+	private static List<String> vocabulary() {
+		SplittableRandom random = new SplittableRandom(42);
+		List<String> words = new ArrayList<>(WORDS);
+		for (int i = 0; i < WORDS; i++) {
+			StringBuilder word = new StringBuilder();
+			int syllables = 2 + random.nextInt(3);
+			for (int s = 0; s < syllables; s++) {
+				word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+			}
+			word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+			words.add(word.toString());
+		}
+		return words;
+	}
+}
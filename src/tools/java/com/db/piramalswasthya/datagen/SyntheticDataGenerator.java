@@ -0,0 +1,563 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.datagen;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.db.piramalswasthya.datagen.GenerationSpec.Link;
+import com.db.piramalswasthya.datagen.GenerationSpec.TableRef;
+
+/**
+ * Offline tool that fills migrated AMRIT databases on a local MySQL server
+ * with referentially consistent synthetic data at production scale, so
+ * indexes, stored procedures and migrations can be tried against realistic
+ * volumes. Table definitions come from {@code information_schema}; volumes,
+ * cross-database links and sequence columns from a {@link GenerationSpec}.
+ * Tables referenced by a foreign key that are empty and not given a volume
+ * are filled with a few rows of their own first; optional references to
+ * them are left NULL.
+ *
+ * <p>Volumes are multiplied by {@code scale}, one unit being one beneficiary
+ * in the default spec. Parents are picked with a power-law skew and rows are
+ * dated over {@code --years} with more of them in recent months. Each table
+ * is split into segments written in parallel, one connection per segment,
+ * with foreign key and unique checks off for the session. Segments draw from
+ * a random source derived from {@code --seed}, so a run can be reproduced.</p>
+ *
+ * <p>Run with {@code mvn -Psynthetic-data process-classes -Ddatagen.url=...}
+ * against a throwaway server only: a URL naming any host other than this
+ * machine is refused unless {@code --allow-remote} is given.
+ * {@code --mode=infile} needs {@code local_infile=ON} on the server.</p>
+ *
+ * <p>Usage: {@code SyntheticDataGenerator <serverJdbcUrl> <user> <password> <scale> <schema>=<database>...
+ * [--threads=N] [--mode=insert|infile] [--batch=N] [--skew=S] [--years=N] [--seed=N] [--spec=file]
+ * [--allow-remote]}</p>
+ *
+ * @author Piramal Swasthya
+ */
+public final class SyntheticDataGenerator {
+
+	private static final String USAGE = "Usage: SyntheticDataGenerator <serverJdbcUrl> <user> <password> <scale> "
+		+ "<schema>=<database>... [--threads=N] [--mode=insert|infile] [--batch=N] [--skew=S] [--years=N] "
+		+ "[--seed=N] [--spec=file] [--allow-remote]";
+	private static final Pattern PORT = Pattern.compile(":\\d*$");
+	private static final long SEGMENT_ROWS = 100_000;
+	private static final int MAX_LOADED_KEYS = 1_000_000;
+
+	/** One table to fill. */
+	private static final class Job {
+
+		final String schema;
+		final SchemaModel.Table table;
+		final long rows;
+		// lower-case column -> first value, for columns that count up
+		final Map<String, Long> consecutive = new LinkedHashMap<>();
+		final List<Reference> references = new ArrayList<>();
+		boolean ignoreDuplicates;
+
+		Job(String schema, SchemaModel.Table table, long rows) {
+			this.schema = schema;
+			this.table = table;
+			this.rows = rows;
+		}
+
+		TableRef ref() {
+			return new TableRef(schema, table.name());
+		}
+	}
+
+	/** Columns of a job filled from keys of {@code parent}, or left NULL. */
+	private record Reference(List<String> columns, TableRef parent, List<String> parentColumns, boolean sequential,
+			boolean nullOut) {
+	}
+
+	private final String serverUrl;
+	private final Properties connectionProperties = new Properties();
+	private final long scale;
+	private final Map<String, String> databases;
+	private final Map<String, Map<String, SchemaModel.Table>> models = new LinkedHashMap<>();
+	private final GenerationSpec spec;
+	private final int threads;
+	private final TableWriter.Mode mode;
+	private final int batchSize;
+	private final double skew;
+	private final int years;
+	private final long seed;
+	private final Path spoolDir;
+
+	private SyntheticDataGenerator(String serverUrl, String user, String password, long scale,
+			Map<String, String> databases, Map<String, String> options) throws IOException {
+		this.serverUrl = serverUrl.endsWith("/") ? serverUrl : serverUrl + "/";
+		this.scale = scale;
+		this.databases = databases;
+		this.threads = Integer.parseInt(options.getOrDefault("threads",
+			String.valueOf(Runtime.getRuntime().availableProcessors())));
+		this.mode = TableWriter.Mode.valueOf(options.getOrDefault("mode", "insert").toUpperCase(Locale.ROOT));
+		this.batchSize = Integer.parseInt(options.getOrDefault("batch", "1000"));
+		this.skew = Double.parseDouble(options.getOrDefault("skew", "1.1"));
+		this.years = Integer.parseInt(options.getOrDefault("years", "5"));
+		this.seed = Long.parseLong(options.getOrDefault("seed", "42"));
+		this.spec = loadSpec(options.get("spec"));
+		this.spoolDir = Files.createTempDirectory("amrit-datagen");
+		connectionProperties.setProperty("user", user);
+		connectionProperties.setProperty("password", password);
+		connectionProperties.setProperty("rewriteBatchedStatements", "true");
+		connectionProperties.setProperty("allowLoadLocalInfileInPath", spoolDir.toString());
+	}
+
+	public static void main(String[] args) throws IOException, SQLException, InterruptedException {
+		List<String> positional = new ArrayList<>();
+		Map<String, String> options = new LinkedHashMap<>();
+		for (String arg : args) {
+			if (arg.startsWith("--")) {
+				String[] option = arg.substring(2).split("=", 2);
+				options.put(option[0], option.length > 1 ? option[1] : "");
+			} else {
+				positional.add(arg);
+			}
+		}
+		if (positional.size() < 5) {
+			throw new IllegalArgumentException(USAGE);
+		}
+		Map<String, String> databases = new LinkedHashMap<>();
+		for (String mapping : positional.subList(4, positional.size())) {
+			String[] parts = mapping.split("=", 2);
+			if (parts.length != 2) {
+				throw new IllegalArgumentException(USAGE);
+			}
+			databases.put(parts[0], parts[1]);
+		}
+		List<String> remote = remoteHosts(positional.get(0));
+		String allowRemote = options.getOrDefault("allow-remote", "false");
+		if (!remote.isEmpty() && !allowRemote.isEmpty() && !Boolean.parseBoolean(allowRemote)) {
+			throw new IllegalArgumentException("Refusing to write synthetic data to " + String.join(", ", remote)
+				+ ": not this machine. Pass --allow-remote if that server really is a throwaway one.");
+		}
+		new SyntheticDataGenerator(positional.get(0), positional.get(1), positional.get(2), parseScale(positional.get(3)),
+			databases, options).run();
+	}
+
+	/**
+	 * Hosts of a {@code jdbc:mysql://} URL that are not loopback addresses.
+	 * A URL that cannot be read is returned whole, so it counts as remote.
+	 */
+	static List<String> remoteHosts(String jdbcUrl) {
+		int start = jdbcUrl.indexOf("//");
+		if (start < 0) {
+			return List.of(jdbcUrl);
+		}
+		String authority = jdbcUrl.substring(start + 2).split("[/?]", 2)[0];
+		authority = authority.substring(authority.lastIndexOf('@') + 1);
+		if (authority.isEmpty()) {
+			// Connector/J defaults to localhost
+			return List.of();
+		}
+		List<String> remote = new ArrayList<>();
+		for (String host : authority.split(",")) {
+			String name = host.startsWith("[") && host.contains("]") ? host.substring(1, host.indexOf(']'))
+				: PORT.matcher(host).replaceFirst("");
+			if (!isLoopback(name)) {
+				remote.add(host);
+			}
+		}
+		return remote;
+	}
+
+	private static boolean isLoopback(String host) {
+		if (host.equalsIgnoreCase("localhost")) {
+			return true;
+		}
+		try {
+			return InetAddress.getByName(host).isLoopbackAddress();
+		} catch (UnknownHostException | SecurityException e) {
+			return false;
+		}
+	}
+
+	/** Accepts plain numbers and K/M suffixes, e.g. {@code 250K} or {@code 10M}. */
+	static long parseScale(String value) {
+		String normalized = value.trim().toUpperCase(Locale.ROOT).replace("_", "");
+		long multiplier = 1;
+		if (normalized.endsWith("K")) {
+			multiplier = 1_000;
+		} else if (normalized.endsWith("M")) {
+			multiplier = 1_000_000;
+		}
+		if (multiplier > 1) {
+			normalized = normalized.substring(0, normalized.length() - 1);
+		}
+		return Math.round(Double.parseDouble(normalized) * multiplier);
+	}
+
+	private static GenerationSpec loadSpec(String path) throws IOException {
+		if (path != null) {
+			try (InputStream in = Files.newInputStream(Paths.get(path))) {
+				return GenerationSpec.load(in);
+			}
+		}
+		try (InputStream in = SyntheticDataGenerator.class.getClassLoader()
+			.getResourceAsStream(GenerationSpec.DEFAULT_RESOURCE)) {
+			if (in == null) {
+				throw new IllegalStateException("No " + GenerationSpec.DEFAULT_RESOURCE + " on the classpath");
+			}
+			return GenerationSpec.load(in);
+		}
+	}
+
+	private void run() throws SQLException, IOException, InterruptedException {
+		long start = System.nanoTime();
+		List<Job> jobs;
+		try (Connection conn = DriverManager.getConnection(serverUrl, connectionProperties)) {
+			for (Map.Entry<String, String> database : databases.entrySet()) {
+				models.put(database.getKey(), SchemaModel.load(conn, database.getValue()));
+			}
+			Map<TableRef, Job> planned = plan(conn);
+			for (Job job : planned.values()) {
+				prepare(conn, job);
+			}
+			jobs = order(planned);
+			jobs.forEach(job -> System.out.println("Planned | table=" + job.ref() + " | rows=" + job.rows
+				+ " | references=" + job.references.stream().filter(r -> !r.nullOut())
+					.map(r -> r.columns() + "->" + r.parent()).collect(Collectors.joining(", "))));
+
+			Map<TableRef, Job> byRef = new LinkedHashMap<>();
+			jobs.forEach(job -> byRef.put(job.ref(), job));
+			long total = 0;
+			for (Job job : jobs) {
+				total += generate(conn, job, byRef);
+			}
+			for (Job job : jobs) {
+				try (Statement stmt = conn.createStatement()) {
+					stmt.execute("ANALYZE TABLE " + qualified(job.ref()));
+				}
+			}
+			long seconds = Math.max(1, (System.nanoTime() - start) / 1_000_000_000);
+			System.out.println("Synthetic data generated | tables=" + jobs.size() + " | rows=" + total + " | seconds="
+				+ seconds + " | rowsPerSecond=" + total / seconds);
+		} finally {
+			try (Stream<Path> files = Files.list(spoolDir)) {
+				for (Path file : files.toList()) {
+					Files.deleteIfExists(file);
+				}
+			}
+			Files.deleteIfExists(spoolDir);
+		}
+	}
+
+	/**
+	 * Tables of the spec plus every empty table they need keys from, with
+	 * the references of each.
+	 */
+	private Map<TableRef, Job> plan(Connection conn) throws SQLException {
+		Map<TableRef, Job> jobs = new LinkedHashMap<>();
+		Deque<Job> pending = new ArrayDeque<>();
+		for (Map.Entry<TableRef, Double> volume : spec.getVolumes().entrySet()) {
+			Job job = new Job(volume.getKey().schema(), table(volume.getKey()),
+				Math.max(1, Math.round(volume.getValue() * scale)));
+			jobs.put(job.ref(), job);
+			pending.add(job);
+		}
+		while (!pending.isEmpty()) {
+			Job job = pending.poll();
+			for (SchemaModel.ForeignKey foreignKey : job.table.foreignKeys()) {
+				String parentSchema = schemaOf(foreignKey.referencedDatabase());
+				if (parentSchema == null) {
+					// database not being generated; the columns keep their typed values
+					continue;
+				}
+				boolean optional = foreignKey.columns().stream().allMatch(c -> job.table.column(c).nullable());
+				TableRef parent = new TableRef(parentSchema, foreignKey.referencedTable());
+				if (!needParent(conn, jobs, pending, parent, optional)) {
+					job.references.add(new Reference(foreignKey.columns(), parent, foreignKey.referencedColumns(), false, true));
+				} else {
+					job.references.add(new Reference(foreignKey.columns(), parent, foreignKey.referencedColumns(), false, false));
+				}
+			}
+			for (SchemaModel.Column column : job.table.columns()) {
+				Link link = spec.link(job.schema, job.table.name(), column.name());
+				if (link == null) {
+					continue;
+				}
+				table(link.target());
+				// a declared link wins over the foreign key on the same column
+				job.references.removeIf(r -> r.columns().size() == 1 && r.columns().get(0).equalsIgnoreCase(column.name()));
+				needParent(conn, jobs, pending, link.target(), false);
+				job.references.add(new Reference(List.of(column.name()), link.target(), List.of(link.targetColumn()),
+					link.sequential(), false));
+			}
+		}
+		return jobs;
+	}
+
+	/**
+	 * Makes sure {@code parent} has keys to point at, adding it as a job of
+	 * its own when it is empty.
+	 *
+	 * @return false when the reference is optional and the parent is empty, so the columns stay NULL
+	 */
+	private boolean needParent(Connection conn, Map<TableRef, Job> jobs, Deque<Job> pending, TableRef parent,
+			boolean optional) throws SQLException {
+		if (jobs.containsKey(parent) || hasRows(conn, parent)) {
+			return true;
+		}
+		if (optional) {
+			return false;
+		}
+		Job job = new Job(parent.schema(), table(parent), spec.getDefaultParentRows());
+		jobs.put(parent, job);
+		pending.add(job);
+		return true;
+	}
+
+	/** Works out the counting columns of {@code job} and whether duplicate keys must be ignored. */
+	private void prepare(Connection conn, Job job) throws SQLException {
+		Set<String> referenced = new HashSet<>();
+		job.references.forEach(r -> r.columns().forEach(c -> referenced.add(c.toLowerCase(Locale.ROOT))));
+
+		SchemaModel.Column key = job.table.integerKey();
+		if (key != null && !referenced.contains(key.name().toLowerCase(Locale.ROOT))) {
+			job.consecutive.put(key.name().toLowerCase(Locale.ROOT), maxValue(conn, job, key.name()) + 1);
+		}
+		for (String column : spec.sequenceColumns(job.schema, job.table.name())) {
+			if (job.table.column(column) == null) {
+				throw new IllegalArgumentException("No column " + column + " in " + job.ref());
+			}
+			long first = spec.sequenceStart(job.schema, job.table.name(), column);
+			job.consecutive.put(column, Math.max(first, maxValue(conn, job, column) + 1));
+		}
+		Set<String> unique = new HashSet<>(job.consecutive.keySet());
+		for (List<String> uniqueKey : job.table.uniqueKeys()) {
+			if (uniqueKey.size() != 1 || referenced.contains(uniqueKey.get(0).toLowerCase(Locale.ROOT))) {
+				continue;
+			}
+			SchemaModel.Column column = job.table.column(uniqueKey.get(0));
+			String name = column.name().toLowerCase(Locale.ROOT);
+			if (column.isInteger() && !job.consecutive.containsKey(name)) {
+				job.consecutive.put(name, maxValue(conn, job, column.name()) + 1);
+			}
+			unique.add(name);
+		}
+		if (job.table.primaryKey().size() == 1 && !referenced.contains(job.table.primaryKey().get(0).toLowerCase(Locale.ROOT))) {
+			unique.add(job.table.primaryKey().get(0).toLowerCase(Locale.ROOT));
+		}
+		List<List<String>> keys = new ArrayList<>(job.table.uniqueKeys());
+		if (!job.table.primaryKey().isEmpty()) {
+			keys.add(job.table.primaryKey());
+		}
+		job.ignoreDuplicates = keys.stream()
+			.anyMatch(k -> k.stream().noneMatch(c -> unique.contains(c.toLowerCase(Locale.ROOT))));
+	}
+
+	/** Parents before children; references within a cycle are satisfied once the whole load is done. */
+	private static List<Job> order(Map<TableRef, Job> jobs) {
+		Map<TableRef, Set<TableRef>> dependencies = new LinkedHashMap<>();
+		jobs.values().forEach(job -> dependencies.put(job.ref(), job.references.stream()
+			.filter(r -> !r.nullOut() && jobs.containsKey(r.parent()) && !r.parent().equals(job.ref()))
+			.map(Reference::parent)
+			.collect(Collectors.toCollection(HashSet::new))));
+		List<Job> ordered = new ArrayList<>();
+		Set<TableRef> done = new HashSet<>();
+		while (ordered.size() < jobs.size()) {
+			Job next = jobs.values().stream()
+				.filter(job -> !done.contains(job.ref()) && done.containsAll(dependencies.get(job.ref())))
+				.findFirst()
+				// cycle: take the job with the fewest missing parents
+				.orElseGet(() -> jobs.values().stream().filter(job -> !done.contains(job.ref()))
+					.min(Comparator.comparingLong(job -> dependencies.get(job.ref()).stream()
+						.filter(d -> !done.contains(d)).count()))
+					.orElseThrow());
+			ordered.add(next);
+			done.add(next.ref());
+		}
+		return ordered;
+	}
+
+	/** Generates and writes the rows of {@code job} in parallel segments. */
+	private long generate(Connection conn, Job job, Map<TableRef, Job> jobs)
+			throws SQLException, InterruptedException {
+		LocalDateTime to = LocalDateTime.now().withNano(0);
+		RowGenerator generator = new RowGenerator(job.table, job.rows, to.minusYears(years), to, job.consecutive);
+		for (Reference reference : job.references) {
+			if (reference.nullOut()) {
+				generator.nullOut(reference.columns());
+			} else {
+				generator.reference(reference.columns(), reference.parent().toString(), keySource(conn, reference, jobs),
+					reference.sequential(), skew);
+			}
+		}
+		TableWriter writer = new TableWriter(job.table, mode, job.ignoreDuplicates, spoolDir);
+
+		long start = System.nanoTime();
+		AtomicLong written = new AtomicLong();
+		ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, threads));
+		try {
+			List<Future<?>> segments = new ArrayList<>();
+			for (long from = 0; from < job.rows; from += SEGMENT_ROWS) {
+				long segmentStart = from;
+				long segmentEnd = Math.min(job.rows, from + SEGMENT_ROWS);
+				segments.add(workers.submit(() -> {
+					writeSegment(job, generator, writer, segmentStart, segmentEnd);
+					written.addAndGet(segmentEnd - segmentStart);
+					return null;
+				}));
+			}
+			for (Future<?> segment : segments) {
+				segment.get();
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Generating " + job.ref() + " failed: " + e.getCause().getMessage(),
+				e.getCause());
+		} finally {
+			workers.shutdownNow();
+		}
+		long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+		System.out.println("Table generated | table=" + job.ref() + " | rows=" + written.get() + " | rowsPerSecond="
+			+ written.get() * 1000 / millis + (job.ignoreDuplicates ? " | duplicatesIgnored=true" : ""));
+		return written.get();
+	}
+
+	private void writeSegment(Job job, RowGenerator generator, TableWriter writer, long from, long to)
+			throws SQLException, IOException {
+		try (Connection conn = DriverManager.getConnection(serverUrl + job.table.database(), connectionProperties)) {
+			conn.setAutoCommit(false);
+			try (Statement stmt = conn.createStatement()) {
+				stmt.execute("SET SESSION foreign_key_checks = 0, unique_checks = 0");
+			}
+			RowGenerator.RowContext context = new RowGenerator.RowContext();
+			context.random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + job.ref().toString().hashCode() * 1_000_003L
+				+ from / SEGMENT_ROWS);
+			List<Object[]> batch = new ArrayList<>(batchSize);
+			for (long index = from; index < to; index++) {
+				context.index = index;
+				batch.add(generator.next(context));
+				if (batch.size() >= batchSize) {
+					writer.write(conn, batch);
+					batch.clear();
+				}
+			}
+			writer.write(conn, batch);
+		}
+	}
+
+	/** Keys a reference points at: the parent's counting range, or its values read from the database. */
+	private KeySource keySource(Connection conn, Reference reference, Map<TableRef, Job> jobs) throws SQLException {
+		Job parent = jobs.get(reference.parent());
+		if (parent != null && reference.parentColumns().size() == 1) {
+			Long first = parent.consecutive.get(reference.parentColumns().get(0).toLowerCase(Locale.ROOT));
+			if (first != null) {
+				return KeySource.range(first, parent.rows);
+			}
+		}
+		String columns = reference.parentColumns().stream().map(SchemaModel::quote).collect(Collectors.joining(", "));
+		String notNull = reference.parentColumns().stream().map(c -> SchemaModel.quote(c) + " IS NOT NULL")
+			.collect(Collectors.joining(" AND "));
+		List<Object[]> keys = new ArrayList<>();
+		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT DISTINCT " + columns
+			+ " FROM " + qualified(reference.parent()) + " WHERE " + notNull + " LIMIT " + MAX_LOADED_KEYS)) {
+			int width = reference.parentColumns().size();
+			while (rs.next()) {
+				Object[] key = new Object[width];
+				for (int i = 0; i < width; i++) {
+					key[i] = rs.getObject(i + 1);
+				}
+				keys.add(key);
+			}
+		}
+		if (keys.isEmpty()) {
+			throw new IllegalStateException("No " + reference.parentColumns() + " values in " + reference.parent()
+				+ " to reference");
+		}
+		return KeySource.of(keys);
+	}
+
+	private SchemaModel.Table table(TableRef ref) {
+		Map<String, SchemaModel.Table> tables = models.get(ref.schema());
+		if (tables == null) {
+			throw new IllegalArgumentException("Schema " + ref.schema() + " has no <schema>=<database> mapping");
+		}
+		SchemaModel.Table table = tables.get(ref.table());
+		if (table == null) {
+			throw new IllegalArgumentException("No table " + ref + "; migrate the database first");
+		}
+		return table;
+	}
+
+	private String schemaOf(String database) {
+		return databases.entrySet().stream().filter(e -> e.getValue().equalsIgnoreCase(database))
+			.map(Map.Entry::getKey).findFirst().orElse(null);
+	}
+
+	private String qualified(TableRef ref) {
+		return SchemaModel.quote(databases.get(ref.schema())) + "." + SchemaModel.quote(ref.table());
+	}
+
+	private boolean hasRows(Connection conn, TableRef ref) throws SQLException {
+		table(ref);
+		try (Statement stmt = conn.createStatement();
+			ResultSet rs = stmt.executeQuery("SELECT 1 FROM " + qualified(ref) + " LIMIT 1")) {
+			return rs.next();
+		}
+	}
+
+	private long maxValue(Connection conn, Job job, String column) throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement("SELECT COALESCE(MAX(" + SchemaModel.quote(column) + "), 0) FROM "
+			+ qualified(job.ref()))) {
+			try (ResultSet rs = ps.executeQuery()) {
+				rs.next();
+				return rs.getLong(1);
+			}
+		}
+	}
+}
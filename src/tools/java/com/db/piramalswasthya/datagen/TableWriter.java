@@ -0,0 +1,162 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.datagen;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Writes generated rows of one table, either as batched inserts (which
+ * Connector/J rewrites to multi-row statements) or by spooling them to a
+ * tab-separated file and loading it with {@code LOAD DATA LOCAL INFILE}.
+ * Duplicate keys are ignored for tables whose unique keys the generator
+ * cannot guarantee.
+ *
+ * @author Piramal Swasthya
+ */
+final class TableWriter {
+
+	enum Mode {
+		INSERT, INFILE
+	}
+
+	private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	private final SchemaModel.Table table;
+	private final Mode mode;
+	private final Path spoolDir;
+	private final String sql;
+
+	TableWriter(SchemaModel.Table table, Mode mode, boolean ignoreDuplicates, Path spoolDir) {
+		this.table = table;
+		this.mode = mode;
+		this.spoolDir = spoolDir;
+		String target = SchemaModel.quote(table.database()) + "." + SchemaModel.quote(table.name());
+		List<SchemaModel.Column> columns = table.columns();
+		if (mode == Mode.INSERT) {
+			this.sql = "INSERT " + (ignoreDuplicates ? "IGNORE " : "") + "INTO " + target + " ("
+				+ columns.stream().map(c -> SchemaModel.quote(c.name())).collect(Collectors.joining(", "))
+				+ ") VALUES (" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+		} else {
+			// BIT columns only load from a number, so they go through a user variable
+			List<String> targets = new ArrayList<>();
+			List<String> conversions = new ArrayList<>();
+			for (int i = 0; i < columns.size(); i++) {
+				SchemaModel.Column column = columns.get(i);
+				if (column.dataType().equals("bit")) {
+					targets.add("@v" + i);
+					conversions.add(SchemaModel.quote(column.name()) + " = CAST(@v" + i + " AS UNSIGNED)");
+				} else {
+					targets.add(SchemaModel.quote(column.name()));
+				}
+			}
+			this.sql = "LOAD DATA LOCAL INFILE '%s' " + (ignoreDuplicates ? "IGNORE " : "") + "INTO TABLE " + target
+				+ " CHARACTER SET utf8mb4 FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' ("
+				+ String.join(", ", targets) + ")"
+				+ (conversions.isEmpty() ? "" : " SET " + String.join(", ", conversions));
+		}
+	}
+
+	/** Writes {@code rows} and commits. */
+	void write(Connection conn, List<Object[]> rows) throws SQLException, IOException {
+		if (rows.isEmpty()) {
+			return;
+		}
+		if (mode == Mode.INSERT) {
+			try (PreparedStatement ps = conn.prepareStatement(sql)) {
+				for (Object[] row : rows) {
+					for (int i = 0; i < row.length; i++) {
+						ps.setObject(i + 1, row[i]);
+					}
+					ps.addBatch();
+				}
+				ps.executeBatch();
+			}
+		} else {
+			Path file = Files.createTempFile(spoolDir, table.name() + "-", ".tsv");
+			try {
+				try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+					for (Object[] row : rows) {
+						for (int i = 0; i < row.length; i++) {
+							if (i > 0) {
+								out.write('\t');
+							}
+							out.write(field(row[i]));
+						}
+						out.write('\n');
+					}
+				}
+				try (Statement stmt = conn.createStatement()) {
+					stmt.execute(String.format(sql, file.toAbsolutePath().toString().replace("\\", "\\\\").replace("'", "\\'")));
+				}
+			} finally {
+				Files.deleteIfExists(file);
+			}
+		}
+		conn.commit();
+	}
+
+	private static String field(Object value) {
+		if (value == null) {
+			return "\\N";
+		}
+		if (value instanceof LocalDateTime dateTime) {
+			return dateTime.format(DATE_TIME);
+		}
+		if (value instanceof LocalDate || value instanceof Number && !(value instanceof BigDecimal)) {
+			return value.toString();
+		}
+		if (value instanceof BigDecimal decimal) {
+			return decimal.toPlainString();
+		}
+		if (value instanceof byte[]) {
+			return "";
+		}
+		String text = value.toString();
+		StringBuilder escaped = new StringBuilder(text.length());
+		for (char c : text.toCharArray()) {
+			switch (c) {
+				case '\\' -> escaped.append("\\\\");
+				case '\t' -> escaped.append("\\t");
+				case '\n' -> escaped.append("\\n");
+				case '\r' -> escaped.append("\\r");
+				default -> escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+}
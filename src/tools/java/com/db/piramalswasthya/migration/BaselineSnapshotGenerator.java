@@ -0,0 +1,355 @@
+/*
+* AMRIT – Accessible Medical Records via Integrated Technology 
+* Integrated EHR (Electronic Health Records) Solution 
+*
+* Copyright (C) "Piramal Swasthya Management and Research Institute" 
+*
+* This file is part of AMRIT.
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program.  If not, see https://www.gnu.org/licenses/.
+*/
+package com.db.piramalswasthya.migration;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.flywaydb.core.api.MigrationVersion;
+
+/**
+ * Build-time tool that replays the migrations of each schema into empty
+ * databases on a scratch MySQL server and writes the result as a
+ * {@link BaselineSnapshot}: tables without secondary indexes, then their rows,
+ * then one {@code ALTER TABLE} per table adding all indexes, then foreign keys,
+ * views, routines and triggers. Rows are included because some scripts seed
+ * master data; on a fresh replay every row comes from a migration.
+ *
+ * <p>The migrations refer to the real database names ({@code USE db_iemr}), so
+ * those names must be given and must not exist on the scratch server yet. Run
+ * with {@code mvn -Pbaseline-snapshot process-classes -Dbaseline.url=...}.</p>
+ *
+ * <p>Usage: {@code BaselineSnapshotGenerator <serverJdbcUrl> <user> <password> <outputDir> <schema>=<database>...}</p>
+ *
+ * @author Piramal Swasthya
+ */
+public final class BaselineSnapshotGenerator {
+
+	private static final int ROWS_PER_INSERT = 500;
+	private static final String ROUTINE_DELIMITER = "$$";
+	private static final Pattern DEFINER = Pattern.compile("\\sDEFINER=`[^`]*`@`[^`]*`");
+	private static final Pattern AUTO_INCREMENT_OPTION = Pattern.compile("\\sAUTO_INCREMENT=\\d+");
+	private static final Set<String> SKIPPED_TABLES = Set.of("flyway_schema_history",
+		MigrationStatementProfiler.PROFILE_TABLE);
+
+	private BaselineSnapshotGenerator() {
+	}
+
+	public static void main(String[] args) throws IOException, SQLException {
+		if (args.length < 5) {
+			throw new IllegalArgumentException(
+				"Usage: BaselineSnapshotGenerator <serverJdbcUrl> <user> <password> <outputDir> <schema>=<database>...");
+		}
+		String serverUrl = args[0].endsWith("/") ? args[0] : args[0] + "/";
+		String user = args[1];
+		String password = args[2];
+		Path outputDir = Paths.get(args[3]);
+		Map<String, String> databases = new LinkedHashMap<>();
+		for (int i = 4; i < args.length; i++) {
+			String[] mapping = args[i].split("=", 2);
+			databases.put(mapping[0], mapping[1]);
+		}
+		Files.createDirectories(outputDir);
+
+		try (Connection server = DriverManager.getConnection(serverUrl, user, password);
+			Statement stmt = server.createStatement()) {
+			for (String database : databases.values()) {
+				try (ResultSet rs = stmt.executeQuery("SHOW DATABASES LIKE '" + database + "'")) {
+					if (rs.next()) {
+						throw new IllegalStateException("Database " + database
+							+ " already exists on the scratch server; snapshots must start from an empty server");
+					}
+				}
+			}
+			for (String database : databases.values()) {
+				stmt.execute("CREATE DATABASE " + SchemaChangeSet.quote(database));
+			}
+		}
+
+		// Migrate every schema before dumping any: views and routines reference other databases
+		Map<String, MigrationVersion> versions = new LinkedHashMap<>();
+		databases.forEach((schema, database) -> {
+			Flyway flyway = Flyway.configure()
+				.dataSource(serverUrl + database, user, password)
+				.locations("classpath:db/migration/" + schema)
+				.load();
+			flyway.migrate();
+			MigrationInfo current = flyway.info().current();
+			versions.put(schema, current.getVersion());
+			System.out.println("Scratch database migrated | schema=" + schema + " | version=" + current.getVersion());
+		});
+
+		for (Map.Entry<String, String> entry : databases.entrySet()) {
+			String schema = entry.getKey();
+			MigrationVersion version = versions.get(schema);
+			MigrationManifest manifest = MigrationManifest.load(schema)
+				.orElseThrow(() -> new IllegalStateException("No migration manifest on classpath for " + schema));
+			Path output = outputDir.resolve(schema + BaselineSnapshot.FILE_SUFFIX);
+			try (Connection connection = DriverManager.getConnection(serverUrl + entry.getValue(), user, password);
+				Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+				writer.write("-- AMRIT baseline snapshot of " + schema + ", generated by BaselineSnapshotGenerator. Do not edit.\n");
+				writer.write(BaselineSnapshot.VERSION_HEADER + version.getVersion() + "\n");
+				writer.write(BaselineSnapshot.DIGEST_HEADER + BaselineSnapshot.manifestDigest(manifest, version) + "\n\n");
+				new Dump(connection, writer).write();
+			}
+			System.out.println("Baseline snapshot written | schema=" + schema + " | version=" + version + " | file=" + output);
+		}
+	}
+
+	private static final class Dump {
+
+		private final Connection connection;
+		private final Writer writer;
+
+		private Dump(Connection connection, Writer writer) {
+			this.connection = connection;
+			this.writer = writer;
+		}
+
+		private void write() throws SQLException, IOException {
+			List<String> tables = names("SELECT TABLE_NAME FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() "
+				+ "AND TABLE_TYPE = 'BASE TABLE' ORDER BY TABLE_NAME");
+			tables.removeIf(SKIPPED_TABLES::contains);
+
+			Map<String, List<String>> indexes = new LinkedHashMap<>();
+			Map<String, List<String>> foreignKeys = new LinkedHashMap<>();
+			section("Tables");
+			for (String table : tables) {
+				String ddl = singleValue("SHOW CREATE TABLE " + SchemaChangeSet.quote(table), 2);
+				statement(splitTable(table, ddl, indexes, foreignKeys));
+			}
+			section("Data");
+			for (String table : tables) {
+				writeRows(table);
+			}
+			section("Indexes");
+			for (Map.Entry<String, List<String>> index : indexes.entrySet()) {
+				statement("ALTER TABLE " + SchemaChangeSet.quote(index.getKey()) + " " + String.join(", ", index.getValue()));
+			}
+			section("Foreign keys");
+			for (Map.Entry<String, List<String>> fk : foreignKeys.entrySet()) {
+				statement("ALTER TABLE " + SchemaChangeSet.quote(fk.getKey()) + " " + String.join(", ", fk.getValue()));
+			}
+			section("Views");
+			for (String view : viewsInDependencyOrder()) {
+				statement(stripDefiner(singleValue("SHOW CREATE VIEW " + SchemaChangeSet.quote(view), 2)));
+			}
+			section("Routines and triggers");
+			writer.write("DELIMITER " + ROUTINE_DELIMITER + "\n");
+			for (String procedure : names("SELECT ROUTINE_NAME FROM information_schema.ROUTINES "
+				+ "WHERE ROUTINE_SCHEMA = DATABASE() AND ROUTINE_TYPE = 'PROCEDURE' ORDER BY ROUTINE_NAME")) {
+				routine(stripDefiner(singleValue("SHOW CREATE PROCEDURE " + SchemaChangeSet.quote(procedure), 3)));
+			}
+			for (String function : names("SELECT ROUTINE_NAME FROM information_schema.ROUTINES "
+				+ "WHERE ROUTINE_SCHEMA = DATABASE() AND ROUTINE_TYPE = 'FUNCTION' ORDER BY ROUTINE_NAME")) {
+				routine(stripDefiner(singleValue("SHOW CREATE FUNCTION " + SchemaChangeSet.quote(function), 3)));
+			}
+			for (String trigger : names("SELECT TRIGGER_NAME FROM information_schema.TRIGGERS "
+				+ "WHERE TRIGGER_SCHEMA = DATABASE() ORDER BY EVENT_OBJECT_TABLE, ACTION_ORDER")) {
+				routine(stripDefiner(singleValue("SHOW CREATE TRIGGER " + SchemaChangeSet.quote(trigger), 3)));
+			}
+			writer.write("DELIMITER " + BaselineSnapshot.DEFAULT_DELIMITER + "\n");
+		}
+
+		/**
+		 * Returns the CREATE TABLE without secondary indexes and foreign keys,
+		 * collecting those as ALTER clauses for later.
+		 */
+		private static String splitTable(String table, String ddl, Map<String, List<String>> indexes,
+				Map<String, List<String>> foreignKeys) {
+			String[] lines = ddl.split("\n");
+			// Table options may be followed by a PARTITION BY clause over several lines
+			int closing = lines.length - 1;
+			while (closing > 1 && !lines[closing].startsWith(")")) {
+				closing--;
+			}
+			List<String> kept = new ArrayList<>();
+			for (int i = 1; i < closing; i++) {
+				String line = lines[i].trim();
+				if (line.endsWith(",")) {
+					line = line.substring(0, line.length() - 1);
+				}
+				if (line.startsWith("KEY ") || line.startsWith("UNIQUE KEY ") || line.startsWith("FULLTEXT KEY ")
+					|| line.startsWith("SPATIAL KEY ")) {
+					indexes.computeIfAbsent(table, t -> new ArrayList<>()).add("ADD " + line);
+				} else if (line.startsWith("CONSTRAINT ") && line.contains(" FOREIGN KEY ")) {
+					foreignKeys.computeIfAbsent(table, t -> new ArrayList<>()).add("ADD " + line);
+				} else {
+					kept.add("  " + line);
+				}
+			}
+			String options = AUTO_INCREMENT_OPTION.matcher(String.join("\n",
+				Arrays.copyOfRange(lines, closing, lines.length))).replaceAll("");
+			return lines[0] + "\n" + String.join(",\n", kept) + "\n" + options;
+		}
+
+		private void writeRows(String table) throws SQLException, IOException {
+			try (Statement stmt = connection.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT * FROM " + SchemaChangeSet.quote(table))) {
+				ResultSetMetaData meta = rs.getMetaData();
+				int columns = meta.getColumnCount();
+				List<String> names = new ArrayList<>();
+				for (int c = 1; c <= columns; c++) {
+					names.add(SchemaChangeSet.quote(meta.getColumnName(c)));
+				}
+				String insert = "INSERT INTO " + SchemaChangeSet.quote(table) + " (" + String.join(", ", names) + ") VALUES\n";
+				List<String> rows = new ArrayList<>();
+				while (rs.next()) {
+					List<String> values = new ArrayList<>(columns);
+					for (int c = 1; c <= columns; c++) {
+						values.add(literal(rs, c, meta.getColumnType(c)));
+					}
+					rows.add("(" + String.join(", ", values) + ")");
+					if (rows.size() == ROWS_PER_INSERT) {
+						statement(insert + String.join(",\n", rows));
+						rows.clear();
+					}
+				}
+				if (!rows.isEmpty()) {
+					statement(insert + String.join(",\n", rows));
+				}
+			}
+		}
+
+		private static String literal(ResultSet rs, int column, int type) throws SQLException {
+			switch (type) {
+				case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB -> {
+					byte[] bytes = rs.getBytes(column);
+					return bytes == null ? "NULL" : "X'" + HexFormat.of().formatHex(bytes) + "'";
+				}
+				case Types.BIT, Types.BOOLEAN, Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT,
+					Types.DECIMAL, Types.NUMERIC, Types.REAL, Types.FLOAT, Types.DOUBLE -> {
+					String value = rs.getString(column);
+					return value == null ? "NULL" : value;
+				}
+				default -> {
+					String value = rs.getString(column);
+					return value == null ? "NULL" : quoteString(value);
+				}
+			}
+		}
+
+		private static String quoteString(String value) {
+			StringBuilder quoted = new StringBuilder(value.length() + 2).append('\'');
+			for (char ch : value.toCharArray()) {
+				switch (ch) {
+					case '\'' -> quoted.append("\\'");
+					case '\\' -> quoted.append("\\\\");
+					case '\n' -> quoted.append("\\n");
+					case '\r' -> quoted.append("\\r");
+					case '\0' -> quoted.append("\\0");
+					default -> quoted.append(ch);
+				}
+			}
+			return quoted.append('\'').toString();
+		}
+
+		/** Views that select from other views are created after them. */
+		private List<String> viewsInDependencyOrder() throws SQLException {
+			Map<String, String> definitions = new LinkedHashMap<>();
+			for (String view : names("SELECT TABLE_NAME FROM information_schema.VIEWS WHERE TABLE_SCHEMA = DATABASE() "
+				+ "ORDER BY TABLE_NAME")) {
+				definitions.put(view, singleValue("SELECT VIEW_DEFINITION FROM information_schema.VIEWS "
+					+ "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '" + view.replace("'", "''") + "'", 1)
+					.toLowerCase(Locale.ROOT));
+			}
+			Set<String> ordered = new LinkedHashSet<>();
+			while (ordered.size() < definitions.size()) {
+				int before = ordered.size();
+				for (Map.Entry<String, String> view : definitions.entrySet()) {
+					if (ordered.contains(view.getKey())) {
+						continue;
+					}
+					boolean ready = definitions.keySet().stream()
+						.filter(other -> !other.equals(view.getKey()) && !ordered.contains(other))
+						.noneMatch(other -> view.getValue().contains("`" + other.toLowerCase(Locale.ROOT) + "`"));
+					if (ready) {
+						ordered.add(view.getKey());
+					}
+				}
+				if (ordered.size() == before) {
+					// Unresolvable by name matching; keep the remaining ones in name order
+					ordered.addAll(definitions.keySet());
+				}
+			}
+			return new ArrayList<>(ordered);
+		}
+
+		private List<String> names(String sql) throws SQLException {
+			List<String> names = new ArrayList<>();
+			try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+				while (rs.next()) {
+					names.add(rs.getString(1));
+				}
+			}
+			return names;
+		}
+
+		private String singleValue(String sql, int column) throws SQLException {
+			try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+				if (!rs.next()) {
+					throw new IllegalStateException("No result for " + sql);
+				}
+				return rs.getString(column);
+			}
+		}
+
+		private static String stripDefiner(String ddl) {
+			return DEFINER.matcher(ddl).replaceFirst("");
+		}
+
+		private void section(String title) throws IOException {
+			writer.write("\n-- " + title + "\n\n");
+		}
+
+		private void statement(String sql) throws IOException {
+			writer.write(sql + BaselineSnapshot.DEFAULT_DELIMITER + "\n\n");
+		}
+
+		private void routine(String sql) throws IOException {
+			writer.write(sql + ROUTINE_DELIMITER + "\n\n");
+		}
+	}
+}